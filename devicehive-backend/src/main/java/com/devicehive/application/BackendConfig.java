@@ -20,23 +20,99 @@ package com.devicehive.application;
  * #L%
  */
 
+import com.devicehive.codec.BodyCodecFactory;
+import com.devicehive.eventbus.ClusterEventBridge;
+import com.devicehive.eventbus.EventBusMetrics;
 import com.devicehive.json.GsonFactory;
+import com.devicehive.service.HazelcastService;
+import com.devicehive.service.HazelcastStoreMetrics;
+import com.devicehive.service.history.MessageHistoryStorage;
+import com.devicehive.service.history.NoopMessageHistoryStorage;
+import com.devicehive.service.history.SegmentLogMessageHistoryStorage;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
 import com.google.gson.Gson;
+import com.hazelcast.core.HazelcastInstance;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import com.devicehive.eventbus.EventBus;
 import com.devicehive.shim.api.server.RpcServer;
 
 @Configuration
+@EnableScheduling
 public class BackendConfig {
 
+    @Value("${eventbus.cluster.enabled:true}")
+    private boolean clusterEventBusEnabled;
+
+    @Value("${history.storage.type:none}")
+    private String historyStorageType;
+
+    @Value("${history.storage.dir:}")
+    private String historyStorageDir;
+
+    @Value("${history.storage.segment.bytes:134217728}")
+    private long historySegmentBytes;
+
+    @Value("${history.storage.retention.hours:720}")
+    private long historyRetentionHours;
+
+    @Value("${history.storage.max-bytes:0}")
+    private long historyMaxBytes;
+
     @Bean
     public Gson gson() {
         return GsonFactory.createGson();
     }
 
     @Bean
-    public EventBus eventBus(RpcServer rpcServer) {
-        return new EventBus(rpcServer.getDispatcher());
+    public BodyCodecRegistry bodyCodecRegistry() {
+        return BodyCodecFactory.createBodyCodecRegistry();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public EventBus eventBus(RpcServer rpcServer, HazelcastInstance hazelcastInstance, Gson gson,
+                             BodyCodecRegistry codecRegistry) {
+        ClusterEventBridge clusterBridge = clusterEventBusEnabled
+                ? new ClusterEventBridge(hazelcastInstance, gson, codecRegistry)
+                : null;
+        return new EventBus(rpcServer.getDispatcher(), clusterBridge);
+    }
+
+    @Bean
+    public EventBusMetrics eventBusMetrics(EventBus eventBus) {
+        return new EventBusMetrics(eventBus);
+    }
+
+    @Bean
+    public HazelcastStoreMetrics hazelcastStoreMetrics(HazelcastService hazelcastService) {
+        return new HazelcastStoreMetrics(hazelcastService);
+    }
+
+    @Bean(destroyMethod = "close")
+    public MessageHistoryStorage messageHistoryStorage() throws IOException {
+        switch (historyStorageType) {
+            case "segment-log":
+                final Path directory = Paths.get(historyStorageDir);
+                if (!directory.isAbsolute()) {
+                    throw new IllegalArgumentException("history.storage.dir must be an absolute path, got '"
+                            + historyStorageDir + "'");
+                }
+                if (historyMaxBytes <= 0) {
+                    throw new IllegalArgumentException("history.storage.max-bytes must be positive, "
+                            + "the log would otherwise grow until the disk is full");
+                }
+                return new SegmentLogMessageHistoryStorage(directory, historySegmentBytes,
+                        historyRetentionHours * 3600 * 1000, historyMaxBytes);
+            case "none":
+                return new NoopMessageHistoryStorage();
+            default:
+                throw new IllegalArgumentException("Unknown history storage type " + historyStorageType);
+        }
     }
 }
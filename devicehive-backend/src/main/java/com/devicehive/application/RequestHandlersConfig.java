@@ -24,6 +24,7 @@ import com.devicehive.handler.command.*;
 import com.devicehive.handler.dao.list.*;
 import com.devicehive.handler.notification.NotificationSubscribeRequestHandler;
 import com.devicehive.handler.command.CommandUnsubscribeRequestHandler;
+import com.devicehive.handler.notification.NotificationBatchInsertHandler;
 import com.devicehive.handler.notification.NotificationInsertHandler;
 import com.devicehive.handler.notification.NotificationSearchHandler;
 import com.devicehive.handler.notification.NotificationUnsubscribeRequestHandler;
@@ -56,6 +57,7 @@ public class RequestHandlersConfig {
         return new HashMap<Action, RequestHandler>() {{
             put(Action.NOTIFICATION_SEARCH_REQUEST, new NotificationSearchHandler());
             put(Action.NOTIFICATION_INSERT_REQUEST, new NotificationInsertHandler());
+            put(Action.NOTIFICATION_BATCH_INSERT_REQUEST, new NotificationBatchInsertHandler());
             put(Action.NOTIFICATION_SUBSCRIBE_REQUEST, new NotificationSubscribeRequestHandler());
             put(Action.NOTIFICATION_UNSUBSCRIBE_REQUEST, new NotificationUnsubscribeRequestHandler());
             put(Action.COMMAND_INSERT_REQUEST, new CommandInsertHandler());
@@ -0,0 +1,226 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.model.eventbus.events.Event;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.codec.BodyCodec;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.google.gson.Gson;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.devicehive.shim.api.codec.CodecUtils.*;
+
+/**
+ * Spreads events published on this backend node to event buses of all other nodes of the Hazelcast cluster.
+ *
+ * Subscriptions are never replicated, every node matches incoming events against its own local registry,
+ * so subscriber lookup never makes a remote call. Each event crosses the cluster once as a single topic message,
+ * regardless of the number of subscribers. Nothing is published while the node is alone in the cluster.
+ *
+ * Subscribe requests are handled by any node, so unsubscribe request may reach a node which does not own the
+ * subscriber. Unsubscriptions are broadcast the same way as events and applied by every node to its own registry.
+ */
+public class ClusterEventBridge implements MessageListener<byte[]> {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterEventBridge.class);
+
+    public static final String EVENTS_TOPIC = "EVENTBUS-TOPIC";
+
+    private static final byte CODEC_BODY = 1;
+    private static final byte JSON_BODY = 2;
+    private static final byte UNSUBSCRIBE_SUBSCRIBERS = 3;
+    private static final byte UNSUBSCRIBE_SUBSCRIPTIONS = 4;
+
+    private final HazelcastInstance hazelcastInstance;
+    private final ITopic<byte[]> topic;
+    private final Gson gson;
+    private final BodyCodecRegistry codecRegistry;
+
+    private EventBus localBus;
+    private String registrationId;
+
+    public ClusterEventBridge(HazelcastInstance hazelcastInstance, Gson gson, BodyCodecRegistry codecRegistry) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.topic = hazelcastInstance.getTopic(EVENTS_TOPIC);
+        this.gson = gson;
+        this.codecRegistry = codecRegistry;
+    }
+
+    /**
+     * @param localBus - event bus of this node, receives events and unsubscriptions from other nodes
+     */
+    public void start(EventBus localBus) {
+        this.localBus = localBus;
+        this.registrationId = topic.addMessageListener(this);
+    }
+
+    public void shutdown() {
+        if (registrationId != null) {
+            topic.removeMessageListener(registrationId);
+            registrationId = null;
+        }
+    }
+
+    public void broadcast(Event event) {
+        if (hazelcastInstance.getCluster().getMembers().size() > 1) {
+            topic.publish(encode(event));
+        }
+    }
+
+    public void broadcastUnsubscribe(Collection<String> subscriberIds) {
+        if (hazelcastInstance.getCluster().getMembers().size() > 1) {
+            topic.publish(encodeSubscriberIds(subscriberIds));
+        }
+    }
+
+    public void broadcastUnsubscribeAll(Collection<Subscription> subscriptions) {
+        if (hazelcastInstance.getCluster().getMembers().size() > 1) {
+            topic.publish(encodeSubscriptions(subscriptions));
+        }
+    }
+
+    @Override
+    public void onMessage(Message<byte[]> message) {
+        if (hazelcastInstance.getCluster().getLocalMember().equals(message.getPublishingMember())) {
+            return; // already delivered locally by publisher
+        }
+        byte[] data = message.getMessageObject();
+        try {
+            switch (data[0]) {
+                case UNSUBSCRIBE_SUBSCRIBERS:
+                    localBus.unsubscribeLocally(decodeSubscriberIds(data));
+                    break;
+                case UNSUBSCRIBE_SUBSCRIPTIONS:
+                    localBus.unsubscribeAllLocally(decodeSubscriptions(data));
+                    break;
+                default:
+                    localBus.deliver(decode(data));
+            }
+        } catch (Exception e) {
+            logger.error("Unable to handle message received from cluster member {}", message.getPublishingMember(), e);
+        }
+    }
+
+    byte[] encodeSubscriberIds(Collection<String> subscriberIds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(UNSUBSCRIBE_SUBSCRIBERS);
+            out.writeInt(subscriberIds.size());
+            for (String id : subscriberIds) {
+                writeString(out, id);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unsubscription serialization failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    List<String> decodeSubscriberIds(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            in.readByte();
+            int size = in.readInt();
+            List<String> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(readString(in));
+            }
+            return ids;
+        }
+    }
+
+    byte[] encodeSubscriptions(Collection<Subscription> subscriptions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(UNSUBSCRIBE_SUBSCRIPTIONS);
+            out.writeInt(subscriptions.size());
+            for (Subscription subscription : subscriptions) {
+                writeString(out, subscription.getType());
+                writeString(out, subscription.getGuid());
+                writeLong(out, subscription.getNetworkId());
+                writeString(out, subscription.getName());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unsubscription serialization failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    List<Subscription> decodeSubscriptions(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            in.readByte();
+            int size = in.readInt();
+            List<Subscription> subscriptions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String type = readString(in);
+                String guid = readString(in);
+                Long networkId = readLong(in);
+                String name = readString(in);
+                subscriptions.add(networkId != null
+                        ? Subscription.forNetwork(type, networkId, name)
+                        : new Subscription(type, guid, name));
+            }
+            return subscriptions;
+        }
+    }
+
+    byte[] encode(Event event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BodyCodec<Body> codec = codecRegistry.get(event.getAction());
+            if (codec != null) {
+                out.writeByte(CODEC_BODY);
+                writeString(out, event.getAction());
+                codec.encode(event, out);
+            } else {
+                out.writeByte(JSON_BODY);
+                writeString(out, gson.toJson(event, Body.class));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Event serialization failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    Event decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte kind = in.readByte();
+            if (kind == CODEC_BODY) {
+                String action = readString(in);
+                BodyCodec<Body> codec = codecRegistry.get(action);
+                if (codec == null) {
+                    throw new IOException("No binary codec registered for action " + action);
+                }
+                return (Event) codec.decode(in);
+            }
+            return (Event) gson.fromJson(readString(in), Body.class);
+        }
+    }
+}
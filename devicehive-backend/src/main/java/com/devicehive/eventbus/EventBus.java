@@ -25,8 +25,12 @@ import com.devicehive.model.eventbus.Subscription;
 import com.devicehive.model.eventbus.events.Event;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.MessageDispatcher;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Central class for interaction with devicehive-backend subscription mechanism.
@@ -36,21 +40,63 @@ public class EventBus {
 
     private final SubscriberRegistry registry = new SubscriberRegistry();
     private final MessageDispatcher dispatcher;
+    private final ClusterEventBridge clusterBridge;
 
     /**
-     * Creates new instance of EventBus
+     * Creates new instance of EventBus, which delivers events only to subscribers of this node
      * @param dispatcher - interface, that controls message delivery strategy
      */
     public EventBus(MessageDispatcher dispatcher) {
+        this(dispatcher, null);
+    }
+
+    /**
+     * Creates new instance of EventBus
+     * @param dispatcher - interface, that controls message delivery strategy
+     * @param clusterBridge - spreads published events to other backend nodes, nullable
+     */
+    public EventBus(MessageDispatcher dispatcher, ClusterEventBridge clusterBridge) {
         this.dispatcher = dispatcher;
+        this.clusterBridge = clusterBridge;
+        if (clusterBridge != null) {
+            clusterBridge.start(this);
+        }
     }
 
     public void subscribe(Subscriber subscriber, Subscription subscription) {
         registry.register(subscriber, subscription);
     }
 
+    /**
+     * Removes subscriber on this node and on all other nodes of the cluster, subscriber may be registered
+     * by any of them
+     */
     public void unsubscribe(Subscriber subscriber) {
         registry.unregister(subscriber);
+        if (clusterBridge != null) {
+            clusterBridge.broadcastUnsubscribe(Collections.singleton(subscriber.getId()));
+        }
+    }
+
+    /**
+     * Removes all subscribers of given subscriptions on this node and on all other nodes of the cluster
+     */
+    public void unsubscribeAll(Collection<Subscription> subscriptions) {
+        unsubscribeAllLocally(subscriptions);
+        if (clusterBridge != null) {
+            clusterBridge.broadcastUnsubscribeAll(subscriptions);
+        }
+    }
+
+    void unsubscribeLocally(Collection<String> subscriberIds) {
+        // registry matches subscribers by id only
+        subscriberIds.forEach(id -> registry.unregister(new Subscriber(id, null, null)));
+    }
+
+    void unsubscribeAllLocally(Collection<Subscription> subscriptions) {
+        Set<Subscriber> subscribers = new HashSet<>();
+        subscriptions.forEach(subscription -> subscribers.addAll(registry.getSubscribers(subscription)));
+        subscribers.forEach(registry::unregister);
     }
 
     public Collection<Subscriber> getSubscribers(Subscription subscription) {
@@ -61,17 +107,60 @@ public class EventBus {
        return registry.getSubscriptions(subscriber);
     }
 
+    /**
+     * Delivers event to subscribers of this node and passes it to other nodes of the cluster
+     */
     public void publish(Event event) {
-        event.getApplicableSubscriptions()
-                .stream()
-                .flatMap(subscription -> registry.getSubscribers(subscription).stream())
-                .forEach(subscriber -> {
-                    Response response = Response.newBuilder()
-                            .withBody(event)
-                            .withCorrelationId(subscriber.getCorrelationId())
-                            .withLast(false)
-                            .buildSuccess();
-                    dispatcher.send(subscriber.getReplyTo(), response);
-                });
+        deliver(event);
+        if (clusterBridge != null) {
+            clusterBridge.broadcast(event);
+        }
+    }
+
+    /**
+     * Periodically gives back memory which subscription registry grabbed under connection churn
+     */
+    @Scheduled(fixedDelayString = "${eventbus.registry.compaction.interval.ms:60000}")
+    public void compactRegistry() {
+        registry.compact();
+    }
+
+    public int getSubscriberCount() {
+        return registry.getSubscriberCount();
+    }
+
+    public int getSubscriptionCount() {
+        return registry.getSubscriptionCount();
+    }
+
+    public int getRegistrationCount() {
+        return registry.getRegistrationCount();
+    }
+
+    public int getRegistryArenaCapacity() {
+        return registry.getArenaCapacity();
+    }
+
+    public long getDroppedSubscriptionCount() {
+        return registry.getDroppedSubscriptionCount();
+    }
+
+    public void shutdown() {
+        if (clusterBridge != null) {
+            clusterBridge.shutdown();
+        }
+    }
+
+    void deliver(Event event) {
+        for (Subscription subscription : event.getApplicableSubscriptions()) {
+            for (Subscriber subscriber : registry.getSubscribers(subscription)) {
+                Response response = Response.newBuilder()
+                        .withBody(event)
+                        .withCorrelationId(subscriber.getCorrelationId())
+                        .withLast(false)
+                        .buildSuccess();
+                dispatcher.send(subscriber.getReplyTo(), response);
+            }
+        }
     }
 }
@@ -0,0 +1,49 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exposes size of event bus subscription registry through actuator metrics endpoint.
+ */
+public class EventBusMetrics implements PublicMetrics {
+
+    private final EventBus eventBus;
+
+    public EventBusMetrics(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("eventbus.registry.subscribers", eventBus.getSubscriberCount()),
+                new Metric<>("eventbus.registry.subscriptions", eventBus.getSubscriptionCount()),
+                new Metric<>("eventbus.registry.registrations", eventBus.getRegistrationCount()),
+                new Metric<>("eventbus.registry.arena-capacity", eventBus.getRegistryArenaCapacity()),
+                new Metric<>("eventbus.registry.dropped-subscriptions", eventBus.getDroppedSubscriptionCount()));
+    }
+}
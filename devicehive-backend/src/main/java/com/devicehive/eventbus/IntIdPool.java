@@ -0,0 +1,79 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Allocator of positive int ids, which reuses released ids. {@link #compact()} makes ids of following allocations
+ * as low as possible, so arrays indexed by ids may be shrunk.
+ * Not thread safe.
+ */
+final class IntIdPool {
+
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId = 1;
+
+    int allocate() {
+        return freeCount > 0 ? freeIds[--freeCount] : nextId++;
+    }
+
+    void release(int id) {
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * @return number of allocated ids
+     */
+    int size() {
+        return nextId - 1 - freeCount;
+    }
+
+    /**
+     * @return all allocated ids are lower than this bound
+     */
+    int upperBound() {
+        return nextId;
+    }
+
+    /**
+     * Gives back released ids from the top of the range and orders the rest, so that the lowest ones are reused first.
+     */
+    void compact() {
+        Arrays.sort(freeIds, 0, freeCount);
+        while (freeCount > 0 && freeIds[freeCount - 1] == nextId - 1) {
+            freeCount--;
+            nextId--;
+        }
+        for (int i = 0, j = freeCount - 1; i < j; i++, j--) {
+            int id = freeIds[i];
+            freeIds[i] = freeIds[j];
+            freeIds[j] = id;
+        }
+        if (freeIds.length > 16 && freeCount * 4 < freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(16, freeCount * 2));
+        }
+    }
+}
@@ -24,98 +24,370 @@ import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.eventbus.Subscription;
 import org.springframework.util.Assert;
 
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class for handling all subscribe, unsubscribe and get subscribers tricky logic
+ * Class for handling all subscribe, unsubscribe and get subscribers tricky logic.
+ *
+ * Every distinct subscription is interned into a single {@link Bucket} with its own int id, and every registration
+ * of a subscriber to a subscription occupies an int slot in {@link SubscriberArena}. Bucket keeps slots of its
+ * subscribers in registration order together with a primitive {@link IntIntHashMap} index of their positions.
+ * So both subscribe and unsubscribe cost O(1) per subscription regardless of the number of subscribers.
+ * Lookup returns an immutable snapshot of the bucket, which is rebuilt only on the first lookup after a change,
+ * so publishing of events doesn't allocate anything while subscriptions stay the same.
+ *
+ * Bucket is dropped as soon as its last subscriber leaves, and {@link #compact()} periodically gives back memory
+ * that arena and buckets grabbed at peak load.
  */
 class SubscriberRegistry {
 
     /**
      * Map for holding subscriptions for particular subscription request id (i.e. subscriber).
-     * The KEY in this map is an id of subscriber (subscription request) and the VALUE is a set of subscriptions for this subscriber.
+     * The KEY in this map is an id of subscriber (subscription request) and the VALUE is a set of buckets
+     * of all his subscriptions together with his slot in each of them.
      *
      * This map keeps track of all subscriptions for single subscriber so that it is possible to remove all of them
      * from {@link SubscriberRegistry#subscriptions} map during {@link SubscriberRegistry#unregister(Subscriber)} call
      */
-    private final ConcurrentHashMap<String, CopyOnWriteArraySet<Subscription>> subscriberSubscriptions =
-            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SubscriberEntry> subscriberSubscriptions = new ConcurrentHashMap<>();
 
     /**
      * Map that contains an information about subscribers for single subscription.
-     * The KEY is subscription (e.g. subscription on device notifications) and the VALUE is a set of all subscribers.
+     * The KEY is subscription (e.g. subscription on device notifications) and the VALUE is a bucket of all subscribers.
      * This map is used for actual routing of messages through the event bus
      */
-    private final ConcurrentHashMap<Subscription, CopyOnWriteArraySet<Subscriber>> subscriptions =
-            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Subscription, Bucket> subscriptions = new ConcurrentHashMap<>();
+
+    private final SubscriberArena arena = new SubscriberArena();
+
+    private final IntIdPool bucketIds = new IntIdPool();
+
+    private final AtomicLong droppedBuckets = new AtomicLong();
 
     /**
      * Registers subscription and subscriber in registry maps.
      * Performs following steps:
-     *  - if subscriber doesn't have any subscriptions in {@link SubscriberRegistry#subscriberSubscriptions} - creates an empty list for him;
-     *  - adds subscription into subscriber's list in {@link SubscriberRegistry#subscriberSubscriptions};
-     *  - if nobody is subscribed to this subscription in {@link SubscriberRegistry#subscriptions} - initializes the list;
-     *  - adds subscriber to this subscription's list in {@link SubscriberRegistry#subscriptions}
+     *  - if subscriber doesn't have any subscriptions in {@link SubscriberRegistry#subscriberSubscriptions} - creates an entry for him;
+     *  - if nobody is subscribed to this subscription in {@link SubscriberRegistry#subscriptions} - creates the bucket;
+     *  - if subscriber isn't in the bucket yet - allocates arena slot, adds it into the bucket and remembers it in subscriber's entry
      *
      * @param subscriber - subscriber
      * @param subscription - subscription to subscribe to
      */
     void register(Subscriber subscriber, Subscription subscription) {
-        CopyOnWriteArraySet<Subscription> subscriptions = subscriberSubscriptions.get(subscriber.getId());
-        if (subscriptions == null) {
-            //initialize list in a thread safe manner
-            CopyOnWriteArraySet<Subscription> newSet = new CopyOnWriteArraySet<>();
-            subscriptions = firstNonNull(subscriberSubscriptions.putIfAbsent(subscriber.getId(), newSet), newSet);
-        }
-        subscriptions.add(subscription);
-
-        CopyOnWriteArraySet<Subscriber> subscribers = this.subscriptions.get(subscription);
-        if (subscribers == null) {
-            //initialize list in a thread safe manner
-            CopyOnWriteArraySet<Subscriber> newSet = new CopyOnWriteArraySet<>();
-            subscribers = firstNonNull(this.subscriptions.putIfAbsent(subscription, newSet), newSet);
+        Assert.notNull(subscription);
+        while (true) {
+            SubscriberEntry entry = subscriberSubscriptions.computeIfAbsent(subscriber.getId(), id -> new SubscriberEntry());
+            synchronized (entry) {
+                if (entry.removed) {
+                    continue; // concurrently unregistered, register again with a new entry
+                }
+                while (true) {
+                    Bucket bucket = subscriptions.computeIfAbsent(subscription, s -> new Bucket(s, allocateBucketId()));
+                    if (entry.slots.containsKey(bucket.id)) {
+                        return;
+                    }
+                    int slot = arena.allocate(subscriber);
+                    if (bucket.add(slot)) {
+                        entry.slots.put(bucket.id, slot);
+                        entry.buckets.add(bucket);
+                        return;
+                    }
+                    arena.release(slot); // bucket was concurrently dropped, take a new one
+                }
+            }
         }
-        subscribers.add(subscriber);
     }
 
     /**
      * Unregisters subscriber from registry maps:
-     *  - gets all subscriber's subscriptions from {@link SubscriberRegistry#subscriberSubscriptions}
-     *  - removes subscriber from each subscription's list in {@link SubscriberRegistry#subscriptions}
      *  - removes entry from {@link SubscriberRegistry#subscriberSubscriptions}
+     *  - removes subscriber's slots from each subscription's bucket in {@link SubscriberRegistry#subscriptions}
+     *    and drops buckets which became empty
+     *  - releases these slots in arena
      *
      * @param subscriber - subscriber
      */
     void unregister(Subscriber subscriber) {
-        CopyOnWriteArraySet<Subscription> subs =
-                subscriberSubscriptions.getOrDefault(subscriber.getId(), new CopyOnWriteArraySet<>());
-        subs.forEach(s -> {
-            CopyOnWriteArraySet<Subscriber> subscribers = this.subscriptions.get(s);
-            if (subscribers != null) {
-                subscribers.remove(subscriber);
-            }
-        });
+        SubscriberEntry entry = subscriberSubscriptions.remove(subscriber.getId());
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            entry.removed = true;
+            for (Bucket bucket : entry.buckets) {
+                int slot = entry.slots.get(bucket.id);
+                if (bucket.remove(slot)) {
+                    dropIfEmpty(bucket);
+                }
+                arena.release(slot);
+            }
+            entry.buckets.clear();
+        }
     }
 
     /**
      * @param subscription - subscription
-     * @return - list of subscribers for subscription
+     * @return - immutable list of subscribers for subscription
      */
     Collection<Subscriber> getSubscribers(Subscription subscription) {
         Assert.notNull(subscription);
-        return this.subscriptions.getOrDefault(subscription, new CopyOnWriteArraySet<>());
+        Bucket bucket = this.subscriptions.get(subscription);
+        return bucket != null ? bucket.subscribers(arena) : Collections.emptyList();
     }
 
-    Collection<Subscription> getSubscriptions(Subscriber subscriber) {
+    /**
+     * @param subscriber - subscriber
+     * @return - immutable set of subscriber's subscriptions
+     */
+    Set<Subscription> getSubscriptions(Subscriber subscriber) {
         Assert.notNull(subscriber);
-        return this.subscriberSubscriptions.getOrDefault(subscriber.getId(), new CopyOnWriteArraySet<>());
+        SubscriberEntry entry = subscriberSubscriptions.get(subscriber.getId());
+        if (entry == null) {
+            return Collections.emptySet();
+        }
+        synchronized (entry) {
+            Set<Subscription> result = new HashSet<>(entry.buckets.size() * 2);
+            for (Bucket bucket : entry.buckets) {
+                result.add(bucket.subscription);
+            }
+            return Collections.unmodifiableSet(result);
+        }
+    }
+
+    /**
+     * Compaction pass:
+     *  - drops empty buckets left in {@link SubscriberRegistry#subscriptions}, if any;
+     *  - shrinks buckets which are much bigger than the number of their subscribers;
+     *  - makes arena reuse the lowest free slots and shrinks it when its top is free.
+     */
+    void compact() {
+        for (Bucket bucket : subscriptions.values()) {
+            if (bucket.trim()) {
+                dropIfEmpty(bucket);
+            }
+        }
+        arena.compact();
+        synchronized (bucketIds) {
+            bucketIds.compact();
+        }
+    }
+
+    /**
+     * @return - number of subscribers (subscription request ids) with at least one subscription
+     */
+    int getSubscriberCount() {
+        return subscriberSubscriptions.size();
+    }
+
+    /**
+     * @return - number of distinct subscriptions
+     */
+    int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return - number of registrations of subscribers to subscriptions
+     */
+    int getRegistrationCount() {
+        return arena.size();
+    }
+
+    /**
+     * @return - number of slots allocated by arena
+     */
+    int getArenaCapacity() {
+        return arena.capacity();
+    }
+
+    /**
+     * @return - number of subscriptions dropped since start, because nobody was subscribed to them anymore
+     */
+    long getDroppedSubscriptionCount() {
+        return droppedBuckets.get();
+    }
+
+    private int allocateBucketId() {
+        synchronized (bucketIds) {
+            return bucketIds.allocate();
+        }
+    }
+
+    private void dropIfEmpty(Bucket bucket) {
+        if (bucket.retireIfEmpty()) {
+            subscriptions.remove(bucket.subscription, bucket);
+            synchronized (bucketIds) {
+                bucketIds.release(bucket.id);
+            }
+            droppedBuckets.incrementAndGet();
+        }
     }
 
-    private static <T> T firstNonNull(T first, T second) {
-        Assert.notNull(second);
-        return first != null ? first : second;
+    private static class SubscriberEntry {
+        private final List<Bucket> buckets = new ArrayList<>(2);
+        private final IntIntHashMap slots = new IntIntHashMap(); // bucket id -> arena slot
+        private boolean removed;
     }
 
+    /**
+     * Subscribers of single interned subscription. Slots are appended to {@link Bucket#order} and removed ones leave
+     * holes there, which are squeezed out once they outnumber live slots, so both operations are O(1) amortized
+     * and subscribers are always returned in registration order.
+     * Once the last subscriber leaves, bucket is retired and never accepts new slots.
+     */
+    private static class Bucket {
+        private final Subscription subscription;
+        private final int id;
+        private final IntIntHashMap positions = new IntIntHashMap();
+        private int[] order = new int[2];
+        private int tail;
+        private boolean retired;
+        private volatile List<Subscriber> snapshot = Collections.emptyList();
+
+        private Bucket(Subscription subscription, int id) {
+            this.subscription = subscription;
+            this.id = id;
+        }
+
+        /**
+         * @return false if bucket is retired
+         */
+        private synchronized boolean add(int slot) {
+            if (retired) {
+                return false;
+            }
+            if (tail == order.length) {
+                order = Arrays.copyOf(order, tail * 2);
+            }
+            order[tail] = slot;
+            positions.put(slot, tail++);
+            snapshot = null;
+            return true;
+        }
+
+        /**
+         * @return true if bucket became empty
+         */
+        private synchronized boolean remove(int slot) {
+            int position = positions.remove(slot);
+            if (position == IntIntHashMap.MISSING) {
+                return false;
+            }
+            order[position] = 0;
+            if (tail - positions.size() > positions.size()) {
+                compact();
+            }
+            snapshot = null;
+            return positions.isEmpty();
+        }
+
+        private synchronized boolean retireIfEmpty() {
+            if (retired || !positions.isEmpty()) {
+                return false;
+            }
+            retired = true;
+            snapshot = Collections.emptyList();
+            return true;
+        }
+
+        /**
+         * @return true if bucket is empty
+         */
+        private synchronized boolean trim() {
+            if (order.length > Math.max(4, tail * 2)) {
+                compact();
+            }
+            return positions.isEmpty();
+        }
+
+        private void compact() {
+            int live = 0;
+            for (int i = 0; i < tail; i++) {
+                int slot = order[i];
+                if (slot != 0) {
+                    order[live] = slot;
+                    positions.put(slot, live++);
+                }
+            }
+            Arrays.fill(order, live, tail, 0);
+            order = Arrays.copyOf(order, Math.max(2, live * 2));
+            tail = live;
+        }
+
+        private List<Subscriber> subscribers(SubscriberArena arena) {
+            List<Subscriber> result = snapshot;
+            if (result == null) {
+                synchronized (this) {
+                    result = snapshot;
+                    if (result == null) {
+                        snapshot = result = rebuild(arena);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private List<Subscriber> rebuild(SubscriberArena arena) {
+            if (positions.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Subscriber[] subscribers = new Subscriber[positions.size()];
+            int n = 0;
+            for (int i = 0; i < tail; i++) {
+                if (order[i] != 0) {
+                    subscribers[n++] = arena.get(order[i]);
+                }
+            }
+            return Collections.unmodifiableList(Arrays.asList(subscribers));
+        }
+    }
+
+    /**
+     * Int-indexed storage of subscribers, so buckets can keep plain int slots instead of object references.
+     * Each subscription of a subscriber gets its own slot, as subscribe requests of the same subscriber
+     * may carry different correlation ids.
+     */
+    private static class SubscriberArena {
+        private static final int MIN_CAPACITY = 64;
+
+        private final IntIdPool slots = new IntIdPool();
+        private volatile Subscriber[] subscribers = new Subscriber[MIN_CAPACITY];
+
+        private synchronized int allocate(Subscriber subscriber) {
+            int slot = slots.allocate();
+            if (slot >= subscribers.length) {
+                subscribers = Arrays.copyOf(subscribers, subscribers.length * 2);
+            }
+            subscribers[slot] = subscriber;
+            return slot;
+        }
+
+        private synchronized void release(int slot) {
+            subscribers[slot] = null;
+            slots.release(slot);
+        }
+
+        private synchronized void compact() {
+            slots.compact();
+            int required = slots.upperBound();
+            if (subscribers.length > MIN_CAPACITY && required * 4 < subscribers.length) {
+                subscribers = Arrays.copyOf(subscribers, Math.max(MIN_CAPACITY, required * 2));
+            }
+        }
+
+        private synchronized int size() {
+            return slots.size();
+        }
+
+        private synchronized int capacity() {
+            return subscribers.length;
+        }
+
+        private Subscriber get(int slot) {
+            return subscribers[slot];
+        }
+    }
 }
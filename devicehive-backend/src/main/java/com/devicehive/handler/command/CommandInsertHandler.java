@@ -38,10 +38,11 @@ public class CommandInsertHandler implements RequestHandler {
 
     @Override
     public Response handle(Request request) {
-        DeviceCommand deviceCommand = request.getBody().cast(CommandInsertRequest.class).getDeviceCommand();
+        CommandInsertRequest body = request.getBody().cast(CommandInsertRequest.class);
+        DeviceCommand deviceCommand = body.getDeviceCommand();
         hazelcastService.store(deviceCommand);
 
-        CommandEvent commandEvent = new CommandEvent(deviceCommand);
+        CommandEvent commandEvent = new CommandEvent(deviceCommand, body.getNetworkId());
         eventBus.publish(commandEvent);
 
         CommandInsertResponse payload = new CommandInsertResponse(deviceCommand);
@@ -20,13 +20,16 @@ package com.devicehive.handler.command;
  * #L%
  */
 
+import com.devicehive.configuration.Constants;
 import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.rpc.CommandSearchRequest;
 import com.devicehive.model.rpc.CommandSearchResponse;
 import com.devicehive.service.HazelcastService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
+import com.devicehive.util.CommandResponseFilterAndSort;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 
@@ -48,9 +51,14 @@ public class CommandSearchHandler implements RequestHandler {
     public Response handle(Request request) {
         CommandSearchRequest searchRequest = (CommandSearchRequest) request.getBody();
 
-        CommandSearchResponse payload = searchRequest.getId() != null && !StringUtils.isEmpty(searchRequest.getGuid())
-                ? searchSingleCommandByDeviceAndId(searchRequest.getId(), searchRequest.getGuid())
-                : searchMultipleCommands(searchRequest);
+        CommandSearchResponse payload;
+        if (searchRequest.getId() != null && !StringUtils.isEmpty(searchRequest.getGuid())) {
+            payload = searchSingleCommandByDeviceAndId(searchRequest.getId(), searchRequest.getGuid());
+        } else if (searchRequest.getCursor() != null) {
+            payload = searchPage(searchRequest);
+        } else {
+            payload = searchMultipleCommands(searchRequest);
+        }
 
         return Response.newBuilder()
                 .withBody(payload)
@@ -67,6 +75,30 @@ public class CommandSearchHandler implements RequestHandler {
         return commandSearchResponse;
     }
 
+    private CommandSearchResponse searchPage(CommandSearchRequest searchRequest) {
+        final int pageSize = searchRequest.getTake() != null && searchRequest.getTake() > 0
+                ? searchRequest.getTake()
+                : Constants.DEFAULT_TAKE;
+        final List<DeviceCommand> commands = hazelcastService.findAfter(
+                searchRequest.getGuid(),
+                searchRequest.getNames(),
+                HistoryCursor.notBefore(searchRequest.getCursor(), searchRequest.getTimestampStart()),
+                searchRequest.getTimestampEnd(),
+                searchRequest.getStatus(),
+                pageSize + 1,
+                DeviceCommand.class);
+
+        final CommandSearchResponse commandSearchResponse = new CommandSearchResponse();
+        if (commands.size() <= pageSize) {
+            commandSearchResponse.setCommands(commands);
+        } else {
+            final List<DeviceCommand> page = new ArrayList<>(commands.subList(0, pageSize));
+            commandSearchResponse.setCommands(page);
+            commandSearchResponse.setNextCursor(HistoryCursor.of(page.get(pageSize - 1)));
+        }
+        return commandSearchResponse;
+    }
+
     private CommandSearchResponse searchMultipleCommands(CommandSearchRequest searchRequest) {
         final CommandSearchResponse commandSearchResponse = new CommandSearchResponse();
         final Collection<DeviceCommand> commands = hazelcastService.find(
@@ -79,7 +111,16 @@ public class CommandSearchHandler implements RequestHandler {
                 searchRequest.getStatus(),
                 DeviceCommand.class);
 
-        commandSearchResponse.setCommands(new ArrayList<>(commands));
+        if (!searchRequest.isPaged()) {
+            commandSearchResponse.setCommands(new ArrayList<>(commands));
+            return commandSearchResponse;
+        }
+        final Boolean reverse = searchRequest.getSortOrderAsc() == null ? null : !searchRequest.getSortOrderAsc();
+        commandSearchResponse.setCommands(CommandResponseFilterAndSort.orderAndLimit(new ArrayList<>(commands),
+                CommandResponseFilterAndSort.buildDeviceCommandComparator(searchRequest.getSortField()),
+                reverse,
+                searchRequest.getSkip() == null ? 0 : searchRequest.getSkip(),
+                searchRequest.getTake()));
         return commandSearchResponse;
     }
 }
@@ -36,6 +36,7 @@ import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class CommandSubscribeRequestHandler implements RequestHandler {
 
@@ -54,20 +55,23 @@ public class CommandSubscribeRequestHandler implements RequestHandler {
 
         Subscriber subscriber = new Subscriber(body.getSubscriptionId(), request.getReplyTo(), request.getCorrelationId());
 
+        Set<String> devices = getDevices(body);
+        Set<Long> networks = Optional.ofNullable(body.getNetworks()).orElse(Collections.emptySet());
+
         Set<Subscription> subscriptions = new HashSet<>();
         if (CollectionUtils.isEmpty(body.getNames())) {
-            Subscription subscription = new Subscription(Action.COMMAND_EVENT.name(), body.getDevice());
-            subscriptions.add(subscription);
+            devices.forEach(device -> subscriptions.add(new Subscription(Action.COMMAND_EVENT.name(), device)));
+            networks.forEach(network -> subscriptions.add(Subscription.forNetwork(Action.COMMAND_EVENT.name(), network, null)));
         } else {
             for (String name : body.getNames()) {
-                Subscription subscription = new Subscription(Action.COMMAND_EVENT.name(), body.getDevice(), name);
-                subscriptions.add(subscription);
+                devices.forEach(device -> subscriptions.add(new Subscription(Action.COMMAND_EVENT.name(), device, name)));
+                networks.forEach(network -> subscriptions.add(Subscription.forNetwork(Action.COMMAND_EVENT.name(), network, name)));
             }
         }
 
         subscriptions.forEach(subscription -> eventBus.subscribe(subscriber, subscription));
 
-        Collection<DeviceCommand> commands = findCommands(body.getDevice(), body.getNames(), body.getTimestamp());
+        Collection<DeviceCommand> commands = findCommands(devices, body.getNames(), body.getTimestamp());
         CommandSubscribeResponse subscribeResponse = new CommandSubscribeResponse(body.getSubscriptionId(), commands);
 
         return Response.newBuilder()
@@ -79,13 +83,30 @@ public class CommandSubscribeRequestHandler implements RequestHandler {
 
     private void validate(CommandSubscribeRequest request) {
         Assert.notNull(request, "Request body is null");
-        Assert.notNull(request.getDevice(), "Device guid is null");
+        Assert.isTrue(request.getDevice() != null || !CollectionUtils.isEmpty(request.getDevices())
+                || !CollectionUtils.isEmpty(request.getNetworks()), "Device guid is null");
         Assert.notNull(request.getSubscriptionId(), "Subscription id not provided");
     }
 
-    private Collection<DeviceCommand> findCommands(String device, Collection<String> names, Date timestamp) {
+    private Set<String> getDevices(CommandSubscribeRequest request) {
+        Set<String> devices = new HashSet<>();
+        if (request.getDevice() != null) {
+            devices.add(request.getDevice());
+        }
+        if (request.getDevices() != null) {
+            devices.addAll(request.getDevices());
+        }
+        return devices;
+    }
+
+    /**
+     * Looks up commands of explicitly listed devices only, history is not provided for network subscriptions
+     */
+    private Collection<DeviceCommand> findCommands(Set<String> devices, Collection<String> names, Date timestamp) {
         return Optional.ofNullable(timestamp)
-                .map(t -> hazelcastService.find(null, names, Collections.singleton(device), LIMIT, t, null, null, DeviceCommand.class))
+                .map(t -> devices.stream()
+                        .flatMap(device -> hazelcastService.find(null, names, Collections.singleton(device), LIMIT, t, null, null, DeviceCommand.class).stream())
+                        .collect(Collectors.toList()))
                 .orElse(Collections.emptyList());
     }
 }
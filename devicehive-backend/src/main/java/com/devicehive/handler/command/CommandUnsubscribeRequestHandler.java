@@ -59,15 +59,14 @@ public class CommandUnsubscribeRequestHandler implements RequestHandler {
                     .buildSuccess();
         } else if (body.getDeviceGuids() != null) {
             Set<Subscription> subscriptions = new HashSet<>();
-            Set<Subscriber> subscribers = new HashSet<>();
 
             for (String name : body.getDeviceGuids()) {
                 Subscription subscription = new Subscription(Action.COMMAND_EVENT.name(), name);
                 subscriptions.add(subscription);
             }
 
-            subscriptions.forEach(subscription -> subscribers.addAll(eventBus.getSubscribers(subscription)));
-            subscribers.forEach(subscriber -> eventBus.unsubscribe(subscriber));
+            // subscribers may be registered on other nodes, event bus removes them cluster wide
+            eventBus.unsubscribeAll(subscriptions);
 
             CommandUnsubscribeResponse unsubscribeResponse = new CommandUnsubscribeResponse(null, body.getDeviceGuids());
             return Response.newBuilder()
@@ -49,10 +49,11 @@ public class NotificationInsertHandler implements RequestHandler {
 
     @Override
     public Response handle(Request request) {
-        DeviceNotification notification = ((NotificationInsertRequest) request.getBody()).getDeviceNotification();
+        NotificationInsertRequest body = (NotificationInsertRequest) request.getBody();
+        DeviceNotification notification = body.getDeviceNotification();
         hazelcastService.store(notification);
 
-        NotificationEvent notificationEvent = new NotificationEvent(notification);
+        NotificationEvent notificationEvent = new NotificationEvent(notification, body.getNetworkId());
         eventBus.publish(notificationEvent);
 
         NotificationInsertResponse payload = new NotificationInsertResponse(notification);
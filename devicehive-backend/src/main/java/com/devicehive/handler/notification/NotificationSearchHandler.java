@@ -20,13 +20,18 @@ package com.devicehive.handler.notification;
  * #L%
  */
 
+import com.devicehive.configuration.Constants;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.rpc.NotificationSearchRequest;
 import com.devicehive.model.rpc.NotificationSearchResponse;
 import com.devicehive.service.HazelcastService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
+import com.devicehive.util.CommandResponseFilterAndSort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
 
@@ -35,7 +40,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Searches notifications. Keyset searches (with cursor) return one page of history ordered by timestamp and id
+ * together with the cursor of the next page, exports walk the whole history by requesting page after page.
+ */
 public class NotificationSearchHandler implements RequestHandler {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationSearchHandler.class);
 
     @Autowired
     private HazelcastService storageService;
@@ -44,15 +54,40 @@ public class NotificationSearchHandler implements RequestHandler {
     public Response handle(Request request) {
         NotificationSearchRequest searchRequest = (NotificationSearchRequest) request.getBody();
 
-        NotificationSearchResponse payload = searchRequest.getId() != null && !StringUtils.isEmpty(searchRequest.getGuid())
-                ? searchSingleNotificationByDeviceAndId(searchRequest.getId(), searchRequest.getGuid())
-                : searchMultipleNotifications(searchRequest);
+        NotificationSearchResponse payload;
+        if (searchRequest.getId() != null && !StringUtils.isEmpty(searchRequest.getGuid())) {
+            payload = searchSingleNotificationByDeviceAndId(searchRequest.getId(), searchRequest.getGuid());
+        } else if (searchRequest.getCursor() != null) {
+            payload = searchPage(searchRequest, searchRequest.getCursor(), pageSize(searchRequest, Constants.DEFAULT_TAKE));
+        } else {
+            payload = searchMultipleNotifications(searchRequest);
+        }
 
         return Response.newBuilder()
                 .withBody(payload)
                 .buildSuccess();
     }
 
+    private NotificationSearchResponse searchPage(NotificationSearchRequest searchRequest, HistoryCursor cursor, int pageSize) {
+        final List<DeviceNotification> notifications = storageService.findAfter(
+                searchRequest.getGuid(),
+                searchRequest.getNames(),
+                HistoryCursor.notBefore(cursor, searchRequest.getTimestampStart()),
+                searchRequest.getTimestampEnd(),
+                null,
+                pageSize + 1,
+                DeviceNotification.class);
+        if (notifications.size() <= pageSize) {
+            return new NotificationSearchResponse(notifications, null);
+        }
+        final List<DeviceNotification> page = new ArrayList<>(notifications.subList(0, pageSize));
+        return new NotificationSearchResponse(page, HistoryCursor.of(page.get(pageSize - 1)));
+    }
+
+    private static int pageSize(NotificationSearchRequest searchRequest, int defaultSize) {
+        return searchRequest.getTake() != null && searchRequest.getTake() > 0 ? searchRequest.getTake() : defaultSize;
+    }
+
     private NotificationSearchResponse searchMultipleNotifications(NotificationSearchRequest searchRequest) {
         //TODO [rafa] has response is quite bad, instead we should separate command and reply into two separate collections.
         final Collection<DeviceNotification> notifications = storageService.find(
@@ -65,7 +100,16 @@ public class NotificationSearchHandler implements RequestHandler {
                 null,
                 DeviceNotification.class);
 
-        return new NotificationSearchResponse(new ArrayList<>(notifications));
+        if (!searchRequest.isPaged()) {
+            return new NotificationSearchResponse(new ArrayList<>(notifications));
+        }
+        final Boolean reverse = searchRequest.getSortOrderAsc() == null ? null : !searchRequest.getSortOrderAsc();
+        final List<DeviceNotification> page = CommandResponseFilterAndSort.orderAndLimit(new ArrayList<>(notifications),
+                CommandResponseFilterAndSort.buildDeviceNotificationComparator(searchRequest.getSortField()),
+                reverse,
+                searchRequest.getSkip() == null ? 0 : searchRequest.getSkip(),
+                searchRequest.getTake());
+        return new NotificationSearchResponse(page);
     }
 
     private NotificationSearchResponse searchSingleNotificationByDeviceAndId(long id, String guid) {
@@ -61,20 +61,23 @@ public class NotificationSubscribeRequestHandler implements RequestHandler {
 
         Subscriber subscriber = new Subscriber(body.getSubscriptionId(), request.getReplyTo(), request.getCorrelationId());
 
+        Set<String> devices = getDevices(body);
+        Set<Long> networks = Optional.ofNullable(body.getNetworks()).orElse(Collections.emptySet());
+
         Set<Subscription> subscriptions = new HashSet<>();
         if (CollectionUtils.isEmpty(body.getNames())) {
-            Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), body.getDevice());
-            subscriptions.add(subscription);
+            devices.forEach(device -> subscriptions.add(new Subscription(Action.NOTIFICATION_EVENT.name(), device)));
+            networks.forEach(network -> subscriptions.add(Subscription.forNetwork(Action.NOTIFICATION_EVENT.name(), network, null)));
         } else {
             for (String name : body.getNames()) {
-                Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), body.getDevice(), name);
-                subscriptions.add(subscription);
+                devices.forEach(device -> subscriptions.add(new Subscription(Action.NOTIFICATION_EVENT.name(), device, name)));
+                networks.forEach(network -> subscriptions.add(Subscription.forNetwork(Action.NOTIFICATION_EVENT.name(), network, name)));
             }
         }
 
         subscriptions.forEach(subscription -> eventBus.subscribe(subscriber, subscription));
 
-        Collection<DeviceNotification> notifications = findNotifications(body.getDevice(), body.getNames(), body.getTimestamp());
+        Collection<DeviceNotification> notifications = findNotifications(devices, body.getNames(), body.getTimestamp());
         NotificationSubscribeResponse subscribeResponse = new NotificationSubscribeResponse(body.getSubscriptionId(), notifications);
 
         return Response.newBuilder()
@@ -86,15 +89,32 @@ public class NotificationSubscribeRequestHandler implements RequestHandler {
 
     private void validate(NotificationSubscribeRequest request) {
         Assert.notNull(request, "Request body is null");
-        Assert.notNull(request.getDevice(), "Device guid is null");
+        Assert.isTrue(request.getDevice() != null || !CollectionUtils.isEmpty(request.getDevices())
+                || !CollectionUtils.isEmpty(request.getNetworks()), "Device guid is null");
         Assert.notNull(request.getSubscriptionId(), "Subscription id not provided");
     }
 
-    private Collection<DeviceNotification> findNotifications(String device, Collection<String> names, Date timestamp) {
+    private Set<String> getDevices(NotificationSubscribeRequest request) {
+        Set<String> devices = new HashSet<>();
+        if (request.getDevice() != null) {
+            devices.add(request.getDevice());
+        }
+        if (request.getDevices() != null) {
+            devices.addAll(request.getDevices());
+        }
+        return devices;
+    }
+
+    /**
+     * Looks up notifications of explicitly listed devices only, history is not provided for network subscriptions
+     */
+    private Collection<DeviceNotification> findNotifications(Set<String> devices, Collection<String> names, Date timestamp) {
         Collection<DeviceNotification> notifications = Collections.emptyList();
         if (timestamp != null) {
-            notifications =
-                    hazelcastService.find(null, names, Collections.singleton(device), LIMIT, timestamp, null, null, DeviceNotification.class);
+            notifications = new ArrayList<>();
+            for (String device : devices) {
+                notifications.addAll(hazelcastService.find(null, names, Collections.singleton(device), LIMIT, timestamp, null, null, DeviceNotification.class));
+            }
         }
         return notifications;
     }
@@ -58,15 +58,14 @@ public class NotificationUnsubscribeRequestHandler implements RequestHandler {
                     .buildSuccess();
         } else if (body.getDeviceGuids() != null) {
             Set<Subscription> subscriptions = new HashSet<>();
-            Set<Subscriber> subscribers = new HashSet<>();
 
             for (String name : body.getDeviceGuids()) {
                 Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), name);
                 subscriptions.add(subscription);
             }
 
-            subscriptions.forEach(subscription -> subscribers.addAll(eventBus.getSubscribers(subscription)));
-            subscribers.forEach(subscriber -> eventBus.unsubscribe(subscriber));
+            // subscribers may be registered on other nodes, event bus removes them cluster wide
+            eventBus.unsubscribeAll(subscriptions);
 
             NotificationUnsubscribeResponse unsubscribeResponse =
                     new NotificationUnsubscribeResponse(null, body.getDeviceGuids());
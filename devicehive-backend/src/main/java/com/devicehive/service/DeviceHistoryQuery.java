@@ -0,0 +1,135 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Searches device history kept by the member it is executed on, either in local history indexes of hazelcast
+ * buckets or in local durable history storage. Returns {@code null} when local index can't be trusted
+ * (e.g. partitions are migrating), so the caller falls back to a regular map query.
+ */
+class DeviceHistoryQuery<T extends HazelcastEntity> implements Callable<List<T>>, Serializable, HazelcastInstanceAware {
+    private static final long serialVersionUID = 4781163394613245709L;
+
+    private final String mapPrefix;
+    private final Collection<String> devices;
+    private final Collection<String> names;
+    private final String status;
+    private final Long id;
+    private final int take;
+    private final long from;
+    private final long to;
+    private final boolean history;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    /**
+     * @param from    inclusive lower bound of entity timestamps
+     * @param to      inclusive upper bound of entity timestamps
+     * @param history whether durable history storage is searched instead of hazelcast buckets
+     */
+    DeviceHistoryQuery(String mapPrefix, Collection<String> devices, Collection<String> names, String status,
+                       Long id, int take, long from, long to, boolean history) {
+        this.mapPrefix = mapPrefix;
+        this.devices = devices;
+        this.names = names;
+        this.status = status;
+        this.id = id;
+        this.take = take;
+        this.from = from;
+        this.to = to;
+        this.history = history;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public List<T> call() throws Exception {
+        final TimeBucketedStore<T> store = TimeBucketedStore.lookup(hazelcastInstance, mapPrefix);
+        if (store == null) {
+            return null;
+        }
+        return history ? store.readHistory(this) : store.findLocally(this);
+    }
+
+    Collection<String> getDevices() {
+        return devices;
+    }
+
+    int getTake() {
+        return take;
+    }
+
+    long getFrom() {
+        return from;
+    }
+
+    long getTo() {
+        return to;
+    }
+
+    /**
+     * @return whether entities are filtered by more than device and timestamp, i.e. index keys can't be limited
+     * by {@code take} before entities are matched
+     */
+    boolean isFiltered() {
+        return id != null || names != null && !names.isEmpty() || status != null && !status.isEmpty();
+    }
+
+    boolean matches(HazelcastEntity entity) {
+        if (id != null && !id.equals(idOf(entity))) {
+            return false;
+        }
+        if (names != null && !names.isEmpty() && !names.contains(nameOf(entity))) {
+            return false;
+        }
+        return status == null || status.isEmpty()
+                || entity instanceof DeviceCommand && Objects.equals(status, ((DeviceCommand) entity).getStatus());
+    }
+
+    private static Long idOf(HazelcastEntity entity) {
+        if (entity instanceof DeviceNotification) {
+            return ((DeviceNotification) entity).getId();
+        }
+        return entity instanceof DeviceCommand ? ((DeviceCommand) entity).getId() : null;
+    }
+
+    private static String nameOf(HazelcastEntity entity) {
+        if (entity instanceof DeviceNotification) {
+            return ((DeviceNotification) entity).getNotification();
+        }
+        return entity instanceof DeviceCommand ? ((DeviceCommand) entity).getCommand() : null;
+    }
+}
@@ -23,19 +23,26 @@ package com.devicehive.service;
 import com.devicehive.model.DeviceCommand;
 import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.HazelcastEntity;
-import com.devicehive.service.helpers.HazelcastEntityComparator;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.service.helpers.HazelcastHelper;
+import com.devicehive.service.history.MessageHistoryStorage;
+import com.hazelcast.core.ExecutionCallback;
 import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.core.IMap;
-import com.hazelcast.query.PagingPredicate;
 import com.hazelcast.query.Predicate;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class HazelcastService {
@@ -44,30 +51,91 @@ public class HazelcastService {
     private static final String NOTIFICATIONS_MAP = "NOTIFICATIONS-MAP";
     private static final String COMMANDS_MAP = "COMMANDS-MAP";
 
+    private static final Comparator<HazelcastEntity> HISTORY_ORDER = Comparator
+            .comparing(HazelcastEntity::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(HazelcastEntity::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @Autowired
     private HazelcastInstance hazelcastInstance;
 
     @Autowired
     private HazelcastHelper hazelcastHelper;
 
-    private Map<Class, IMap<String, HazelcastEntity>> mapsHolder = new HashMap<>(2);
+    @Autowired
+    private MessageHistoryStorage historyStorage;
+
+    @Value("${hazelcast.notifications.bucket.seconds:3600}")
+    private long notificationBucketSeconds;
+
+    @Value("${hazelcast.notifications.ttl.seconds:86400}")
+    private long notificationTtlSeconds;
+
+    @Value("${hazelcast.notifications.max-size:10000000}")
+    private long notificationMaxSize;
+
+    @Value("${hazelcast.commands.bucket.seconds:3600}")
+    private long commandBucketSeconds;
+
+    @Value("${hazelcast.commands.ttl.seconds:86400}")
+    private long commandTtlSeconds;
+
+    @Value("${hazelcast.commands.max-size:10000000}")
+    private long commandMaxSize;
+
+    @Value("${hazelcast.store.async.enabled:false}")
+    private boolean asyncStore;
+
+    @Value("${hazelcast.store.async.max-in-flight:1024}")
+    private int maxInFlightStores;
+
+    private Map<Class, TimeBucketedStore<HazelcastEntity>> storesHolder = new HashMap<>(2);
+
+    private Semaphore inFlightStores;
+
+    private final AtomicLong failedStores = new AtomicLong();
 
     @PostConstruct
     protected void init() {
-        final IMap<String, HazelcastEntity> notificationsMap = hazelcastInstance.getMap(NOTIFICATIONS_MAP);
-        notificationsMap.addIndex("timestamp", true);
+        final TimeBucketedStore<HazelcastEntity> notificationsStore = new TimeBucketedStore<>(hazelcastInstance,
+                NOTIFICATIONS_MAP, notificationBucketSeconds * 1000, notificationTtlSeconds * 1000, notificationMaxSize,
+                DeviceNotification.class, historyStorage);
+        notificationsStore.start();
+
+        final TimeBucketedStore<HazelcastEntity> commandsStore = new TimeBucketedStore<>(hazelcastInstance,
+                COMMANDS_MAP, commandBucketSeconds * 1000, commandTtlSeconds * 1000, commandMaxSize,
+                DeviceCommand.class, historyStorage);
+        commandsStore.start();
 
-        final IMap<String, HazelcastEntity> commandsMap = hazelcastInstance.getMap(COMMANDS_MAP);
-        commandsMap.addIndex("timestamp", true);
+        storesHolder.put(DeviceNotification.class, notificationsStore);
+        storesHolder.put(DeviceCommand.class, commandsStore);
+
+        inFlightStores = new Semaphore(maxInFlightStores);
+    }
 
-        mapsHolder.put(DeviceNotification.class, notificationsMap);
-        mapsHolder.put(DeviceCommand.class, commandsMap);
+    @PreDestroy
+    protected void destroy() throws InterruptedException {
+        if (!inFlightStores.tryAcquire(maxInFlightStores, 10, TimeUnit.SECONDS)) {
+            logger.warn("Shutting down with {} entities not yet stored", getInFlightStoreCount());
+        }
+        storesHolder.values().forEach(TimeBucketedStore::shutdown);
+        historyStorage.flush();
     }
 
 
     public <T extends HazelcastEntity> Optional<T> find(Long id, String guid, Class<T> entityClass) {
+        if (StringUtils.isNotEmpty(guid)) {
+            final Set<String> devices = Collections.singleton(guid);
+            Collection<T> found = findByDevices(devices, null, null, id, 1, null, null, entityClass);
+            if (found == null || found.isEmpty()) {
+                final Collection<T> history = findInHistory(devices, null, null, id, 1, null, null, entityClass);
+                found = history != null ? history : found;
+            }
+            if (found != null) {
+                return found.stream().findFirst();
+            }
+        }
         final Predicate filters = hazelcastHelper.prepareFilters(id, guid);
-        return find(filters, 1, entityClass).stream().findFirst();
+        return find(filters, 1, null, null, entityClass).stream().findFirst();
     }
 
     public <T extends HazelcastEntity> Collection<T> find(String guid,
@@ -78,20 +146,163 @@ public class HazelcastService {
                                                           Date timestampEnd,
                                                           String status,
                                                           Class<T> entityClass) {
+        final Set<String> searchedDevices = searchedDevices(guid, devices);
+        if (!searchedDevices.isEmpty() && !storesHolder.get(entityClass).isCached(timestampSt)) {
+            final Collection<T> found = findInHistory(searchedDevices, names, status, null, take, timestampSt, timestampEnd, entityClass);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (!searchedDevices.isEmpty()) {
+            final Collection<T> found = findByDevices(searchedDevices, names, status, null, take, timestampSt, timestampEnd, entityClass);
+            if (found != null) {
+                return found;
+            }
+        }
         final Predicate filters = hazelcastHelper.prepareFilters(guid,  names, devices, timestampSt, timestampEnd, status, entityClass);
-        return find(filters, take, entityClass);
+        return find(filters, take, timestampSt, timestampEnd, entityClass);
     }
 
+    /**
+     * Keyset page of device history: up to {@code count} entities which come strictly after {@code cursor}, ordered
+     * by timestamp and id. Only entities from the cursor timestamp on are read, so a deep page costs the same as
+     * the first one. Storage limits results by timestamp only, so when the limit cuts a group of entities with equal
+     * timestamps the whole group is dropped from the answer and the read is repeated with a larger limit if nothing
+     * else is left.
+     */
+    public <T extends HazelcastEntity> List<T> findAfter(String guid,
+                                                         Collection<String> names,
+                                                         HistoryCursor cursor,
+                                                         Date timestampEnd,
+                                                         String status,
+                                                         int count,
+                                                         Class<T> entityClass) {
+        final Date timestampSt = cursor.getTimestamp() != Long.MIN_VALUE ? new Date(cursor.getTimestamp() - 1) : null;
+        int take = count + 1;
+        while (true) {
+            final List<T> found = new ArrayList<>(find(guid, names, null, take, timestampSt, timestampEnd, status, entityClass));
+            found.sort(HISTORY_ORDER);
+            final boolean truncated = found.size() >= take;
+            if (truncated) {
+                final Date last = found.get(found.size() - 1).getTimestamp();
+                found.removeIf(entity -> Objects.equals(entity.getTimestamp(), last));
+            }
+            found.removeIf(entity -> !cursor.precedes(entity));
+            if (!truncated || found.size() >= count) {
+                return found.size() > count ? new ArrayList<>(found.subList(0, count)) : found;
+            }
+            take = take > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : take * 2;
+        }
+    }
+
+    /**
+     * Stores entity into hazelcast. By default the call returns when the entity is stored, so it can be found by
+     * the next request. In async mode the call returns as soon as the write is submitted and the entity may not be
+     * found for a moment, at most {@code hazelcast.store.async.max-in-flight} writes may be pending, further calls
+     * block until some of them complete, so a slow cluster pushes back on the handler thread instead of buffering
+     * without bound.
+     */
     public <T extends HazelcastEntity> void store(final T hzEntity) {
         logger.debug("Saving entity into hazelcast. [Entity: {}]", hzEntity);
-        mapsHolder.get(hzEntity.getClass()).set(hzEntity.getHazelcastKey(), hzEntity);
+        final TimeBucketedStore<HazelcastEntity> store = storesHolder.get(hzEntity.getClass());
+        if (!asyncStore) {
+            store.store(hzEntity);
+            return;
+        }
+        inFlightStores.acquireUninterruptibly();
+        try {
+            store.storeAsync(hzEntity, new ExecutionCallback<Object>() {
+                @Override
+                public void onResponse(Object response) {
+                    inFlightStores.release();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    inFlightStores.release();
+                    failedStores.incrementAndGet();
+                    logger.error("Failed to save entity into hazelcast. [Entity: {}]", hzEntity, t);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightStores.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Stores entities of one type, with the same visibility as {@link #store}. Synchronous store writes all
+     * entities of a device with one operation.
+     */
+    public <T extends HazelcastEntity> void storeAll(final Collection<T> hzEntities) {
+        if (hzEntities.isEmpty()) {
+            return;
+        }
+        if (asyncStore) {
+            hzEntities.forEach(this::store);
+            return;
+        }
+        logger.debug("Saving {} entities into hazelcast", hzEntities.size());
+        storesHolder.get(hzEntities.iterator().next().getClass()).storeAll(new ArrayList<>(hzEntities));
+    }
+
+    @Scheduled(fixedDelayString = "${hazelcast.retention.interval.ms:60000}")
+    public void applyRetention() {
+        final long now = System.currentTimeMillis();
+        storesHolder.values().forEach(store -> store.applyRetention(now));
+        historyStorage.applyRetention(now);
+    }
+
+    @Scheduled(fixedDelayString = "${history.storage.flush.interval.ms:1000}")
+    public void flushHistory() {
+        historyStorage.flush();
+    }
+
+    public int getInFlightStoreCount() {
+        return maxInFlightStores - inFlightStores.availablePermits();
+    }
+
+    public long getFailedStoreCount() {
+        return failedStores.get();
+    }
+
+    public TimeBucketedStore<HazelcastEntity> getNotificationStore() {
+        return storesHolder.get(DeviceNotification.class);
+    }
+
+    public TimeBucketedStore<HazelcastEntity> getCommandStore() {
+        return storesHolder.get(DeviceCommand.class);
+    }
+
+    /**
+     * Devices matching both single guid and devices filters, empty set means that search is not limited by device.
+     */
+    private static Set<String> searchedDevices(String guid, Collection<String> devices) {
+        if (StringUtils.isNotEmpty(guid)) {
+            return devices == null || devices.isEmpty() || devices.contains(guid)
+                    ? Collections.singleton(guid)
+                    : Collections.emptySet();
+        }
+        return devices != null ? new HashSet<>(devices) : Collections.emptySet();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends HazelcastEntity> Collection<T> findByDevices(Collection<String> devices, Collection<String> names,
+                                                                    String status, Long id, int take,
+                                                                    Date timestampSt, Date timestampEnd, Class<T> tClass) {
+        return (Collection<T>) storesHolder.get(tClass).findByDevices(devices, names, status, id, take, timestampSt, timestampEnd);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends HazelcastEntity> Collection<T> findInHistory(Collection<String> devices, Collection<String> names,
+                                                                    String status, Long id, int take,
+                                                                    Date timestampSt, Date timestampEnd, Class<T> tClass) {
+        return (Collection<T>) storesHolder.get(tClass).findInHistory(devices, names, status, id, take, timestampSt, timestampEnd);
     }
 
     @SuppressWarnings("unchecked")
-    private <T extends HazelcastEntity> Collection<T> find(Predicate predicate, int pageSize, Class<T> tClass) {
-        final Predicate pagingPredicate = (pageSize > 0)
-                ? new PagingPredicate(predicate, new HazelcastEntityComparator(), pageSize)
-                : predicate;
-        return (Collection<T>) mapsHolder.get(tClass).values(pagingPredicate);
+    private <T extends HazelcastEntity> Collection<T> find(Predicate predicate, int pageSize,
+                                                           Date timestampSt, Date timestampEnd, Class<T> tClass) {
+        return (Collection<T>) storesHolder.get(tClass).find(predicate, pageSize, timestampSt, timestampEnd);
     }
 }
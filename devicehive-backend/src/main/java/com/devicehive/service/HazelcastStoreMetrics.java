@@ -0,0 +1,68 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.hazelcast.monitor.LocalMapStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * Exposes entry count and memory cost owned by this member for every live bucket of notification and command stores,
+ * and the state of asynchronous writes.
+ */
+public class HazelcastStoreMetrics implements PublicMetrics {
+
+    private final HazelcastService hazelcastService;
+
+    public HazelcastStoreMetrics(HazelcastService hazelcastService) {
+        this.hazelcastService = hazelcastService;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final List<Metric<?>> metrics = new ArrayList<>();
+        addStoreMetrics(metrics, "hazelcast.notifications", hazelcastService.getNotificationStore().getBucketStats());
+        addStoreMetrics(metrics, "hazelcast.commands", hazelcastService.getCommandStore().getBucketStats());
+        metrics.add(new Metric<>("hazelcast.store.in-flight", hazelcastService.getInFlightStoreCount()));
+        metrics.add(new Metric<>("hazelcast.store.failed", hazelcastService.getFailedStoreCount()));
+        return metrics;
+    }
+
+    private static void addStoreMetrics(List<Metric<?>> metrics, String prefix, SortedMap<Long, LocalMapStats> buckets) {
+        long entries = 0;
+        long memory = 0;
+        for (SortedMap.Entry<Long, LocalMapStats> bucket : buckets.entrySet()) {
+            final LocalMapStats stats = bucket.getValue();
+            metrics.add(new Metric<>(prefix + ".bucket." + bucket.getKey() + ".entries", stats.getOwnedEntryCount()));
+            metrics.add(new Metric<>(prefix + ".bucket." + bucket.getKey() + ".memory", stats.getOwnedEntryMemoryCost()));
+            entries += stats.getOwnedEntryCount();
+            memory += stats.getOwnedEntryMemoryCost();
+        }
+        metrics.add(new Metric<>(prefix + ".buckets", buckets.size()));
+        metrics.add(new Metric<>(prefix + ".entries", entries));
+        metrics.add(new Metric<>(prefix + ".memory", memory));
+    }
+}
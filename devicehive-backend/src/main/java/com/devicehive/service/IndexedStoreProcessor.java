@@ -0,0 +1,101 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.service.helpers.HazelcastEntityKey;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+
+import java.util.Map;
+
+/**
+ * Stores entity on the member owning its key and adds it to the history index of that member within
+ * the same partition operation, so the entity can be searched by device as soon as store returns.
+ * A batch processor carries entities of several keys of one partition and is executed on all of them at once.
+ */
+class IndexedStoreProcessor<T extends HazelcastEntity> implements EntryProcessor<HazelcastEntityKey, T>, HazelcastInstanceAware {
+    private static final long serialVersionUID = -3590384564915823147L;
+
+    private final String mapPrefix;
+    private final long bucketStart;
+    private final T entity;
+    private final Map<HazelcastEntityKey, T> entities;
+
+    private transient HazelcastInstance hazelcastInstance;
+
+    IndexedStoreProcessor(String mapPrefix, long bucketStart, T entity) {
+        this.mapPrefix = mapPrefix;
+        this.bucketStart = bucketStart;
+        this.entity = entity;
+        this.entities = null;
+    }
+
+    /**
+     * @param entities - entities by key, the processor must be executed on these keys only
+     */
+    IndexedStoreProcessor(String mapPrefix, long bucketStart, Map<HazelcastEntityKey, T> entities) {
+        this.mapPrefix = mapPrefix;
+        this.bucketStart = bucketStart;
+        this.entity = null;
+        this.entities = entities;
+    }
+
+    @Override
+    public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public Object process(Map.Entry<HazelcastEntityKey, T> entry) {
+        final T entity = entities != null ? entities.get(entry.getKey()) : this.entity;
+        entry.setValue(entity);
+        final TimeBucketedStore<T> store = TimeBucketedStore.lookup(hazelcastInstance, mapPrefix);
+        if (store != null) {
+            store.indexLocally(bucketStart, entity);
+        }
+        return null;
+    }
+
+    @Override
+    public EntryBackupProcessor<HazelcastEntityKey, T> getBackupProcessor() {
+        return new BackupProcessor<>(entity, entities);
+    }
+
+    private static class BackupProcessor<T> implements EntryBackupProcessor<HazelcastEntityKey, T> {
+        private static final long serialVersionUID = 2150176617381064733L;
+
+        private final T entity;
+        private final Map<HazelcastEntityKey, T> entities;
+
+        BackupProcessor(T entity, Map<HazelcastEntityKey, T> entities) {
+            this.entity = entity;
+            this.entities = entities;
+        }
+
+        @Override
+        public void processBackup(Map.Entry<HazelcastEntityKey, T> entry) {
+            entry.setValue(entities != null ? entities.get(entry.getKey()) : entity);
+        }
+    }
+}
@@ -0,0 +1,669 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.service.helpers.DeviceHistoryIndex;
+import com.devicehive.service.helpers.HazelcastEntityComparator;
+import com.devicehive.service.helpers.HazelcastEntityKey;
+import com.devicehive.service.history.MessageHistoryStorage;
+import com.devicehive.service.history.NoopMessageHistoryStorage;
+import com.hazelcast.core.*;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.monitor.LocalMapStats;
+import com.hazelcast.query.PagingPredicate;
+import com.hazelcast.query.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps entities of one type in a series of Hazelcast maps, each holding a fixed period of entity timestamps.
+ * Retention is applied to whole buckets: a bucket which is older than TTL, and the oldest buckets while
+ * total size exceeds the limit, are destroyed at once instead of evicting entries one by one.
+ * Started buckets are registered in a shared map, so every member of the cluster reads the same set of buckets.
+ * <p>
+ * Every member also keeps a per-device {@link DeviceHistoryIndex} of entries it owns in each bucket. Searches by
+ * device are answered from these indexes without scanning the maps; while partitions migrate the indexes are
+ * rebuilt and searches fall back to map queries.
+ * <p>
+ * With a durable {@link MessageHistoryStorage} the buckets are a hot cache in front of it: every stored entity is
+ * also appended to the storage of the storing member, and device searches reaching behind the oldest cached
+ * bucket are answered from the storages of all members.
+ */
+public class TimeBucketedStore<T extends HazelcastEntity> {
+    private static final Logger logger = LoggerFactory.getLogger(TimeBucketedStore.class);
+
+    private static final String QUERY_EXECUTOR = "DEVICE-HISTORY-EXECUTOR";
+    private static final long INDEX_REBUILD_DELAY_MS = 1000;
+    private static final long NOT_RETAINED = Long.MIN_VALUE;
+
+    private final HazelcastInstance hazelcastInstance;
+    private final String mapPrefix;
+    private final long bucketMillis;
+    private final long ttlMillis;
+    private final long maxSize;
+    private final Class<? extends HazelcastEntity> entityClass;
+    private final MessageHistoryStorage historyStorage;
+
+    private final IMap<Long, Long> registry;
+    private final IAtomicLong cachedSince;
+    private final ConcurrentNavigableMap<Long, IMap<HazelcastEntityKey, T>> buckets = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, DeviceHistoryIndex<HazelcastEntityKey>> indexes = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean indexRebuildPending = new AtomicBoolean();
+    private final ScheduledExecutorService indexRebuilder;
+    private final ExecutorService historyAppender;
+    private volatile boolean indexReady;
+    private String registryListenerId;
+    private String migrationListenerId;
+
+    /**
+     * @param mapPrefix    name prefix of bucket maps, bucket start time is appended to it
+     * @param bucketMillis period of entity timestamps kept in one bucket
+     * @param ttlMillis    how long a bucket is kept after its period ends, 0 keeps buckets forever
+     * @param maxSize      total number of entries after which the oldest buckets are dropped, 0 for no limit
+     */
+    public TimeBucketedStore(HazelcastInstance hazelcastInstance, String mapPrefix,
+                             long bucketMillis, long ttlMillis, long maxSize) {
+        this(hazelcastInstance, mapPrefix, bucketMillis, ttlMillis, maxSize, HazelcastEntity.class, new NoopMessageHistoryStorage());
+    }
+
+    /**
+     * @param entityClass    type of stored entities, used to read them back from history storage
+     * @param historyStorage durable storage the buckets are kept in front of
+     */
+    public TimeBucketedStore(HazelcastInstance hazelcastInstance, String mapPrefix,
+                             long bucketMillis, long ttlMillis, long maxSize,
+                             Class<? extends HazelcastEntity> entityClass, MessageHistoryStorage historyStorage) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("Bucket period must be positive");
+        }
+        this.hazelcastInstance = hazelcastInstance;
+        this.mapPrefix = mapPrefix;
+        this.bucketMillis = bucketMillis;
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+        this.entityClass = entityClass;
+        this.historyStorage = historyStorage;
+        this.registry = hazelcastInstance.getMap(mapPrefix + "-BUCKETS");
+        this.cachedSince = hazelcastInstance.getAtomicLong(mapPrefix + "-CACHED-SINCE");
+        this.indexRebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, mapPrefix + "-index-rebuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.historyAppender = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, mapPrefix + "-history-appender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends HazelcastEntity> TimeBucketedStore<T> lookup(HazelcastInstance hazelcastInstance, String mapPrefix) {
+        return (TimeBucketedStore<T>) hazelcastInstance.getUserContext().get(mapPrefix);
+    }
+
+    public void start() {
+        hazelcastInstance.getUserContext().put(mapPrefix, this);
+        cachedSince.compareAndSet(0, System.currentTimeMillis());
+        migrationListenerId = hazelcastInstance.getPartitionService().addMigrationListener(new IndexMigrationListener());
+        registryListenerId = registry.addEntryListener(new RegistryListener(), false);
+        registry.keySet().forEach(this::attach);
+        rebuildIndexes();
+    }
+
+    public void shutdown() {
+        if (registryListenerId != null) {
+            registry.removeEntryListener(registryListenerId);
+            registryListenerId = null;
+        }
+        if (migrationListenerId != null) {
+            hazelcastInstance.getPartitionService().removeMigrationListener(migrationListenerId);
+            migrationListenerId = null;
+        }
+        hazelcastInstance.getUserContext().remove(mapPrefix, this);
+        indexRebuilder.shutdownNow();
+        historyAppender.shutdown();
+        try {
+            if (!historyAppender.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("History of {} is shut down with pending appends", mapPrefix);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void store(T entity) {
+        appendInBackground(Collections.singletonList(entity));
+        final long start = retainedBucketStart(entity);
+        if (start != NOT_RETAINED) {
+            bucket(start).executeOnKey(HazelcastEntityKey.of(entity), new IndexedStoreProcessor<>(mapPrefix, start, entity));
+        }
+    }
+
+    /**
+     * Stores entities with a single partition operation per device and bucket instead of one per entity.
+     */
+    public void storeAll(Collection<T> entities) {
+        appendInBackground(entities);
+        final Map<Long, Map<String, Map<HazelcastEntityKey, T>>> batches = new TreeMap<>();
+        for (T entity : entities) {
+            final long start = retainedBucketStart(entity);
+            if (start != NOT_RETAINED) {
+                final HazelcastEntityKey key = HazelcastEntityKey.of(entity);
+                batches.computeIfAbsent(start, bucketStart -> new HashMap<>())
+                        .computeIfAbsent(key.getPartitionKey(), partitionKey -> new HashMap<>())
+                        .put(key, entity);
+            }
+        }
+        for (Map.Entry<Long, Map<String, Map<HazelcastEntityKey, T>>> batch : batches.entrySet()) {
+            final IMap<HazelcastEntityKey, T> bucket = bucket(batch.getKey());
+            for (Map<HazelcastEntityKey, T> partition : batch.getValue().values()) {
+                bucket.executeOnKeys(partition.keySet(), new IndexedStoreProcessor<>(mapPrefix, batch.getKey(), partition));
+            }
+        }
+    }
+
+    /**
+     * Stores entity without waiting for the owning member or history storage, {@code callback} is notified when
+     * the entity is stored in its bucket (unless it is out of retention) and appended to history. History is
+     * appended by a single background thread, so the caller never waits for disk.
+     */
+    public void storeAsync(T entity, ExecutionCallback<Object> callback) {
+        final long start = retainedBucketStart(entity);
+        if (start != NOT_RETAINED) {
+            bucket(start).submitToKey(HazelcastEntityKey.of(entity), new IndexedStoreProcessor<>(mapPrefix, start, entity),
+                    new ExecutionCallback<Object>() {
+                        @Override
+                        public void onResponse(Object response) {
+                            appendAsync(entity, callback, response);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            callback.onFailure(t);
+                        }
+                    });
+        } else {
+            appendAsync(entity, callback, null);
+        }
+    }
+
+    private void appendAsync(T entity, ExecutionCallback<Object> callback, Object response) {
+        try {
+            historyAppender.execute(() -> {
+                try {
+                    historyStorage.append(entity);
+                } catch (RuntimeException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onResponse(response);
+            });
+        } catch (RejectedExecutionException e) {
+            callback.onFailure(e);
+        }
+    }
+
+    /**
+     * Appends entities stored synchronously to history on the appender thread, so request handlers don't wait
+     * for disk either. Entities are still in their buckets, history is only read behind the oldest cached bucket.
+     */
+    private void appendInBackground(Collection<T> entities) {
+        if (!historyStorage.isDurable()) {
+            return;
+        }
+        final List<T> appended = new ArrayList<>(entities);
+        try {
+            historyAppender.execute(() -> appended.forEach(historyStorage::append));
+        } catch (RejectedExecutionException e) {
+            logger.warn("History of {} is shut down, {} entities are not appended", mapPrefix, appended.size());
+        }
+    }
+
+    private long retainedBucketStart(T entity) {
+        final long now = System.currentTimeMillis();
+        final long timestamp = entity.getTimestamp() != null ? entity.getTimestamp().getTime() : now;
+        final long start = bucketStart(timestamp);
+        if (isExpired(start, now)) {
+            logger.debug("Entity is older than retention period and won't be stored. [Entity: {}]", entity);
+            return NOT_RETAINED;
+        }
+        return start;
+    }
+
+    /**
+     * Queries buckets which may hold entities from the given period, oldest first. With positive {@code take}
+     * result is sorted by timestamp and limited, so scanning stops as soon as enough entities were found.
+     */
+    public Collection<T> find(Predicate predicate, int take, Date timestampSt, Date timestampEnd) {
+        final List<T> result = new ArrayList<>();
+        for (IMap<HazelcastEntityKey, T> bucket : candidates(timestampSt, timestampEnd).values()) {
+            if (take > 0) {
+                result.addAll(bucket.values(new PagingPredicate(predicate, new HazelcastEntityComparator(), take - result.size())));
+                if (result.size() >= take) {
+                    break;
+                }
+            } else {
+                result.addAll(bucket.values(predicate));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Searches entities of the given devices through history indexes. Every device is searched only on the member
+     * owning its partition, so a single device search is a single member lookup. Answer has the same order
+     * and limit as {@link #find(Predicate, int, Date, Date)}. Timestamp bounds are exclusive.
+     *
+     * @return found entities or {@code null} if indexes are not usable at the moment and map query should be used
+     */
+    public Collection<T> findByDevices(Collection<String> devices, Collection<String> names, String status, Long id,
+                                       int take, Date timestampSt, Date timestampEnd) {
+        final Map<Member, Set<String>> devicesByOwner = new HashMap<>();
+        for (String device : devices) {
+            final Member owner = hazelcastInstance.getPartitionService().getPartition(device).getOwner();
+            if (owner == null) {
+                return null;
+            }
+            devicesByOwner.computeIfAbsent(owner, member -> new HashSet<>()).add(device);
+        }
+        final Set<String> queriedNames = names != null ? new HashSet<>(names) : null;
+        final long from = timestampSt != null ? timestampSt.getTime() + 1 : Long.MIN_VALUE;
+        final long to = timestampEnd != null ? timestampEnd.getTime() - 1 : Long.MAX_VALUE;
+        final IExecutorService executor = hazelcastInstance.getExecutorService(QUERY_EXECUTOR);
+        final List<Future<List<T>>> answers = new ArrayList<>(devicesByOwner.size());
+        for (Map.Entry<Member, Set<String>> owned : devicesByOwner.entrySet()) {
+            answers.add(executor.submitToMember(
+                    new DeviceHistoryQuery<>(mapPrefix, owned.getValue(), queriedNames, status, id, take, from, to, false),
+                    owned.getKey()));
+        }
+        return collect(answers, take);
+    }
+
+    /**
+     * @return whether entities stored since {@code timestampSt} are all still kept in buckets, searches starting
+     * earlier should be answered by {@link #findInHistory}
+     */
+    public boolean isCached(Date timestampSt) {
+        if (!historyStorage.isDurable()) {
+            return true;
+        }
+        return timestampSt != null && timestampSt.getTime() >= cachedSince.get();
+    }
+
+    /**
+     * Searches entities of the given devices in history storages of all members, with the same semantics as
+     * {@link #findByDevices}.
+     *
+     * @return found entities or {@code null} if history is not kept or could not be read
+     */
+    public Collection<T> findInHistory(Collection<String> devices, Collection<String> names, String status, Long id,
+                                       int take, Date timestampSt, Date timestampEnd) {
+        if (!historyStorage.isDurable()) {
+            return null;
+        }
+        final long from = timestampSt != null ? timestampSt.getTime() + 1 : Long.MIN_VALUE;
+        final long to = timestampEnd != null ? timestampEnd.getTime() - 1 : Long.MAX_VALUE;
+        final DeviceHistoryQuery<T> query = new DeviceHistoryQuery<>(mapPrefix, new HashSet<>(devices),
+                names != null ? new HashSet<>(names) : null, status, id, take, from, to, true);
+        return collect(hazelcastInstance.getExecutorService(QUERY_EXECUTOR).submitToAllMembers(query).values(), take);
+    }
+
+    private Collection<T> collect(Collection<Future<List<T>>> answers, int take) {
+        final Map<String, T> found = new LinkedHashMap<>();
+        for (Future<List<T>> answer : answers) {
+            final List<T> entities;
+            try {
+                entities = answer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                logger.warn("Device history query of {} failed", mapPrefix, e.getCause());
+                return null;
+            }
+            if (entities == null) {
+                return null;
+            }
+            entities.forEach(entity -> found.put(entity.getHazelcastKey(), entity));
+        }
+        return limit(new ArrayList<>(found.values()), take);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T> readHistory(DeviceHistoryQuery<T> query) {
+        return (List<T>) historyStorage.read(entityClass, query.getDevices(), query.getFrom(), query.getTo(),
+                query.getTake(), query::matches);
+    }
+
+    List<T> findLocally(DeviceHistoryQuery<T> query) {
+        if (!indexReady) {
+            return null;
+        }
+        final List<T> result = new ArrayList<>();
+        final ConcurrentNavigableMap<Long, DeviceHistoryIndex<HazelcastEntityKey>> candidates = query.getFrom() != Long.MIN_VALUE
+                ? indexes.subMap(bucketStart(query.getFrom()), true, query.getTo(), true)
+                : indexes.headMap(query.getTo(), true);
+        for (Map.Entry<Long, DeviceHistoryIndex<HazelcastEntityKey>> index : candidates.entrySet()) {
+            final Set<HazelcastEntityKey> keys = new HashSet<>();
+            final int limit = query.isFiltered() ? 0 : query.getTake();
+            for (String device : query.getDevices()) {
+                index.getValue().range(device, query.getFrom(), query.getTo(), limit, keys);
+            }
+            if (keys.isEmpty()) {
+                continue;
+            }
+            for (T entity : attach(index.getKey()).getAll(keys).values()) {
+                if (query.matches(entity)) {
+                    result.add(entity);
+                }
+            }
+            if (query.getTake() > 0 && result.size() >= query.getTake()) {
+                break;
+            }
+        }
+        return limit(result, query.getTake());
+    }
+
+    void indexLocally(long start, T entity) {
+        if (entity.getDeviceGuid() != null) {
+            indexes.computeIfAbsent(start, key -> new DeviceHistoryIndex<>())
+                    .add(entity.getDeviceGuid(), indexedTimestamp(start, entity), HazelcastEntityKey.of(entity));
+        }
+    }
+
+    /**
+     * Entities without timestamp are kept in the bucket of their store time and indexed at bucket start.
+     */
+    private static long indexedTimestamp(long start, HazelcastEntity entity) {
+        return entity.getTimestamp() != null ? entity.getTimestamp().getTime() : start;
+    }
+
+    /**
+     * Drops buckets which are out of retention. Only the oldest member of the cluster does the work,
+     * other members get dropped buckets removed through the shared registry.
+     */
+    public void applyRetention(long now) {
+        if (!hazelcastInstance.getCluster().getMembers().iterator().next().localMember()) {
+            return;
+        }
+        registerOrphans();
+        for (Long start : buckets.keySet()) {
+            if (isExpired(start, now)) {
+                drop(start);
+            }
+        }
+        if (maxSize > 0) {
+            long total = 0;
+            final Map<Long, Integer> sizes = new TreeMap<>();
+            for (Map.Entry<Long, IMap<HazelcastEntityKey, T>> bucket : buckets.entrySet()) {
+                final int size = bucket.getValue().size();
+                sizes.put(bucket.getKey(), size);
+                total += size;
+            }
+            final Iterator<Map.Entry<Long, Integer>> oldest = sizes.entrySet().iterator();
+            while (total > maxSize && sizes.size() > 1 && oldest.hasNext()) {
+                final Map.Entry<Long, Integer> bucket = oldest.next();
+                total -= bucket.getValue();
+                oldest.remove();
+                drop(bucket.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return local statistics of every live bucket keyed by bucket start time, oldest first
+     */
+    public SortedMap<Long, LocalMapStats> getBucketStats() {
+        final SortedMap<Long, LocalMapStats> stats = new TreeMap<>();
+        buckets.forEach((start, bucket) -> stats.put(start, bucket.getLocalMapStats()));
+        return stats;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * @return number of entries in local history indexes
+     */
+    public long getIndexedRecordCount() {
+        long count = 0;
+        for (DeviceHistoryIndex<HazelcastEntityKey> index : indexes.values()) {
+            count += index.getRecordCount();
+        }
+        return count;
+    }
+
+    public boolean isIndexReady() {
+        return indexReady;
+    }
+
+    private List<T> limit(List<T> entities, int take) {
+        entities.sort(new EntityTimestampComparator());
+        return take > 0 && entities.size() > take ? new ArrayList<>(entities.subList(0, take)) : entities;
+    }
+
+    long bucketStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, bucketMillis);
+    }
+
+    private boolean isExpired(long start, long now) {
+        return ttlMillis > 0 && start + bucketMillis + ttlMillis <= now;
+    }
+
+    private ConcurrentNavigableMap<Long, IMap<HazelcastEntityKey, T>> candidates(Date timestampSt, Date timestampEnd) {
+        if (timestampSt != null && timestampEnd != null) {
+            return buckets.subMap(bucketStart(timestampSt.getTime()), true, timestampEnd.getTime(), true);
+        } else if (timestampSt != null) {
+            return buckets.tailMap(bucketStart(timestampSt.getTime()), true);
+        } else if (timestampEnd != null) {
+            return buckets.headMap(timestampEnd.getTime(), true);
+        }
+        return buckets;
+    }
+
+    private IMap<HazelcastEntityKey, T> bucket(long start) {
+        final IMap<HazelcastEntityKey, T> bucket = buckets.get(start);
+        if (bucket != null) {
+            return bucket;
+        }
+        registry.putIfAbsent(start, System.currentTimeMillis());
+        return attach(start);
+    }
+
+    private IMap<HazelcastEntityKey, T> attach(long start) {
+        return buckets.computeIfAbsent(start, key -> {
+            final IMap<HazelcastEntityKey, T> bucket = hazelcastInstance.getMap(mapName(key));
+            bucket.addIndex("timestamp", true);
+            bucket.addLocalEntryListener(new UnindexingListener(key));
+            return bucket;
+        });
+    }
+
+    private void drop(long start) {
+        logger.info("Dropping bucket {} out of retention", mapName(start));
+        final long cachedUntil = start + bucketMillis;
+        long since = cachedSince.get();
+        while (since < cachedUntil && !cachedSince.compareAndSet(since, cachedUntil)) {
+            since = cachedSince.get();
+        }
+        registry.remove(start);
+        indexes.remove(start);
+        final IMap<HazelcastEntityKey, T> bucket = buckets.remove(start);
+        (bucket != null ? bucket : hazelcastInstance.getMap(mapName(start))).destroy();
+    }
+
+    /**
+     * A member which still had a dropped bucket cached may have recreated it with a late write,
+     * such maps are registered again so they get dropped by regular retention rules.
+     */
+    private void registerOrphans() {
+        final String prefix = mapPrefix + "-";
+        for (DistributedObject object : hazelcastInstance.getDistributedObjects()) {
+            final String name = object.getName();
+            if (object instanceof IMap && name.startsWith(prefix) && !name.equals(registry.getName())) {
+                try {
+                    final long start = Long.parseLong(name.substring(prefix.length()));
+                    if (!buckets.containsKey(start)) {
+                        registry.putIfAbsent(start, System.currentTimeMillis());
+                        attach(start);
+                    }
+                } catch (NumberFormatException e) {
+                    logger.warn("Unexpected map {} with bucket prefix", name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds history indexes from entries owned by this member. New indexes are installed before they are
+     * filled, so entries stored concurrently are not lost, adding an entry twice is harmless.
+     */
+    private void rebuildIndexes() {
+        indexRebuildPending.set(false);
+        try {
+            for (Map.Entry<Long, IMap<HazelcastEntityKey, T>> bucket : buckets.entrySet()) {
+                final DeviceHistoryIndex<HazelcastEntityKey> index = new DeviceHistoryIndex<>();
+                indexes.put(bucket.getKey(), index);
+                for (T entity : bucket.getValue().getAll(bucket.getValue().localKeySet()).values()) {
+                    indexLocally(bucket.getKey(), entity);
+                }
+            }
+            indexes.keySet().retainAll(buckets.keySet());
+            if (!indexRebuildPending.get()) {
+                indexReady = true;
+            }
+        } catch (RuntimeException e) {
+            if (hazelcastInstance.getLifecycleService().isRunning()) {
+                logger.warn("History index rebuild of {} failed, will retry", mapPrefix, e);
+                scheduleIndexRebuild();
+            }
+        }
+    }
+
+    private void scheduleIndexRebuild() {
+        indexReady = false;
+        if (indexRebuildPending.compareAndSet(false, true)) {
+            try {
+                indexRebuilder.schedule(this::rebuildIndexes, INDEX_REBUILD_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Store {} is shut down, index won't be rebuilt", mapPrefix);
+            }
+        }
+    }
+
+    private String mapName(long start) {
+        return mapPrefix + "-" + start;
+    }
+
+    private class RegistryListener implements EntryAddedListener<Long, Long>, EntryRemovedListener<Long, Long> {
+
+        @Override
+        public void entryAdded(EntryEvent<Long, Long> event) {
+            attach(event.getKey());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<Long, Long> event) {
+            buckets.remove(event.getKey());
+            indexes.remove(event.getKey());
+        }
+    }
+
+    /**
+     * Removes entries which left a bucket one by one (evicted under memory pressure) from local index.
+     */
+    private class UnindexingListener implements EntryEvictedListener<HazelcastEntityKey, T>, EntryRemovedListener<HazelcastEntityKey, T> {
+        private final long start;
+
+        UnindexingListener(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<HazelcastEntityKey, T> event) {
+            unindex(event.getOldValue() != null ? event.getOldValue() : event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<HazelcastEntityKey, T> event) {
+            unindex(event.getOldValue());
+        }
+
+        private void unindex(T entity) {
+            final DeviceHistoryIndex<HazelcastEntityKey> index = indexes.get(start);
+            if (index != null && entity != null && entity.getDeviceGuid() != null) {
+                index.remove(entity.getDeviceGuid(), indexedTimestamp(start, entity), HazelcastEntityKey.of(entity));
+            }
+        }
+    }
+
+    /**
+     * Partition moving to or from this member invalidates local indexes until they are rebuilt.
+     */
+    private class IndexMigrationListener implements MigrationListener {
+
+        @Override
+        public void migrationStarted(MigrationEvent event) {
+            if (involvesLocalMember(event)) {
+                indexReady = false;
+            }
+        }
+
+        @Override
+        public void migrationCompleted(MigrationEvent event) {
+            if (involvesLocalMember(event)) {
+                scheduleIndexRebuild();
+            }
+        }
+
+        @Override
+        public void migrationFailed(MigrationEvent event) {
+            if (involvesLocalMember(event)) {
+                scheduleIndexRebuild();
+            }
+        }
+
+        private boolean involvesLocalMember(MigrationEvent event) {
+            return event.getNewOwner() != null && event.getNewOwner().localMember()
+                    || event.getOldOwner() != null && event.getOldOwner().localMember();
+        }
+    }
+
+    private static class EntityTimestampComparator implements Comparator<HazelcastEntity> {
+
+        @Override
+        public int compare(HazelcastEntity o1, HazelcastEntity o2) {
+            if (o1.getTimestamp() == null || o2.getTimestamp() == null) {
+                return o1.getTimestamp() == null ? (o2.getTimestamp() == null ? 0 : -1) : 1;
+            }
+            return o1.getTimestamp().compareTo(o2.getTimestamp());
+        }
+    }
+}
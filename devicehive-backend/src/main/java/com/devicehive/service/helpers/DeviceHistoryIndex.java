@@ -0,0 +1,174 @@
+package com.devicehive.service.helpers;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timestamp-ordered history of values per device. Every device keeps its records in a pair of sorted arrays,
+ * since records arrive almost in time order an insert is usually an append, and a range query is a binary
+ * search followed by a sequential read, O(log n + k) for a device with n records.
+ *
+ * @param <V> value kept for every record, e.g. a key of the stored entity
+ */
+public class DeviceHistoryIndex<V> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final Map<String, History<V>> histories = new ConcurrentHashMap<>();
+
+    public void add(String device, long timestamp, V value) {
+        History<V> history = histories.computeIfAbsent(device, key -> new History<>());
+        while (!history.add(timestamp, value)) {
+            // history was emptied and retired concurrently, it is about to leave the map
+            histories.remove(device, history);
+            history = histories.computeIfAbsent(device, key -> new History<>());
+        }
+    }
+
+    public void remove(String device, long timestamp, V value) {
+        final History<V> history = histories.get(device);
+        if (history != null && history.remove(timestamp, value)) {
+            histories.remove(device, history);
+        }
+    }
+
+    /**
+     * Adds to {@code result} values of the device recorded within the given period, bounds are inclusive.
+     *
+     * @param limit maximum number of values to add, oldest first, 0 for no limit
+     * @return number of values added
+     */
+    public int range(String device, long from, long to, int limit, Collection<V> result) {
+        final History<V> history = histories.get(device);
+        return history != null ? history.range(from, to, limit, result) : 0;
+    }
+
+    public int getDeviceCount() {
+        return histories.size();
+    }
+
+    public long getRecordCount() {
+        long count = 0;
+        for (History<V> history : histories.values()) {
+            count += history.size();
+        }
+        return count;
+    }
+
+    private static final class History<V> {
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size;
+        private boolean retired;
+
+        /**
+         * @return false if history is retired and must not be used anymore
+         */
+        synchronized boolean add(long timestamp, V value) {
+            if (retired) {
+                return false;
+            }
+            int position = size;
+            if (size > 0 && timestamps[size - 1] > timestamp) {
+                position = upperBound(timestamp);
+            }
+            for (int i = position - 1; i >= 0 && timestamps[i] == timestamp; i--) {
+                if (values[i].equals(value)) {
+                    return true;
+                }
+            }
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(timestamps, position, timestamps, position + 1, size - position);
+            System.arraycopy(values, position, values, position + 1, size - position);
+            timestamps[position] = timestamp;
+            values[position] = value;
+            size++;
+            return true;
+        }
+
+        /**
+         * @return true if history became empty and was retired
+         */
+        synchronized boolean remove(long timestamp, V value) {
+            for (int i = lowerBound(timestamp); i < size && timestamps[i] == timestamp; i++) {
+                if (values[i].equals(value)) {
+                    System.arraycopy(timestamps, i + 1, timestamps, i, size - i - 1);
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    values[--size] = null;
+                    break;
+                }
+            }
+            if (size == 0) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized int range(long from, long to, int limit, Collection<V> result) {
+            int added = 0;
+            for (int i = lowerBound(from); i < size && timestamps[i] <= to && (limit <= 0 || added < limit); i++) {
+                result.add((V) values[i]);
+                added++;
+            }
+            return added;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (timestamps[middle] < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int upperBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (timestamps[middle] <= timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
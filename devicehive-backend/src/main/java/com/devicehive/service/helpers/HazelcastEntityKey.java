@@ -0,0 +1,72 @@
+package com.devicehive.service.helpers;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import com.hazelcast.core.PartitionAware;
+
+import java.io.Serializable;
+
+/**
+ * Map key of stored notification or command. Keys are routed by device guid, so all records of one device
+ * live in the same partition and a search by device is served by the single member owning that partition.
+ */
+public final class HazelcastEntityKey implements PartitionAware<String>, Serializable {
+    private static final long serialVersionUID = 6208310541254907786L;
+
+    private final String key;
+    private final String deviceGuid;
+
+    public HazelcastEntityKey(String key, String deviceGuid) {
+        this.key = key;
+        this.deviceGuid = deviceGuid;
+    }
+
+    public static HazelcastEntityKey of(HazelcastEntity entity) {
+        return new HazelcastEntityKey(entity.getHazelcastKey(), entity.getDeviceGuid());
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return deviceGuid != null ? deviceGuid : key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HazelcastEntityKey)) return false;
+        return key.equals(((HazelcastEntityKey) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
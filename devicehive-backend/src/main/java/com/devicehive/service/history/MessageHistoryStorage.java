@@ -0,0 +1,60 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Durable history of notifications and commands. {@link com.devicehive.service.HazelcastService} writes every
+ * stored message through to the history and keeps only recent messages in hazelcast, searches reaching behind
+ * what hazelcast holds are answered by the history. Every backend node keeps history of messages it stored.
+ */
+public interface MessageHistoryStorage {
+
+    /**
+     * @return false if history is not kept at all and searches must be answered by hazelcast only
+     */
+    boolean isDurable();
+
+    void append(HazelcastEntity message);
+
+    /**
+     * Reads messages of the devices with timestamps within the given inclusive bounds, oldest first.
+     * A message stored several times (e.g. updated command) is returned once, in its latest version.
+     *
+     * @param limit maximum number of messages to return, 0 for no limit
+     */
+    <T extends HazelcastEntity> List<T> read(Class<T> type, Collection<String> devices, long from, long to,
+                                             int limit, Predicate<? super T> filter);
+
+    /**
+     * Forces appended messages to disk.
+     */
+    void flush();
+
+    void applyRetention(long now);
+
+    void close();
+}
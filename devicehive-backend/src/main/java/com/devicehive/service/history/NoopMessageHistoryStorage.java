@@ -0,0 +1,61 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Keeps no history, messages live only as long as hazelcast keeps them.
+ */
+public class NoopMessageHistoryStorage implements MessageHistoryStorage {
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    public void append(HazelcastEntity message) {
+    }
+
+    @Override
+    public <T extends HazelcastEntity> List<T> read(Class<T> type, Collection<String> devices, long from, long to,
+                                                    int limit, Predicate<? super T> filter) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void applyRetention(long now) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
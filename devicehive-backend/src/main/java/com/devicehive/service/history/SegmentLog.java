@@ -0,0 +1,473 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.HazelcastEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static com.devicehive.shim.api.codec.CodecUtils.readString;
+import static com.devicehive.shim.api.codec.CodecUtils.writeString;
+
+/**
+ * Append-only log of messages on local disk, split into segment files of limited size.
+ * <p>
+ * Every record stores position of the previous record of the same device, so records of a device form a chain
+ * within a segment. For every device and segment memory holds position of the last record and a sparse index
+ * of windows of {@value #SPARSE_STEP} records in append order, with position of the first record and the lowest
+ * and the highest timestamp of every window. Timestamps come from clients and replayed offline messages, so they
+ * are not ordered by append: a range read takes windows overlapping the range, lowest timestamp first, reads each
+ * window walking the chain back and filters records by timestamp. Only records of the requested device are read,
+ * and a limited read stops once the oldest {@code limit} messages found are older than anything left unread,
+ * which for messages appended in timestamp order is right after the window which completes the limit.
+ * <p>
+ * Each record is protected by CRC, on open the log is scanned to rebuild the indexes and a torn tail
+ * left by a crash is truncated. Retention deletes whole segments.
+ */
+public class SegmentLog<T extends HazelcastEntity> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+
+    static final int SPARSE_STEP = 16;
+
+    private static final String SUFFIX = ".log";
+    private static final int MAGIC = 0x44485347;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int READ_AHEAD_SIZE = 1024;
+
+    private final Path directory;
+    private final RecordCodec<T> codec;
+    private final long segmentBytes;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // append state, guarded by this
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+
+    public SegmentLog(Path directory, RecordCodec<T> codec, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        for (Path file : files) {
+            final String name = file.getFileName().toString();
+            try {
+                final long id = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                segments.put(id, Segment.recover(id, file));
+            } catch (NumberFormatException e) {
+                logger.warn("Skipping unexpected file {} in message log {}", name, directory);
+            }
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+    }
+
+    public synchronized void append(T message) throws IOException {
+        if (active.size >= segmentBytes) {
+            active.channel.force(false);
+            active = createSegment(active.id + 1);
+        }
+        final String device = message.getDeviceGuid() != null ? message.getDeviceGuid() : "";
+        final long timestamp = message.getTimestamp() != null ? message.getTimestamp().getTime() : System.currentTimeMillis();
+        final DeviceIndex index = active.devices.computeIfAbsent(device, key -> new DeviceIndex());
+
+        recordBuffer.reset(RECORD_HEADER_SIZE);
+        recordOut.writeLong(timestamp);
+        recordOut.writeLong(index.last());
+        writeString(recordOut, device);
+        codec.write(recordOut, message);
+        final int length = recordBuffer.size() - RECORD_HEADER_SIZE;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("Message is too large to be kept in history: " + length + " bytes");
+        }
+        crc.reset();
+        crc.update(recordBuffer.array(), RECORD_HEADER_SIZE, length);
+        final ByteBuffer record = ByteBuffer.wrap(recordBuffer.array(), 0, recordBuffer.size());
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+
+        final long position = active.size;
+        writeFully(active.channel, record, position);
+        active.size = position + record.limit();
+        active.indexRecord(index, timestamp, position);
+    }
+
+    /**
+     * Adds to {@code result} messages of the device with timestamps within the given inclusive bounds, oldest first.
+     * Updated messages are put by key, so the latest version wins.
+     */
+    public void read(Collection<String> devices, long from, long to, int limit, Predicate<? super T> filter,
+                     Map<String, T> result) throws IOException {
+        // lowest timestamp of the active segment may change while reading, candidates are ordered by a snapshot
+        final List<Map.Entry<Long, Segment>> candidates = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            final long lowest = segment.minTimestamp;
+            if (segment.maxTimestamp >= from && lowest <= to) {
+                candidates.add(new AbstractMap.SimpleImmutableEntry<>(lowest, segment));
+            }
+        }
+        // stable sort keeps append order of segments when messages arrive in timestamp order
+        candidates.sort(Map.Entry.comparingByKey());
+        final List<T> found = new ArrayList<>();
+        for (Map.Entry<Long, Segment> candidate : candidates) {
+            if (limit > 0 && result.size() >= limit && oldest(result.values(), limit) < candidate.getKey()) {
+                break;
+            }
+            final Segment segment = candidate.getValue();
+            found.clear();
+            for (String device : devices) {
+                final DeviceIndex index = segment.devices.get(device);
+                if (index != null) {
+                    try {
+                        segment.readDevice(index, from, to, limit, codec, filter, found);
+                    } catch (IOException e) {
+                        if (segment.channel.isOpen()) {
+                            throw e;
+                        }
+                        // segment was deleted by retention while being read
+                    }
+                }
+            }
+            found.sort(Comparator.comparing(HazelcastEntity::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+            for (T message : found) {
+                result.put(message.getHazelcastKey(), message);
+            }
+        }
+    }
+
+    /**
+     * @return timestamp of the {@code limit}th oldest message
+     */
+    private static long oldest(Collection<? extends HazelcastEntity> messages, int limit) {
+        final long[] timestamps = new long[messages.size()];
+        int i = 0;
+        for (HazelcastEntity message : messages) {
+            timestamps[i++] = message.getTimestamp() != null ? message.getTimestamp().getTime() : Long.MIN_VALUE;
+        }
+        Arrays.sort(timestamps);
+        return timestamps[limit - 1];
+    }
+
+    public synchronized void flush() throws IOException {
+        active.channel.force(false);
+    }
+
+    /**
+     * Deletes segments with all messages older than {@code timestamp}, then the oldest segments while total size
+     * exceeds {@code maxBytes} (0 for no limit). Active segment is never deleted.
+     */
+    public synchronized void deleteOlderThan(long timestamp, long maxBytes) {
+        long total = getSizeBytes();
+        for (Segment segment : segments.values()) {
+            if (segment == active) {
+                break;
+            }
+            if (segment.maxTimestamp < timestamp || maxBytes > 0 && total > maxBytes) {
+                total -= segment.size;
+                segments.remove(segment.id);
+                segment.delete();
+            }
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getSizeBytes() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        final Segment segment = Segment.create(id, directory.resolve(String.format("%020d%s", id, SUFFIX)));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final Map<String, DeviceIndex> devices = new ConcurrentHashMap<>();
+        private volatile long size;
+        private volatile long minTimestamp = Long.MAX_VALUE;
+        private volatile long maxTimestamp = Long.MIN_VALUE;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        static Segment create(long id, Path path) throws IOException {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(channel, header, 0);
+            final Segment segment = new Segment(id, path, channel);
+            segment.size = FILE_HEADER_SIZE;
+            return segment;
+        }
+
+        static Segment recover(long id, Path path) throws IOException {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final Segment segment = new Segment(id, path, channel);
+            final long fileSize = channel.size();
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            if (fileSize < FILE_HEADER_SIZE) {
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                writeFully(channel, header, 0);
+                segment.size = FILE_HEADER_SIZE;
+                return segment;
+            }
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported message log segment " + path);
+            }
+
+            final CRC32 crc = new CRC32();
+            final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            long position = FILE_HEADER_SIZE;
+            while (position + RECORD_HEADER_SIZE <= fileSize) {
+                recordHeader.clear();
+                readFully(channel, recordHeader, position);
+                final int length = recordHeader.getInt();
+                final int checksum = recordHeader.getInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE || position + RECORD_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                final ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, position + RECORD_HEADER_SIZE);
+                crc.reset();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+                final long timestamp = in.readLong();
+                in.readLong();
+                final String device = readString(in);
+                segment.indexRecord(segment.devices.computeIfAbsent(device, key -> new DeviceIndex()), timestamp, position);
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (position < fileSize) {
+                logger.warn("Truncating torn tail of message log segment {} at {} of {} bytes", path, position, fileSize);
+                channel.truncate(position);
+            }
+            segment.size = position;
+            return segment;
+        }
+
+        void indexRecord(DeviceIndex index, long timestamp, long position) {
+            index.add(timestamp, position);
+            if (timestamp < minTimestamp) {
+                minTimestamp = timestamp;
+            }
+            if (timestamp > maxTimestamp) {
+                maxTimestamp = timestamp;
+            }
+        }
+
+        /**
+         * Reads records of the device in sparse index windows overlapping the range, lowest timestamp first, until
+         * {@code limit} distinct messages are found and no unread window may hold an older one. Each window is read
+         * by walking the chain back from the first record of the next window.
+         */
+        <T extends HazelcastEntity> void readDevice(DeviceIndex index, long from, long to, int limit, RecordCodec<T> codec,
+                                                    Predicate<? super T> filter, List<T> found) throws IOException {
+            final long[] positions;
+            final long[] lowest;
+            final long last;
+            final List<Integer> windows = new ArrayList<>();
+            synchronized (index) {
+                positions = Arrays.copyOf(index.sparsePositions, index.sparseSize);
+                lowest = Arrays.copyOf(index.sparseLowest, index.sparseSize);
+                last = index.last;
+                for (int window = 0; window < index.sparseSize; window++) {
+                    if (index.sparseLowest[window] <= to && index.sparseHighest[window] >= from) {
+                        windows.add(window);
+                    }
+                }
+            }
+            // stable sort, windows of messages appended in timestamp order keep append order
+            windows.sort(Comparator.comparingLong(window -> lowest[window]));
+            final Set<String> keys = new HashSet<>();
+            // the newest of the oldest {@code limit} timestamps found is on top
+            final PriorityQueue<Long> oldest = new PriorityQueue<>(Comparator.reverseOrder());
+            ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD_SIZE);
+            for (int window : windows) {
+                if (limit > 0 && oldest.size() >= limit && oldest.peek() < lowest[window]) {
+                    break;
+                }
+                final long low = positions[window];
+                final long high = window + 1 < positions.length ? positions[window + 1] : Long.MAX_VALUE;
+                final int windowStart = found.size();
+                long position = window + 1 < positions.length ? positions[window + 1] : last;
+                while (position >= low) {
+                    // most records fit into read ahead, so a record usually costs a single read
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                    readFully(channel, buffer, position);
+                    final int length = RECORD_HEADER_SIZE + buffer.getInt(0);
+                    if (length > buffer.limit()) {
+                        buffer = ByteBuffer.allocate(length);
+                        readFully(channel, buffer, position);
+                    }
+                    final DataInputStream in = new DataInputStream(
+                            new ByteArrayInputStream(buffer.array(), RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE));
+                    final long timestamp = in.readLong();
+                    final long current = position;
+                    position = in.readLong();
+                    if (current < high && timestamp >= from && timestamp <= to) {
+                        readString(in);
+                        final T message = codec.read(in);
+                        if (filter == null || filter.test(message)) {
+                            found.add(message);
+                            if (limit > 0 && keys.add(message.getHazelcastKey())) {
+                                oldest.add(timestamp);
+                                if (oldest.size() > limit) {
+                                    oldest.poll();
+                                }
+                            }
+                        }
+                    }
+                }
+                Collections.reverse(found.subList(windowStart, found.size()));
+            }
+        }
+
+        void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete message log segment {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Last record position and sparse index of one device within a segment, windows follow append order.
+     */
+    private static final class DeviceIndex {
+        private long last = -1;
+        private int count;
+        private long[] sparsePositions = new long[1];
+        private long[] sparseLowest = new long[1];
+        private long[] sparseHighest = new long[1];
+        private int sparseSize;
+
+        synchronized long last() {
+            return last;
+        }
+
+        synchronized void add(long timestamp, long position) {
+            if (count % SPARSE_STEP == 0) {
+                if (sparseSize == sparsePositions.length) {
+                    sparsePositions = Arrays.copyOf(sparsePositions, sparseSize * 2);
+                    sparseLowest = Arrays.copyOf(sparseLowest, sparseSize * 2);
+                    sparseHighest = Arrays.copyOf(sparseHighest, sparseSize * 2);
+                }
+                sparsePositions[sparseSize] = position;
+                sparseLowest[sparseSize] = timestamp;
+                sparseHighest[sparseSize] = timestamp;
+                sparseSize++;
+            } else {
+                final int window = sparseSize - 1;
+                sparseLowest[window] = Math.min(sparseLowest[window], timestamp);
+                sparseHighest[window] = Math.max(sparseHighest[window], timestamp);
+            }
+            last = position;
+            count++;
+        }
+    }
+
+    /**
+     * Reusable record buffer with room for the record header in front of the body.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer() {
+            super(512);
+        }
+
+        void reset(int headerSize) {
+            count = headerSize;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
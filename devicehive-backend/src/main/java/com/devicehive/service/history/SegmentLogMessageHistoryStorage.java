@@ -0,0 +1,166 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.codec.MessageFieldsCodec;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Keeps notifications and commands in two {@link SegmentLog}s on local disk. Every backend member writes
+ * messages it stores, so history of the cluster is the union of local logs of all members.
+ */
+public class SegmentLogMessageHistoryStorage implements MessageHistoryStorage {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogMessageHistoryStorage.class);
+
+    private final SegmentLog<DeviceNotification> notifications;
+    private final SegmentLog<DeviceCommand> commands;
+    private final long retentionMillis;
+    private final long maxBytes;
+    private final AtomicLong failedAppends = new AtomicLong();
+
+    /**
+     * @param segmentBytes    size after which a new segment file is started
+     * @param retentionMillis how long messages are kept, 0 keeps them forever
+     * @param maxBytes        total size of each log after which the oldest segments are deleted, 0 for no limit
+     */
+    public SegmentLogMessageHistoryStorage(Path directory, long segmentBytes, long retentionMillis, long maxBytes) throws IOException {
+        this.notifications = new SegmentLog<>(directory.resolve("notifications"), new RecordCodec<DeviceNotification>() {
+            @Override
+            public void write(DataOutput out, DeviceNotification message) throws IOException {
+                MessageFieldsCodec.writeNotification(out, message);
+            }
+
+            @Override
+            public DeviceNotification read(DataInput in) throws IOException {
+                return MessageFieldsCodec.readNotification(in);
+            }
+        }, segmentBytes);
+        this.commands = new SegmentLog<>(directory.resolve("commands"), new RecordCodec<DeviceCommand>() {
+            @Override
+            public void write(DataOutput out, DeviceCommand message) throws IOException {
+                MessageFieldsCodec.writeCommand(out, message);
+            }
+
+            @Override
+            public DeviceCommand read(DataInput in) throws IOException {
+                return MessageFieldsCodec.readCommand(in);
+            }
+        }, segmentBytes);
+        this.retentionMillis = retentionMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public void append(HazelcastEntity message) {
+        try {
+            if (message instanceof DeviceNotification) {
+                notifications.append((DeviceNotification) message);
+            } else if (message instanceof DeviceCommand) {
+                commands.append((DeviceCommand) message);
+            } else {
+                throw new IllegalArgumentException("Unsupported message type " + message.getClass());
+            }
+        } catch (IOException e) {
+            failedAppends.incrementAndGet();
+            logger.error("Failed to append message to history. [Message: {}]", message, e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends HazelcastEntity> List<T> read(Class<T> type, Collection<String> devices, long from, long to,
+                                                    int limit, Predicate<? super T> filter) {
+        final SegmentLog<T> log;
+        if (DeviceNotification.class.equals(type)) {
+            log = (SegmentLog<T>) notifications;
+        } else if (DeviceCommand.class.equals(type)) {
+            log = (SegmentLog<T>) commands;
+        } else {
+            throw new IllegalArgumentException("Unsupported message type " + type);
+        }
+        final Map<String, T> found = new LinkedHashMap<>();
+        try {
+            log.read(devices, from, to, limit, filter, found);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read message history", e);
+        }
+        final List<T> result = new ArrayList<>(found.values());
+        result.sort(Comparator.comparing(HazelcastEntity::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return limit > 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            notifications.flush();
+            commands.flush();
+        } catch (IOException e) {
+            logger.error("Failed to flush message history", e);
+        }
+    }
+
+    @Override
+    public void applyRetention(long now) {
+        final long oldest = retentionMillis > 0 ? now - retentionMillis : Long.MIN_VALUE;
+        notifications.deleteOlderThan(oldest, maxBytes);
+        commands.deleteOlderThan(oldest, maxBytes);
+    }
+
+    @Override
+    public void close() {
+        try {
+            notifications.close();
+            commands.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close message history", e);
+        }
+    }
+
+    public long getSizeBytes() {
+        return notifications.getSizeBytes() + commands.getSizeBytes();
+    }
+
+    public int getSegmentCount() {
+        return notifications.getSegmentCount() + commands.getSegmentCount();
+    }
+
+    public long getFailedAppendCount() {
+        return failedAppends.get();
+    }
+}
@@ -0,0 +1,136 @@
+package com.devicehive.eventbus.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.eventbus.EventBus;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.Action;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures event bus subscription registry with a million of registered subscriptions.
+ * Devices popularity is skewed, so a few devices have thousands of subscribers while most have only a few.
+ * Churn benchmark unsubscribes a random subscriber and subscribes a new one to the same devices,
+ * lookup and publish benchmarks measure routing of a notification of a random device.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SubscriberRegistryBenchmark {
+
+    private static final int SUBSCRIPTIONS_PER_SUBSCRIBER = 5;
+
+    @Param({"1000000"})
+    private int subscriptions;
+
+    @Param({"100000"})
+    private int devices;
+
+    private EventBus eventBus;
+    private String[] deviceGuids;
+    private Subscriber[] subscribers;
+    private int[][] subscriberDevices;
+    private NotificationEvent[] events;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        eventBus = new EventBus((replyTo, response) -> {});
+        deviceGuids = new String[devices];
+        events = new NotificationEvent[devices];
+        for (int i = 0; i < devices; i++) {
+            deviceGuids[i] = UUID.randomUUID().toString();
+            DeviceNotification notification = new DeviceNotification();
+            notification.setId(i);
+            notification.setDeviceGuid(deviceGuids[i]);
+            notification.setNotification("temperature");
+            events[i] = new NotificationEvent(notification);
+        }
+
+        int subscriberCount = subscriptions / SUBSCRIPTIONS_PER_SUBSCRIBER;
+        subscribers = new Subscriber[subscriberCount];
+        subscriberDevices = new int[subscriberCount][SUBSCRIPTIONS_PER_SUBSCRIBER];
+        for (int i = 0; i < subscriberCount; i++) {
+            for (int j = 0; j < SUBSCRIPTIONS_PER_SUBSCRIBER; j++) {
+                subscriberDevices[i][j] = randomDevice();
+            }
+            subscribers[i] = subscribe(subscriberDevices[i]);
+        }
+    }
+
+    @Benchmark
+    public void churn() {
+        int i = random.nextInt(subscribers.length);
+        eventBus.unsubscribe(subscribers[i]);
+        subscribers[i] = subscribe(subscriberDevices[i]);
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        NotificationEvent event = events[randomDevice()];
+        for (Subscription subscription : event.getApplicableSubscriptions()) {
+            for (Subscriber subscriber : eventBus.getSubscribers(subscription)) {
+                blackhole.consume(subscriber);
+            }
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        eventBus.publish(events[randomDevice()]);
+    }
+
+    private Subscriber subscribe(int[] deviceIndexes) {
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), "reply_topic", UUID.randomUUID().toString());
+        for (int device : deviceIndexes) {
+            eventBus.subscribe(subscriber, new Subscription(Action.NOTIFICATION_EVENT.name(), deviceGuids[device]));
+        }
+        return subscriber;
+    }
+
+    private int randomDevice() {
+        double r = random.nextDouble();
+        return (int) (r * r * r * devices); // skewed towards first devices
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SubscriberRegistryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,181 @@
+package com.devicehive.eventbus.test;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.codec.BodyCodecFactory;
+import com.devicehive.eventbus.ClusterEventBridge;
+import com.devicehive.eventbus.EventBus;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.Subscription;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.Action;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.MessageDispatcher;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.apache.commons.lang3.RandomStringUtils.randomAlphabetic;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ClusterEventBridgeTest {
+
+    private HazelcastInstance firstNode;
+    private HazelcastInstance secondNode;
+
+    @Before
+    public void setUp() throws Exception {
+        String group = "eventbus-test-" + UUID.randomUUID();
+        firstNode = Hazelcast.newHazelcastInstance(config(group));
+        secondNode = Hazelcast.newHazelcastInstance(config(group));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        secondNode.shutdown();
+        firstNode.shutdown();
+    }
+
+    @Test
+    public void shouldDeliverEventToSubscriberOfAnotherNode() throws Exception {
+        MessageDispatcher firstDispatcher = mock(MessageDispatcher.class);
+        MessageDispatcher secondDispatcher = mock(MessageDispatcher.class);
+        EventBus firstBus = new EventBus(firstDispatcher, bridge(firstNode));
+        EventBus secondBus = new EventBus(secondDispatcher, bridge(secondNode));
+
+        String deviceGuid = UUID.randomUUID().toString();
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), "reply_topic", "correlation_id");
+        secondBus.subscribe(subscriber, new Subscription(Action.NOTIFICATION_EVENT.name(), deviceGuid));
+
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(1);
+        notification.setDeviceGuid(deviceGuid);
+        notification.setNotification(randomAlphabetic(5));
+        firstBus.publish(new NotificationEvent(notification));
+
+        ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+        verify(secondDispatcher, timeout(10000)).send(eq("reply_topic"), responseCaptor.capture());
+        verify(firstDispatcher, never()).send(anyString(), any(Response.class));
+
+        Response response = responseCaptor.getValue();
+        assertEquals("correlation_id", response.getCorrelationId());
+        NotificationEvent received = (NotificationEvent) response.getBody();
+        assertEquals(notification.getNotification(), received.getNotification().getNotification());
+        assertEquals(deviceGuid, received.getNotification().getDeviceGuid());
+
+        firstBus.shutdown();
+        secondBus.shutdown();
+    }
+
+    @Test
+    public void shouldNotDeliverOwnEventTwice() throws Exception {
+        MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+        EventBus eventBus = new EventBus(dispatcher, bridge(firstNode));
+        new EventBus(mock(MessageDispatcher.class), bridge(secondNode));
+
+        String deviceGuid = UUID.randomUUID().toString();
+        eventBus.subscribe(new Subscriber(UUID.randomUUID().toString(), "reply_topic", "correlation_id"),
+                new Subscription(Action.NOTIFICATION_EVENT.name(), deviceGuid));
+
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(1);
+        notification.setDeviceGuid(deviceGuid);
+        notification.setNotification(randomAlphabetic(5));
+        eventBus.publish(new NotificationEvent(notification));
+
+        Thread.sleep(500);
+        verify(dispatcher, times(1)).send(eq("reply_topic"), any(Response.class));
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void shouldUnsubscribeSubscriberRegisteredOnAnotherNode() throws Exception {
+        EventBus firstBus = new EventBus(mock(MessageDispatcher.class), bridge(firstNode));
+        EventBus secondBus = new EventBus(mock(MessageDispatcher.class), bridge(secondNode));
+
+        Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), UUID.randomUUID().toString());
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), "reply_topic", "correlation_id");
+        secondBus.subscribe(subscriber, subscription);
+
+        // unsubscribe request was routed to the first node
+        firstBus.unsubscribe(new Subscriber(subscriber.getId(), "reply_topic", "other_correlation_id"));
+
+        waitUntilUnsubscribed(secondBus, subscription);
+        assertEquals(0, secondBus.getSubscriberCount());
+
+        firstBus.shutdown();
+        secondBus.shutdown();
+    }
+
+    @Test
+    public void shouldUnsubscribeDeviceSubscribersOfAllNodes() throws Exception {
+        EventBus firstBus = new EventBus(mock(MessageDispatcher.class), bridge(firstNode));
+        EventBus secondBus = new EventBus(mock(MessageDispatcher.class), bridge(secondNode));
+
+        Subscription subscription = new Subscription(Action.COMMAND_EVENT.name(), UUID.randomUUID().toString());
+        Subscription otherDevice = new Subscription(Action.COMMAND_EVENT.name(), UUID.randomUUID().toString());
+        firstBus.subscribe(new Subscriber(UUID.randomUUID().toString(), "reply_1", "c1"), subscription);
+        secondBus.subscribe(new Subscriber(UUID.randomUUID().toString(), "reply_2", "c2"), subscription);
+        secondBus.subscribe(new Subscriber(UUID.randomUUID().toString(), "reply_3", "c3"), otherDevice);
+
+        firstBus.unsubscribeAll(Collections.singleton(subscription));
+
+        assertTrue(firstBus.getSubscribers(subscription).isEmpty());
+        waitUntilUnsubscribed(secondBus, subscription);
+        assertEquals(1, secondBus.getSubscribers(otherDevice).size());
+
+        firstBus.shutdown();
+        secondBus.shutdown();
+    }
+
+    private static void waitUntilUnsubscribed(EventBus eventBus, Subscription subscription) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!eventBus.getSubscribers(subscription).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(eventBus.getSubscribers(subscription).isEmpty());
+    }
+
+    private static ClusterEventBridge bridge(HazelcastInstance instance) {
+        return new ClusterEventBridge(instance, GsonFactory.createGson(), BodyCodecFactory.createBodyCodecRegistry());
+    }
+
+    private static Config config(String group) {
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.getNetworkConfig().setPort(5801).setPortAutoIncrement(true);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+}
@@ -32,7 +32,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -230,4 +232,108 @@ public class EventBusTest {
         assertEquals(topicCaptor.getValue(), subscriber2.getReplyTo());
         assertEquals(responseCaptor.getValue(), response3);
     }
+
+    @Test
+    public void shouldDeliverOnlyToRemainingSubscribersAfterChurn() throws Exception {
+        String deviceGuid = UUID.randomUUID().toString();
+        Subscription subscription = new Subscription(Action.NOTIFICATION_EVENT.name(), deviceGuid);
+
+        List<Subscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), "topic_" + i, UUID.randomUUID().toString());
+            eventBus.subscribe(subscriber, subscription);
+            subscribers.add(subscriber);
+        }
+        Set<String> expectedTopics = new HashSet<>();
+        for (int i = 0; i < subscribers.size(); i++) {
+            if (i % 3 == 0) {
+                expectedTopics.add(subscribers.get(i).getReplyTo());
+            } else {
+                eventBus.unsubscribe(subscribers.get(i));
+            }
+        }
+        assertThat(eventBus.getSubscribers(subscription), hasSize(expectedTopics.size()));
+
+        DeviceNotification notification = new DeviceNotification();
+        notification.setDeviceGuid(deviceGuid);
+        notification.setNotification("temperature");
+        notification.setId(0);
+        eventBus.publish(new NotificationEvent(notification));
+
+        ArgumentCaptor<String> topicCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+        verify(dispatcher, times(expectedTopics.size())).send(topicCaptor.capture(), responseCaptor.capture());
+        assertEquals(expectedTopics, new HashSet<>(topicCaptor.getAllValues()));
+    }
+
+    @Test
+    public void shouldReturnSubscriptionsOfSubscriber() throws Exception {
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), randomAlphabetic(5), UUID.randomUUID().toString());
+        Subscription subscription1 = new Subscription(Action.COMMAND_EVENT.name(), UUID.randomUUID().toString());
+        Subscription subscription2 = new Subscription(Action.COMMAND_EVENT.name(), UUID.randomUUID().toString(), "go_offline");
+        eventBus.subscribe(subscriber, subscription1);
+        eventBus.subscribe(subscriber, subscription2);
+        eventBus.subscribe(subscriber, subscription2);
+
+        assertThat(eventBus.getSubscriptions(subscriber), containsInAnyOrder(subscription1, subscription2));
+        assertThat(eventBus.getSubscribers(subscription2), contains(subscriber));
+
+        eventBus.unsubscribe(subscriber);
+        assertThat(eventBus.getSubscriptions(subscriber), empty());
+        assertThat(eventBus.getSubscribers(subscription1), empty());
+    }
+
+    @Test
+    public void shouldPurgeUnsubscribedEntriesFromRegistry() throws Exception {
+        List<Subscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), randomAlphabetic(5), UUID.randomUUID().toString());
+            eventBus.subscribe(subscriber, new Subscription(Action.NOTIFICATION_EVENT.name(), UUID.randomUUID().toString()));
+            eventBus.subscribe(subscriber, new Subscription(Action.COMMAND_EVENT.name(), "shared_device"));
+            subscribers.add(subscriber);
+        }
+        assertEquals(10000, eventBus.getSubscriberCount());
+        assertEquals(10001, eventBus.getSubscriptionCount());
+        assertEquals(20000, eventBus.getRegistrationCount());
+        int peakCapacity = eventBus.getRegistryArenaCapacity();
+
+        subscribers.forEach(eventBus::unsubscribe);
+
+        assertEquals(0, eventBus.getSubscriberCount());
+        assertEquals(0, eventBus.getSubscriptionCount());
+        assertEquals(0, eventBus.getRegistrationCount());
+        assertEquals(10001, eventBus.getDroppedSubscriptionCount());
+        assertThat(eventBus.getSubscribers(new Subscription(Action.COMMAND_EVENT.name(), "shared_device")), empty());
+
+        eventBus.compactRegistry();
+        assertThat(eventBus.getRegistryArenaCapacity(), lessThan(peakCapacity));
+
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), randomAlphabetic(5), UUID.randomUUID().toString());
+        Subscription subscription = new Subscription(Action.COMMAND_EVENT.name(), "shared_device");
+        eventBus.subscribe(subscriber, subscription);
+        assertThat(eventBus.getSubscribers(subscription), contains(subscriber));
+        assertEquals(1, eventBus.getRegistrationCount());
+    }
+
+    @Test
+    public void shouldDeliverEventsOfNetworkDevicesToNetworkSubscriber() throws Exception {
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), randomAlphabetic(5), UUID.randomUUID().toString());
+        eventBus.subscribe(subscriber, Subscription.forNetwork(Action.NOTIFICATION_EVENT.name(), 1L, null));
+
+        for (long network : new long[] {1L, 2L}) {
+            DeviceNotification notification = new DeviceNotification();
+            notification.setDeviceGuid(UUID.randomUUID().toString());
+            notification.setNotification("temperature");
+            notification.setId(network);
+            eventBus.publish(new NotificationEvent(notification, network));
+        }
+        DeviceNotification notification = new DeviceNotification();
+        notification.setDeviceGuid(UUID.randomUUID().toString());
+        notification.setNotification("temperature");
+        eventBus.publish(new NotificationEvent(notification));
+
+        ArgumentCaptor<Response> responseCaptor = ArgumentCaptor.forClass(Response.class);
+        verify(dispatcher).send(eq(subscriber.getReplyTo()), responseCaptor.capture());
+        assertEquals(Long.valueOf(1L), ((NotificationEvent) responseCaptor.getValue().getBody()).getNetworkId());
+    }
 }
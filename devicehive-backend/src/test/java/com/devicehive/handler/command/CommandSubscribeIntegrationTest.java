@@ -33,10 +33,11 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -107,6 +108,10 @@ public class CommandSubscribeIntegrationTest extends AbstractSpringTest {
 
         //wait for commands to be delivered
         futures.forEach(CompletableFuture::join);
+        awaitCommands(c1, 2);
+        awaitCommands(c2, 1);
+        awaitCommands(c3, 2);
+        awaitCommands(c4, 1);
 
         assertThat(c1.commands, hasSize(2));
         c1.commands.forEach(event -> {
@@ -147,6 +152,17 @@ public class CommandSubscribeIntegrationTest extends AbstractSpringTest {
         assertThat(c5.commands, is(empty()));
     }
 
+    /**
+     * Insert responses and command events go to subscriber through different reply topic partitions,
+     * so events may arrive after the insert response.
+     */
+    private static void awaitCommands(TestCallback callback, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (callback.commands.size() < count && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
     @Test
     @Ignore
     public void shouldUnsubscribeFromCommands() throws Exception {
@@ -207,7 +223,7 @@ public class CommandSubscribeIntegrationTest extends AbstractSpringTest {
 
         public TestCallback() {
             this.subscribeFuture = new CompletableFuture<>();
-            this.commands = new HashSet<>();
+            this.commands = ConcurrentHashMap.newKeySet();
         }
 
         @Override
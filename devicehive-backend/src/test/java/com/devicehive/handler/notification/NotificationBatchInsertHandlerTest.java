@@ -0,0 +1,103 @@
+package com.devicehive.handler.notification;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.base.AbstractSpringTest;
+import com.devicehive.eventbus.EventBus;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.NotificationBatchInsertRequest;
+import com.devicehive.model.rpc.NotificationBatchInsertResponse;
+import com.devicehive.service.HazelcastService;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class NotificationBatchInsertHandlerTest extends AbstractSpringTest {
+
+    @Autowired
+    private HazelcastService hazelcastService;
+
+    private NotificationBatchInsertHandler handler;
+
+    private EventBus eventBus;
+
+    @Before
+    public void setUp() throws Exception {
+        eventBus = Mockito.mock(EventBus.class);
+
+        handler = new NotificationBatchInsertHandler();
+        handler.setEventBus(eventBus);
+        handler.setHazelcastService(hazelcastService);
+    }
+
+    @Test
+    public void testInsertNotificationBatch() throws Exception {
+        final String guid = UUID.randomUUID().toString();
+        final long now = System.currentTimeMillis();
+
+        List<DeviceNotification> notifications = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DeviceNotification notification = new DeviceNotification();
+            notification.setId(System.nanoTime());
+            notification.setDeviceGuid(guid);
+            notification.setTimestamp(new Date(now - (5 - i) * 1000));
+            notification.setNotification("reading");
+            notification.setParameters(new JsonStringWrapper("{\"value\":" + i + "}"));
+            notifications.add(notification);
+        }
+        Response response = handler.handle(
+                Request.newBuilder()
+                        .withBody(new NotificationBatchInsertRequest(notifications, 3L))
+                        .build()
+        );
+
+        for (DeviceNotification notification : notifications) {
+            assertTrue(hazelcastService.find(notification.getId(), guid, DeviceNotification.class).isPresent());
+        }
+
+        ArgumentCaptor<NotificationEvent> eventCaptor = ArgumentCaptor.forClass(NotificationEvent.class);
+        verify(eventBus, times(5)).publish(eventCaptor.capture());
+        assertEquals(notifications, eventCaptor.getAllValues().stream()
+                .map(NotificationEvent::getNotification)
+                .collect(Collectors.toList()));
+        assertTrue(eventCaptor.getAllValues().stream().allMatch(event -> Long.valueOf(3L).equals(event.getNetworkId())));
+
+        NotificationBatchInsertResponse body = response.getBody().cast(NotificationBatchInsertResponse.class);
+        assertEquals(notifications, body.getDeviceNotifications());
+    }
+}
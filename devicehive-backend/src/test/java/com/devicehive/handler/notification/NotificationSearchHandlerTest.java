@@ -22,6 +22,7 @@ package com.devicehive.handler.notification;
 
 import com.devicehive.base.AbstractSpringTest;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.JsonStringWrapper;
 import com.devicehive.model.rpc.NotificationInsertRequest;
 import com.devicehive.model.rpc.NotificationSearchRequest;
@@ -121,6 +122,56 @@ public class NotificationSearchHandlerTest extends AbstractSpringTest {
         assertEquals(notifications.get(0), responseBody.getNotifications().get(0));
     }
 
+    @Test
+    public void shouldReturnOnlyRequestedPageOfSortedNotifications() throws Exception {
+        NotificationSearchRequest searchRequest = new NotificationSearchRequest();
+        searchRequest.setGuid(guid);
+        searchRequest.setSortField("notification");
+        searchRequest.setSortOrderAsc(false);
+        searchRequest.setSkip(1);
+        searchRequest.setTake(1);
+
+        Request request = Request.newBuilder()
+                .withPartitionKey(guid)
+                .withBody(searchRequest)
+                .build();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        client.call(request, future::complete);
+
+        Response response = future.get(10, TimeUnit.SECONDS);
+        NotificationSearchResponse responseBody = (NotificationSearchResponse) response.getBody();
+        assertEquals(1, responseBody.getNotifications().size());
+        assertEquals(notifications.get(1), responseBody.getNotifications().get(0));
+    }
+
+    @Test
+    public void shouldWalkNotificationsWithCursor() throws Exception {
+        List<DeviceNotification> found = new ArrayList<>();
+        HistoryCursor cursor = HistoryCursor.START;
+        int pages = 0;
+        while (cursor != null) {
+            NotificationSearchRequest searchRequest = new NotificationSearchRequest();
+            searchRequest.setGuid(guid);
+            searchRequest.setCursor(cursor);
+            searchRequest.setTake(2);
+
+            Request request = Request.newBuilder()
+                    .withPartitionKey(guid)
+                    .withBody(searchRequest)
+                    .build();
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            client.call(request, future::complete);
+
+            NotificationSearchResponse responseBody = (NotificationSearchResponse) future.get(10, TimeUnit.SECONDS).getBody();
+            assertTrue(responseBody.getNotifications().size() <= 2);
+            found.addAll(responseBody.getNotifications());
+            cursor = responseBody.getNextCursor();
+            pages++;
+        }
+        assertEquals(2, pages);
+        assertEquals(notifications, found);
+    }
+
     private DeviceNotification createNotification(long id, String guid) {
         DeviceNotification notification = new DeviceNotification();
         notification.setId(id);
@@ -32,11 +32,13 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -108,6 +110,10 @@ public class NotificationSubscribeInsertIntegrationTest extends AbstractSpringTe
 
         //wait notifications delivered
         futures.forEach(CompletableFuture::join);
+        awaitNotifications(c1, 2);
+        awaitNotifications(c2, 1);
+        awaitNotifications(c3, 2);
+        awaitNotifications(c4, 1);
 
         assertThat(c1.notifications, hasSize(2));
         c1.notifications.forEach(event -> {
@@ -148,6 +154,72 @@ public class NotificationSubscribeInsertIntegrationTest extends AbstractSpringTe
         assertThat(c5.notifications, is(empty()));
     }
 
+    @Test
+    public void shouldSubscribeToDeviceSetAndNetworkWithSingleRequest() throws Exception {
+        String device1 = randomUUID().toString();
+        String device2 = randomUUID().toString();
+        String device3 = randomUUID().toString();
+        Long network = 42L;
+
+        NotificationSubscribeRequest sr1 = new NotificationSubscribeRequest(randomUUID().toString(),
+                new HashSet<>(Arrays.asList(device1, device2)), null, null, null);
+        TestCallback c1 = new TestCallback();
+        client.call(Request.newBuilder().withBody(sr1).withSingleReply(false).build(), c1);
+
+        NotificationSubscribeRequest sr2 = new NotificationSubscribeRequest(randomUUID().toString(),
+                null, Collections.singleton(network), Collections.singleton("temperature"), null);
+        TestCallback c2 = new TestCallback();
+        client.call(Request.newBuilder().withBody(sr2).withSingleReply(false).build(), c2);
+
+        Stream.of(c1.subscribeFuture, c2.subscribeFuture).forEach(CompletableFuture::join);
+
+        List<CompletableFuture<Response>> futures = Stream.of(
+                new NotificationInsertRequest(notification(device1, "temperature"), network),
+                new NotificationInsertRequest(notification(device2, "vibration"), null),
+                new NotificationInsertRequest(notification(device3, "temperature"), network),
+                new NotificationInsertRequest(notification(device3, "vibration"), network)
+        ).map(insert -> {
+            CompletableFuture<Response> f = new CompletableFuture<>();
+            client.call(Request.newBuilder().withBody(insert).build(), f::complete);
+            return f;
+        }).collect(Collectors.toList());
+        futures.forEach(CompletableFuture::join);
+        awaitNotifications(c1, 2);
+        awaitNotifications(c2, 2);
+
+        Set<String> devices = c1.notifications.stream()
+                .map(n -> n.getNotification().getDeviceGuid())
+                .collect(Collectors.toSet());
+        assertThat(c1.notifications, hasSize(2));
+        assertThat(devices, containsInAnyOrder(device1, device2));
+
+        devices = c2.notifications.stream()
+                .map(n -> n.getNotification().getDeviceGuid())
+                .collect(Collectors.toSet());
+        assertThat(c2.notifications, hasSize(2));
+        assertThat(devices, containsInAnyOrder(device1, device3));
+        c2.notifications.forEach(event -> assertEquals(network, event.getNetworkId()));
+    }
+
+    /**
+     * Insert responses and notification events go to subscriber through different reply topic partitions,
+     * so events may arrive after the insert response.
+     */
+    private static void awaitNotifications(TestCallback callback, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (callback.notifications.size() < count && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    private static DeviceNotification notification(String device, String name) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(0);
+        notification.setNotification(name);
+        notification.setDeviceGuid(device);
+        return notification;
+    }
+
     @Test
     @Ignore
     public void shouldUnsubscribeFromNotifications() throws Exception {
@@ -208,7 +280,7 @@ public class NotificationSubscribeInsertIntegrationTest extends AbstractSpringTe
 
         public TestCallback() {
             this.subscribeFuture = new CompletableFuture<>();
-            this.notifications = new HashSet<>();
+            this.notifications = ConcurrentHashMap.newKeySet();
         }
 
         @Override
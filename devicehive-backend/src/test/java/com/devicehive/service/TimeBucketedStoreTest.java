@@ -0,0 +1,335 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HazelcastEntity;
+import com.devicehive.service.history.NoopMessageHistoryStorage;
+import com.devicehive.service.history.SegmentLogMessageHistoryStorage;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.query.Predicates;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeBucketedStoreTest {
+
+    private static final long BUCKET = TimeUnit.MINUTES.toMillis(10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HazelcastInstance hazelcastInstance;
+    private final List<TimeBucketedStore<?>> stores = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        hazelcastInstance = Hazelcast.newHazelcastInstance(config("store-test-" + UUID.randomUUID()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stores.forEach(TimeBucketedStore::shutdown);
+        hazelcastInstance.shutdown();
+    }
+
+    @Test
+    public void shouldFindOldestEntitiesAcrossBuckets() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(TimeUnit.DAYS.toMillis(1), 0);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        for (int i = 0; i < 6; i++) {
+            store.store(notification(i, guid, now - (5 - i) * BUCKET));
+        }
+
+        assertEquals(6, store.getBucketStats().size());
+        Collection<DeviceNotification> found = store.find(Predicates.equal("deviceGuid", guid), 3, null, null);
+        assertEquals(ids(0, 1, 2), found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+
+        found = store.find(Predicates.equal("deviceGuid", guid), 0, new Date(now - 2 * BUCKET), null);
+        assertTrue(found.stream().map(DeviceNotification::getId).collect(Collectors.toList()).containsAll(ids(3, 4, 5)));
+    }
+
+    @Test
+    public void shouldDropBucketsOutOfTtl() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(2 * BUCKET, 0);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        store.store(notification(1, guid, now - BUCKET));
+        store.store(notification(2, guid, now));
+
+        store.applyRetention(now + 2 * BUCKET);
+        assertEquals(1, store.getBucketStats().size());
+        assertEquals(ids(2), store.find(Predicates.equal("deviceGuid", guid), 0, null, null).stream()
+                .map(DeviceNotification::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldDropOldestBucketsOverMaxSize() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(0, 3);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        for (int i = 0; i < 4; i++) {
+            store.store(notification(i, guid, now - (3 - i) * BUCKET));
+        }
+
+        store.applyRetention(now);
+        assertEquals(3, store.getBucketStats().size());
+        assertEquals(Long.valueOf(now - 2 * BUCKET - Math.floorMod(now, BUCKET)), store.getBucketStats().firstKey());
+    }
+
+    @Test
+    public void shouldFindDeviceHistoryThroughIndex() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(TimeUnit.DAYS.toMillis(1), 0);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        String otherGuid = UUID.randomUUID().toString();
+        for (int i = 0; i < 6; i++) {
+            store.store(notification(i, guid, now - (5 - i) * BUCKET));
+            store.store(notification(100 + i, otherGuid, now - (5 - i) * BUCKET));
+        }
+
+        assertTrue(store.isIndexReady());
+        assertEquals(12, store.getIndexedRecordCount());
+        Collection<DeviceNotification> found = store.findByDevices(Collections.singleton(guid), null, null, null, 3, null, null);
+        assertEquals(ids(0, 1, 2), found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+
+        found = store.findByDevices(Arrays.asList(guid, otherGuid), null, null, null, 0,
+                new Date(now - 2 * BUCKET - 1), new Date(now + 1));
+        assertEquals(ids(3, 103, 4, 104, 5, 105).size(), found.size());
+        assertTrue(found.stream().map(DeviceNotification::getId).collect(Collectors.toList()).containsAll(ids(3, 103, 4, 104, 5, 105)));
+
+        found = store.findByDevices(Collections.singleton(otherGuid), null, null, 104L, 1, null, null);
+        assertEquals(ids(104), found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldNotifyWhenAsyncStoreCompletes() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(2 * BUCKET, 0);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        CountDownLatch stored = new CountDownLatch(101);
+        ExecutionCallback<Object> callback = new ExecutionCallback<Object>() {
+            @Override
+            public void onResponse(Object response) {
+                stored.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            store.storeAsync(notification(i, guid, now - i), callback);
+        }
+        store.storeAsync(notification(100, guid, now - 10 * BUCKET), callback);
+
+        assertTrue(stored.await(10, TimeUnit.SECONDS));
+        assertEquals(100, store.findByDevices(Collections.singleton(guid), null, null, null, 0, null, null).size());
+    }
+
+    @Test
+    public void shouldStoreBatchAcrossBucketsAndDevices() throws Exception {
+        TimeBucketedStore<DeviceNotification> store = store(2 * BUCKET, 0);
+        long now = System.currentTimeMillis();
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+        store.storeAll(Arrays.asList(
+                notification(1, first, now - BUCKET),
+                notification(2, second, now - BUCKET),
+                notification(3, first, now),
+                notification(4, second, now),
+                notification(5, first, now - 10 * BUCKET)));
+
+        assertEquals(ids(1, 3), store.findByDevices(Collections.singleton(first), null, null, null, 0, null, null).stream()
+                .map(DeviceNotification::getId).collect(Collectors.toList()));
+        assertEquals(ids(2, 4), store.findByDevices(Collections.singleton(second), null, null, null, 0, null, null).stream()
+                .map(DeviceNotification::getId).collect(Collectors.toList()));
+        assertEquals(4, store.getIndexedRecordCount());
+    }
+
+    @Test
+    public void shouldAppendHistoryOfAsyncStoreOffCallerThread() throws Exception {
+        Set<String> appendThreads = ConcurrentHashMap.newKeySet();
+        NoopMessageHistoryStorage historyStorage = new NoopMessageHistoryStorage() {
+            @Override
+            public void append(HazelcastEntity message) {
+                appendThreads.add(Thread.currentThread().getName());
+            }
+        };
+        TimeBucketedStore<DeviceNotification> store = new TimeBucketedStore<>(hazelcastInstance, "TEST-MAP", BUCKET,
+                2 * BUCKET, 0, DeviceNotification.class, historyStorage);
+        store.start();
+        stores.add(store);
+        long now = System.currentTimeMillis();
+        String guid = UUID.randomUUID().toString();
+        CountDownLatch stored = new CountDownLatch(2);
+        ExecutionCallback<Object> callback = new ExecutionCallback<Object>() {
+            @Override
+            public void onResponse(Object response) {
+                stored.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        };
+        store.storeAsync(notification(1, guid, now), callback);
+        store.storeAsync(notification(2, guid, now - 10 * BUCKET), callback);
+
+        assertTrue(stored.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singleton("TEST-MAP-history-appender"), appendThreads);
+    }
+
+    @Test
+    public void shouldSearchDevicesOnOwningMembers() throws Exception {
+        HazelcastInstance secondInstance = Hazelcast.newHazelcastInstance(config(hazelcastInstance.getConfig().getGroupConfig().getName()));
+        try {
+            TimeBucketedStore<DeviceNotification> store = store(TimeUnit.DAYS.toMillis(1), 0);
+            TimeBucketedStore<DeviceNotification> secondStore = store(secondInstance, TimeUnit.DAYS.toMillis(1), 0);
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!(hazelcastInstance.getPartitionService().isClusterSafe() && store.isIndexReady() && secondStore.isIndexReady())
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+
+            long now = System.currentTimeMillis();
+            List<String> guids = new ArrayList<>();
+            for (int device = 0; device < 20; device++) {
+                String guid = UUID.randomUUID().toString();
+                guids.add(guid);
+                for (int i = 0; i < 3; i++) {
+                    store.store(notification(device * 10 + i, guid, now - (2 - i) * BUCKET));
+                }
+            }
+
+            for (int device = 0; device < guids.size(); device++) {
+                Collection<DeviceNotification> found = secondStore.findByDevices(Collections.singleton(guids.get(device)),
+                        null, null, null, 0, null, null);
+                assertEquals(ids(device * 10, device * 10 + 1, device * 10 + 2),
+                        found.stream().map(DeviceNotification::getId).collect(Collectors.toList()));
+            }
+            assertEquals(60, secondStore.findByDevices(guids, null, null, null, 0, null, null).size());
+            assertEquals(60, store.getIndexedRecordCount() + secondStore.getIndexedRecordCount());
+            assertTrue(store.getIndexedRecordCount() > 0 && secondStore.getIndexedRecordCount() > 0);
+        } finally {
+            stores.forEach(TimeBucketedStore::shutdown);
+            stores.clear();
+            secondInstance.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReadFromHistoryBehindDroppedBuckets() throws Exception {
+        SegmentLogMessageHistoryStorage historyStorage = new SegmentLogMessageHistoryStorage(folder.getRoot().toPath(), 1 << 20, 0, 0);
+        try {
+            TimeBucketedStore<DeviceNotification> store = new TimeBucketedStore<>(hazelcastInstance, "TEST-MAP", BUCKET,
+                    2 * BUCKET, 0, DeviceNotification.class, historyStorage);
+            store.start();
+            stores.add(store);
+            long now = System.currentTimeMillis();
+            String guid = UUID.randomUUID().toString();
+            store.store(notification(1, guid, now - BUCKET));
+            store.store(notification(2, guid, now));
+
+            assertTrue(store.isCached(new Date(now - 1)));
+            assertFalse(store.isCached(null));
+            store.applyRetention(now + 2 * BUCKET);
+            assertFalse(store.isCached(new Date(now - BUCKET - 1)));
+
+            assertEquals(ids(2), store.findByDevices(Collections.singleton(guid), null, null, null, 0, null, null).stream()
+                    .map(DeviceNotification::getId).collect(Collectors.toList()));
+            // synchronous stores are appended to history in background
+            long deadline = System.currentTimeMillis() + 5000;
+            while (historyStorage.read(DeviceNotification.class, Collections.singleton(guid), 0, Long.MAX_VALUE, 0,
+                    n -> true).size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(ids(1, 2), store.findInHistory(Collections.singleton(guid), null, null, null, 0, null, null).stream()
+                    .map(DeviceNotification::getId).collect(Collectors.toList()));
+            assertEquals(ids(1), store.findInHistory(Collections.singleton(guid), null, null, 1L, 1, null, new Date(now + 1)).stream()
+                    .map(DeviceNotification::getId).collect(Collectors.toList()));
+        } finally {
+            historyStorage.close();
+        }
+    }
+
+    private TimeBucketedStore<DeviceNotification> store(long ttl, long maxSize) {
+        return store(hazelcastInstance, ttl, maxSize);
+    }
+
+    private TimeBucketedStore<DeviceNotification> store(HazelcastInstance hazelcastInstance, long ttl, long maxSize) {
+        TimeBucketedStore<DeviceNotification> store =
+                new TimeBucketedStore<>(hazelcastInstance, "TEST-MAP", BUCKET, ttl, maxSize);
+        store.start();
+        stores.add(store);
+        return store;
+    }
+
+    private static Config config(String group) {
+        Config config = new Config();
+        config.getGroupConfig().setName(group);
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.getNetworkConfig().setPort(5811).setPortAutoIncrement(true);
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+
+    private static DeviceNotification notification(long id, String guid, long timestamp) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceGuid(guid);
+        notification.setNotification("test");
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
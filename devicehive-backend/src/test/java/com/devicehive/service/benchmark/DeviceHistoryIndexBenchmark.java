@@ -0,0 +1,118 @@
+package com.devicehive.service.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.service.helpers.DeviceHistoryIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per-device history index filled with 100k devices by 1k records, one record per second of every device.
+ * Range benchmark reads a random window of about a hundred records of a random device, page benchmark reads
+ * the first page after a random point, ingest appends a new record to a random device and drops its oldest one.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeviceHistoryIndexBenchmark {
+
+    private static final long PERIOD = 1000;
+    private static final int WINDOW = 100;
+
+    @Param({"100000"})
+    private int devices;
+
+    @Param({"1000"})
+    private int records;
+
+    private DeviceHistoryIndex<Integer> index;
+    private String[] deviceGuids;
+    private long[] oldest;
+    private long[] newest;
+    private Integer[] values;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        index = new DeviceHistoryIndex<>();
+        deviceGuids = new String[devices];
+        oldest = new long[devices];
+        newest = new long[devices];
+        values = new Integer[records];
+        for (int i = 0; i < records; i++) {
+            values[i] = i;
+        }
+        for (int device = 0; device < devices; device++) {
+            deviceGuids[device] = UUID.randomUUID().toString();
+            for (int i = 0; i < records; i++) {
+                index.add(deviceGuids[device], i * PERIOD, values[i]);
+            }
+            newest[device] = (records - 1) * PERIOD;
+        }
+    }
+
+    @Benchmark
+    public void range(Blackhole blackhole) {
+        int device = random.nextInt(devices);
+        long from = oldest[device] + random.nextInt(records - WINDOW) * PERIOD;
+        List<Integer> result = new ArrayList<>(WINDOW);
+        index.range(deviceGuids[device], from, from + (WINDOW - 1) * PERIOD, 0, result);
+        blackhole.consume(result);
+    }
+
+    @Benchmark
+    public void page(Blackhole blackhole) {
+        int device = random.nextInt(devices);
+        List<Integer> result = new ArrayList<>(WINDOW);
+        index.range(deviceGuids[device], oldest[device] + random.nextInt(records) * PERIOD, Long.MAX_VALUE, WINDOW, result);
+        blackhole.consume(result);
+    }
+
+    @Benchmark
+    public void ingest() {
+        int device = random.nextInt(devices);
+        newest[device] += PERIOD;
+        index.add(deviceGuids[device], newest[device], values[(int) (newest[device] / PERIOD % records)]);
+        index.remove(deviceGuids[device], oldest[device], values[(int) (oldest[device] / PERIOD % records)]);
+        oldest[device] += PERIOD;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DeviceHistoryIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
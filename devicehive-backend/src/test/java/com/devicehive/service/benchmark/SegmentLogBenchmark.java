@@ -0,0 +1,154 @@
+package com.devicehive.service.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.service.history.SegmentLogMessageHistoryStorage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures segment log history on local disk filled with 10k devices by 200 notifications, one per second of every
+ * device. Ingest appends notifications of random devices (the log is trimmed to 256MB after every iteration),
+ * range reads a random window of 50 notifications of a random device, page reads the first 50 notifications
+ * after a random point.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SegmentLogBenchmark {
+
+    private static final long PERIOD = 1000;
+    private static final int WINDOW = 50;
+    private static final long SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final long MAX_BYTES = 256 * 1024 * 1024;
+
+    @Param({"10000"})
+    private int devices;
+
+    @Param({"200"})
+    private int records;
+
+    private Path directory;
+    private SegmentLogMessageHistoryStorage storage;
+    private String[] deviceGuids;
+    private long[] newest;
+    private JsonStringWrapper parameters;
+    private Random random;
+    private long id;
+
+    @Setup
+    public void setUp() throws IOException {
+        random = new Random(42);
+        directory = Files.createTempDirectory("segment-log-benchmark");
+        storage = new SegmentLogMessageHistoryStorage(directory, SEGMENT_BYTES, 0, MAX_BYTES);
+        parameters = new JsonStringWrapper("{\"temperature\":36.6,\"humidity\":42}");
+        deviceGuids = new String[devices];
+        newest = new long[devices];
+        for (int device = 0; device < devices; device++) {
+            deviceGuids[device] = UUID.randomUUID().toString();
+        }
+        for (int i = 0; i < records; i++) {
+            for (int device = 0; device < devices; device++) {
+                storage.append(notification(device, i * PERIOD));
+            }
+        }
+        for (int device = 0; device < devices; device++) {
+            newest[device] = (records - 1) * PERIOD;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() {
+        storage.flush();
+        storage.applyRetention(System.currentTimeMillis());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void ingest() {
+        int device = random.nextInt(devices);
+        newest[device] += PERIOD;
+        storage.append(notification(device, newest[device]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void range(Blackhole blackhole) {
+        int device = random.nextInt(devices);
+        long from = random.nextInt(records - WINDOW) * PERIOD;
+        blackhole.consume(storage.read(DeviceNotification.class, Collections.singleton(deviceGuids[device]),
+                from, from + (WINDOW - 1) * PERIOD, 0, null));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void page(Blackhole blackhole) {
+        int device = random.nextInt(devices);
+        blackhole.consume(storage.read(DeviceNotification.class, Collections.singleton(deviceGuids[device]),
+                random.nextInt(records) * PERIOD, Long.MAX_VALUE, WINDOW, null));
+    }
+
+    private DeviceNotification notification(int device, long timestamp) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id++);
+        notification.setNotification("measurement");
+        notification.setDeviceGuid(deviceGuids[device]);
+        notification.setTimestamp(new Date(timestamp));
+        notification.setParameters(parameters);
+        return notification;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SegmentLogBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.devicehive.service.helpers;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeviceHistoryIndexTest {
+
+    @Test
+    public void shouldReturnRangeInTimestampOrder() throws Exception {
+        DeviceHistoryIndex<String> index = new DeviceHistoryIndex<>();
+        index.add("device", 30, "c");
+        index.add("device", 10, "a");
+        index.add("device", 40, "d");
+        index.add("device", 20, "b");
+        index.add("other", 20, "x");
+
+        List<String> result = new ArrayList<>();
+        assertEquals(3, index.range("device", 20, 40, 0, result));
+        assertEquals(Arrays.asList("b", "c", "d"), result);
+
+        result.clear();
+        index.range("device", 0, Long.MAX_VALUE, 2, result);
+        assertEquals(Arrays.asList("a", "b"), result);
+    }
+
+    @Test
+    public void shouldKeepRecordsWithSameTimestampAndIgnoreDuplicates() throws Exception {
+        DeviceHistoryIndex<String> index = new DeviceHistoryIndex<>();
+        index.add("device", 10, "a");
+        index.add("device", 10, "b");
+        index.add("device", 10, "a");
+
+        List<String> result = new ArrayList<>();
+        index.range("device", 10, 10, 0, result);
+        assertEquals(Arrays.asList("a", "b"), result);
+        assertEquals(2, index.getRecordCount());
+    }
+
+    @Test
+    public void shouldForgetDeviceWithoutRecords() throws Exception {
+        DeviceHistoryIndex<String> index = new DeviceHistoryIndex<>();
+        for (int i = 0; i < 20; i++) {
+            index.add("device", i, "value" + i);
+        }
+        index.remove("device", 5, "value5");
+        index.remove("device", 5, "missing");
+
+        List<String> result = new ArrayList<>();
+        index.range("device", 4, 6, 0, result);
+        assertEquals(Arrays.asList("value4", "value6"), result);
+
+        for (int i = 0; i < 20; i++) {
+            index.remove("device", i, "value" + i);
+        }
+        assertEquals(0, index.getDeviceCount());
+        index.add("device", 1, "again");
+        assertEquals(1, index.getRecordCount());
+    }
+}
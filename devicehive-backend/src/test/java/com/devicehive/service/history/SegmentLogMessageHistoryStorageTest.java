@@ -0,0 +1,204 @@
+package com.devicehive.service.history;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentLogMessageHistoryStorageTest {
+
+    private static final long SEGMENT_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private SegmentLogMessageHistoryStorage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+        storage = new SegmentLogMessageHistoryStorage(directory, SEGMENT_BYTES, 0, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storage.close();
+    }
+
+    @Test
+    public void shouldReadDeviceRangeAcrossSegments() throws Exception {
+        for (long i = 0; i < 500; i++) {
+            storage.append(notification(i, "device", i * 10));
+            storage.append(notification(1000 + i, "other", i * 10));
+        }
+        assertTrue(storage.getSegmentCount() > 4);
+
+        List<DeviceNotification> found = storage.read(DeviceNotification.class, Collections.singleton("device"),
+                1000, 2000, 0, null);
+        assertEquals(101, found.size());
+        assertEquals(100L, (long) found.get(0).getId());
+        assertEquals(200L, (long) found.get(100).getId());
+        assertTrue(found.stream().allMatch(notification -> "device".equals(notification.getDeviceGuid())));
+
+        found = storage.read(DeviceNotification.class, Arrays.asList("device", "other"), 1000, 2000, 5, null);
+        assertEquals(Arrays.asList(100L, 1100L, 101L, 1101L, 102L), ids(found));
+
+        found = storage.read(DeviceNotification.class, Collections.singleton("device"), Long.MIN_VALUE, Long.MAX_VALUE,
+                3, notification -> notification.getId() % 100 == 0);
+        assertEquals(Arrays.asList(0L, 100L, 200L), ids(found));
+    }
+
+    @Test
+    public void shouldReadMessagesAppendedOutOfTimestampOrder() throws Exception {
+        // live messages first, then offline readings replayed by the device with older client timestamps
+        for (long i = 100; i < 300; i++) {
+            storage.append(notification(i, "device", i * 10));
+        }
+        for (long i = 0; i < 100; i++) {
+            storage.append(notification(i, "device", i * 10));
+        }
+        assertTrue(storage.getSegmentCount() > 1);
+
+        assertEquals(ids(0, 51), ids(storage.read(DeviceNotification.class, Collections.singleton("device"), 0, 500, 0, null)));
+        assertEquals(ids(0, 5), ids(storage.read(DeviceNotification.class, Collections.singleton("device"),
+                Long.MIN_VALUE, Long.MAX_VALUE, 5, null)));
+        assertEquals(ids(95, 105), ids(storage.read(DeviceNotification.class, Collections.singleton("device"),
+                950, 2000, 10, null)));
+    }
+
+    @Test
+    public void shouldReadShuffledMessagesAfterReopen() throws Exception {
+        List<Long> order = new ArrayList<>();
+        for (long i = 0; i < 300; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        for (long i : order) {
+            storage.append(notification(i, "device", i * 10));
+        }
+        storage.close();
+        storage = new SegmentLogMessageHistoryStorage(directory, SEGMENT_BYTES, 0, 0);
+
+        assertEquals(ids(100, 201), ids(storage.read(DeviceNotification.class, Collections.singleton("device"), 1000, 2000, 0, null)));
+        assertEquals(ids(100, 120), ids(storage.read(DeviceNotification.class, Collections.singleton("device"), 1000, 2000, 20, null)));
+        assertEquals(ids(0, 3), ids(storage.read(DeviceNotification.class, Collections.singleton("device"),
+                Long.MIN_VALUE, Long.MAX_VALUE, 3, null)));
+    }
+
+    @Test
+    public void shouldReturnLatestVersionOfUpdatedCommand() throws Exception {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(1L);
+        command.setCommand("switch");
+        command.setDeviceGuid("device");
+        command.setTimestamp(new Date(100));
+        storage.append(command);
+        command.setStatus("done");
+        command.setIsUpdated(true);
+        storage.append(command);
+
+        List<DeviceCommand> found = storage.read(DeviceCommand.class, Collections.singleton("device"), 0, 200, 0, null);
+        assertEquals(1, found.size());
+        assertEquals("done", found.get(0).getStatus());
+        assertTrue(storage.read(DeviceNotification.class, Collections.singleton("device"), 0, 200, 0, null).isEmpty());
+    }
+
+    @Test
+    public void shouldRecoverAfterReopenAndDropTornTail() throws Exception {
+        for (long i = 0; i < 100; i++) {
+            storage.append(notification(i, "device", i));
+        }
+        storage.close();
+        File[] segments = directory.resolve("notifications").toFile().listFiles();
+        Arrays.sort(segments);
+        try (FileOutputStream out = new FileOutputStream(segments[segments.length - 1], true)) {
+            out.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        }
+
+        storage = new SegmentLogMessageHistoryStorage(directory, SEGMENT_BYTES, 0, 0);
+        storage.append(notification(100L, "device", 100));
+        List<DeviceNotification> found = storage.read(DeviceNotification.class, Collections.singleton("device"),
+                90, Long.MAX_VALUE, 0, null);
+        assertEquals(Arrays.asList(90L, 91L, 92L, 93L, 94L, 95L, 96L, 97L, 98L, 99L, 100L), ids(found));
+    }
+
+    @Test
+    public void shouldDeleteSegmentsOutOfRetention() throws Exception {
+        storage.close();
+        storage = new SegmentLogMessageHistoryStorage(directory, SEGMENT_BYTES, 1000, 0);
+        for (long i = 0; i < 500; i++) {
+            storage.append(notification(i, "device", i * 10));
+        }
+        int segments = storage.getSegmentCount();
+
+        storage.applyRetention(4000);
+        assertTrue(storage.getSegmentCount() < segments);
+        List<DeviceNotification> found = storage.read(DeviceNotification.class, Collections.singleton("device"),
+                Long.MIN_VALUE, Long.MAX_VALUE, 0, null);
+        assertTrue(found.get(0).getTimestamp().getTime() > 0);
+        assertTrue(found.get(0).getTimestamp().getTime() <= 3000);
+        assertEquals(4990L, found.get(found.size() - 1).getTimestamp().getTime());
+    }
+
+    private static DeviceNotification notification(long id, String device, long timestamp) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setNotification("temperature");
+        notification.setDeviceGuid(device);
+        notification.setTimestamp(new Date(timestamp));
+        return notification;
+    }
+
+    /**
+     * @return ids from {@code from} inclusive to {@code to} exclusive
+     */
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id < to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<DeviceNotification> notifications) {
+        return notifications.stream().map(DeviceNotification::getId).collect(Collectors.toList());
+    }
+}
@@ -147,6 +147,14 @@ public class HivePrincipal implements Principal {
         return allNetworksAvailable || networkIds.contains(networkId);
     }
 
+    /**
+     * @return true if principal has access to the network and to any device in it, including devices added later
+     */
+    public boolean hasAccessToWholeNetwork(long networkId) {
+        return Boolean.TRUE.equals(allDevicesAvailable)
+                && (Boolean.TRUE.equals(allNetworksAvailable) || networkIds != null && networkIds.contains(networkId));
+    }
+
     public boolean hasAccessToDevice(String deviceGuid) {
         return allDevicesAvailable || deviceGuids.contains(deviceGuid);
     }
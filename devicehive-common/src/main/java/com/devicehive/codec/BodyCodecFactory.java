@@ -0,0 +1,70 @@
+package com.devicehive.codec;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.eventbus.events.CommandEvent;
+import com.devicehive.model.eventbus.events.CommandUpdateEvent;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.*;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+
+/**
+ * Binary codecs for hot path rpc bodies. Bodies which are not registered here are transferred
+ * as JSON produced by {@link com.devicehive.json.GsonFactory} inside binary envelope.
+ */
+public class BodyCodecFactory {
+
+    private static final BodyCodecRegistry registry = createRegistry();
+
+    public static BodyCodecRegistry createBodyCodecRegistry() {
+        return registry;
+    }
+
+    private static BodyCodecRegistry createRegistry() {
+        return new BodyCodecRegistry()
+                .register(Action.NOTIFICATION_INSERT_REQUEST.name(), new NetworkIdBodyCodec<>(
+                        new NotificationBodyCodec<>(NotificationInsertRequest::getDeviceNotification, NotificationInsertRequest::new),
+                        NotificationInsertRequest::getNetworkId, NotificationInsertRequest::setNetworkId))
+                .register(Action.NOTIFICATION_INSERT_RESPONSE.name(),
+                        new NotificationBodyCodec<>(NotificationInsertResponse::getDeviceNotification, NotificationInsertResponse::new))
+                .register(Action.NOTIFICATION_BATCH_INSERT_REQUEST.name(), new NetworkIdBodyCodec<>(
+                        new NotificationListBodyCodec<>(NotificationBatchInsertRequest::getDeviceNotifications, NotificationBatchInsertRequest::new),
+                        NotificationBatchInsertRequest::getNetworkId, NotificationBatchInsertRequest::setNetworkId))
+                .register(Action.NOTIFICATION_BATCH_INSERT_RESPONSE.name(),
+                        new NotificationListBodyCodec<>(NotificationBatchInsertResponse::getDeviceNotifications, NotificationBatchInsertResponse::new))
+                .register(Action.NOTIFICATION_EVENT.name(), new NetworkIdBodyCodec<>(
+                        new NotificationBodyCodec<>(NotificationEvent::getNotification, NotificationEvent::new),
+                        NotificationEvent::getNetworkId, NotificationEvent::setNetworkId))
+
+                .register(Action.COMMAND_INSERT_REQUEST.name(), new NetworkIdBodyCodec<>(
+                        new CommandBodyCodec<>(CommandInsertRequest::getDeviceCommand, CommandInsertRequest::new),
+                        CommandInsertRequest::getNetworkId, CommandInsertRequest::setNetworkId))
+                .register(Action.COMMAND_INSERT_RESPONSE.name(),
+                        new CommandBodyCodec<>(CommandInsertResponse::getDeviceCommand, CommandInsertResponse::new))
+                .register(Action.COMMAND_UPDATE_REQUEST.name(),
+                        new CommandBodyCodec<>(CommandUpdateRequest::getDeviceCommand, CommandUpdateRequest::new))
+                .register(Action.COMMAND_EVENT.name(), new NetworkIdBodyCodec<>(
+                        new CommandBodyCodec<>(CommandEvent::getCommand, CommandEvent::new),
+                        CommandEvent::getNetworkId, CommandEvent::setNetworkId))
+                .register(Action.COMMAND_UPDATE_EVENT.name(),
+                        new CommandBodyCodec<>(CommandUpdateEvent::getDeviceCommand, CommandUpdateEvent::new));
+    }
+}
@@ -0,0 +1,54 @@
+package com.devicehive.codec;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.codec.BodyCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Codec for bodies that carry single {@link DeviceCommand} (insert/update requests, command events).
+ */
+public class CommandBodyCodec<T extends Body> implements BodyCodec<T> {
+
+    private final Function<T, DeviceCommand> getter;
+    private final Function<DeviceCommand, T> constructor;
+
+    public CommandBodyCodec(Function<T, DeviceCommand> getter, Function<DeviceCommand, T> constructor) {
+        this.getter = getter;
+        this.constructor = constructor;
+    }
+
+    @Override
+    public void encode(T body, DataOutput out) throws IOException {
+        MessageFieldsCodec.writeCommand(out, getter.apply(body));
+    }
+
+    @Override
+    public T decode(DataInput in) throws IOException {
+        return constructor.apply(MessageFieldsCodec.readCommand(in));
+    }
+}
@@ -0,0 +1,119 @@
+package com.devicehive.codec;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.devicehive.shim.api.codec.CodecUtils.*;
+
+/**
+ * Binary layout of {@link DeviceNotification} and {@link DeviceCommand}.
+ * Field order is part of the wire format, append new fields only at the end and bump wire version.
+ * The same layout is used by durable message history on disk.
+ */
+public final class MessageFieldsCodec {
+
+    private MessageFieldsCodec() {
+    }
+
+    public static void writeNotification(DataOutput out, DeviceNotification notification) throws IOException {
+        out.writeBoolean(notification != null);
+        if (notification == null) {
+            return;
+        }
+        writeLong(out, notification.getId());
+        writeString(out, notification.getNotification());
+        writeString(out, notification.getDeviceGuid());
+        writeDate(out, notification.getTimestamp());
+        writeJson(out, notification.getParameters());
+    }
+
+    public static DeviceNotification readNotification(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        DeviceNotification notification = new DeviceNotification();
+        Long id = readLong(in);
+        if (id != null) {
+            notification.setId(id);
+        }
+        notification.setNotification(readString(in));
+        notification.setDeviceGuid(readString(in));
+        notification.setTimestamp(readDate(in));
+        notification.setParameters(readJson(in));
+        return notification;
+    }
+
+    public static void writeCommand(DataOutput out, DeviceCommand command) throws IOException {
+        out.writeBoolean(command != null);
+        if (command == null) {
+            return;
+        }
+        writeLong(out, command.getId());
+        writeString(out, command.getCommand());
+        writeDate(out, command.getTimestamp());
+        writeLong(out, command.getUserId());
+        writeString(out, command.getDeviceGuid());
+        writeJson(out, command.getParameters());
+        writeInteger(out, command.getLifetime());
+        writeString(out, command.getStatus());
+        writeJson(out, command.getResult());
+        writeBoolean(out, command.getIsUpdated());
+    }
+
+    public static DeviceCommand readCommand(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        DeviceCommand command = new DeviceCommand();
+        Long id = readLong(in);
+        if (id != null) {
+            command.setId(id);
+        }
+        command.setCommand(readString(in));
+        command.setTimestamp(readDate(in));
+        command.setUserId(readLong(in));
+        command.setDeviceGuid(readString(in));
+        command.setParameters(readJson(in));
+        command.setLifetime(readInteger(in));
+        command.setStatus(readString(in));
+        command.setResult(readJson(in));
+        command.setIsUpdated(readBoolean(in));
+        return command;
+    }
+
+    private static void writeJson(DataOutput out, JsonStringWrapper wrapper) throws IOException {
+        out.writeBoolean(wrapper != null);
+        if (wrapper != null) {
+            writeString(out, wrapper.getJsonString());
+        }
+    }
+
+    private static JsonStringWrapper readJson(DataInput in) throws IOException {
+        return in.readBoolean() ? new JsonStringWrapper(readString(in)) : null;
+    }
+}
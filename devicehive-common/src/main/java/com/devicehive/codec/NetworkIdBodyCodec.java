@@ -0,0 +1,80 @@
+package com.devicehive.codec;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.codec.BodyCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static com.devicehive.shim.api.codec.CodecUtils.readLong;
+import static com.devicehive.shim.api.codec.CodecUtils.writeLong;
+
+/**
+ * Appends network id of the device to bodies written by another codec (insert requests and events),
+ * so that backend can match network level subscriptions. Network id is part of the body since envelope version
+ * {@link #SINCE_VERSION}, messages of older versions are read and written without it.
+ */
+public class NetworkIdBodyCodec<T extends Body> implements BodyCodec<T> {
+
+    public static final int SINCE_VERSION = 2;
+
+    private final BodyCodec<T> delegate;
+    private final Function<T, Long> getter;
+    private final BiConsumer<T, Long> setter;
+
+    public NetworkIdBodyCodec(BodyCodec<T> delegate, Function<T, Long> getter, BiConsumer<T, Long> setter) {
+        this.delegate = delegate;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    @Override
+    public void encode(T body, DataOutput out) throws IOException {
+        encode(body, out, SINCE_VERSION);
+    }
+
+    @Override
+    public T decode(DataInput in) throws IOException {
+        return decode(in, SINCE_VERSION);
+    }
+
+    @Override
+    public void encode(T body, DataOutput out, int version) throws IOException {
+        delegate.encode(body, out, version);
+        if (version >= SINCE_VERSION) {
+            writeLong(out, getter.apply(body));
+        }
+    }
+
+    @Override
+    public T decode(DataInput in, int version) throws IOException {
+        T body = delegate.decode(in, version);
+        if (version >= SINCE_VERSION) {
+            setter.accept(body, readLong(in));
+        }
+        return body;
+    }
+}
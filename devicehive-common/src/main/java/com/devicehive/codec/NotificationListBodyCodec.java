@@ -0,0 +1,69 @@
+package com.devicehive.codec;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.codec.BodyCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Codec for bodies that carry a list of {@link DeviceNotification} (batch insert request/response).
+ */
+public class NotificationListBodyCodec<T extends Body> implements BodyCodec<T> {
+
+    private final Function<T, List<DeviceNotification>> getter;
+    private final Function<List<DeviceNotification>, T> constructor;
+
+    public NotificationListBodyCodec(Function<T, List<DeviceNotification>> getter, Function<List<DeviceNotification>, T> constructor) {
+        this.getter = getter;
+        this.constructor = constructor;
+    }
+
+    @Override
+    public void encode(T body, DataOutput out) throws IOException {
+        List<DeviceNotification> notifications = getter.apply(body);
+        if (notifications == null) {
+            notifications = Collections.emptyList();
+        }
+        out.writeInt(notifications.size());
+        for (DeviceNotification notification : notifications) {
+            MessageFieldsCodec.writeNotification(out, notification);
+        }
+    }
+
+    @Override
+    public T decode(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<DeviceNotification> notifications = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            notifications.add(MessageFieldsCodec.readNotification(in));
+        }
+        return constructor.apply(notifications);
+    }
+}
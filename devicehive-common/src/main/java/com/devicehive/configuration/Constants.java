@@ -52,6 +52,7 @@ public class Constants {
     public static final String TOKEN_SCHEME = "Bearer";
     public static final String AUTH_DEVICE_ID_HEADER = "Auth-DeviceID";
     public static final String AUTH_DEVICE_KEY_HEADER = "Auth-DeviceKey";
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
     public static final ByteBuffer PING = ByteBuffer.wrap("devicehive-ping".getBytes(Charset.forName(UTF8)));
     public static final String DEVICE_OFFLINE_STATUS = "Offline";
     //API constants
@@ -63,6 +64,8 @@ public class Constants {
     public static final String TIMESTAMP = "timestamp";
     public static final String COMMAND_ID = "commandId";
     public static final String NOTIFICATION = "notification";
+    public static final String NOTIFICATIONS = "notifications";
+    public static final String ACK = "ack";
     public static final String COMMAND = "command";
     public static final String SUBSCRIPTION_ID = "subscriptionId";
     public static final String ID = "id";
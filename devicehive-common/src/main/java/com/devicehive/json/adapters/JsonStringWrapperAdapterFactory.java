@@ -23,12 +23,16 @@ package com.devicehive.json.adapters;
 
 import com.devicehive.model.JsonStringWrapper;
 import com.google.gson.*;
-import com.google.gson.internal.Streams;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 
 public class JsonStringWrapperAdapterFactory implements TypeAdapterFactory {
 
@@ -52,17 +56,83 @@ public class JsonStringWrapperAdapterFactory implements TypeAdapterFactory {
         public void write(JsonWriter out, JsonStringWrapper value) throws IOException {
             if (value == null && out.getSerializeNulls()) {
                 out.nullValue();
+            } else if (value != null && value.getJsonString().trim().isEmpty()) {
+                out.nullValue();
             } else if (value != null) {
-                Streams.write(new JsonParser().parse(value.getJsonString()), out);
+                JsonReader in = new JsonReader(new StringReader(value.getJsonString()));
+                in.setLenient(true);
+                try {
+                    copy(in, out);
+                    if (in.peek() != JsonToken.END_DOCUMENT) {
+                        throw new JsonSyntaxException("Did not consume the entire document.");
+                    }
+                } catch (MalformedJsonException e) {
+                    throw new JsonSyntaxException(e);
+                }
             }
         }
 
         @Override
         public JsonStringWrapper read(JsonReader in) throws IOException {
-            JsonElement jsonElement = Streams.parse(in);
-            return !JsonNull.INSTANCE.equals(jsonElement)
-                    ? new JsonStringWrapper(jsonElement.toString())
-                    : null;
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            StringWriter json = new StringWriter();
+            JsonWriter out = new JsonWriter(json);
+            out.setLenient(true);
+            copy(in, out);
+            out.flush();
+            return new JsonStringWrapper(json.toString());
         }
     }
+
+    /**
+     * Copies one JSON value token by token, so raw JSON is validated and normalized without building a tree.
+     */
+    private static void copy(JsonReader in, JsonWriter out) throws IOException {
+        int depth = 0;
+        do {
+            switch (in.peek()) {
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    out.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    out.endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    out.name(in.nextName());
+                    break;
+                case STRING:
+                    out.value(in.nextString());
+                    break;
+                case NUMBER:
+                    out.value(new LazilyParsedNumber(in.nextString()));
+                    break;
+                case BOOLEAN:
+                    out.value(in.nextBoolean());
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw new JsonSyntaxException("Unexpected end of JSON value");
+            }
+        } while (depth > 0);
+    }
 }
@@ -26,5 +26,9 @@ public interface HazelcastEntity {
 
     String getHazelcastKey();
 
+    Long getId();
+
+    String getDeviceGuid();
+
     Date getTimestamp();
 }
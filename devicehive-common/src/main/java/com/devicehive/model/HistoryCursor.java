@@ -0,0 +1,138 @@
+package com.devicehive.model;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.exceptions.IllegalParametersException;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Position in device message history: messages are ordered by timestamp and then by id, a page continues
+ * strictly after the position of the last message of the previous page. Clients see the cursor only as
+ * an opaque url-safe string.
+ */
+public class HistoryCursor implements Serializable {
+    private static final long serialVersionUID = -3870432447316498817L;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Position before the first message.
+     */
+    public static final HistoryCursor START = new HistoryCursor(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final long timestamp;
+    private final long id;
+
+    public HistoryCursor(long timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    /**
+     * @return position of the given message, the next page starts right after it
+     */
+    public static HistoryCursor of(HazelcastEntity message) {
+        return new HistoryCursor(timestampOf(message), idOf(message));
+    }
+
+    /**
+     * @param timestampSt exclusive lower bound of message timestamps, may be {@code null}
+     * @return the later of the cursor and the position right after all messages stamped at {@code timestampSt}
+     */
+    public static HistoryCursor notBefore(HistoryCursor cursor, Date timestampSt) {
+        return timestampSt != null && cursor.timestamp <= timestampSt.getTime()
+                ? new HistoryCursor(timestampSt.getTime(), Long.MAX_VALUE)
+                : cursor;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return whether the given message comes after this position
+     */
+    public boolean precedes(HazelcastEntity message) {
+        final long messageTimestamp = timestampOf(message);
+        return messageTimestamp > timestamp || messageTimestamp == timestamp && idOf(message) > id;
+    }
+
+    public String encode() {
+        return ENCODER.encodeToString(ByteBuffer.allocate(2 * Long.BYTES).putLong(timestamp).putLong(id).array());
+    }
+
+    /**
+     * @return decoded cursor, {@link #START} for empty value
+     * @throws IllegalParametersException if value is not a cursor issued by {@link #encode()}
+     */
+    public static HistoryCursor decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return START;
+        }
+        final byte[] bytes;
+        try {
+            bytes = DECODER.decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalParametersException("Invalid cursor " + value);
+        }
+        if (bytes.length != 2 * Long.BYTES) {
+            throw new IllegalParametersException("Invalid cursor " + value);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new HistoryCursor(buffer.getLong(), buffer.getLong());
+    }
+
+    private static long timestampOf(HazelcastEntity message) {
+        return message.getTimestamp() != null ? message.getTimestamp().getTime() : Long.MIN_VALUE;
+    }
+
+    private static long idOf(HazelcastEntity message) {
+        return message.getId() != null ? message.getId() : Long.MIN_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HistoryCursor)) return false;
+        HistoryCursor that = (HistoryCursor) o;
+        return timestamp == that.timestamp && id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, id);
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryCursor{timestamp=" + timestamp + ", id=" + id + '}';
+    }
+}
@@ -27,17 +27,18 @@ import java.util.Objects;
  */
 public class Subscription {
 
-    private String type;
-    private String guid;
-    private String name;
+    private final String type;
+    private final String guid;
+    private final Long networkId;
+    private final String name;
+    private transient int hash;
 
     /**
      * @param type - type of event to subscribe to (notification, command, command update)
      * @param guid - guid of event to subscribe to (id of device, command)
      */
     public Subscription(String type, String guid) {
-        this.type = type;
-        this.guid = guid;
+        this(type, guid, null);
     }
 
     /**
@@ -46,11 +47,26 @@ public class Subscription {
      * @param name - specific event name to subscribe to (notification name, command name)
      */
     public Subscription(String type, String guid, String name) {
+        this(type, guid, null, name);
+    }
+
+    private Subscription(String type, String guid, Long networkId, String name) {
         this.type = type;
         this.guid = guid;
+        this.networkId = networkId;
         this.name = name;
     }
 
+    /**
+     * Subscription to events of all devices of the network
+     * @param type - type of event to subscribe to (notification, command)
+     * @param networkId - id of network
+     * @param name - specific event name to subscribe to (notification name, command name), nullable
+     */
+    public static Subscription forNetwork(String type, Long networkId, String name) {
+        return new Subscription(type, null, networkId, name);
+    }
+
     public String getType() {
         return type;
     }
@@ -59,6 +75,10 @@ public class Subscription {
         return guid;
     }
 
+    public Long getNetworkId() {
+        return networkId;
+    }
+
     public String getName() {
         return name;
     }
@@ -70,12 +90,18 @@ public class Subscription {
         Subscription that = (Subscription) o;
         return Objects.equals(type, that.type) &&
                 Objects.equals(guid, that.guid) &&
+                Objects.equals(networkId, that.networkId) &&
                 Objects.equals(name, that.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, guid, name);
+        int h = hash;
+        if (h == 0) {
+            // subscriptions are used as registry keys on every published event, so hash is computed once
+            h = hash = Objects.hash(type, guid, networkId, name);
+        }
+        return h;
     }
 
     @Override
@@ -83,6 +109,7 @@ public class Subscription {
         return "Subscription{" +
                 "type='" + type + '\'' +
                 ", guid='" + guid + '\'' +
+                ", networkId=" + networkId +
                 ", name='" + name + '\'' +
                 '}';
     }
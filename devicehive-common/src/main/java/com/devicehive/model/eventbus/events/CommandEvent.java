@@ -32,20 +32,43 @@ public class CommandEvent extends Event {
 
     private DeviceCommand command;
 
+    private Long networkId;
+
     public CommandEvent(DeviceCommand command) {
         super(Action.COMMAND_EVENT.name());
         this.command = command;
     }
 
+    /**
+     * @param networkId - network of the device, used to match network level subscriptions
+     */
+    public CommandEvent(DeviceCommand command, Long networkId) {
+        this(command);
+        this.networkId = networkId;
+    }
+
     public DeviceCommand getCommand() {
         return command;
     }
 
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
+
     @Override
     public Collection<Subscription> getApplicableSubscriptions() {
         Subscription device = new Subscription(Action.COMMAND_EVENT.name(), command.getDeviceGuid());
         Subscription deviceWithName = new Subscription(Action.COMMAND_EVENT.name(), command.getDeviceGuid(), command.getCommand());
-        return Arrays.asList(device, deviceWithName);
+        if (networkId == null) {
+            return Arrays.asList(device, deviceWithName);
+        }
+        Subscription network = Subscription.forNetwork(Action.COMMAND_EVENT.name(), networkId, null);
+        Subscription networkWithName = Subscription.forNetwork(Action.COMMAND_EVENT.name(), networkId, command.getCommand());
+        return Arrays.asList(device, deviceWithName, network, networkWithName);
     }
 
     @Override
@@ -54,18 +77,20 @@ public class CommandEvent extends Event {
         if (!(o instanceof CommandEvent)) return false;
         if (!super.equals(o)) return false;
         CommandEvent that = (CommandEvent) o;
-        return Objects.equals(command, that.command);
+        return Objects.equals(command, that.command) &&
+                Objects.equals(networkId, that.networkId);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), command);
+        return Objects.hash(super.hashCode(), command, networkId);
     }
 
     @Override
     public String toString() {
         return "CommandEvent{" +
                 "command=" + command +
+                ", networkId=" + networkId +
                 '}';
     }
 }
@@ -32,15 +32,33 @@ public class NotificationEvent extends Event {
 
     private DeviceNotification notification;
 
+    private Long networkId;
+
     public NotificationEvent(DeviceNotification notification) {
         super(Action.NOTIFICATION_EVENT.name());
         this.notification = notification;
     }
 
+    /**
+     * @param networkId - network of the device, used to match network level subscriptions
+     */
+    public NotificationEvent(DeviceNotification notification, Long networkId) {
+        this(notification);
+        this.networkId = networkId;
+    }
+
     public DeviceNotification getNotification() {
         return notification;
     }
 
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
+
     public void setNotification(DeviceNotification notification) {
         this.notification = notification;
     }
@@ -51,7 +69,14 @@ public class NotificationEvent extends Event {
                 new Subscription(Action.NOTIFICATION_EVENT.name(), notification.getDeviceGuid());
         Subscription deviceWithName =
                 new Subscription(Action.NOTIFICATION_EVENT.name(), notification.getDeviceGuid(), notification.getNotification());
-        return Arrays.asList(deviceOnly, deviceWithName);
+        if (networkId == null) {
+            return Arrays.asList(deviceOnly, deviceWithName);
+        }
+        Subscription networkOnly =
+                Subscription.forNetwork(Action.NOTIFICATION_EVENT.name(), networkId, null);
+        Subscription networkWithName =
+                Subscription.forNetwork(Action.NOTIFICATION_EVENT.name(), networkId, notification.getNotification());
+        return Arrays.asList(deviceOnly, deviceWithName, networkOnly, networkWithName);
     }
 
     @Override
@@ -60,18 +85,20 @@ public class NotificationEvent extends Event {
         if (!(o instanceof NotificationEvent)) return false;
         if (!super.equals(o)) return false;
         NotificationEvent that = (NotificationEvent) o;
-        return Objects.equals(notification, that.notification);
+        return Objects.equals(notification, that.notification) &&
+                Objects.equals(networkId, that.networkId);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), notification);
+        return Objects.hash(super.hashCode(), notification, networkId);
     }
 
     @Override
     public String toString() {
         return "NotificationEvent{" +
                 "notification=" + notification +
+                ", networkId=" + networkId +
                 '}';
     }
 }
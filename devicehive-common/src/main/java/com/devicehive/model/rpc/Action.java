@@ -27,6 +27,8 @@ public enum Action {
     NOTIFICATION_SEARCH_RESPONSE,
     NOTIFICATION_INSERT_REQUEST,
     NOTIFICATION_INSERT_RESPONSE,
+    NOTIFICATION_BATCH_INSERT_REQUEST,
+    NOTIFICATION_BATCH_INSERT_RESPONSE,
     NOTIFICATION_SUBSCRIBE_REQUEST,
     NOTIFICATION_SUBSCRIBE_RESPONSE,
     NOTIFICATION_UNSUBSCRIBE_REQUEST,
@@ -27,12 +27,30 @@ public class CommandInsertRequest extends Body {
 
     private DeviceCommand deviceCommand;
 
+    private Long networkId;
+
     public CommandInsertRequest(DeviceCommand deviceCommand) {
         super(Action.COMMAND_INSERT_REQUEST.name());
         this.deviceCommand = deviceCommand;
     }
 
+    /**
+     * @param networkId - network of the device, used to deliver the event to network level subscribers
+     */
+    public CommandInsertRequest(DeviceCommand deviceCommand, Long networkId) {
+        this(deviceCommand);
+        this.networkId = networkId;
+    }
+
     public DeviceCommand getDeviceCommand() {
         return deviceCommand;
     }
+
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
 }
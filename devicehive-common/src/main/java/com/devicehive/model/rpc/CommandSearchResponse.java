@@ -21,6 +21,7 @@ package com.devicehive.model.rpc;
  */
 
 import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.shim.api.Body;
 
 import java.util.Collections;
@@ -30,6 +31,8 @@ public class CommandSearchResponse extends Body {
 
     private List<DeviceCommand> commands;
 
+    private HistoryCursor nextCursor;
+
     public CommandSearchResponse() {
         super(Action.COMMAND_SEARCH_RESPONSE.name());
         this.commands = Collections.emptyList();
@@ -42,4 +45,15 @@ public class CommandSearchResponse extends Body {
     public void setCommands(List<DeviceCommand> commands) {
         this.commands = commands;
     }
+
+    /**
+     * @return position to continue keyset search from, {@code null} if there is nothing more to read
+     */
+    public HistoryCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(HistoryCursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
@@ -30,6 +30,8 @@ public class CommandSubscribeRequest extends Body {
 
     private String subscriptionId;
     private String device;
+    private Set<String> devices;
+    private Set<Long> networks;
     private Set<String> names;
     private Date timestamp;
 
@@ -41,6 +43,19 @@ public class CommandSubscribeRequest extends Body {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Subscribes to events of whole set of devices and networks in a single request.
+     * Network subscription also covers devices which are added to the network later.
+     */
+    public CommandSubscribeRequest(String subscriptionId, Set<String> devices, Set<Long> networks, Set<String> names, Date timestamp) {
+        super(Action.COMMAND_SUBSCRIBE_REQUEST.name());
+        this.subscriptionId = subscriptionId;
+        this.devices = devices;
+        this.networks = networks;
+        this.names = names;
+        this.timestamp = timestamp;
+    }
+
     public String getSubscriptionId() {
         return subscriptionId;
     }
@@ -57,6 +72,22 @@ public class CommandSubscribeRequest extends Body {
         this.device = device;
     }
 
+    public Set<String> getDevices() {
+        return devices;
+    }
+
+    public void setDevices(Set<String> devices) {
+        this.devices = devices;
+    }
+
+    public Set<Long> getNetworks() {
+        return networks;
+    }
+
+    public void setNetworks(Set<Long> networks) {
+        this.networks = networks;
+    }
+
     public Set<String> getNames() {
         return names;
     }
@@ -81,6 +112,8 @@ public class CommandSubscribeRequest extends Body {
         CommandSubscribeRequest that = (CommandSubscribeRequest) o;
         return Objects.equals(subscriptionId, that.subscriptionId) &&
                 Objects.equals(device, that.device) &&
+                Objects.equals(devices, that.devices) &&
+                Objects.equals(networks, that.networks) &&
                 Objects.equals(names, that.names) &&
                 Objects.equals(timestamp, that.timestamp);
 
@@ -88,7 +121,7 @@ public class CommandSubscribeRequest extends Body {
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), subscriptionId, device, names, timestamp);
+        return Objects.hash(super.hashCode(), subscriptionId, device, devices, networks, names, timestamp);
     }
 
     @Override
@@ -96,6 +129,8 @@ public class CommandSubscribeRequest extends Body {
         return "CommandSubscribeRequest{" +
                 "subscriptionId='" + subscriptionId + '\'' +
                 ", device='" + device + '\'' +
+                ", devices=" + devices +
+                ", networks=" + networks +
                 ", names=" + names +
                 ", timestamp=" + timestamp +
                 '}';
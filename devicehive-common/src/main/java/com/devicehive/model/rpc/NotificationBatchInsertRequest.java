@@ -0,0 +1,65 @@
+package com.devicehive.model.rpc;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.shim.api.Body;
+
+import java.util.List;
+
+/**
+ * Notifications of a single device inserted at once, e.g. readings buffered by a device while it was offline.
+ */
+public class NotificationBatchInsertRequest extends Body {
+
+    private List<DeviceNotification> deviceNotifications;
+
+    private Long networkId;
+
+    public NotificationBatchInsertRequest(List<DeviceNotification> deviceNotifications) {
+        super(Action.NOTIFICATION_BATCH_INSERT_REQUEST.name());
+        this.deviceNotifications = deviceNotifications;
+    }
+
+    /**
+     * @param networkId - network of the device, used to deliver the events to network level subscribers
+     */
+    public NotificationBatchInsertRequest(List<DeviceNotification> deviceNotifications, Long networkId) {
+        this(deviceNotifications);
+        this.networkId = networkId;
+    }
+
+    public List<DeviceNotification> getDeviceNotifications() {
+        return deviceNotifications;
+    }
+
+    public void setDeviceNotifications(List<DeviceNotification> deviceNotifications) {
+        this.deviceNotifications = deviceNotifications;
+    }
+
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
+}
@@ -27,11 +27,21 @@ public class NotificationInsertRequest extends Body {
 
     private DeviceNotification deviceNotification;
 
+    private Long networkId;
+
     public NotificationInsertRequest(DeviceNotification deviceNotification) {
         super(Action.NOTIFICATION_INSERT_REQUEST.name());
         this.deviceNotification = deviceNotification;
     }
 
+    /**
+     * @param networkId - network of the device, used to deliver the event to network level subscribers
+     */
+    public NotificationInsertRequest(DeviceNotification deviceNotification, Long networkId) {
+        this(deviceNotification);
+        this.networkId = networkId;
+    }
+
     public DeviceNotification getDeviceNotification() {
         return deviceNotification;
     }
@@ -39,4 +49,12 @@ public class NotificationInsertRequest extends Body {
     public void setDeviceNotification(DeviceNotification deviceNotification) {
         this.deviceNotification = deviceNotification;
     }
+
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
 }
@@ -20,6 +20,7 @@ package com.devicehive.model.rpc;
  * #L%
  */
 
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.shim.api.Body;
 
 import java.util.Date;
@@ -34,6 +35,11 @@ public class NotificationSearchRequest extends Body {
     private Date timestampStart;
     private Date timestampEnd;
     private String status;
+    private String sortField;
+    private Boolean sortOrderAsc;
+    private Integer take;
+    private Integer skip;
+    private HistoryCursor cursor;
 
     public NotificationSearchRequest() {
         super(Action.NOTIFICATION_SEARCH_REQUEST.name());
@@ -87,4 +93,55 @@ public class NotificationSearchRequest extends Body {
         this.status = status;
     }
 
+    public String getSortField() {
+        return sortField;
+    }
+
+    public void setSortField(String sortField) {
+        this.sortField = sortField;
+    }
+
+    public Boolean getSortOrderAsc() {
+        return sortOrderAsc;
+    }
+
+    public void setSortOrderAsc(Boolean sortOrderAsc) {
+        this.sortOrderAsc = sortOrderAsc;
+    }
+
+    public Integer getTake() {
+        return take;
+    }
+
+    public void setTake(Integer take) {
+        this.take = take;
+    }
+
+    public Integer getSkip() {
+        return skip;
+    }
+
+    public void setSkip(Integer skip) {
+        this.skip = skip;
+    }
+
+    public HistoryCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Requests a keyset page: up to {@code take} notifications after the cursor, ordered by timestamp and id.
+     * Sort field, order and skip are ignored in this mode.
+     */
+    public void setCursor(HistoryCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return whether only a sorted page of matching entities is requested
+     */
+    public boolean isPaged() {
+        return take != null;
+    }
+
 }
@@ -21,6 +21,7 @@ package com.devicehive.model.rpc;
  */
 
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.shim.api.Body;
 
 import java.util.List;
@@ -29,12 +30,26 @@ public class NotificationSearchResponse extends Body {
 
     private List<DeviceNotification> notifications;
 
+    private HistoryCursor nextCursor;
+
     public NotificationSearchResponse(List<DeviceNotification> notifications) {
+        this(notifications, null);
+    }
+
+    public NotificationSearchResponse(List<DeviceNotification> notifications, HistoryCursor nextCursor) {
         super(Action.NOTIFICATION_SEARCH_RESPONSE.name());
         this.notifications = notifications;
+        this.nextCursor = nextCursor;
     }
 
     public List<DeviceNotification> getNotifications() {
         return notifications;
     }
+
+    /**
+     * @return position to continue keyset search from, {@code null} if there is nothing more to read
+     */
+    public HistoryCursor getNextCursor() {
+        return nextCursor;
+    }
 }
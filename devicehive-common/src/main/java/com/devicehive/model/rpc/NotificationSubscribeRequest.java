@@ -34,6 +34,8 @@ public class NotificationSubscribeRequest extends Body {
 
     private String subscriptionId;
     private String device;
+    private Set<String> devices;
+    private Set<Long> networks;
     private Set<String> names;
     private Date timestamp;
 
@@ -45,6 +47,19 @@ public class NotificationSubscribeRequest extends Body {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Subscribes to events of whole set of devices and networks in a single request.
+     * Network subscription also covers devices which are added to the network later.
+     */
+    public NotificationSubscribeRequest(String subscriptionId, Set<String> devices, Set<Long> networks, Set<String> names, Date timestamp) {
+        super(Action.NOTIFICATION_SUBSCRIBE_REQUEST.name());
+        this.subscriptionId = subscriptionId;
+        this.devices = devices;
+        this.networks = networks;
+        this.names = names;
+        this.timestamp = timestamp;
+    }
+
     public String getSubscriptionId() {
         return subscriptionId;
     }
@@ -61,6 +76,22 @@ public class NotificationSubscribeRequest extends Body {
         this.device = device;
     }
 
+    public Set<String> getDevices() {
+        return devices;
+    }
+
+    public void setDevices(Set<String> devices) {
+        this.devices = devices;
+    }
+
+    public Set<Long> getNetworks() {
+        return networks;
+    }
+
+    public void setNetworks(Set<Long> networks) {
+        this.networks = networks;
+    }
+
     public Set<String> getNames() {
         return names;
     }
@@ -85,13 +116,15 @@ public class NotificationSubscribeRequest extends Body {
         NotificationSubscribeRequest that = (NotificationSubscribeRequest) o;
         return Objects.equals(subscriptionId, that.subscriptionId) &&
                 Objects.equals(device, that.device) &&
+                Objects.equals(devices, that.devices) &&
+                Objects.equals(networks, that.networks) &&
                 Objects.equals(names, that.names) &&
                 Objects.equals(timestamp, that.timestamp);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), subscriptionId, device, names, timestamp);
+        return Objects.hash(super.hashCode(), subscriptionId, device, devices, networks, names, timestamp);
     }
 
     @Override
@@ -99,6 +132,8 @@ public class NotificationSubscribeRequest extends Body {
         return "NotificationSubscribeRequest{" +
                 "subscriptionId='" + subscriptionId + '\'' +
                 ", device='" + device + '\'' +
+                ", devices=" + devices +
+                ", networks=" + networks +
                 ", names=" + names +
                 ", timestamp=" + timestamp +
                 '}';
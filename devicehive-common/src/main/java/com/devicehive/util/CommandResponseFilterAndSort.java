@@ -1,4 +1,4 @@
-package com.devicehive.resource.util;
+package com.devicehive.util;
 
 /*
  * #%L
@@ -31,24 +31,54 @@ public final class CommandResponseFilterAndSort {
 
     }
 
+    /**
+     * Sorts by comparator (or keeps given order if there is none), reverses the order if {@code reverse} is
+     * {@code false} and returns the page. Only {@code skip + take} best entries are selected, with a bounded heap
+     * instead of sorting everything.
+     */
     public static <T> List<T> orderAndLimit(List<T> deviceCommands,
                                             Comparator<T> cmp, Boolean reverse,
                                             Integer skip, Integer take) {
-        if (cmp != null) {
-            Collections.sort(deviceCommands, cmp);
+        if (skip < 0 || take <= 0 || skip >= deviceCommands.size()) {
+            return Collections.emptyList();
         }
-        if (Boolean.FALSE.equals(reverse)) {
-            Collections.reverse(deviceCommands);
+        int end = (int) Math.min(deviceCommands.size(), (long) skip + take);
+        boolean reversed = Boolean.FALSE.equals(reverse);
+
+        List<T> ordered;
+        if (cmp != null) {
+            ordered = top(deviceCommands, reversed ? cmp.reversed() : cmp, end);
+        } else if (reversed) {
+            ordered = new ArrayList<>(deviceCommands.subList(deviceCommands.size() - end, deviceCommands.size()));
+            Collections.reverse(ordered);
+        } else {
+            ordered = deviceCommands.subList(0, end);
         }
-        return subList(deviceCommands, skip, take);
+        return new ArrayList<>(ordered.subList(skip, end));
     }
 
-    private static <T> List<T> subList(List<T> deviceCommands, Integer skip, Integer take) {
-        if (skip < 0 || take <= 0 || skip >= deviceCommands.size()) {
-            return Collections.emptyList();
+    /**
+     * @return {@code count} smallest entries in comparator order
+     */
+    private static <T> List<T> top(Collection<T> entries, Comparator<T> cmp, int count) {
+        List<T> result;
+        if (count >= entries.size()) {
+            result = new ArrayList<>(entries);
+        } else {
+            // max-heap of the smallest entries seen so far, its head is the first one to be replaced
+            PriorityQueue<T> heap = new PriorityQueue<>(count, cmp.reversed());
+            for (T entry : entries) {
+                if (heap.size() < count) {
+                    heap.add(entry);
+                } else if (cmp.compare(entry, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(entry);
+                }
+            }
+            result = new ArrayList<>(heap);
         }
-        int end = (int) Math.min(deviceCommands.size(), (long) skip + take);
-        return deviceCommands.subList(skip, end);
+        result.sort(cmp);
+        return result;
     }
 
     public static Comparator<DeviceCommand> buildDeviceCommandComparator(String field) {
@@ -0,0 +1,103 @@
+package com.devicehive.util;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates unique, time-ordered ids for notifications and commands (Snowflake layout):
+ * 41 bits of milliseconds since {@link #EPOCH}, 6 bits of node id and 6 bits of sequence within a millisecond.
+ * Ids fit into 53 bits, so JavaScript clients, which keep JSON numbers as doubles, read them exactly until 2085.
+ * Ids of one generator are strictly increasing: when sequence is exhausted, or the clock goes back, the generator
+ * keeps counting from the last issued value, i.e. above 64 ids per millisecond the time part runs ahead of the clock.
+ * The lead is bounded by {@link #MAX_LEAD_MS}, beyond it callers wait for the clock, so a restarted node doesn't
+ * re-issue ids handed out ahead of time. Generation is a single CAS without allocation.
+ * Every frontend instance of a cluster must use a distinct node id, there is no way to derive one that is
+ * guaranteed unique.
+ */
+public class IdGenerator {
+
+    public static final long EPOCH = 1451606400000L; // 2016-01-01T00:00:00Z
+
+    static final int NODE_BITS = 6;
+    static final int SEQUENCE_BITS = 6;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    /**
+     * Largest integer exactly representable as a double, ids generated before 2085 are below it.
+     */
+    public static final long MAX_SAFE_ID = (1L << 53) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /**
+     * How far the time part of issued ids may run ahead of the clock.
+     */
+    public static final long MAX_LEAD_MS = 4;
+    private static final long LEAD_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final long node;
+
+    /**
+     * Last issued time and sequence: (milliseconds since epoch << SEQUENCE_BITS) | sequence.
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public IdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node id must be in range [0, " + MAX_NODE + "], got " + node);
+        }
+        this.node = node;
+    }
+
+    public long nextId() {
+        long next;
+        for (;;) {
+            final long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+            final long current = state.get();
+            // sequence overflow carries into the time part, i.e. borrows the next millisecond
+            next = now > current ? now : current + 1;
+            if ((next - now) >>> SEQUENCE_BITS > MAX_LEAD_MS) {
+                LockSupport.parkNanos(LEAD_WAIT_NANOS);
+            } else if (state.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | next & SEQUENCE_MASK;
+    }
+
+    public int getNode() {
+        return (int) node;
+    }
+
+    /**
+     * @return time in milliseconds at which the id was generated
+     */
+    public static long timestampOf(long id) {
+        return EPOCH + (id >>> (NODE_BITS + SEQUENCE_BITS));
+    }
+
+    /**
+     * @return node id of the generator that issued the id
+     */
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS & MAX_NODE);
+    }
+}
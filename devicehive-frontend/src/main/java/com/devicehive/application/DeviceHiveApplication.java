@@ -20,7 +20,10 @@ package com.devicehive.application;
  * #L%
  */
 
+import com.devicehive.codec.BodyCodecFactory;
 import com.devicehive.json.GsonFactory;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.devicehive.util.IdGenerator;
 import com.google.gson.Gson;
 import io.swagger.jaxrs.config.BeanConfig;
 import org.springframework.beans.factory.annotation.Value;
@@ -87,6 +90,16 @@ public class DeviceHiveApplication {
         return GsonFactory.createGson();
     }
 
+    @Bean
+    public BodyCodecRegistry bodyCodecRegistry() {
+        return BodyCodecFactory.createBodyCodecRegistry();
+    }
+
+    @Bean
+    public IdGenerator idGenerator(@Value("${id.generator.node:0}") int node) {
+        return new IdGenerator(node);
+    }
+
     @Bean
     public Validator localValidator() {
         return new LocalValidatorFactoryBean();
@@ -32,11 +32,15 @@ public class WebSocketClientHandler {
     private static final Logger logger = LoggerFactory.getLogger(WebSocketClientHandler.class);
 
     public static void sendMessage(JsonObject json, WebSocketSession session) {
+        sendMessage(json.toString(), session);
+    }
+
+    public static void sendMessage(String message, WebSocketSession session) {
         if (!session.isOpen()) {
             return;
         }
         try {
-            session.sendMessage(new TextMessage(json.toString()));
+            session.sendMessage(new TextMessage(message));
         } catch (IOException e) {
             logger.error("Exception while sending message", e);
         }
@@ -0,0 +1,64 @@
+package com.devicehive.model.websockets;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * When a message insert is answered to the client.
+ */
+public enum InsertAck {
+    /**
+     * After backend stored and published the message (default).
+     */
+    STORED("stored"),
+    /**
+     * As soon as the message broker accepted the request, backend processes it later.
+     */
+    ENQUEUED("enqueued"),
+    /**
+     * Immediately, send failures are only logged.
+     */
+    NONE("none");
+
+    private final String value;
+
+    InsertAck(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return mode with the given value, {@link #STORED} for {@code null} or {@code null} if the value is unknown
+     */
+    public static InsertAck forValue(String value) {
+        if (value == null) {
+            return STORED;
+        }
+        for (InsertAck ack : values()) {
+            if (ack.value.equalsIgnoreCase(value)) {
+                return ack;
+            }
+        }
+        return null;
+    }
+}
@@ -174,6 +174,9 @@ public interface DeviceCommandResource {
             @QueryParam("skip")
             @DefaultValue(Constants.DEFAULT_SKIP_STR)
             Integer skip,
+            @ApiParam(name = "cursor", value = "Cursor from the Next-Cursor header of the previous page")
+            @QueryParam("cursor")
+            String cursor,
             @Suspended final AsyncResponse asyncResponse);
 
     /**
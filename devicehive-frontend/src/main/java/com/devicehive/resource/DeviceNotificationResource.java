@@ -25,6 +25,7 @@ import com.devicehive.json.strategies.JsonPolicyDef;
 import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
 import io.swagger.annotations.*;
+import org.glassfish.jersey.server.ChunkedOutput;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import javax.validation.constraints.Max;
@@ -33,6 +34,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
+import java.util.List;
 
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_FROM_DEVICE;
 
@@ -59,6 +61,9 @@ public interface DeviceNotificationResource {
      * @param sortOrderSt  Result list sort order. Available values are ASC and DESC.
      * @param take         Number of records to take from the result list (default is 1000).
      * @param skip         Number of records to skip from the result list.
+     * @param cursor       Opaque position returned in the Next-Cursor header of the previous page. When set,
+     *                     notifications are returned in timestamp order after the cursor, sortField, sortOrder and
+     *                     skip are ignored.
      * @return If successful, this method returns array of <a href="http://www.devicehive
      * .com/restful#Reference/DeviceNotification">DeviceNotification</a> resources in the response body. <table>
      * <tr> <td>Property Name</td> <td>Type</td> <td>Description</td> </tr> <tr> <td>id</td> <td>integer</td>
@@ -100,9 +105,56 @@ public interface DeviceNotificationResource {
             @QueryParam("skip")
             @DefaultValue(Constants.DEFAULT_SKIP_STR)
             Integer skip,
+            @ApiParam(name = "cursor", value = "Cursor from the Next-Cursor header of the previous page")
+            @QueryParam("cursor")
+            String cursor,
             @Suspended
             AsyncResponse asyncResponse);
 
+    /**
+     * Streams the whole notification history of the device in the requested time range as a single JSON array.
+     * Notifications are written in timestamp order page by page, the next page is requested from the backend only
+     * after the previous one was written, so the export is not limited by take, is not buffered in memory as a whole
+     * and stops when the client disconnects.
+     * If the export fails after it has started, the array ends with an error object with {@code error} code and
+     * {@code message}, e.g. when the backend does not answer a page within {@code notification.export.idle-timeout.ms}.
+     *
+     * @param guid         Device unique identifier.
+     * @param startTs      Filter by notification start timestamp (UTC).
+     * @param endTs        Filter by notification end timestamp (UTC).
+     * @param notification Filter by notification name.
+     * @param pageSize     Number of notifications requested from the backend at once.
+     * @param cursor       Optional cursor to resume the export from.
+     * @return chunked JSON array of notifications
+     */
+    @GET
+    @Path("/{deviceGuid}/notification/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    @PreAuthorize("isAuthenticated() and hasPermission(#guid, 'GET_DEVICE_NOTIFICATION')")
+    @ApiOperation(value = "Export notifications", notes = "Streams all notifications matching provided parameters",
+            response = DeviceNotification.class, responseContainer = "List")
+    ChunkedOutput<String> export(
+            @ApiParam(name = "deviceGuid", value = "Device GUID", required = true)
+            @PathParam("deviceGuid")
+            String guid,
+            @ApiParam(name = "start", value = "Start timestamp")
+            @QueryParam("start")
+            String startTs,
+            @ApiParam(name = "end", value = "End timestamp")
+            @QueryParam("end")
+            String endTs,
+            @ApiParam(name = "notification", value = "Notification name")
+            @QueryParam("notification")
+            String notification,
+            @ApiParam(name = "pageSize", value = "Page size")
+            @QueryParam("pageSize")
+            @DefaultValue(Constants.DEFAULT_TAKE_STR)
+            @Min(value = 1, message = "Page size can't be less than 1.")
+            Integer pageSize,
+            @ApiParam(name = "cursor", value = "Cursor to resume the export from")
+            @QueryParam("cursor")
+            String cursor);
+
     /**
      * Implementation of <a href="http://www.devicehive.com/restful#Reference/DeviceNotification/get">DeviceHive RESTful
      * API: DeviceNotification: get</a> Gets information about device notification.
@@ -247,4 +299,34 @@ public interface DeviceNotificationResource {
             @JsonPolicyDef(NOTIFICATION_FROM_DEVICE)
             DeviceNotificationWrapper notificationSubmit,
             @Suspended final AsyncResponse asyncResponse);
+
+    /**
+     * Creates several notifications of the device at once, e.g. readings buffered by the device while it was offline.
+     * Notifications are stored and delivered to subscribers in the order they are listed.
+     *
+     * @param guid                Device unique identifier.
+     * @param notificationSubmits In the request body, supply an array of DeviceNotification resources as for
+     *                            {@link #insert(String, DeviceNotificationWrapper, AsyncResponse)}.
+     * @return If successful, this method returns an array of created notifications in the response body.
+     */
+    @POST
+    @Path("/{deviceGuid}/notification/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @PreAuthorize("isAuthenticated() and hasPermission(#guid, 'CREATE_DEVICE_NOTIFICATION')")
+    @ApiOperation(value = "Create notifications", notes = "Creates several notifications at once")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "notifications sent", response = DeviceNotification.class, responseContainer = "List"),
+            @ApiResponse(code = 404, message = "If device not found"),
+            @ApiResponse(code = 400, message = "If request is malformed"),
+            @ApiResponse(code = 403, message = "If device is not connected to network"),
+            @ApiResponse(code = 413, message = "If request contains more notifications than allowed")
+    })
+    void insertAll(
+            @ApiParam(name = "deviceGuid", value = "Device GUID", required = true)
+            @PathParam("deviceGuid")
+            String guid,
+            @ApiParam(value = "Notification bodies", required = true, defaultValue = "[]")
+            @JsonPolicyDef(NOTIFICATION_FROM_DEVICE)
+            List<DeviceNotificationWrapper> notificationSubmits,
+            @Suspended final AsyncResponse asyncResponse);
 }
@@ -26,10 +26,10 @@ import com.devicehive.json.strategies.JsonPolicyDef;
 import com.devicehive.json.strategies.JsonPolicyDef.Policy;
 import com.devicehive.model.DeviceCommand;
 import com.devicehive.model.ErrorResponse;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.wrappers.DeviceCommandWrapper;
 import com.devicehive.resource.DeviceCommandResource;
 import com.devicehive.resource.converters.TimestampQueryParamParser;
-import com.devicehive.resource.util.CommandResponseFilterAndSort;
 import com.devicehive.resource.util.ResponseFactory;
 import com.devicehive.service.DeviceCommandService;
 import com.devicehive.service.DeviceService;
@@ -261,7 +261,8 @@ public class DeviceCommandResourceImpl implements DeviceCommandResource {
 
     @Override
     public void query(String guid, String startTs, String endTs, String command, String status, String sortField,
-                      String sortOrderSt, Integer take, Integer skip, @Suspended final AsyncResponse asyncResponse) {
+                      String sortOrderSt, Integer take, Integer skip, String cursor,
+                      @Suspended final AsyncResponse asyncResponse) {
         LOGGER.debug("Device command query requested for device {}", guid);
 
         final Date timestampSt = TimestampQueryParamParser.parse(startTs);
@@ -274,15 +275,18 @@ public class DeviceCommandResourceImpl implements DeviceCommandResource {
             asyncResponse.resume(response);
         } else {
             List<String> searchCommands = StringUtils.isNoneEmpty(command) ? Collections.singletonList(command) : Collections.EMPTY_LIST;
-            commandService.find(Collections.singletonList(guid), searchCommands, timestampSt, timestampEnd, status)
-                    .thenApply(commands -> {
-                        final Comparator<DeviceCommand> comparator = CommandResponseFilterAndSort.buildDeviceCommandComparator(sortField);
-                        final Boolean reverse = sortOrderSt == null ? null : "desc".equalsIgnoreCase(sortOrderSt);
-
-                        final List<DeviceCommand> sortedDeviceCommands = CommandResponseFilterAndSort.orderAndLimit(new ArrayList<>(commands),
-                                comparator, reverse, skip, take);
-                        return ResponseFactory.response(OK, sortedDeviceCommands, Policy.COMMAND_LISTED);
-                    })
+            if (cursor != null) {
+                commandService.findPage(guid, searchCommands, timestampSt, timestampEnd, status,
+                        HistoryCursor.decode(cursor), take)
+                        .thenApply(page -> ResponseFactory.page(OK, page.getCommands(), Policy.COMMAND_LISTED,
+                                page.getNextCursor()))
+                        .thenAccept(asyncResponse::resume);
+                return;
+            }
+            final Boolean sortOrderAsc = sortOrderSt == null ? null : !"desc".equalsIgnoreCase(sortOrderSt);
+            commandService.find(Collections.singletonList(guid), searchCommands, timestampSt, timestampEnd, status,
+                    sortField, sortOrderAsc, skip, take)
+                    .thenApply(commands -> ResponseFactory.response(OK, commands, Policy.COMMAND_LISTED))
                     .thenAccept(asyncResponse::resume);
         }
     }
@@ -22,20 +22,25 @@ package com.devicehive.resource.impl;
 
 import com.devicehive.auth.HivePrincipal;
 import com.devicehive.configuration.Messages;
+import com.devicehive.exceptions.HiveException;
+import com.devicehive.json.GsonFactory;
 import com.devicehive.json.strategies.JsonPolicyDef;
 import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.ErrorResponse;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
 import com.devicehive.resource.DeviceNotificationResource;
 import com.devicehive.resource.converters.TimestampQueryParamParser;
-import com.devicehive.resource.util.CommandResponseFilterAndSort;
 import com.devicehive.resource.util.ResponseFactory;
 import com.devicehive.service.DeviceNotificationService;
 import com.devicehive.service.DeviceService;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.time.TimestampService;
 import com.devicehive.vo.DeviceVO;
+import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.glassfish.jersey.server.ChunkedOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,9 +51,11 @@ import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.CompletionCallback;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -75,7 +82,8 @@ public class DeviceNotificationResourceImpl implements DeviceNotificationResourc
      */
     @Override
     public void query(String guid, String startTs, String endTs, String notification, String sortField,
-                      String sortOrderSt, Integer take, Integer skip, @Suspended final AsyncResponse asyncResponse) {
+                      String sortOrderSt, Integer take, Integer skip, String cursor,
+                      @Suspended final AsyncResponse asyncResponse) {
         logger.debug("Device notification query requested for device {}", guid);
 
         final Date timestampSt = TimestampQueryParamParser.parse(startTs);
@@ -90,18 +98,75 @@ public class DeviceNotificationResourceImpl implements DeviceNotificationResourc
             Set<String> notificationNames = StringUtils.isNoneEmpty(notification)
                     ? Collections.singleton(notification)
                     : Collections.emptySet();
-            notificationService.find(Collections.singleton(guid), notificationNames, timestampSt, timestampEnd)
-                    .thenApply(notifications -> {
-                        final Comparator<DeviceNotification> comparator = CommandResponseFilterAndSort.buildDeviceNotificationComparator(sortField);
-                        final Boolean reverse = sortOrderSt == null ? null : "desc".equalsIgnoreCase(sortOrderSt);
-
-                        final List<DeviceNotification> sortedDeviceNotifications = CommandResponseFilterAndSort.orderAndLimit(notifications, comparator, reverse, skip, take);
-                        return ResponseFactory.response(OK, sortedDeviceNotifications, JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT);
-                    })
+            if (cursor != null) {
+                notificationService.findPage(guid, notificationNames, timestampSt, timestampEnd,
+                        HistoryCursor.decode(cursor), take)
+                        .thenApply(page -> ResponseFactory.page(OK, page.getNotifications(),
+                                JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT, page.getNextCursor()))
+                        .thenAccept(asyncResponse::resume);
+                return;
+            }
+            final Boolean sortOrderAsc = sortOrderSt == null ? null : !"desc".equalsIgnoreCase(sortOrderSt);
+            notificationService.find(Collections.singleton(guid), notificationNames, timestampSt, timestampEnd,
+                    sortField, sortOrderAsc, skip, take)
+                    .thenApply(notifications -> ResponseFactory.response(OK, notifications, JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT))
                     .thenAccept(asyncResponse::resume);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ChunkedOutput<String> export(String guid, String startTs, String endTs, String notification,
+                                        Integer pageSize, String cursor) {
+        logger.debug("Device notification export requested for device {}", guid);
+
+        final Date timestampSt = TimestampQueryParamParser.parse(startTs);
+        final Date timestampEnd = TimestampQueryParamParser.parse(endTs);
+        final HistoryCursor from = HistoryCursor.decode(cursor);
+
+        DeviceVO device = deviceService.getDeviceWithNetworkAndDeviceClass(guid);
+        if (device == null) {
+            throw new HiveException(String.format(Messages.DEVICE_NOT_FOUND, guid), NOT_FOUND.getStatusCode());
+        }
+        Set<String> notificationNames = StringUtils.isNoneEmpty(notification)
+                ? Collections.singleton(notification)
+                : Collections.emptySet();
+
+        final ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+        final Gson gson = GsonFactory.createGson(JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT);
+        final AtomicBoolean first = new AtomicBoolean(true);
+        write(output, "[");
+        notificationService.stream(guid, notificationNames, timestampSt, timestampEnd, from, pageSize, page -> {
+            StringBuilder chunk = new StringBuilder();
+            for (DeviceNotification deviceNotification : page) {
+                if (!first.getAndSet(false)) {
+                    chunk.append(',');
+                }
+                chunk.append(gson.toJson(deviceNotification));
+            }
+            // next page is requested once this one is written, a closed output stops the export
+            return write(output, chunk.toString());
+        }).whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                // status 200 is already sent, so the array ends with an error object instead of a notification
+                logger.error("Device notification export failed for device {}", guid, ex);
+                ErrorResponse error = ex instanceof BackendException
+                        ? new ErrorResponse(((BackendException) ex).getErrorCode(), ex.getMessage())
+                        : new ErrorResponse(INTERNAL_SERVER_ERROR.getStatusCode(), Messages.INTERNAL_SERVER_ERROR);
+                write(output, (first.get() ? "" : ",") + GsonFactory.createGson().toJson(error));
+            }
+            write(output, "]");
+            try {
+                output.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close notification export for device {}", guid, e);
+            }
+        });
+        return output;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -275,4 +340,79 @@ public class DeviceNotificationResourceImpl implements DeviceNotificationResourc
             }
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertAll(String guid, List<DeviceNotificationWrapper> notificationSubmits, @Suspended final AsyncResponse asyncResponse) {
+        logger.debug("DeviceNotification batch insert requested: {} notifications", notificationSubmits != null ? notificationSubmits.size() : 0);
+
+        if (notificationSubmits == null || notificationSubmits.isEmpty()
+                || notificationSubmits.stream().anyMatch(n -> n == null || n.getNotification() == null)) {
+            logger.warn("DeviceNotification batch insert proceed with error. BAD REQUEST: notifications are required.");
+            ErrorResponse errorResponseEntity = new ErrorResponse(BAD_REQUEST.getStatusCode(),
+                    Messages.INVALID_REQUEST_PARAMETERS);
+            asyncResponse.resume(ResponseFactory.response(BAD_REQUEST, errorResponseEntity));
+            return;
+        }
+        if (notificationSubmits.size() > notificationService.getMaxInsertBatchSize()) {
+            logger.warn("DeviceNotification batch insert proceed with error. REQUEST ENTITY TOO LARGE: {} notifications.",
+                    notificationSubmits.size());
+            asyncResponse.resume(ResponseFactory.response(REQUEST_ENTITY_TOO_LARGE,
+                    new ErrorResponse(REQUEST_ENTITY_TOO_LARGE.getStatusCode(),
+                            String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE, notificationService.getMaxInsertBatchSize()))));
+            return;
+        }
+        DeviceVO device = deviceService.getDeviceWithNetworkAndDeviceClass(guid);
+        if (device == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. NOT FOUND: device {} not found.", guid);
+            asyncResponse.resume(ResponseFactory.response(NOT_FOUND, new ErrorResponse(NOT_FOUND.getStatusCode(),
+                    String.format(Messages.DEVICE_NOT_FOUND, guid))));
+            return;
+        }
+        if (device.getNetwork() == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. FORBIDDEN: Device {} is not connected to network.", guid);
+            asyncResponse.resume(ResponseFactory.response(FORBIDDEN, new ErrorResponse(FORBIDDEN.getStatusCode(),
+                    String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, guid))));
+            return;
+        }
+        List<DeviceNotification> toInsert = notificationSubmits.stream()
+                .map(n -> notificationService.convertWrapperToNotification(n, device))
+                .collect(Collectors.toList());
+        notificationService.insertAll(toInsert, device)
+                .thenAccept(notifications -> {
+                    logger.debug("Device notification batch insert proceed successfully. deviceId = {} notifications = {}",
+                            guid, notifications.size());
+                    asyncResponse.resume(ResponseFactory.response(
+                            Response.Status.CREATED,
+                            notifications,
+                            JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT));
+                })
+                .exceptionally(e -> {
+                    logger.warn("Device notification batch insert failed for device with guid = {}.", guid, e);
+                    ErrorResponse errorCode = new ErrorResponse(INTERNAL_SERVER_ERROR.getStatusCode(), Messages.INTERNAL_SERVER_ERROR);
+                    asyncResponse.resume(ResponseFactory.response(INTERNAL_SERVER_ERROR, errorCode));
+                    return null;
+                });
+    }
+
+    /**
+     * @return false if the output is closed, e.g. the client has disconnected
+     */
+    private boolean write(ChunkedOutput<String> output, String chunk) {
+        if (output.isClosed()) {
+            return false;
+        }
+        if (chunk.isEmpty()) {
+            return true;
+        }
+        try {
+            output.write(chunk);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Unable to write notification export chunk", e);
+            return false;
+        }
+    }
 }
@@ -20,11 +20,14 @@ package com.devicehive.resource.util;
  * #L%
  */
 
+import com.devicehive.model.wrappers.DeviceNotificationWrapper;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashSet;
 
 public interface JsonTypes {
     Type STRING_SET_TYPE = new TypeToken<HashSet<String>>() {}.getType();
+    Type NOTIFICATION_WRAPPER_LIST_TYPE = new TypeToken<ArrayList<DeviceNotificationWrapper>>() {}.getType();
 }
@@ -20,8 +20,10 @@ package com.devicehive.resource.util;
  * #L%
  */
 
+import com.devicehive.configuration.Constants;
 import com.devicehive.json.strategies.JsonPolicyApply;
 import com.devicehive.json.strategies.JsonPolicyDef;
+import com.devicehive.model.HistoryCursor;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -30,6 +32,22 @@ import java.lang.annotation.Annotation;
 public class ResponseFactory {
 
     public static Response response(Response.Status status, Object entity, JsonPolicyDef.Policy policy) {
+        return builder(status, entity, policy).build();
+    }
+
+    /**
+     * Builds a page of history with the cursor of the following page in {@link Constants#NEXT_CURSOR_HEADER}.
+     * The header is omitted when there are no more pages.
+     */
+    public static Response page(Response.Status status, Object entity, JsonPolicyDef.Policy policy, HistoryCursor nextCursor) {
+        Response.ResponseBuilder responseBuilder = builder(status, entity, policy);
+        if (nextCursor != null) {
+            responseBuilder.header(Constants.NEXT_CURSOR_HEADER, nextCursor.encode());
+        }
+        return responseBuilder.build();
+    }
+
+    private static Response.ResponseBuilder builder(Response.Status status, Object entity, JsonPolicyDef.Policy policy) {
 
         Response.ResponseBuilder responseBuilder = Response.status(status);
 
@@ -40,7 +58,7 @@ public class ResponseFactory {
             responseBuilder.entity(entity, annotations);
         }
 
-        return responseBuilder.type(MediaType.APPLICATION_JSON_TYPE).build();
+        return responseBuilder.type(MediaType.APPLICATION_JSON_TYPE);
     }
 
     public static Response response(Response.Status status, Object entity) {
@@ -27,6 +27,7 @@ import com.devicehive.model.rpc.ListDeviceClassRequest;
 import com.devicehive.model.rpc.ListDeviceClassResponse;
 import com.devicehive.model.updates.DeviceClassUpdate;
 import com.devicehive.model.updates.EquipmentUpdate;
+import com.devicehive.service.cache.DeviceCache;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.client.RpcClient;
@@ -57,10 +58,13 @@ public class DeviceClassService {
     private DeviceClassDao deviceClassDao;
     @Autowired
     private RpcClient rpcClient;
+    @Autowired
+    private DeviceCache deviceCache;
 
     @Transactional
     public void delete(@NotNull long id) {
         deviceClassDao.remove(id);
+        deviceCache.invalidateAll();
     }
 
     @Transactional(propagation = Propagation.SUPPORTS)
@@ -150,7 +154,9 @@ public class DeviceClassService {
             stored.setIsPermanent(update.getPermanent().orElse(null));
         }
         hiveValidator.validate(stored);
-        return deviceClassDao.merge(stored);
+        DeviceClassWithEquipmentVO merged = deviceClassDao.merge(stored);
+        deviceCache.invalidateAll();
+        return merged;
     }
 
     /**
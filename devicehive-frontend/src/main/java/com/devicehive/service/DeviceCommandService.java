@@ -21,6 +21,7 @@ package com.devicehive.service;
  */
 
 import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.eventbus.events.CommandEvent;
 import com.devicehive.model.eventbus.events.CommandUpdateEvent;
 import com.devicehive.model.rpc.*;
@@ -30,7 +31,9 @@ import com.devicehive.service.time.TimestampService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.util.CommandResponseFilterAndSort;
 import com.devicehive.util.HiveValidator;
+import com.devicehive.util.IdGenerator;
 import com.devicehive.vo.DeviceVO;
 import com.devicehive.vo.UserVO;
 import org.apache.commons.lang3.tuple.Pair;
@@ -53,14 +56,17 @@ public class DeviceCommandService {
     private TimestampService timestampService;
     private HiveValidator hiveValidator;
     private RpcClient rpcClient;
+    private IdGenerator idGenerator;
 
     @Autowired
     public DeviceCommandService(TimestampService timestampService,
                                 HiveValidator hiveValidator,
-                                RpcClient rpcClient) {
+                                RpcClient rpcClient,
+                                IdGenerator idGenerator) {
         this.timestampService = timestampService;
         this.hiveValidator = hiveValidator;
         this.rpcClient = rpcClient;
+        this.idGenerator = idGenerator;
     }
 
     public CompletableFuture<Optional<DeviceCommand>> findOne(Long id, String guid) {
@@ -77,6 +83,20 @@ public class DeviceCommandService {
 
     public CompletableFuture<List<DeviceCommand>> find(Collection<String> guids, Collection<String> names,
                                                        Date timestampSt, Date timestampEnd, String status) {
+        return find(guids, names, timestampSt, timestampEnd, status, null, null, null, null);
+    }
+
+    /**
+     * Sorting and paging are done by backend, only the requested page is transferred back. When several devices
+     * are queried each of them returns its first {@code skip + take} commands and pages are merged here.
+     */
+    public CompletableFuture<List<DeviceCommand>> find(Collection<String> guids, Collection<String> names,
+                                                       Date timestampSt, Date timestampEnd, String status,
+                                                       String sortField, Boolean sortOrderAsc,
+                                                       Integer skip, Integer take) {
+        final boolean merged = take != null && guids.size() > 1;
+        final Integer pageSkip = merged ? Integer.valueOf(0) : skip;
+        final Integer pageTake = merged ? Integer.valueOf((skip == null ? 0 : skip) + take) : take;
         List<CompletableFuture<Response>> futures = guids.stream()
                 .map(guid -> {
                     CommandSearchRequest searchRequest = new CommandSearchRequest();
@@ -87,6 +107,10 @@ public class DeviceCommandService {
                     searchRequest.setTimestampStart(timestampSt);
                     searchRequest.setTimestampEnd(timestampEnd);
                     searchRequest.setStatus(status);
+                    searchRequest.setSortField(sortField);
+                    searchRequest.setSortOrderAsc(sortOrderAsc);
+                    searchRequest.setSkip(pageSkip);
+                    searchRequest.setTake(pageTake);
                     return searchRequest;
                 })
                 .map(searchRequest -> {
@@ -105,7 +129,35 @@ public class DeviceCommandService {
                         .map(CompletableFuture::join)                                  // List<CompletableFuture<Response>> => CompletableFuture<List<Response>>
                         .map(r -> ((CommandSearchResponse) r.getBody()).getCommands()) // CompletableFuture<List<Response>> => CompletableFuture<List<List<DeviceCommand>>>
                         .flatMap(Collection::stream)                                   // CompletableFuture<List<List<DeviceCommand>>> => CompletableFuture<List<DeviceCommand>>
-                        .collect(Collectors.toList()));
+                        .collect(Collectors.toList()))
+                .thenApply(commands -> !merged ? commands : CommandResponseFilterAndSort.orderAndLimit(commands,
+                        CommandResponseFilterAndSort.buildDeviceCommandComparator(sortField),
+                        sortOrderAsc == null ? null : !sortOrderAsc, skip == null ? 0 : skip, take));
+    }
+
+    /**
+     * Reads one keyset page of device commands after the cursor, ordered by timestamp and id.
+     */
+    public CompletableFuture<CommandSearchResponse> findPage(String guid, Collection<String> names, Date timestampSt,
+                                                             Date timestampEnd, String status, HistoryCursor cursor,
+                                                             Integer take) {
+        CommandSearchRequest searchRequest = new CommandSearchRequest();
+        searchRequest.setGuid(guid);
+        if (names != null) {
+            searchRequest.setNames(new HashSet<>(names));
+        }
+        searchRequest.setTimestampStart(timestampSt);
+        searchRequest.setTimestampEnd(timestampEnd);
+        searchRequest.setStatus(status);
+        searchRequest.setCursor(cursor);
+        searchRequest.setTake(take);
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        rpcClient.call(Request.newBuilder()
+                .withBody(searchRequest)
+                .withPartitionKey(guid)
+                .build(), new ResponseConsumer(future));
+        return future.thenApply(r -> r.getBody().cast(CommandSearchResponse.class));
     }
 
     public CompletableFuture<DeviceCommand> insert(DeviceCommandWrapper commandWrapper, DeviceVO device, UserVO user) {
@@ -113,7 +165,7 @@ public class DeviceCommandService {
 
         CompletableFuture<Response> future = new CompletableFuture<>();
         rpcClient.call(Request.newBuilder()
-                .withBody(new CommandInsertRequest(command))
+                .withBody(new CommandInsertRequest(command, device.getNetwork() != null ? device.getNetwork().getId() : null))
                 .withPartitionKey(device.getGuid())
                 .build(), new ResponseConsumer(future));
         return future.thenApply(r -> ((CommandInsertResponse) r.getBody()).getDeviceCommand());
@@ -123,38 +175,44 @@ public class DeviceCommandService {
             final Set<String> devices,
             final Set<String> names,
             final Date timestamp,
-            final BiConsumer<DeviceCommand, String> callback) throws InterruptedException {
+            final BiConsumer<DeviceCommand, String> callback) {
+        return sendSubscribeRequest(devices, Collections.emptySet(), names, timestamp, callback);
+    }
 
-        final String subscriptionId = UUID.randomUUID().toString();
-        Collection<CompletableFuture<Collection<DeviceCommand>>> futures = devices.stream()
-                .map(device -> new CommandSubscribeRequest(subscriptionId, device, names, timestamp))
-                .map(subscribeRequest -> {
-                    CompletableFuture<Collection<DeviceCommand>> future = new CompletableFuture<>();
-                    Consumer<Response> responseConsumer = response -> {
-                        String resAction = response.getBody().getAction();
-                        if (resAction.equals(Action.COMMAND_SUBSCRIBE_RESPONSE.name())) {
-                            future.complete(response.getBody().cast(CommandSubscribeResponse.class).getCommands());
-                        } else if (resAction.equals(Action.COMMAND_EVENT.name())) {
-                            callback.accept(response.getBody().cast(CommandEvent.class).getCommand(), subscriptionId);
-                        } else {
-                            logger.warn("Unknown action received from backend {}", resAction);
-                        }
-                    };
-                    Request request = Request.newBuilder()
-                            .withBody(subscribeRequest)
-                            .withPartitionKey(subscribeRequest.getDevice())
-                            .withSingleReply(false)
-                            .build();
-                    rpcClient.call(request, responseConsumer);
-                    return future;
-                }).collect(Collectors.toList());
+    /**
+     * Subscribes to commands of the whole set of devices and of all devices of the networks
+     * with a single backend request. History since timestamp is returned only for explicitly listed devices.
+     */
+    public Pair<String, CompletableFuture<List<DeviceCommand>>> sendSubscribeRequest(
+            final Set<String> devices,
+            final Set<Long> networks,
+            final Set<String> names,
+            final Date timestamp,
+            final BiConsumer<DeviceCommand, String> callback) {
 
-        CompletableFuture<List<DeviceCommand>> future = CompletableFuture
-                .allOf(futures.toArray(new CompletableFuture[futures.size()]))
-                .thenApply(v -> futures.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList()));
+        final String subscriptionId = UUID.randomUUID().toString();
+        if (devices.isEmpty() && networks.isEmpty()) {
+            return Pair.of(subscriptionId, CompletableFuture.completedFuture(Collections.emptyList()));
+        }
+        CommandSubscribeRequest subscribeRequest = new CommandSubscribeRequest(subscriptionId, devices, networks, names, timestamp);
+        CompletableFuture<List<DeviceCommand>> future = new CompletableFuture<>();
+        Consumer<Response> responseConsumer = response -> {
+            String resAction = response.getBody().getAction();
+            if (resAction.equals(Action.COMMAND_SUBSCRIBE_RESPONSE.name())) {
+                future.complete(new ArrayList<>(response.getBody().cast(CommandSubscribeResponse.class).getCommands()));
+            } else if (resAction.equals(Action.COMMAND_EVENT.name())) {
+                callback.accept(response.getBody().cast(CommandEvent.class).getCommand(), subscriptionId);
+            } else {
+                logger.warn("Unknown action received from backend {}", resAction);
+            }
+        };
+        Request request = Request.newBuilder()
+                .withBody(subscribeRequest)
+                .withPartitionKey(devices.size() == 1 && networks.isEmpty() ? devices.iterator().next() : subscriptionId)
+                .withSingleReply(false)
+                .withCorrelationId(subscriptionId)
+                .build();
+        rpcClient.call(request, responseConsumer);
         return Pair.of(subscriptionId, future);
     }
 
@@ -164,6 +222,10 @@ public class DeviceCommandService {
                 .withBody(unsubscribeRequest)
                 .build();
         rpcClient.push(request);
+        if (subId != null && deviceGuids == null) {
+            // subscribe request is sent with subscription id as correlation id, drop its pending callback
+            rpcClient.cancel(subId);
+        }
     }
 
     public CompletableFuture<Pair<String, DeviceCommand>> sendSubscribeToUpdateRequest(final long commandId, final String guid, BiConsumer<DeviceCommand, String> callback) {
@@ -221,7 +283,7 @@ public class DeviceCommandService {
 
     private DeviceCommand convertWrapperToCommand(DeviceCommandWrapper commandWrapper, DeviceVO device, UserVO user) {
         DeviceCommand command = new DeviceCommand();
-        command.setId(Math.abs(new Random().nextInt()));
+        command.setId(idGenerator.nextId());
         command.setDeviceGuid(device.getGuid());
         command.setIsUpdated(false);
 
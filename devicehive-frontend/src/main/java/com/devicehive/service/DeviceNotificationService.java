@@ -22,27 +22,34 @@ package com.devicehive.service;
 
 import com.devicehive.dao.DeviceDao;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.SpecialNotifications;
 import com.devicehive.model.eventbus.events.NotificationEvent;
 import com.devicehive.model.rpc.*;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.service.time.TimestampService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.util.CommandResponseFilterAndSort;
+import com.devicehive.util.IdGenerator;
 import com.devicehive.util.ServerResponsesFactory;
 import com.devicehive.vo.DeviceVO;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -50,20 +57,38 @@ public class DeviceNotificationService {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceNotificationService.class);
 
+    private static final int INSERT_BATCH_SIZE = 500;
+
     private DeviceEquipmentService deviceEquipmentService;
     private TimestampService timestampService;
     private DeviceDao deviceDao;
     private RpcClient rpcClient;
+    private IdGenerator idGenerator;
+
+    @Value("${notification.export.idle-timeout.ms:30000}")
+    private long exportIdleTimeoutMs;
+
+    @Value("${notification.insert.batch.max-size:1000}")
+    private int maxInsertBatchSize;
 
     @Autowired
     public DeviceNotificationService(DeviceEquipmentService deviceEquipmentService,
                                      TimestampService timestampService,
                                      DeviceDao deviceDao,
-                                     RpcClient rpcClient) {
+                                     RpcClient rpcClient,
+                                     IdGenerator idGenerator) {
         this.deviceEquipmentService = deviceEquipmentService;
         this.timestampService = timestampService;
         this.deviceDao = deviceDao;
         this.rpcClient = rpcClient;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * @return max number of notifications accepted by one batch insert request
+     */
+    public int getMaxInsertBatchSize() {
+        return maxInsertBatchSize;
     }
 
     public CompletableFuture<Optional<DeviceNotification>> findOne(Long id, String guid) {
@@ -79,9 +104,23 @@ public class DeviceNotificationService {
         return future.thenApply(r -> ((NotificationSearchResponse) r.getBody()).getNotifications().stream().findFirst());
     }
 
-    @SuppressWarnings("unchecked")
     public CompletableFuture<List<DeviceNotification>> find(Set<String> guids, Set<String> names,
                                                             Date timestampSt, Date timestampEnd) {
+        return find(guids, names, timestampSt, timestampEnd, null, null, null, null);
+    }
+
+    /**
+     * Sorting and paging are done by backend, only the requested page is transferred back. When several devices
+     * are queried each of them returns its first {@code skip + take} notifications and pages are merged here.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<DeviceNotification>> find(Set<String> guids, Set<String> names,
+                                                            Date timestampSt, Date timestampEnd,
+                                                            String sortField, Boolean sortOrderAsc,
+                                                            Integer skip, Integer take) {
+        final boolean merged = take != null && guids.size() > 1;
+        final Integer pageSkip = merged ? Integer.valueOf(0) : skip;
+        final Integer pageTake = merged ? Integer.valueOf((skip == null ? 0 : skip) + take) : take;
         List<CompletableFuture<Response>> futures = guids.stream()
                 .map(guid -> {
                     NotificationSearchRequest searchRequest = new NotificationSearchRequest();
@@ -89,6 +128,10 @@ public class DeviceNotificationService {
                     searchRequest.setNames(names);
                     searchRequest.setTimestampStart(timestampSt);
                     searchRequest.setTimestampEnd(timestampEnd);
+                    searchRequest.setSortField(sortField);
+                    searchRequest.setSortOrderAsc(sortOrderAsc);
+                    searchRequest.setSkip(pageSkip);
+                    searchRequest.setTake(pageTake);
                     return searchRequest;
                 })
                 .map(searchRequest -> {
@@ -107,7 +150,85 @@ public class DeviceNotificationService {
                         .map(CompletableFuture::join)                                                    // List<CompletableFuture<Response>> => CompletableFuture<List<Response>>
                         .map(r -> r.getBody().cast(NotificationSearchResponse.class).getNotifications()) // CompletableFuture<List<Response>> => CompletableFuture<List<List<DeviceNotification>>>
                         .flatMap(Collection::stream)                                                     // CompletableFuture<List<List<DeviceNotification>>> => CompletableFuture<List<DeviceNotification>>
-                        .collect(Collectors.toList()));
+                        .collect(Collectors.toList()))
+                .thenApply(notifications -> !merged ? notifications : CommandResponseFilterAndSort.orderAndLimit(notifications,
+                        CommandResponseFilterAndSort.buildDeviceNotificationComparator(sortField),
+                        sortOrderAsc == null ? null : !sortOrderAsc, skip == null ? 0 : skip, take));
+    }
+
+    /**
+     * Reads one keyset page of device notifications after the cursor, ordered by timestamp and id.
+     */
+    public CompletableFuture<NotificationSearchResponse> findPage(String guid, Set<String> names, Date timestampSt,
+                                                                  Date timestampEnd, HistoryCursor cursor, Integer take) {
+        NotificationSearchRequest searchRequest = new NotificationSearchRequest();
+        searchRequest.setGuid(guid);
+        searchRequest.setNames(names);
+        searchRequest.setTimestampStart(timestampSt);
+        searchRequest.setTimestampEnd(timestampEnd);
+        searchRequest.setCursor(cursor);
+        searchRequest.setTake(take);
+
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        rpcClient.call(Request.newBuilder()
+                .withBody(searchRequest)
+                .withPartitionKey(guid)
+                .build(), new ResponseConsumer(future));
+        return future.thenApply(r -> r.getBody().cast(NotificationSearchResponse.class));
+    }
+
+    /**
+     * Streams all device notifications after the cursor in pages of {@code pageSize}. Pages are pulled with keyset
+     * searches: the next page is requested only after {@code pageConsumer} has taken the previous one, so the export
+     * goes as fast as the client reads it and neither side holds the whole history. Consumer returns false to stop
+     * the export, e.g. when the client is gone. Returned future completes after the last page, it fails when the
+     * backend reports an error or does not answer a page within {@code notification.export.idle-timeout.ms}.
+     */
+    public CompletableFuture<Void> stream(String guid, Set<String> names, Date timestampSt, Date timestampEnd,
+                                          HistoryCursor cursor, Integer pageSize,
+                                          Predicate<List<DeviceNotification>> pageConsumer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        requestPage(guid, names, timestampSt, timestampEnd, cursor, pageSize, pageConsumer, future);
+        return future;
+    }
+
+    private void requestPage(String guid, Set<String> names, Date timestampSt, Date timestampEnd,
+                             HistoryCursor cursor, Integer pageSize,
+                             Predicate<List<DeviceNotification>> pageConsumer, CompletableFuture<Void> future) {
+        NotificationSearchRequest searchRequest = new NotificationSearchRequest();
+        searchRequest.setGuid(guid);
+        searchRequest.setNames(names);
+        searchRequest.setTimestampStart(timestampSt);
+        searchRequest.setTimestampEnd(timestampEnd);
+        searchRequest.setCursor(cursor != null ? cursor : HistoryCursor.START);
+        searchRequest.setTake(pageSize);
+
+        Consumer<Response> responseConsumer = response -> {
+            if (response.isFailed()) {
+                String message = response.getBody() != null
+                        ? response.getBody().cast(ErrorResponse.class).getMessage()
+                        : "Unexpected error occurred.";
+                future.completeExceptionally(new BackendException(message, response.getErrorCode()));
+                return;
+            }
+            NotificationSearchResponse page = response.getBody().cast(NotificationSearchResponse.class);
+            boolean proceed;
+            try {
+                proceed = pageConsumer.test(page.getNotifications());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            if (proceed && page.getNextCursor() != null) {
+                requestPage(guid, names, timestampSt, timestampEnd, page.getNextCursor(), pageSize, pageConsumer, future);
+            } else {
+                future.complete(null);
+            }
+        };
+        rpcClient.call(Request.newBuilder()
+                .withBody(searchRequest)
+                .withPartitionKey(guid)
+                .build(), responseConsumer, exportIdleTimeoutMs, TimeUnit.MILLISECONDS);
     }
 
     public CompletableFuture<DeviceNotification> insert(final DeviceNotification notification,
@@ -116,7 +237,7 @@ public class DeviceNotificationService {
                 .map(n -> {
                     CompletableFuture<Response> future = new CompletableFuture<>();
                     rpcClient.call(Request.newBuilder()
-                            .withBody(new NotificationInsertRequest(n))
+                            .withBody(new NotificationInsertRequest(n, device.getNetwork() != null ? device.getNetwork().getId() : null))
                             .withPartitionKey(device.getGuid())
                             .build(), new ResponseConsumer(future));
                     return future;
@@ -131,46 +252,92 @@ public class DeviceNotificationService {
                         .collect(Collectors.toList()).get(0)); // after filter we should get only one notification
     }
 
+    /**
+     * Inserts notifications of a single device with one backend request per {@value #INSERT_BATCH_SIZE}
+     * notifications. Batches share the device partition, so notifications are stored and delivered in order.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<DeviceNotification>> insertAll(final List<DeviceNotification> notifications,
+                                                                 final DeviceVO device) {
+        List<CompletableFuture<Response>> futures = batches(notifications, device).stream()
+                .map(batch -> {
+                    CompletableFuture<Response> future = new CompletableFuture<>();
+                    rpcClient.call(Request.newBuilder()
+                            .withBody(batch)
+                            .withPartitionKey(device.getGuid())
+                            .build(), new ResponseConsumer(future));
+                    return future;
+                })
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                .thenApply(x -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .flatMap(r -> r.getBody().cast(NotificationBatchInsertResponse.class).getDeviceNotifications().stream())
+                        .filter(n -> !SpecialNotifications.DEVICE_UPDATE.equals(n.getNotification()))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Sends notifications of a single device to backend without waiting for them to be stored. Returned future
+     * completes as soon as the message broker accepted the requests, so clients which don't need insert
+     * confirmation are not limited by backend round trip.
+     */
+    public CompletableFuture<Void> push(final List<DeviceNotification> notifications, final DeviceVO device) {
+        CompletableFuture<?>[] futures = batches(notifications, device).stream()
+                .map(batch -> rpcClient.pushAcknowledged(Request.newBuilder()
+                        .withBody(batch)
+                        .withPartitionKey(device.getGuid())
+                        .build()))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    public Pair<String, CompletableFuture<List<DeviceNotification>>> subscribe(
+            final Set<String> devices,
+            final Set<String> names,
+            final Date timestamp,
+            final BiConsumer<DeviceNotification, String> callback) {
+        return subscribe(devices, Collections.emptySet(), names, timestamp, callback);
+    }
+
+    /**
+     * Subscribes to notifications of the whole set of devices and of all devices of the networks
+     * with a single backend request. History since timestamp is returned only for explicitly listed devices.
+     */
     public Pair<String, CompletableFuture<List<DeviceNotification>>> subscribe(
             final Set<String> devices,
+            final Set<Long> networks,
             final Set<String> names,
             final Date timestamp,
             final BiConsumer<DeviceNotification, String> callback) {
 
         final String subscriptionId = UUID.randomUUID().toString();
-        Set<NotificationSubscribeRequest> subscribeRequests = devices.stream()
-                .map(device -> new NotificationSubscribeRequest(subscriptionId, device, names, timestamp))
-                .collect(Collectors.toSet());
-        Collection<CompletableFuture<Collection<DeviceNotification>>> futures = new ArrayList<>();
-        for (NotificationSubscribeRequest sr : subscribeRequests) {
-            CompletableFuture<Collection<DeviceNotification>> future = new CompletableFuture<>();
-            Consumer<Response> responseConsumer = response -> {
-                String resAction = response.getBody().getAction();
-                if (resAction.equals(Action.NOTIFICATION_SUBSCRIBE_RESPONSE.name())) {
-                    NotificationSubscribeResponse r = response.getBody().cast(NotificationSubscribeResponse.class);
-                    future.complete(r.getNotifications());
-                } else if (resAction.equals(Action.NOTIFICATION_EVENT.name())) {
-                    NotificationEvent event = response.getBody().cast(NotificationEvent.class);
-                    callback.accept(event.getNotification(), subscriptionId);
-                } else {
-                    logger.warn("Unknown action received from backend {}", resAction);
-                }
-            };
-            futures.add(future);
-            Request request = Request.newBuilder()
-                    .withBody(sr)
-                    .withPartitionKey(sr.getDevice())
-                    .withSingleReply(false)
-                    .build();
-            rpcClient.call(request, responseConsumer);
+        if (devices.isEmpty() && networks.isEmpty()) {
+            return Pair.of(subscriptionId, CompletableFuture.completedFuture(Collections.emptyList()));
         }
-
-        CompletableFuture<List<DeviceNotification>> future = CompletableFuture
-                .allOf(futures.toArray(new CompletableFuture[futures.size()]))
-                .thenApply(v -> futures.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList()));
+        NotificationSubscribeRequest subscribeRequest =
+                new NotificationSubscribeRequest(subscriptionId, devices, networks, names, timestamp);
+        CompletableFuture<List<DeviceNotification>> future = new CompletableFuture<>();
+        Consumer<Response> responseConsumer = response -> {
+            String resAction = response.getBody().getAction();
+            if (resAction.equals(Action.NOTIFICATION_SUBSCRIBE_RESPONSE.name())) {
+                NotificationSubscribeResponse r = response.getBody().cast(NotificationSubscribeResponse.class);
+                future.complete(new ArrayList<>(r.getNotifications()));
+            } else if (resAction.equals(Action.NOTIFICATION_EVENT.name())) {
+                NotificationEvent event = response.getBody().cast(NotificationEvent.class);
+                callback.accept(event.getNotification(), subscriptionId);
+            } else {
+                logger.warn("Unknown action received from backend {}", resAction);
+            }
+        };
+        Request request = Request.newBuilder()
+                .withBody(subscribeRequest)
+                .withPartitionKey(devices.size() == 1 && networks.isEmpty() ? devices.iterator().next() : subscriptionId)
+                .withSingleReply(false)
+                .withCorrelationId(subscriptionId)
+                .build();
+        rpcClient.call(request, responseConsumer);
         return Pair.of(subscriptionId, future);
     }
 
@@ -180,11 +347,15 @@ public class DeviceNotificationService {
                 .withBody(unsubscribeRequest)
                 .build();
         rpcClient.push(request);
+        if (subId != null && deviceGuids == null) {
+            // subscribe request is sent with subscription id as correlation id, drop its pending callback
+            rpcClient.cancel(subId);
+        }
     }
 
     public DeviceNotification convertWrapperToNotification(DeviceNotificationWrapper notificationSubmit, DeviceVO device) {
         DeviceNotification notification = new DeviceNotification();
-        notification.setId(Math.abs(new Random().nextInt()));
+        notification.setId(idGenerator.nextId());
         notification.setDeviceGuid(device.getGuid());
         if (notificationSubmit.getTimestamp() == null) {
             notification.setTimestamp(timestampService.getDate());
@@ -196,6 +367,20 @@ public class DeviceNotificationService {
         return notification;
     }
 
+    private List<NotificationBatchInsertRequest> batches(List<DeviceNotification> notifications, DeviceVO device) {
+        List<DeviceNotification> toInsert = notifications.stream()
+                .flatMap(n -> processDeviceNotification(n, device).stream())
+                .collect(Collectors.toList());
+        Long networkId = device.getNetwork() != null ? device.getNetwork().getId() : null;
+
+        List<NotificationBatchInsertRequest> batches = new ArrayList<>();
+        for (int from = 0; from < toInsert.size(); from += INSERT_BATCH_SIZE) {
+            batches.add(new NotificationBatchInsertRequest(
+                    new ArrayList<>(toInsert.subList(from, Math.min(from + INSERT_BATCH_SIZE, toInsert.size()))), networkId));
+        }
+        return batches;
+    }
+
     private List<DeviceNotification> processDeviceNotification(DeviceNotification notificationMessage, DeviceVO device) {
         List<DeviceNotification> notificationsToCreate = new ArrayList<>();
         if (notificationMessage.getNotification() != null && notificationMessage.getNotification().equals(SpecialNotifications.EQUIPMENT)) {
@@ -30,11 +30,14 @@ import com.devicehive.model.rpc.ListDeviceRequest;
 import com.devicehive.model.rpc.ListDeviceResponse;
 import com.devicehive.model.updates.DeviceUpdate;
 import com.devicehive.service.helpers.ResponseConsumer;
+import com.devicehive.service.cache.DeviceCache;
+import com.devicehive.service.cache.DeviceCountCache;
 import com.devicehive.service.time.TimestampService;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
 import com.devicehive.util.HiveValidator;
+import com.devicehive.util.IdGenerator;
 import com.devicehive.util.ServerResponsesFactory;
 import com.devicehive.vo.*;
 import org.slf4j.Logger;
@@ -71,6 +74,12 @@ public class DeviceService {
     private DeviceDao deviceDao;
     @Autowired
     private RpcClient rpcClient;
+    @Autowired
+    private IdGenerator idGenerator;
+    @Autowired
+    private DeviceCache deviceCache;
+    @Autowired
+    private DeviceCountCache deviceCountCache;
 
     //todo equipmentSet is not used
     @Transactional(propagation = Propagation.REQUIRED)
@@ -89,6 +98,8 @@ public class DeviceService {
         } else {
             throw new HiveException(Messages.UNAUTHORIZED_REASON_PHRASE, UNAUTHORIZED.getStatusCode());
         }
+        deviceCache.invalidate(device.getGuid().orElse(null));
+        dn.setId(idGenerator.nextId());
         dn.setTimestamp(timestampService.getDate());
         deviceNotificationService.insert(dn, device.convertTo());
     }
@@ -240,6 +251,8 @@ public class DeviceService {
                 device.setNetwork(network);
             }
             deviceDao.persist(device);
+            deviceCache.invalidate(device.getGuid());
+            deviceCountCache.invalidateAll();
             return ServerResponsesFactory.createNotificationForDevice(device, SpecialNotifications.DEVICE_ADD);
         } else {
             if (deviceUpdate.getDeviceClass() != null) {
@@ -258,6 +271,10 @@ public class DeviceService {
                 existingDevice.setBlocked(Boolean.TRUE.equals(deviceUpdate.getBlocked().orElse(null)));
             }
             deviceDao.merge(existingDevice);
+            deviceCache.invalidate(existingDevice.getGuid());
+            if (deviceUpdate.getNetwork() != null) {
+                deviceCountCache.invalidateAll();
+            }
             return ServerResponsesFactory.createNotificationForDevice(existingDevice, SpecialNotifications.DEVICE_UPDATE);
         }
     }
@@ -297,7 +314,7 @@ public class DeviceService {
 
     @Transactional(readOnly = true)
     public DeviceVO getDeviceWithNetworkAndDeviceClass(String deviceId) {
-        DeviceVO device = deviceDao.findByUUID(deviceId);
+        DeviceVO device = deviceCache.get(deviceId, deviceDao::findByUUID);
 
         if (device == null) {
             logger.error("Device with guid {} not found", deviceId);
@@ -309,7 +326,12 @@ public class DeviceService {
     //TODO: only migrated to genericDAO, need to migrate Device PK to guid and use directly GenericDAO#remove
     @Transactional
     public boolean deleteDevice(@NotNull String guid) {
-        return deviceDao.deleteByUUID(guid) != 0;
+        boolean deleted = deviceDao.deleteByUUID(guid) != 0;
+        deviceCache.invalidate(guid);
+        if (deleted) {
+            deviceCountCache.invalidateAll();
+        }
+        return deleted;
     }
 
     //@Transactional(readOnly = true)
@@ -346,7 +368,7 @@ public class DeviceService {
     @Transactional(propagation = Propagation.SUPPORTS)
     //TODO: need to remove it
     public long getAllowedDevicesCount(HivePrincipal principal, List<String> guids) {
-        return deviceDao.getAllowedDeviceCount(principal, guids);
+        return deviceCountCache.get(principal, guids, () -> deviceDao.getAllowedDeviceCount(principal, guids));
     }
 
     private List<DeviceVO> getDeviceList(List<String> guids, HivePrincipal principal) {
@@ -30,6 +30,8 @@ import com.devicehive.model.rpc.ListNetworkRequest;
 import com.devicehive.model.rpc.ListNetworkResponse;
 import com.devicehive.model.updates.NetworkUpdate;
 import com.devicehive.service.configuration.ConfigurationService;
+import com.devicehive.service.cache.DeviceCache;
+import com.devicehive.service.cache.DeviceCountCache;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
@@ -68,6 +70,10 @@ public class NetworkService {
     private NetworkDao networkDao;
     @Autowired
     private RpcClient rpcClient;
+    @Autowired
+    private DeviceCache deviceCache;
+    @Autowired
+    private DeviceCountCache deviceCountCache;
 
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public NetworkWithUsersAndDevicesVO getWithDevicesAndDeviceClasses(@NotNull Long networkId, @NotNull HiveAuthentication hiveAuthentication) {
@@ -115,6 +121,8 @@ public class NetworkService {
         logger.trace("About to execute named query \"Network.deleteById\" for ");
         int result = networkDao.deleteById(id);
         logger.debug("Deleted {} rows from Network table", result);
+        deviceCache.invalidateAll();
+        deviceCountCache.invalidateAll();
         return result > 0;
     }
 
@@ -153,7 +161,9 @@ public class NetworkService {
         }
         hiveValidator.validate(existing);
 
-        return networkDao.merge(existing);
+        NetworkVO merged = networkDao.merge(existing);
+        deviceCache.invalidateAll();
+        return merged;
     }
 
     //@Transactional(propagation = Propagation.NOT_SUPPORTED)
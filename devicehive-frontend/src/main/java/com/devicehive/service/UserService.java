@@ -32,6 +32,7 @@ import com.devicehive.model.enums.UserStatus;
 import com.devicehive.model.rpc.ListUserRequest;
 import com.devicehive.model.rpc.ListUserResponse;
 import com.devicehive.model.updates.UserUpdate;
+import com.devicehive.service.cache.DeviceCountCache;
 import com.devicehive.service.configuration.ConfigurationService;
 import com.devicehive.service.helpers.PasswordProcessor;
 import com.devicehive.service.helpers.ResponseConsumer;
@@ -84,6 +85,8 @@ public class UserService {
     private HiveValidator hiveValidator;
     @Autowired
     private RpcClient rpcClient;
+    @Autowired
+    private DeviceCountCache deviceCountCache;
 
     /**
      * Tries to authenticate with given credentials
@@ -244,6 +247,7 @@ public class UserService {
         NetworkWithUsersAndDevicesVO existingNetwork = networkDao.findWithUsers(networkId)
                 .orElseThrow(() -> new NoSuchElementException(String.format(Messages.NETWORK_NOT_FOUND, networkId)));
         networkDao.assignToNetwork(existingNetwork, existingUser);
+        deviceCountCache.invalidateAll();
     }
 
     /**
@@ -260,6 +264,7 @@ public class UserService {
             throw new NoSuchElementException(Messages.USER_NOT_FOUND);
         }
         userDao.unassignNetwork(existingUser, networkId);
+        deviceCountCache.invalidateAll();
     }
 
     //@Transactional(propagation = Propagation.NOT_SUPPORTED)
@@ -0,0 +1,81 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.broadcast.Broadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Invalidation of a frontend near cache: the key is evicted on this node right away and once more after commit of the
+ * current transaction (a concurrent reader may cache the old row until then), then other frontend nodes are notified
+ * through the broadcast topic. Broadcast failures are logged, cache TTL bounds staleness in that case.
+ */
+class CacheInvalidation {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidation.class);
+
+    private final String topic;
+    private final Consumer<String> evict;
+
+    private Broadcaster broadcaster;
+
+    CacheInvalidation(String topic, Consumer<String> evict) {
+        this.topic = topic;
+        this.evict = evict;
+    }
+
+    void listen(Broadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+        broadcaster.listen(topic, key -> {
+            logger.debug("Invalidation received from {}: {}", topic, key);
+            evict.accept(key);
+        });
+    }
+
+    void publish(String key) {
+        evict.accept(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evict.accept(key);
+                    broadcast(key);
+                }
+            });
+        } else {
+            broadcast(key);
+        }
+    }
+
+    private void broadcast(String key) {
+        if (broadcaster != null) {
+            try {
+                broadcaster.broadcast(topic, key);
+            } catch (Exception e) {
+                logger.warn("Unable to broadcast {} to {}", key, topic, e);
+            }
+        }
+    }
+}
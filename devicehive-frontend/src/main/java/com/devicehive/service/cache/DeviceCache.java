@@ -0,0 +1,267 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.shim.api.broadcast.Broadcaster;
+import com.devicehive.vo.DeviceClassEquipmentVO;
+import com.devicehive.vo.DeviceClassVO;
+import com.devicehive.vo.DeviceClassWithEquipmentVO;
+import com.devicehive.vo.DeviceVO;
+import com.devicehive.vo.NetworkVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Near cache of devices (with network and device class) keyed by guid. Entries live at most {@code device.cache.ttl.ms}
+ * and the least recently used ones are evicted above {@code device.cache.size}. Changes made on this node invalidate
+ * the entry right away and after commit of the current transaction, other frontend nodes are notified through
+ * {@link #INVALIDATION_TOPIC}; the TTL bounds staleness if such a message is lost.
+ * Lookups with permission checks are not cached, the checks are part of the database query.
+ */
+@Component
+public class DeviceCache {
+    public static final String INVALIDATION_TOPIC = "device_invalidation";
+    private static final String ALL = "*";
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private final CacheInvalidation invalidation = new CacheInvalidation(INVALIDATION_TOPIC, this::evict);
+
+    // bumped on every invalidation, a value loaded concurrently with invalidation is not cached
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+
+    @Autowired
+    public DeviceCache(@Value("${device.cache.size:10000}") int maxSize,
+                       @Value("${device.cache.ttl.ms:30000}") long ttlMs) {
+        this(maxSize, ttlMs, System::currentTimeMillis);
+    }
+
+    DeviceCache(int maxSize, long ttlMs, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > DeviceCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Autowired(required = false)
+    public void setBroadcaster(Broadcaster broadcaster) {
+        invalidation.listen(broadcaster);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlMs > 0;
+    }
+
+    /**
+     * Returns cached device or loads it with the loader. Missing devices (null) are not cached.
+     * Returned device is a copy and may be modified by caller.
+     */
+    public DeviceVO get(String guid, Function<String, DeviceVO> loader) {
+        if (!isEnabled() || guid == null) {
+            return loader.apply(guid);
+        }
+        final long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(guid);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return copy(entry.device);
+                }
+                entries.remove(guid);
+            }
+        }
+        misses.incrementAndGet();
+        final long loadVersion = version.get();
+        final long start = System.nanoTime();
+        final DeviceVO device = loader.apply(guid);
+        loadTimeNanos.addAndGet(System.nanoTime() - start);
+        if (device != null) {
+            synchronized (entries) {
+                if (version.get() == loadVersion) {
+                    entries.put(guid, new Entry(copy(device), now + ttlMs));
+                }
+            }
+        }
+        return device;
+    }
+
+    /**
+     * Drops device on all frontend nodes, call it whenever device is saved or deleted.
+     */
+    public void invalidate(String guid) {
+        if (guid != null) {
+            invalidation.publish(guid);
+        }
+    }
+
+    /**
+     * Drops all devices on all frontend nodes, for changes of networks and device classes embedded into devices.
+     */
+    public void invalidateAll() {
+        invalidation.publish(ALL);
+    }
+
+    private void evict(String key) {
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            version.incrementAndGet();
+            if (ALL.equals(key)) {
+                entries.clear();
+            } else {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private static DeviceVO copy(DeviceVO device) {
+        DeviceVO copy = new DeviceVO();
+        copy.setId(device.getId());
+        copy.setGuid(device.getGuid());
+        copy.setName(device.getName());
+        copy.setData(copy(device.getData()));
+        copy.setNetwork(copy(device.getNetwork()));
+        copy.setDeviceClass(copy(device.getDeviceClass()));
+        copy.setBlocked(device.getBlocked());
+        return copy;
+    }
+
+    private static NetworkVO copy(NetworkVO network) {
+        if (network == null) {
+            return null;
+        }
+        NetworkVO copy = new NetworkVO();
+        copy.setId(network.getId());
+        copy.setKey(network.getKey());
+        copy.setName(network.getName());
+        copy.setDescription(network.getDescription());
+        copy.setEntityVersion(network.getEntityVersion());
+        return copy;
+    }
+
+    private static DeviceClassVO copy(DeviceClassVO deviceClass) {
+        if (deviceClass == null) {
+            return null;
+        }
+        DeviceClassVO copy;
+        if (deviceClass instanceof DeviceClassWithEquipmentVO) {
+            DeviceClassWithEquipmentVO withEquipment = new DeviceClassWithEquipmentVO();
+            if (((DeviceClassWithEquipmentVO) deviceClass).getEquipment() != null) {
+                withEquipment.setEquipment(((DeviceClassWithEquipmentVO) deviceClass).getEquipment().stream()
+                        .map(DeviceCache::copy)
+                        .collect(Collectors.toSet()));
+            }
+            copy = withEquipment;
+        } else {
+            copy = new DeviceClassVO();
+        }
+        copy.setId(deviceClass.getId());
+        copy.setName(deviceClass.getName());
+        copy.setIsPermanent(deviceClass.getIsPermanent());
+        copy.setData(copy(deviceClass.getData()));
+        copy.setEntityVersion(deviceClass.getEntityVersion());
+        return copy;
+    }
+
+    private static DeviceClassEquipmentVO copy(DeviceClassEquipmentVO equipment) {
+        DeviceClassEquipmentVO copy = new DeviceClassEquipmentVO();
+        copy.setId(equipment.getId());
+        copy.setName(equipment.getName());
+        copy.setCode(equipment.getCode());
+        copy.setType(equipment.getType());
+        copy.setData(copy(equipment.getData()));
+        return copy;
+    }
+
+    private static JsonStringWrapper copy(JsonStringWrapper data) {
+        return data != null ? new JsonStringWrapper(data.getJsonString()) : null;
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public double getAverageLoadMillis() {
+        long loads = misses.get();
+        return loads == 0 ? 0 : loadTimeNanos.get() / 1e6 / loads;
+    }
+
+    private static class Entry {
+        private final DeviceVO device;
+        private final long expiresAt;
+
+        Entry(DeviceVO device, long expiresAt) {
+            this.device = device;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
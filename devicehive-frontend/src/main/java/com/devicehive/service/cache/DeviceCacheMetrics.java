@@ -0,0 +1,57 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exposes state of {@link DeviceCache} and {@link DeviceCountCache} through actuator metrics endpoint.
+ */
+@Component
+public class DeviceCacheMetrics implements PublicMetrics {
+
+    @Autowired
+    private DeviceCache deviceCache;
+
+    @Autowired
+    private DeviceCountCache deviceCountCache;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("device.cache.size", deviceCache.getSize()),
+                new Metric<>("device.cache.hits", deviceCache.getHits()),
+                new Metric<>("device.cache.misses", deviceCache.getMisses()),
+                new Metric<>("device.cache.hit-ratio", deviceCache.getHitRatio()),
+                new Metric<>("device.cache.load.avg-ms", deviceCache.getAverageLoadMillis()),
+                new Metric<>("device.cache.evictions", deviceCache.getEvictions()),
+                new Metric<>("device.cache.invalidations", deviceCache.getInvalidations()),
+                new Metric<>("device.count.cache.size", deviceCountCache.getSize()),
+                new Metric<>("device.count.cache.hits", deviceCountCache.getHits()),
+                new Metric<>("device.count.cache.misses", deviceCountCache.getMisses()));
+    }
+}
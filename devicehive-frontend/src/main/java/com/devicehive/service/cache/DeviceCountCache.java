@@ -0,0 +1,159 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.auth.HivePrincipal;
+import com.devicehive.shim.api.broadcast.Broadcaster;
+import com.devicehive.vo.UserVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counts of devices allowed to a principal, keyed by user and its role, network and device restrictions of the
+ * principal and requested guids. Any change of network membership (device created, moved or deleted, user assigned to or removed
+ * from network, network deleted) drops all counts on every frontend node through {@link #INVALIDATION_TOPIC}.
+ * Entries live at most {@code device.count.cache.ttl.ms}; the cache is cleared when it grows above
+ * {@code device.count.cache.size}.
+ */
+@Component
+public class DeviceCountCache {
+    public static final String INVALIDATION_TOPIC = "device_count_invalidation";
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final CacheInvalidation invalidation = new CacheInvalidation(INVALIDATION_TOPIC, key -> evictAll());
+
+    // bumped on every invalidation, a count loaded concurrently with invalidation is not cached
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public DeviceCountCache(@Value("${device.count.cache.size:1000}") int maxSize,
+                            @Value("${device.count.cache.ttl.ms:30000}") long ttlMs) {
+        this(maxSize, ttlMs, System::currentTimeMillis);
+    }
+
+    DeviceCountCache(int maxSize, long ttlMs, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    @Autowired(required = false)
+    public void setBroadcaster(Broadcaster broadcaster) {
+        invalidation.listen(broadcaster);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlMs > 0;
+    }
+
+    public long get(HivePrincipal principal, List<String> guids, Supplier<Long> loader) {
+        if (!isEnabled()) {
+            return loader.get();
+        }
+        final String key = key(principal, guids);
+        final long now = clock.getAsLong();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            hits.incrementAndGet();
+            return entry.count;
+        }
+        misses.incrementAndGet();
+        final long loadVersion = version.get();
+        final long count = loader.get();
+        synchronized (entries) {
+            if (version.get() == loadVersion) {
+                if (entries.size() >= maxSize) {
+                    entries.clear();
+                }
+                entries.put(key, new Entry(count, now + ttlMs));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drops all counts on all frontend nodes, call it whenever devices or users join or leave networks.
+     */
+    public void invalidateAll() {
+        invalidation.publish("*");
+    }
+
+    private void evictAll() {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private static String key(HivePrincipal principal, List<String> guids) {
+        StringBuilder key = new StringBuilder();
+        if (principal != null) {
+            UserVO user = principal.getUser();
+            key.append(user != null ? user.getId() + ":" + user.getRole() : "-")
+                    .append('|').append(sorted(principal.getNetworkIds()))
+                    .append('|').append(sorted(principal.getDeviceGuids()));
+        }
+        return key.append('|').append(sorted(guids)).toString();
+    }
+
+    private static <T extends Comparable<T>> Object sorted(Collection<T> values) {
+        return values != null ? new TreeSet<>(values) : "all";
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long expiresAt;
+
+        Entry(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -30,6 +30,8 @@ import com.devicehive.model.DeviceNotification;
 import com.devicehive.model.JsonStringWrapper;
 import com.devicehive.vo.DeviceEquipmentVO;
 import com.devicehive.vo.DeviceVO;
+import com.devicehive.websockets.converters.JsonMessageBuilder;
+import com.devicehive.websockets.converters.JsonMessageWriter;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -37,43 +39,36 @@ import org.springframework.util.Assert;
 
 import javax.servlet.http.HttpServletResponse;
 
-import java.util.Random;
 
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy.*;
 
 public class ServerResponsesFactory {
 
-    public static JsonObject createNotificationInsertMessage(DeviceNotification deviceNotification, String subId) {
-        JsonElement deviceNotificationJson =
-                GsonFactory.createGson(NOTIFICATION_TO_CLIENT).toJsonTree(deviceNotification);
-        JsonObject resultMessage = new JsonObject();
-        resultMessage.addProperty("action", "notification/insert");
-        resultMessage.addProperty(Constants.DEVICE_GUID, deviceNotification.getDeviceGuid());
-        resultMessage.add(Constants.NOTIFICATION, deviceNotificationJson);
-        resultMessage.addProperty(Constants.SUBSCRIPTION_ID, subId);
-        return resultMessage;
+    public static String createNotificationInsertMessage(DeviceNotification deviceNotification, String subId) {
+        return JsonMessageWriter.write(out -> {
+            out.name(JsonMessageBuilder.ACTION).value("notification/insert");
+            out.name(Constants.DEVICE_GUID).value(deviceNotification.getDeviceGuid());
+            JsonMessageWriter.writeValue(out, Constants.NOTIFICATION, deviceNotification,
+                    GsonFactory.createGson(NOTIFICATION_TO_CLIENT));
+            out.name(Constants.SUBSCRIPTION_ID).value(subId);
+        });
     }
 
-    public static JsonObject createCommandInsertMessage(DeviceCommand deviceCommand, String subId) {
-
-        JsonElement deviceCommandJson = GsonFactory.createGson(COMMAND_TO_DEVICE).toJsonTree(deviceCommand,
-                DeviceCommand.class);
-
-        JsonObject resultJsonObject = new JsonObject();
-        resultJsonObject.addProperty("action", "command/insert");
-        resultJsonObject.addProperty(Constants.DEVICE_GUID, deviceCommand.getDeviceGuid());
-        resultJsonObject.add(Constants.COMMAND, deviceCommandJson);
-        resultJsonObject.addProperty(Constants.SUBSCRIPTION_ID, subId);
-        return resultJsonObject;
+    public static String createCommandInsertMessage(DeviceCommand deviceCommand, String subId) {
+        return JsonMessageWriter.write(out -> {
+            out.name(JsonMessageBuilder.ACTION).value("command/insert");
+            out.name(Constants.DEVICE_GUID).value(deviceCommand.getDeviceGuid());
+            JsonMessageWriter.writeValue(out, Constants.COMMAND, deviceCommand, GsonFactory.createGson(COMMAND_TO_DEVICE));
+            out.name(Constants.SUBSCRIPTION_ID).value(subId);
+        });
     }
 
-    public static JsonObject createCommandUpdateMessage(DeviceCommand deviceCommand) {
-        JsonElement deviceCommandJson =
-                GsonFactory.createGson(COMMAND_UPDATE_TO_CLIENT).toJsonTree(deviceCommand);
-        JsonObject resultJsonObject = new JsonObject();
-        resultJsonObject.addProperty("action", "command/update");
-        resultJsonObject.add(Constants.COMMAND, deviceCommandJson);
-        return resultJsonObject;
+    public static String createCommandUpdateMessage(DeviceCommand deviceCommand) {
+        return JsonMessageWriter.write(out -> {
+            out.name(JsonMessageBuilder.ACTION).value("command/update");
+            JsonMessageWriter.writeValue(out, Constants.COMMAND, deviceCommand,
+                    GsonFactory.createGson(COMMAND_UPDATE_TO_CLIENT));
+        });
     }
 
     public static String parseNotificationStatus(DeviceNotification notificationMessage) {
@@ -96,7 +91,6 @@ public class ServerResponsesFactory {
 
     public static DeviceNotification createNotificationForDevice(DeviceVO device, String notificationName) {
         DeviceNotification notification = new DeviceNotification();
-        notification.setId(Math.abs(new Random().nextInt())); // TODO: remove this when id generation will be moved to backend
         notification.setNotification(notificationName);
         notification.setDeviceGuid(device.getGuid());
         Gson gson = GsonFactory.createGson(JsonPolicyDef.Policy.DEVICE_PUBLISHED);
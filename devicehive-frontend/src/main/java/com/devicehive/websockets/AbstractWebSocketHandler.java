@@ -21,6 +21,7 @@ package com.devicehive.websockets;
  */
 
 import com.devicehive.json.GsonFactory;
+import com.devicehive.messages.handler.WebSocketClientHandler;
 import com.devicehive.service.DeviceCommandService;
 import com.devicehive.service.DeviceNotificationService;
 import com.devicehive.websockets.converters.JsonMessageBuilder;
@@ -33,6 +34,7 @@ import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
@@ -45,6 +47,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 abstract public class AbstractWebSocketHandler extends TextWebSocketHandler {
     private static final Logger logger = LoggerFactory.getLogger(AbstractWebSocketHandler.class);
+    private static final int SC_TOO_MANY_REQUESTS = 429;
 
     @Autowired
     private SessionMonitor sessionMonitor;
@@ -58,6 +61,9 @@ abstract public class AbstractWebSocketHandler extends TextWebSocketHandler {
     @Autowired
     private DeviceNotificationService notificationService;
 
+    @Value("${websocket.requests.in-flight.max:16}")
+    private int maxRequestsInFlight;
+
     private int sendTimeLimit = 10 * 1000;
     private int sendBufferSizeLimit = 512 * 1024;
 
@@ -66,7 +72,7 @@ abstract public class AbstractWebSocketHandler extends TextWebSocketHandler {
         logger.debug("Opening session id {} ", session.getId());
 
         session = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, sendBufferSizeLimit);
-        HiveWebsocketSessionState state = new HiveWebsocketSessionState();
+        HiveWebsocketSessionState state = new HiveWebsocketSessionState(maxRequestsInFlight);
         session.getAttributes().put(HiveWebsocketSessionState.KEY, state);
 
         session.getAttributes().put(CommandHandlers.SUBSCSRIPTION_SET_NAME, new CopyOnWriteArraySet<String>());
@@ -80,8 +86,20 @@ abstract public class AbstractWebSocketHandler extends TextWebSocketHandler {
         logger.debug("Session id {} ", session.getId());
         session = sessionMonitor.getSession(session.getId());
         JsonObject request = new JsonParser().parse(message.getPayload()).getAsJsonObject();
-        JsonObject response = webSocketResponseBuilder.buildResponse(request, session);
-        session.sendMessage(new TextMessage(response.toString()));
+
+        // responses are sent as soon as they are ready and may come in different order, clients match them by
+        // requestId; requests beyond the in-flight limit are rejected right away so the container thread never waits
+        HiveWebsocketSessionState state = HiveWebsocketSessionState.get(session);
+        if (!state.tryAcquireRequestPermit()) {
+            WebSocketClientHandler.sendMessage(webSocketResponseBuilder.buildError(request, SC_TOO_MANY_REQUESTS,
+                    String.format("Too many requests in flight, at most %d are processed at a time", maxRequestsInFlight)),
+                    session);
+            return;
+        }
+        final WebSocketSession responseSession = session;
+        webSocketResponseBuilder.buildResponse(request, session)
+                .thenAccept(response -> WebSocketClientHandler.sendMessage(response, responseSession))
+                .whenComplete((ignored, ex) -> state.releaseRequestPermit());
     }
 
     @Override
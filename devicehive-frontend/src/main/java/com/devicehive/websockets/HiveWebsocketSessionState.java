@@ -25,11 +25,18 @@ import com.devicehive.auth.HivePrincipal;
 import com.devicehive.websockets.util.HiveEndpoint;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.concurrent.Semaphore;
+
 public class HiveWebsocketSessionState {
 
     public static final String KEY = HiveWebsocketSessionState.class.getName();
     private HivePrincipal hivePrincipal;
     private HiveEndpoint endpoint;
+    private final Semaphore requestPermits;
+
+    public HiveWebsocketSessionState(int maxRequestsInFlight) {
+        this.requestPermits = new Semaphore(maxRequestsInFlight);
+    }
 
     public static HiveWebsocketSessionState get(WebSocketSession session) {
         return (HiveWebsocketSessionState) session.getAttributes().get(HiveWebsocketSessionState.KEY);
@@ -50,4 +57,17 @@ public class HiveWebsocketSessionState {
     public void setEndpoint(HiveEndpoint endpoint) {
         this.endpoint = endpoint;
     }
+
+    /**
+     * Takes a permit to process one more request of the session without waiting.
+     *
+     * @return false when the session already has the maximum number of requests being processed
+     */
+    public boolean tryAcquireRequestPermit() {
+        return requestPermits.tryAcquire();
+    }
+
+    public void releaseRequestPermit() {
+        requestPermits.release();
+    }
 }
@@ -35,6 +35,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 @Component
 public class WebSocketRequestProcessor {
@@ -48,18 +51,22 @@ public class WebSocketRequestProcessor {
     @Autowired
     private DeviceHandlers deviceHandlers;
 
-    public WebSocketResponse process(JsonObject request, WebSocketSession session) throws InterruptedException {
-        WebSocketResponse response;
+    /**
+     * Dispatches request to its handler. Handlers which wait for backend replies return response future instead of
+     * blocking the calling thread, the rest are completed immediately.
+     */
+    public CompletableFuture<WebSocketResponse> process(JsonObject request, WebSocketSession session) throws InterruptedException {
+        CompletableFuture<WebSocketResponse> response;
         WebsocketAction action = getAction(request);
         switch (action) {
             case SERVER_INFO:
-                response = commonHandlers.processServerInfo(session);
+                response = completedFuture(commonHandlers.processServerInfo(session));
                 break;
             case AUTHENTICATE:
-                response = commonHandlers.processAuthenticate(request, session);
+                response = completedFuture(commonHandlers.processAuthenticate(request, session));
                 break;
             case TOKEN_REFRESH:
-                response = commonHandlers.processRefresh(request, session);
+                response = completedFuture(commonHandlers.processRefresh(request, session));
                 break;
             case NOTIFICATION_INSERT:
                 response = notificationHandlers.processNotificationInsert(request, session);
@@ -83,10 +90,10 @@ public class WebSocketRequestProcessor {
                 response = commandHandlers.processCommandUnsubscribe(request, session);
                 break;
             case DEVICE_GET:
-                response = deviceHandlers.processDeviceGet(request);
+                response = completedFuture(deviceHandlers.processDeviceGet(request));
                 break;
             case DEVICE_SAVE:
-                response = deviceHandlers.processDeviceSave(request, session);
+                response = completedFuture(deviceHandlers.processDeviceSave(request, session));
                 break;
             case EMPTY: default:
                 throw new JsonParseException("'action' field could not be parsed to known endpoint");
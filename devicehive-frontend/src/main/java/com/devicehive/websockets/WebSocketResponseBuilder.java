@@ -23,6 +23,9 @@ package com.devicehive.websockets;
 import com.devicehive.configuration.Messages;
 import com.devicehive.exceptions.HiveException;
 import com.devicehive.websockets.converters.JsonMessageBuilder;
+import com.devicehive.websockets.converters.JsonMessageWriter;
+import com.devicehive.websockets.converters.WebSocketResponse;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
@@ -37,6 +40,8 @@ import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Component
 public class WebSocketResponseBuilder {
@@ -45,38 +50,83 @@ public class WebSocketResponseBuilder {
     @Autowired
     private WebSocketRequestProcessor requestProcessor;
 
-    public JsonObject buildResponse(JsonObject request, WebSocketSession session) {
-        JsonObject response;
+    /**
+     * Processes request and writes response message. Returned future never completes exceptionally, errors are
+     * converted to error messages carrying action and requestId of the request.
+     */
+    public CompletableFuture<String> buildResponse(JsonObject request, WebSocketSession session) {
+        final JsonElement action = request.get(JsonMessageBuilder.ACTION);
+        final JsonElement requestId = request.get(JsonMessageBuilder.REQUEST_ID);
+        CompletableFuture<WebSocketResponse> response;
         try {
-            response = requestProcessor.process(request, session).getResponseAsJson();
-        } catch (BadCredentialsException ex) {
+            response = requestProcessor.process(request, session);
+        } catch (Exception ex) {
+            return CompletableFuture.completedFuture(writeError(action, requestId, ex));
+        }
+
+        return response
+                .thenApply(result -> JsonMessageWriter.write(out -> {
+                    JsonMessageWriter.writeElement(out, JsonMessageBuilder.ACTION, action);
+                    JsonMessageWriter.writeElement(out, JsonMessageBuilder.REQUEST_ID, requestId);
+                    result.writeTo(out);
+                }))
+                .exceptionally(ex -> writeError(action, requestId, ex));
+    }
+
+    /**
+     * Writes error message for the request without processing it.
+     */
+    public String buildError(JsonObject request, int code, String message) {
+        final JsonObject error = JsonMessageBuilder.createErrorResponseBuilder(code, message).build();
+        return JsonMessageWriter.write(out -> {
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.ACTION, request.get(JsonMessageBuilder.ACTION));
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.REQUEST_ID, request.get(JsonMessageBuilder.REQUEST_ID));
+            JsonMessageWriter.writeFields(out, error);
+        });
+    }
+
+    private String writeError(JsonElement action, JsonElement requestId, Throwable ex) {
+        final JsonObject error = createErrorResponse(ex);
+        return JsonMessageWriter.write(out -> {
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.ACTION, action);
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.REQUEST_ID, requestId);
+            JsonMessageWriter.writeFields(out, error);
+        });
+    }
+
+    private JsonObject createErrorResponse(Throwable ex) {
+        if (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        JsonObject response;
+        if (ex instanceof BadCredentialsException) {
             logger.error("Unauthorized access", ex);
             response = JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_UNAUTHORIZED, "Invalid credentials").build();
-        } catch (AccessDeniedException ex) {
+        } else if (ex instanceof AccessDeniedException) {
             logger.error("Access to action is denied", ex);
             response = JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized").build();
-        } catch (HiveException ex) {
+        } else if (ex instanceof HiveException) {
             logger.error("Error executing the request", ex);
-            response = JsonMessageBuilder.createError(ex).build();
-        } catch (ConstraintViolationException ex) {
+            response = JsonMessageBuilder.createError((HiveException) ex).build();
+        } else if (ex instanceof ConstraintViolationException) {
             logger.error("Error executing the request", ex);
             response =
                     JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage())
                             .build();
-        } catch (org.hibernate.exception.ConstraintViolationException ex) {
+        } else if (ex instanceof org.hibernate.exception.ConstraintViolationException) {
             logger.error("Error executing the request", ex);
             response = JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_CONFLICT, ex.getMessage())
                     .build();
-        } catch (JsonParseException ex) {
+        } else if (ex instanceof JsonParseException) {
             logger.error("Error executing the request", ex);
             response = JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_BAD_REQUEST,
                     Messages.INVALID_REQUEST_PARAMETERS).build();
-        } catch (OptimisticLockException ex) {
+        } else if (ex instanceof OptimisticLockException) {
             logger.error("Error executing the request", ex);
             logger.error("Data conflict", ex);
             response = JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_CONFLICT,
                     Messages.CONFLICT_MESSAGE).build();
-        } catch (PersistenceException ex) {
+        } else if (ex instanceof PersistenceException) {
             if (ex.getCause() instanceof org.hibernate.exception.ConstraintViolationException) {
                 response =
                         JsonMessageBuilder.createErrorResponseBuilder(HttpServletResponse.SC_CONFLICT, ex.getMessage())
@@ -86,16 +136,11 @@ public class WebSocketResponseBuilder {
                         .createErrorResponseBuilder(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage())
                         .build();
             }
-        } catch (Exception ex) {
+        } else {
             logger.error("Error executing the request", ex);
             response = JsonMessageBuilder
                     .createErrorResponseBuilder(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage()).build();
         }
-
-        return new JsonMessageBuilder()
-                .addAction(request.get(JsonMessageBuilder.ACTION))
-                .addRequestId(request.get(JsonMessageBuilder.REQUEST_ID))
-                .include(response)
-                .build();
+        return response;
     }
 }
@@ -0,0 +1,102 @@
+package com.devicehive.websockets.converters;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Writes outgoing WebSocket messages with {@link JsonWriter} straight into a per-thread buffer, values are
+ * serialized without building intermediate {@link JsonObject} trees.
+ */
+public final class JsonMessageWriter {
+
+    // buffers grown by occasional large messages are not kept
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringWriter> BUFFER = ThreadLocal.withInitial(() -> new StringWriter(1024));
+
+    private JsonMessageWriter() {
+    }
+
+    @FunctionalInterface
+    public interface Fields {
+        void write(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * Writes JSON object with fields provided by callback.
+     */
+    public static String write(Fields fields) {
+        StringWriter buffer = BUFFER.get();
+        buffer.getBuffer().setLength(0);
+        try {
+            JsonWriter out = new JsonWriter(buffer);
+            out.beginObject();
+            fields.write(out);
+            out.endObject();
+            out.flush();
+        } catch (IOException e) {
+            // StringWriter does not throw, writer fails only on malformed structure
+            throw new UncheckedIOException(e);
+        }
+        String message = buffer.toString();
+        if (buffer.getBuffer().capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return message;
+    }
+
+    /**
+     * Writes field with value serialized by given {@link Gson}, null value is written as JSON null.
+     */
+    public static void writeValue(JsonWriter out, String name, Object value, Gson gson) throws IOException {
+        out.name(name);
+        if (value == null) {
+            out.nullValue();
+        } else {
+            gson.toJson(value, value.getClass(), out);
+        }
+    }
+
+    public static void writeElement(JsonWriter out, String name, JsonElement element) throws IOException {
+        out.name(name);
+        Streams.write(element != null ? element : JsonNull.INSTANCE, out);
+    }
+
+    /**
+     * Writes all fields of the object, same as {@link JsonMessageBuilder#include(JsonObject)}.
+     */
+    public static void writeFields(JsonWriter out, JsonObject object) throws IOException {
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            writeElement(out, entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -24,7 +24,9 @@ import com.devicehive.json.GsonFactory;
 import com.devicehive.json.strategies.JsonPolicyDef;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,4 +57,16 @@ public class WebSocketResponse {
         }
         return messageBuilder.build();
     }
+
+    /**
+     * Streaming counterpart of {@link #getResponseAsJson()}, writes the same fields into an open JSON object.
+     */
+    public void writeTo(JsonWriter out) throws IOException {
+        out.name(JsonMessageBuilder.STATUS).value("success");
+        for (Map.Entry<String, Object> entry : dataMap.entrySet()) {
+            JsonPolicyDef.Policy policy = policyMap.get(entry.getKey());
+            Gson gson = policy == null ? GsonFactory.createGson() : GsonFactory.createGson(policy);
+            JsonMessageWriter.writeValue(out, entry.getKey(), entry.getValue(), gson);
+        }
+    }
 }
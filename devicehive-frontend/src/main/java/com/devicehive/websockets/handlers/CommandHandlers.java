@@ -32,6 +32,7 @@ import com.devicehive.service.DeviceCommandService;
 import com.devicehive.service.DeviceService;
 import com.devicehive.util.ServerResponsesFactory;
 import com.devicehive.vo.DeviceVO;
+import com.devicehive.vo.NetworkVO;
 import com.devicehive.vo.UserVO;
 import com.devicehive.websockets.converters.WebSocketResponse;
 import com.google.gson.Gson;
@@ -55,6 +56,7 @@ import java.util.stream.Collectors;
 import static com.devicehive.configuration.Constants.*;
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy.COMMAND_TO_CLIENT;
 import static com.devicehive.messages.handler.WebSocketClientHandler.sendMessage;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static javax.servlet.http.HttpServletResponse.*;
 
 @Component
@@ -74,7 +76,7 @@ public class CommandHandlers {
     private DeviceCommandService commandService;
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'GET_DEVICE_COMMAND')")
-    public WebSocketResponse processCommandSubscribe(JsonObject request, WebSocketSession session)
+    public CompletableFuture<WebSocketResponse> processCommandSubscribe(JsonObject request, WebSocketSession session)
             throws InterruptedException {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         final Date timestamp = gson.fromJson(request.get(TIMESTAMP), Date.class);
@@ -89,24 +91,44 @@ public class CommandHandlers {
 
         devices = prepareActualList(devices, deviceId);
 
-        List<DeviceVO> actualDevices;
         if (devices != null) {
-            actualDevices = deviceService.findByGuidWithPermissionsCheck(devices, principal);
+            List<DeviceVO> actualDevices = deviceService.findByGuidWithPermissionsCheck(devices, principal);
             if (actualDevices.size() != devices.size()) {
                 throw new HiveException(String.format(Messages.DEVICES_NOT_FOUND, devices), SC_FORBIDDEN);
             }
-        } else {
-            actualDevices = deviceService.list(null, null, null, null, null, null, null, true, null, null, principal).join();
-            devices = actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet());
+            return completedFuture(subscribe(devices, Collections.emptySet(), names, timestamp, deviceId, session));
         }
+        // device list is read from the backend, subscription is made once it arrives instead of blocking this thread
+        return deviceService.list(null, null, null, null, null, null, null, true, null, null, principal)
+                .thenApply(actualDevices -> {
+                    Set<Long> networks = Collections.emptySet();
+                    if (timestamp == null) {
+                        // single network level subscription covers all devices of the network, including ones added later
+                        networks = actualDevices.stream()
+                                .map(DeviceVO::getNetwork)
+                                .filter(Objects::nonNull)
+                                .map(NetworkVO::getId)
+                                .filter(principal::hasAccessToWholeNetwork)
+                                .collect(Collectors.toSet());
+                    }
+                    final Set<Long> subscribedNetworks = networks;
+                    Set<String> networkDevices = actualDevices.stream()
+                            .filter(device -> device.getNetwork() == null || !subscribedNetworks.contains(device.getNetwork().getId()))
+                            .map(DeviceVO::getGuid)
+                            .collect(Collectors.toSet());
+                    return subscribe(networkDevices, subscribedNetworks, names, timestamp, deviceId, session);
+                });
+    }
 
+    private WebSocketResponse subscribe(Set<String> devices, Set<Long> networks, Set<String> names, Date timestamp,
+                                        String deviceId, WebSocketSession session) {
         BiConsumer<DeviceCommand, String> callback = (command, subscriptionId) -> {
-            JsonObject json = ServerResponsesFactory.createCommandInsertMessage(command, subscriptionId);
-            sendMessage(json, session);
+            String message = ServerResponsesFactory.createCommandInsertMessage(command, subscriptionId);
+            sendMessage(message, session);
         };
 
         Pair<String, CompletableFuture<List<DeviceCommand>>> pair = commandService
-                .sendSubscribeRequest(devices, names, timestamp, callback);
+                .sendSubscribeRequest(devices, networks, names, timestamp, callback);
 
         pair.getRight().thenAccept(collection ->
                 collection.forEach(cmd ->
@@ -126,34 +148,37 @@ public class CommandHandlers {
     }
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'GET_DEVICE_COMMAND')")
-    public WebSocketResponse processCommandUnsubscribe(JsonObject request, WebSocketSession session) {
+    public CompletableFuture<WebSocketResponse> processCommandUnsubscribe(JsonObject request, WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         final Optional<String> subscriptionId = Optional.ofNullable(request.get(SUBSCRIPTION_ID))
                 .map(JsonElement::getAsString);
         Set<String> guids = gson.fromJson(request.getAsJsonArray(DEVICE_GUIDS), JsonTypes.STRING_SET_TYPE);
 
         logger.debug("command/unsubscribe action. Session {} ", session.getId());
+        CompletableFuture<Void> unsubscribed;
         if (!subscriptionId.isPresent() && guids == null) {
-            List<DeviceVO> actualDevices = deviceService.list(null, null, null, null, null, null, null, true, null, null,
-                   principal).join();
-            guids = actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet());
-            commandService.sendUnsubscribeRequest(null, guids);
+            unsubscribed = deviceService.list(null, null, null, null, null, null, null, true, null, null, principal)
+                    .thenAccept(actualDevices -> commandService.sendUnsubscribeRequest(null,
+                            actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet())));
         } else if (subscriptionId.isPresent()) {
             commandService.sendUnsubscribeRequest(subscriptionId.get(), guids);
+            unsubscribed = completedFuture(null);
         } else {
             commandService.sendUnsubscribeRequest(null, guids);
+            unsubscribed = completedFuture(null);
         }
 
-        ((CopyOnWriteArraySet) session
-                .getAttributes()
-                .get(SUBSCSRIPTION_SET_NAME))
-                .remove(subscriptionId);
-
-        return new WebSocketResponse();
+        return unsubscribed.thenApply(x -> {
+            ((CopyOnWriteArraySet) session
+                    .getAttributes()
+                    .get(SUBSCSRIPTION_SET_NAME))
+                    .remove(subscriptionId);
+            return new WebSocketResponse();
+        });
     }
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'CREATE_DEVICE_COMMAND')")
-    public WebSocketResponse processCommandInsert(JsonObject request, WebSocketSession session) {
+    public CompletableFuture<WebSocketResponse> processCommandInsert(JsonObject request, WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         final String deviceGuid = Optional.ofNullable(request.get(Constants.DEVICE_GUID))
                 .map(JsonElement::getAsString)
@@ -180,25 +205,29 @@ public class CommandHandlers {
         }
         final UserVO user = principal.getUser();
 
-        WebSocketResponse response = new WebSocketResponse();
-        for (DeviceVO device : devices) {
-            commandService.insert(deviceCommand, device, user)
-                    .thenApply(cmd -> {
-                        commandUpdateSubscribeAction(cmd.getId(), device.getGuid(), session);
-                        response.addValue(COMMAND, new InsertCommand(cmd.getId(), cmd.getTimestamp(), cmd.getUserId()), COMMAND_TO_CLIENT);
-                        return response;
-                    })
-                    .exceptionally(ex -> {
-                        logger.warn("Unable to insert notification.", ex);
-                        throw new HiveException(Messages.INTERNAL_SERVER_ERROR, SC_INTERNAL_SERVER_ERROR);
-                    }).join();
-        }
-
-        return response;
+        List<CompletableFuture<DeviceCommand>> inserted = devices.stream()
+                .map(device -> commandService.insert(deviceCommand, device, user)
+                        .thenApply(cmd -> {
+                            commandUpdateSubscribeAction(cmd.getId(), device.getGuid(), session);
+                            return cmd;
+                        }))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(inserted.toArray(new CompletableFuture[inserted.size()]))
+                .thenApply(x -> {
+                    WebSocketResponse response = new WebSocketResponse();
+                    inserted.stream().map(CompletableFuture::join).forEach(cmd ->
+                            response.addValue(COMMAND, new InsertCommand(cmd.getId(), cmd.getTimestamp(), cmd.getUserId()), COMMAND_TO_CLIENT));
+                    return response;
+                })
+                .exceptionally(ex -> {
+                    logger.warn("Unable to insert notification.", ex);
+                    throw new HiveException(Messages.INTERNAL_SERVER_ERROR, SC_INTERNAL_SERVER_ERROR);
+                });
     }
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'UPDATE_DEVICE_COMMAND')")
-    public WebSocketResponse processCommandUpdate(JsonObject request, WebSocketSession session) {
+    public CompletableFuture<WebSocketResponse> processCommandUpdate(JsonObject request, WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         String guid = request.get(DEVICE_GUID).getAsString();
         final Long id = Long.valueOf(request.get(COMMAND_ID).getAsString()); // TODO: nullable long?
@@ -229,21 +258,28 @@ public class CommandHandlers {
             throw new HiveException(String.format(Messages.DEVICE_NOT_FOUND, id), SC_NOT_FOUND);
         }
 
-        Optional<DeviceCommand> savedCommand = Optional.empty();
-        for (DeviceVO device : devices) {
-            savedCommand = commandService.findOne(id, device.getGuid()).join();
-            if (savedCommand.isPresent()) {
-                commandService.update(savedCommand.get(), commandUpdate);
-            }
-        }
-
-        if (!savedCommand.isPresent()) {
-            throw new HiveException(String.format(Messages.COMMAND_NOT_FOUND, id), SC_NOT_FOUND);
-        }
-
-        logger.debug("command/update proceed successfully for session: {}. Device guid: {}. Command id: {}", session,
-                guid, id);
-        return new WebSocketResponse();
+        List<CompletableFuture<Optional<DeviceCommand>>> savedCommands = devices.stream()
+                .map(device -> commandService.findOne(id, device.getGuid()))
+                .collect(Collectors.toList());
+
+        return CompletableFuture.allOf(savedCommands.toArray(new CompletableFuture[savedCommands.size()]))
+                .thenApply(x -> {
+                    Optional<DeviceCommand> savedCommand = Optional.empty();
+                    for (CompletableFuture<Optional<DeviceCommand>> future : savedCommands) {
+                        savedCommand = future.join();
+                        if (savedCommand.isPresent()) {
+                            commandService.update(savedCommand.get(), commandUpdate);
+                        }
+                    }
+
+                    if (!savedCommand.isPresent()) {
+                        throw new HiveException(String.format(Messages.COMMAND_NOT_FOUND, id), SC_NOT_FOUND);
+                    }
+
+                    logger.debug("command/update proceed successfully for session: {}. Device guid: {}. Command id: {}", session,
+                            guid, id);
+                    return new WebSocketResponse();
+                });
     }
 
     private Set<String> prepareActualList(Set<String> deviceIdSet, final String deviceId) {
@@ -271,8 +307,8 @@ public class CommandHandlers {
             throw new HiveException(String.format(Messages.COLUMN_CANNOT_BE_NULL, "commandId"), SC_BAD_REQUEST);
         }
         BiConsumer<DeviceCommand, String> callback =  (command, subscriptionId) -> {
-            JsonObject json = ServerResponsesFactory.createCommandUpdateMessage(command);
-            sendMessage(json, session);
+            String message = ServerResponsesFactory.createCommandUpdateMessage(command);
+            sendMessage(message, session);
         };
         commandService.sendSubscribeToUpdateRequest(commandId, guid, callback); // TODO: make sure this is the correct place to create update message
     }
@@ -25,6 +25,7 @@ import com.devicehive.configuration.Constants;
 import com.devicehive.configuration.Messages;
 import com.devicehive.exceptions.HiveException;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.websockets.InsertAck;
 import com.devicehive.model.websockets.InsertNotification;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
 import com.devicehive.resource.util.JsonTypes;
@@ -32,6 +33,7 @@ import com.devicehive.service.DeviceNotificationService;
 import com.devicehive.service.DeviceService;
 import com.devicehive.util.ServerResponsesFactory;
 import com.devicehive.vo.DeviceVO;
+import com.devicehive.vo.NetworkVO;
 import com.devicehive.websockets.converters.WebSocketResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
@@ -56,6 +58,7 @@ import java.util.stream.StreamSupport;
 import static com.devicehive.configuration.Constants.*;
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_TO_DEVICE;
 import static com.devicehive.messages.handler.WebSocketClientHandler.sendMessage;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
@@ -77,8 +80,8 @@ public class NotificationHandlers {
 
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'GET_DEVICE_NOTIFICATION')")
-    public WebSocketResponse processNotificationSubscribe(JsonObject request,
-                                                          WebSocketSession session) throws InterruptedException {
+    public CompletableFuture<WebSocketResponse> processNotificationSubscribe(JsonObject request,
+                                                                             WebSocketSession session) throws InterruptedException {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         Date timestamp = gson.fromJson(request.get(Constants.TIMESTAMP), Date.class);
         Set<String> devices = gson.fromJson(request.get(Constants.DEVICE_GUIDS), JsonTypes.STRING_SET_TYPE);
@@ -92,28 +95,48 @@ public class NotificationHandlers {
 
         devices = prepareActualList(devices, deviceId);
 
-        List<DeviceVO> actualDevices;
         if (devices != null) {
-            actualDevices = deviceService.findByGuidWithPermissionsCheck(devices, principal);
+            List<DeviceVO> actualDevices = deviceService.findByGuidWithPermissionsCheck(devices, principal);
             if (actualDevices.size() != devices.size()) {
                 throw new HiveException(String.format(Messages.DEVICES_NOT_FOUND, devices), SC_FORBIDDEN);
             }
-        } else {
-            actualDevices = deviceService.list(null, null, null, null, null, null, null, true, null, null, principal).join();
-            devices = actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet());
+            return completedFuture(subscribe(devices, Collections.emptySet(), names, timestamp, deviceId, session));
         }
+        // device list is read from the backend, subscription is made once it arrives instead of blocking this thread
+        return deviceService.list(null, null, null, null, null, null, null, true, null, null, principal)
+                .thenApply(actualDevices -> {
+                    Set<Long> networks = Collections.emptySet();
+                    if (timestamp == null) {
+                        // single network level subscription covers all devices of the network, including ones added later
+                        networks = actualDevices.stream()
+                                .map(DeviceVO::getNetwork)
+                                .filter(Objects::nonNull)
+                                .map(NetworkVO::getId)
+                                .filter(principal::hasAccessToWholeNetwork)
+                                .collect(Collectors.toSet());
+                    }
+                    final Set<Long> subscribedNetworks = networks;
+                    Set<String> networkDevices = actualDevices.stream()
+                            .filter(device -> device.getNetwork() == null || !subscribedNetworks.contains(device.getNetwork().getId()))
+                            .map(DeviceVO::getGuid)
+                            .collect(Collectors.toSet());
+                    return subscribe(networkDevices, subscribedNetworks, names, timestamp, deviceId, session);
+                });
+    }
 
+    private WebSocketResponse subscribe(Set<String> devices, Set<Long> networks, Set<String> names, Date timestamp,
+                                        String deviceId, WebSocketSession session) {
         BiConsumer<DeviceNotification, String> callback = (notification, subscriptionId) -> {
-            JsonObject json = ServerResponsesFactory.createNotificationInsertMessage(notification, subscriptionId);
-            sendMessage(json, session);
+            String message = ServerResponsesFactory.createNotificationInsertMessage(notification, subscriptionId);
+            sendMessage(message, session);
         };
 
         Pair<String, CompletableFuture<List<DeviceNotification>>> pair = notificationService
-                .subscribe(devices, names, timestamp, callback);
+                .subscribe(devices, networks, names, timestamp, callback);
 
         pair.getRight().thenAccept(collection -> collection.forEach(notification -> {
-            JsonObject json = ServerResponsesFactory.createNotificationInsertMessage(notification, pair.getLeft());
-            sendMessage(json, session);
+            String message = ServerResponsesFactory.createNotificationInsertMessage(notification, pair.getLeft());
+            sendMessage(message, session);
         }));
 
         logger.debug("notification/subscribe done for devices: {}, {}. Timestamp: {}. Names {} Session: {}",
@@ -138,8 +161,8 @@ public class NotificationHandlers {
      * {object} } </code>
      */
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'GET_DEVICE_NOTIFICATION')")
-    public WebSocketResponse processNotificationUnsubscribe(JsonObject request,
-                                                            WebSocketSession session) {
+    public CompletableFuture<WebSocketResponse> processNotificationUnsubscribe(JsonObject request,
+                                                                               WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         Optional<String> subId = Optional.ofNullable(request.get(SUBSCRIPTION_ID))
                 .map(s -> {
@@ -152,40 +175,61 @@ public class NotificationHandlers {
                 });
         Set<String> deviceGuids = gson.fromJson(request.get(DEVICE_GUIDS), JsonTypes.STRING_SET_TYPE);
         logger.debug("notification/unsubscribe action. Session {} ", session.getId());
+        CompletableFuture<Void> unsubscribed;
         if (!subId.isPresent() && deviceGuids == null) {
-            List<DeviceVO> actualDevices = deviceService.list(null, null, null, null, null, null, null, true, null, null,
-                    principal).join();
-            deviceGuids = actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet());
-            notificationService.unsubscribe(null, deviceGuids);
+            unsubscribed = deviceService.list(null, null, null, null, null, null, null, true, null, null, principal)
+                    .thenAccept(actualDevices -> notificationService.unsubscribe(null,
+                            actualDevices.stream().map(DeviceVO::getGuid).collect(Collectors.toSet())));
         } else if (subId.isPresent()) {
             notificationService.unsubscribe(subId.get(), deviceGuids);
+            unsubscribed = completedFuture(null);
         } else {
             notificationService.unsubscribe(null, deviceGuids);
+            unsubscribed = completedFuture(null);
         }
-        logger.debug("notification/unsubscribe completed for session {}", session.getId());
-
-        ((CopyOnWriteArraySet) session
-                .getAttributes()
-                .get(SUBSCSRIPTION_SET_NAME))
-                .remove(subId);
-        return new WebSocketResponse();
+        return unsubscribed.thenApply(x -> {
+            logger.debug("notification/unsubscribe completed for session {}", session.getId());
+
+            ((CopyOnWriteArraySet) session
+                    .getAttributes()
+                    .get(SUBSCSRIPTION_SET_NAME))
+                    .remove(subId);
+            return new WebSocketResponse();
+        });
     }
 
     @PreAuthorize("isAuthenticated() and hasPermission(null, 'CREATE_DEVICE_NOTIFICATION')")
-    public WebSocketResponse processNotificationInsert(JsonObject request,
-                                                       WebSocketSession session) {
+    public CompletableFuture<WebSocketResponse> processNotificationInsert(JsonObject request,
+                                                                          WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         final String deviceGuid = Optional.ofNullable(request.get(Constants.DEVICE_GUID))
                 .map(JsonElement::getAsString)
                 .orElse(null);
-        DeviceNotificationWrapper notificationSubmit = gson.fromJson(request.get(Constants.NOTIFICATION), DeviceNotificationWrapper.class);
+        // an array of notifications is inserted as a batch and answered with the list of inserted notifications
+        final JsonElement notificationElement = request.get(Constants.NOTIFICATION);
+        final boolean batch = notificationElement != null && notificationElement.isJsonArray();
+        List<DeviceNotificationWrapper> notificationSubmits = batch
+                ? gson.fromJson(notificationElement, JsonTypes.NOTIFICATION_WRAPPER_LIST_TYPE)
+                : Collections.singletonList(gson.fromJson(notificationElement, DeviceNotificationWrapper.class));
 
         logger.debug("notification/insert requested. Session {}. Guid {}", session, deviceGuid);
-        if (notificationSubmit == null || notificationSubmit.getNotification() == null) {
+        if (notificationSubmits.isEmpty() || notificationSubmits.stream().anyMatch(n -> n == null || n.getNotification() == null)) {
             logger.debug(
                     "notification/insert proceed with error. Bad notification: notification is required.");
             throw new HiveException(Messages.NOTIFICATION_REQUIRED, SC_BAD_REQUEST);
         }
+        if (notificationSubmits.size() > notificationService.getMaxInsertBatchSize()) {
+            logger.debug("notification/insert proceed with error. Batch of {} notifications is too large.",
+                    notificationSubmits.size());
+            throw new HiveException(String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE,
+                    notificationService.getMaxInsertBatchSize()), SC_BAD_REQUEST);
+        }
+        final InsertAck ack = InsertAck.forValue(Optional.ofNullable(request.get(Constants.ACK))
+                .map(JsonElement::getAsString)
+                .orElse(null));
+        if (ack == null) {
+            throw new HiveException(Messages.INVALID_REQUEST_PARAMETERS, SC_BAD_REQUEST);
+        }
 
         Set<DeviceVO> devices = new HashSet<>();
         if (deviceGuid == null) {
@@ -200,28 +244,52 @@ public class NotificationHandlers {
             throw new HiveException(Messages.DEVICE_GUID_REQUIRED, SC_FORBIDDEN);
         }
 
-        WebSocketResponse response = new WebSocketResponse();
+        List<InsertNotification> inserted = new ArrayList<>();
+        List<CompletableFuture<?>> acknowledged = new ArrayList<>();
 
         for (DeviceVO device : devices) {
             if (device.getNetwork() == null) {
                 logger.debug("notification/insert. No network specified for device with guid = {}", deviceGuid);
                 throw new HiveException(String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, deviceGuid), SC_FORBIDDEN);
             }
-            DeviceNotification message = notificationService.convertWrapperToNotification(notificationSubmit, device);
-
-            notificationService.insert(message, device)
-                    .thenApply(notification -> {
-                        logger.debug("notification/insert proceed successfully. Session {}. Guid {}", session, deviceGuid);
-                        response.addValue(NOTIFICATION, new InsertNotification(message.getId(), message.getTimestamp()), NOTIFICATION_TO_DEVICE);
-                        return response;
-                    })
-                    .exceptionally(ex -> {
-                        logger.warn("Unable to insert notification.", ex);
-                        throw new HiveException(Messages.INTERNAL_SERVER_ERROR, SC_INTERNAL_SERVER_ERROR);
-                    }).join();
+            List<DeviceNotification> messages = notificationSubmits.stream()
+                    .map(n -> notificationService.convertWrapperToNotification(n, device))
+                    .collect(Collectors.toList());
+
+            if (ack == InsertAck.STORED) {
+                acknowledged.add(batch
+                        ? notificationService.insertAll(messages, device)
+                        : notificationService.insert(messages.get(0), device));
+            } else {
+                CompletableFuture<Void> sent = notificationService.push(messages, device);
+                if (ack == InsertAck.ENQUEUED) {
+                    acknowledged.add(sent);
+                } else {
+                    sent.exceptionally(ex -> {
+                        logger.warn("Unable to send notification, it is lost.", ex);
+                        return null;
+                    });
+                }
+            }
+            messages.forEach(message -> inserted.add(new InsertNotification(message.getId(), message.getTimestamp())));
         }
 
-        return response;
+        return CompletableFuture.allOf(acknowledged.toArray(new CompletableFuture[acknowledged.size()]))
+                .thenApply(x -> {
+                    logger.debug("notification/insert of {} notifications proceed successfully with {} ack. Session {}. Guid {}",
+                            inserted.size(), ack.getValue(), session, deviceGuid);
+                    WebSocketResponse response = new WebSocketResponse();
+                    if (batch) {
+                        response.addValue(NOTIFICATIONS, inserted, NOTIFICATION_TO_DEVICE);
+                    } else {
+                        response.addValue(NOTIFICATION, inserted.get(inserted.size() - 1), NOTIFICATION_TO_DEVICE);
+                    }
+                    return response;
+                })
+                .exceptionally(ex -> {
+                    logger.warn("Unable to insert notification.", ex);
+                    throw new HiveException(Messages.INTERNAL_SERVER_ERROR, SC_INTERNAL_SERVER_ERROR);
+                });
     }
 
     private Set<String> prepareActualList(Set<String> deviceIdSet, final String deviceId) {
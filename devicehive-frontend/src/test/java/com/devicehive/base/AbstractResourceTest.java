@@ -23,6 +23,8 @@ package com.devicehive.base;
 import com.devicehive.application.DeviceHiveApplication;
 import com.devicehive.resource.converters.CollectionProvider;
 import com.devicehive.resource.converters.HiveEntityProvider;
+import com.devicehive.security.jwt.JwtPayload;
+import com.devicehive.service.security.jwt.JwtClientService;
 import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.AfterClass;
@@ -44,6 +46,7 @@ import javax.ws.rs.core.Response;
 import java.util.Base64;
 import java.util.Map;
 
+import static java.util.Collections.singleton;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -70,6 +73,9 @@ public abstract class AbstractResourceTest extends AbstractSpringKafkaTest {
     @Autowired
     protected Gson gson;
 
+    @Autowired
+    private JwtClientService jwtClientService;
+
     @Before
     public void initSpringBootIntegrationTest() {
         httpBaseUri = "http://localhost:" + port + "/dh";
@@ -107,6 +113,16 @@ public abstract class AbstractResourceTest extends AbstractSpringKafkaTest {
         return "Bearer " + key;
     }
 
+    /**
+     * Fresh access token of admin user with all actions, networks and devices available.
+     */
+    protected String adminAccessToken() {
+        JwtPayload payload = new JwtPayload.Builder()
+                .withPublicClaims(1L, singleton("*"), singleton("*"), singleton("*"))
+                .buildPayload();
+        return jwtClientService.generateJwtAccessToken(payload);
+    }
+
     @SuppressWarnings("unchecked")
     protected final <T> T performRequest(String path, String method, Map<String, Object> params, Map<String, String> headers, Object body,
                                          Response.Status expectedStatus, Class<T> responseClass) {
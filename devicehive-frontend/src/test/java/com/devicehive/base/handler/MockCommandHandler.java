@@ -59,7 +59,8 @@ public class MockCommandHandler {
                 CommandSubscribeRequest body = (CommandSubscribeRequest) request.getBody();
                 Set<DeviceCommand> commands = commandMap.values()
                         .stream()
-                        .filter(n -> n.getDeviceGuid().equals(body.getDevice()))
+                        .filter(n -> n.getDeviceGuid().equals(body.getDevice())
+                                || body.getDevices() != null && body.getDevices().contains(n.getDeviceGuid()))
                         .collect(Collectors.toSet());
                 CommandSubscribeResponse subscribeResponse = new CommandSubscribeResponse(body.getSubscriptionId(), commands);
 
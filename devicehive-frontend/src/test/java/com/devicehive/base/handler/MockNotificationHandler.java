@@ -70,7 +70,8 @@ public class MockNotificationHandler {
                 NotificationSubscribeRequest body = (NotificationSubscribeRequest) request.getBody();
                 Set<DeviceNotification> notifications = notificationSet
                         .stream()
-                        .filter(n -> n.getDeviceGuid().equals(body.getDevice()))
+                        .filter(n -> n.getDeviceGuid().equals(body.getDevice())
+                                || body.getDevices() != null && body.getDevices().contains(n.getDeviceGuid()))
                         .collect(Collectors.toSet());
                 NotificationSubscribeResponse subscribeResponse = new NotificationSubscribeResponse(body.getSubscriptionId(), notifications);
 
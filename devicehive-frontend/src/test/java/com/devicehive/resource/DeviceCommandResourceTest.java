@@ -24,12 +24,19 @@ import com.devicehive.base.AbstractResourceTest;
 import com.devicehive.base.handler.MockCommandHandler;
 import com.devicehive.base.RequestDispatcherProxy;
 import com.devicehive.base.fixture.DeviceFixture;
+import com.devicehive.configuration.Constants;
 import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.HistoryCursor;
+import com.devicehive.model.rpc.CommandSearchRequest;
+import com.devicehive.model.rpc.CommandSearchResponse;
 import com.devicehive.model.updates.DeviceClassUpdate;
 import com.devicehive.model.updates.DeviceUpdate;
+import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.vo.DeviceClassEquipmentVO;
 import com.devicehive.vo.NetworkVO;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.After;
@@ -47,11 +54,14 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static javax.ws.rs.core.Response.Status.*;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 
 public class DeviceCommandResourceTest extends AbstractResourceTest {
 
@@ -174,4 +184,55 @@ public class DeviceCommandResourceTest extends AbstractResourceTest {
         assertEquals(1, updatedCommands.size());
 
     }
+
+    @Test
+    public void should_walk_commands_with_cursor_from_next_cursor_header() throws Exception {
+        String token = adminAccessToken();
+        String guid = UUID.randomUUID().toString();
+        DeviceUpdate deviceUpdate = DeviceFixture.createDevice(guid);
+        deviceUpdate.setDeviceClass(Optional.of(DeviceFixture.createDeviceClass()));
+        deviceUpdate.setNetwork(Optional.of(DeviceFixture.createNetwork()));
+        performRequest("/device/" + guid, "PUT", emptyMap(), singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), deviceUpdate, NO_CONTENT, null);
+
+        List<DeviceCommand> history = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            DeviceCommand command = DeviceFixture.createDeviceCommand();
+            command.setId(id);
+            command.setDeviceGuid(guid);
+            command.setTimestamp(new Date(id));
+            history.add(command);
+        }
+        List<CommandSearchRequest> searches = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            CommandSearchRequest searchRequest = (CommandSearchRequest) invocation.getArgumentAt(0, Request.class).getBody();
+            searches.add(searchRequest);
+            List<DeviceCommand> after = history.stream()
+                    .filter(c -> c.getId() > searchRequest.getCursor().getId())
+                    .collect(Collectors.toList());
+            CommandSearchResponse page = new CommandSearchResponse();
+            page.setCommands(new ArrayList<>(after.subList(0, Math.min(searchRequest.getTake(), after.size()))));
+            page.setNextCursor(after.size() > searchRequest.getTake() ? HistoryCursor.of(after.get(searchRequest.getTake() - 1)) : null);
+            return com.devicehive.shim.api.Response.newBuilder()
+                    .withBody(page)
+                    .buildSuccess();
+        }).when(requestHandler).handle(any(Request.class));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("cursor", "");
+        params.put("take", 2);
+        Response first = performRequest("/device/" + guid + "/command", "GET", params, singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), null, OK, Response.class);
+        String nextCursor = first.getHeaderString(Constants.NEXT_CURSOR_HEADER);
+        assertEquals(HistoryCursor.of(history.get(1)).encode(), nextCursor);
+        assertEquals(2, new JsonParser().parse(first.readEntity(String.class)).getAsJsonArray().size());
+
+        params.put("cursor", nextCursor);
+        Response second = performRequest("/device/" + guid + "/command", "GET", params, singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), null, OK, Response.class);
+        assertNull(second.getHeaderString(Constants.NEXT_CURSOR_HEADER));
+        JsonArray commands = new JsonParser().parse(second.readEntity(String.class)).getAsJsonArray();
+        assertEquals(1, commands.size());
+        assertEquals(3L, commands.get(0).getAsJsonObject().get("id").getAsLong());
+
+        assertEquals(HistoryCursor.START, searches.get(0).getCursor());
+        assertEquals(HistoryCursor.of(history.get(1)), searches.get(1).getCursor());
+    }
 }
@@ -25,6 +25,7 @@ import com.devicehive.base.RequestDispatcherProxy;
 import com.devicehive.base.fixture.DeviceFixture;
 import com.devicehive.base.handler.MockNotificationHandler;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.HistoryCursor;
 import com.devicehive.model.SpecialNotifications;
 import com.devicehive.model.rpc.*;
 import com.devicehive.model.updates.DeviceClassUpdate;
@@ -34,6 +35,8 @@ import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.vo.DeviceClassEquipmentVO;
 import com.devicehive.vo.NetworkVO;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.After;
@@ -49,17 +52,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.util.*;
+import java.util.function.Function;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static javax.ws.rs.core.Response.Status.CREATED;
 import static javax.ws.rs.core.Response.Status.NO_CONTENT;
 import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 
 public class DeviceNotificationResourceTest extends AbstractResourceTest {
 
+    // notification.insert.batch.max-size of test configuration
+    private static final int MAX_INSERT_BATCH_SIZE = 10;
+    // notification.export.idle-timeout.ms of test configuration
+    private static final long EXPORT_IDLE_TIMEOUT_MS = 2000;
+
     @Autowired
     private RequestDispatcherProxy requestDispatcherProxy;
 
@@ -113,4 +125,116 @@ public class DeviceNotificationResourceTest extends AbstractResourceTest {
         assertNotNull(notifications);
         assertEquals(1, notifications.size());
     }
+
+    @Test
+    public void should_export_all_notifications_page_by_page() throws Exception {
+        String token = adminAccessToken();
+        String guid = registerDevice(token);
+        List<DeviceNotification> history = createHistory(guid, 3);
+        answerExport(cursor -> HistoryCursor.START.equals(cursor)
+                ? page(history.subList(0, 2), HistoryCursor.of(history.get(1)))
+                : page(history.subList(2, 3), null));
+
+        JsonArray exported = export(guid, token);
+        assertEquals(3, exported.size());
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(history.get(i).getId().longValue(), exported.get(i).getAsJsonObject().get("id").getAsLong());
+        }
+    }
+
+    @Test
+    public void should_end_export_with_error_when_backend_fails_partway() throws Exception {
+        String token = adminAccessToken();
+        String guid = registerDevice(token);
+        List<DeviceNotification> history = createHistory(guid, 2);
+        answerExport(cursor -> HistoryCursor.START.equals(cursor)
+                ? page(history, HistoryCursor.of(history.get(1)))
+                : com.devicehive.shim.api.Response.newBuilder().buildFailed(500));
+
+        JsonArray exported = export(guid, token);
+        assertEquals(3, exported.size());
+        assertEquals(history.get(1).getId().longValue(), exported.get(1).getAsJsonObject().get("id").getAsLong());
+        assertEquals(500, exported.get(2).getAsJsonObject().get("error").getAsInt());
+    }
+
+    @Test
+    public void should_end_export_with_error_when_backend_stops_answering_pages() throws Exception {
+        String token = adminAccessToken();
+        String guid = registerDevice(token);
+        List<DeviceNotification> history = createHistory(guid, 1);
+        answerExport(cursor -> HistoryCursor.START.equals(cursor)
+                ? page(history, HistoryCursor.of(history.get(0)))
+                : afterIdleTimeout(page(Collections.emptyList(), null)));
+
+        JsonArray exported = export(guid, token);
+        assertEquals(2, exported.size());
+        assertEquals(history.get(0).getId().longValue(), exported.get(0).getAsJsonObject().get("id").getAsLong());
+        assertEquals(504, exported.get(1).getAsJsonObject().get("error").getAsInt());
+    }
+
+    @Test
+    public void should_reject_notification_batch_above_max_size() throws Exception {
+        String token = adminAccessToken();
+        String guid = registerDevice(token);
+        List<DeviceNotification> batch = new ArrayList<>();
+        for (int i = 0; i <= MAX_INSERT_BATCH_SIZE; i++) {
+            batch.add(DeviceFixture.createDeviceNotification());
+        }
+
+        performRequest("/device/" + guid + "/notification/batch", "POST", emptyMap(),
+                singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), batch, REQUEST_ENTITY_TOO_LARGE, null);
+    }
+
+    private String registerDevice(String token) {
+        String guid = UUID.randomUUID().toString();
+        DeviceUpdate deviceUpdate = DeviceFixture.createDevice(guid);
+        deviceUpdate.setDeviceClass(Optional.of(DeviceFixture.createDeviceClass()));
+        deviceUpdate.setNetwork(Optional.of(DeviceFixture.createNetwork()));
+        performRequest("/device/" + guid, "PUT", emptyMap(), singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), deviceUpdate, NO_CONTENT, null);
+        return guid;
+    }
+
+    private List<DeviceNotification> createHistory(String guid, int count) {
+        List<DeviceNotification> history = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DeviceNotification notification = DeviceFixture.createDeviceNotification();
+            notification.setId((long) i + 1);
+            notification.setDeviceGuid(guid);
+            notification.setTimestamp(new Date());
+            history.add(notification);
+        }
+        return history;
+    }
+
+    /**
+     * Backend double for keyset searches of the export: every page request is answered with the page after its
+     * cursor.
+     */
+    private void answerExport(Function<HistoryCursor, com.devicehive.shim.api.Response> pages) {
+        doAnswer(invocation -> {
+            Request request = invocation.getArgumentAt(0, Request.class);
+            return pages.apply(((NotificationSearchRequest) request.getBody()).getCursor());
+        }).when(requestHandler).handle(any(Request.class));
+    }
+
+    private com.devicehive.shim.api.Response page(List<DeviceNotification> notifications, HistoryCursor nextCursor) {
+        return com.devicehive.shim.api.Response.newBuilder()
+                .withBody(new NotificationSearchResponse(new ArrayList<>(notifications), nextCursor))
+                .buildSuccess();
+    }
+
+    private com.devicehive.shim.api.Response afterIdleTimeout(com.devicehive.shim.api.Response response) {
+        try {
+            Thread.sleep(EXPORT_IDLE_TIMEOUT_MS + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return response;
+    }
+
+    private JsonArray export(String guid, String token) {
+        Response response = performRequest("/device/" + guid + "/notification/export", "GET", emptyMap(),
+                singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)), null, OK, Response.class);
+        return new JsonParser().parse(response.readEntity(String.class)).getAsJsonArray();
+    }
 }
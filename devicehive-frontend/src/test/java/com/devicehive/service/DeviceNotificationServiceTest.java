@@ -30,6 +30,7 @@ import com.devicehive.model.SpecialNotifications;
 import com.devicehive.model.rpc.*;
 import com.devicehive.service.exception.BackendException;
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.vo.DeviceVO;
@@ -137,7 +138,7 @@ public class DeviceNotificationServiceTest extends AbstractResourceTest {
         final long id = System.currentTimeMillis();
 
         // return empty response for any request
-        when(requestHandler.handle(any(Request.class))).thenReturn(Response.newBuilder()
+        when(requestHandler.handle(any(Request.class))).then(invocation -> Response.newBuilder()
                 .withBody(new NotificationSearchResponse(Collections.emptyList()))
                 .buildSuccess());
 
@@ -211,7 +212,7 @@ public class DeviceNotificationServiceTest extends AbstractResourceTest {
                 guids.get(3)));
 
         // return empty response for any request
-        when(requestHandler.handle(any(Request.class))).thenReturn(Response.newBuilder()
+        when(requestHandler.handle(any(Request.class))).then(invocation -> Response.newBuilder()
                 .withBody(new NotificationSearchResponse(Collections.emptyList()))
                 .buildSuccess());
 
@@ -351,4 +352,69 @@ public class DeviceNotificationServiceTest extends AbstractResourceTest {
         assertEquals(Action.NOTIFICATION_INSERT_REQUEST.name(), request.getAction());
         assertEquals(deviceNotification, request.getDeviceNotification());
     }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    public void testInsertAllShouldSendNotificationsInBatches() throws Exception {
+        final DeviceVO deviceVO = new DeviceVO();
+        deviceVO.setId(System.nanoTime());
+        deviceVO.setGuid(UUID.randomUUID().toString());
+
+        final List<DeviceNotification> notifications = IntStream.range(0, 1200)
+                .mapToObj(i -> {
+                    DeviceNotification notification = new DeviceNotification();
+                    notification.setId((long) i);
+                    notification.setTimestamp(new Date());
+                    notification.setNotification(RandomStringUtils.randomAlphabetic(10));
+                    notification.setDeviceGuid(deviceVO.getGuid());
+                    return notification;
+                })
+                .collect(Collectors.toList());
+
+        when(requestHandler.handle(any(Request.class))).thenAnswer(invocation -> {
+            Request request = (Request) invocation.getArguments()[0];
+            return Response.newBuilder()
+                    .withBody(new NotificationBatchInsertResponse(
+                            request.getBody().cast(NotificationBatchInsertRequest.class).getDeviceNotifications()))
+                    .buildSuccess();
+        });
+
+        List<DeviceNotification> inserted = notificationService.insertAll(notifications, deviceVO).get(15, TimeUnit.SECONDS);
+        assertEquals(notifications, inserted);
+
+        verify(requestHandler, times(3)).handle(argument.capture());
+        assertEquals(Arrays.asList(500, 500, 200), argument.getAllValues().stream()
+                .map(request -> request.getBody().cast(NotificationBatchInsertRequest.class).getDeviceNotifications().size())
+                .collect(Collectors.toList()));
+        assertTrue(argument.getAllValues().stream().allMatch(request -> deviceVO.getGuid().equals(request.getPartitionKey())));
+    }
+
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.BEFORE_METHOD)
+    public void testPushShouldSendNotificationsWithoutWaitingForBackend() throws Exception {
+        final DeviceVO deviceVO = new DeviceVO();
+        deviceVO.setId(System.nanoTime());
+        deviceVO.setGuid(UUID.randomUUID().toString());
+
+        final List<DeviceNotification> notifications = IntStream.range(0, 600)
+                .mapToObj(i -> {
+                    DeviceNotification notification = new DeviceNotification();
+                    notification.setId((long) i);
+                    notification.setTimestamp(new Date());
+                    notification.setNotification(RandomStringUtils.randomAlphabetic(10));
+                    notification.setDeviceGuid(deviceVO.getGuid());
+                    return notification;
+                })
+                .collect(Collectors.toList());
+
+        when(requestHandler.handle(any(Request.class))).thenReturn(Response.newBuilder().buildSuccess());
+
+        notificationService.push(notifications, deviceVO).get(15, TimeUnit.SECONDS);
+
+        verify(requestHandler, timeout(15000).times(2)).handle(argument.capture());
+        assertEquals(Arrays.asList(500, 100), argument.getAllValues().stream()
+                .map(request -> request.getBody().cast(NotificationBatchInsertRequest.class).getDeviceNotifications().size())
+                .collect(Collectors.toList()));
+        assertTrue(argument.getAllValues().stream().allMatch(request -> request.getType() == RequestType.push));
+    }
 }
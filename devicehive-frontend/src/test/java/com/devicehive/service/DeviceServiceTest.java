@@ -38,6 +38,7 @@ import com.devicehive.model.rpc.ListDeviceResponse;
 import com.devicehive.model.rpc.NotificationInsertRequest;
 import com.devicehive.model.updates.DeviceClassUpdate;
 import com.devicehive.model.updates.DeviceUpdate;
+import com.devicehive.model.updates.UserUpdate;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.RequestHandler;
@@ -55,6 +56,7 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.annotation.DirtiesContext;
 
@@ -63,6 +65,8 @@ import java.net.UnknownHostException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
+import javax.sql.DataSource;
+
 import static java.util.Collections.singleton;
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.Matchers.notNullValue;
@@ -92,6 +96,9 @@ public class DeviceServiceTest extends AbstractResourceTest {
     @Autowired
     private DeviceDao deviceDao;
 
+    @Autowired
+    private DataSource dataSource;
+
     @Mock
     private RequestHandler requestHandler;
 
@@ -651,6 +658,62 @@ public class DeviceServiceTest extends AbstractResourceTest {
         assertEquals(3, count);
     }
 
+    @Test
+    public void should_recount_devices_when_network_membership_changes() {
+        final DeviceClassUpdate dc = DeviceFixture.createDeviceClass();
+
+        final DeviceVO device0 = DeviceFixture.createDeviceVO();
+        final DeviceUpdate deviceUpdate0 = DeviceFixture.createDevice(device0.getGuid(), dc);
+
+        final DeviceVO device1 = DeviceFixture.createDeviceVO();
+        final DeviceUpdate deviceUpdate1 = DeviceFixture.createDevice(device1.getGuid(), dc);
+
+        UserVO user = new UserVO();
+        user.setLogin(RandomStringUtils.randomAlphabetic(10));
+        user.setRole(UserRole.CLIENT);
+        user = userService.createUser(user, "123");
+
+        final NetworkVO network = new NetworkVO();
+        network.setName("" + randomUUID());
+        NetworkVO created = networkService.create(network);
+        userService.assignNetwork(user.getId(), created.getId());
+        final HivePrincipal principal = new HivePrincipal(user);
+
+        deviceUpdate0.setNetwork(Optional.ofNullable(network));
+        deviceService.deviceSave(deviceUpdate0, emptyEquipmentSet);
+        assertEquals(1, deviceService.getAllowedDevicesCount(principal, Collections.emptyList()));
+
+        deviceUpdate1.setNetwork(Optional.ofNullable(network));
+        deviceService.deviceSave(deviceUpdate1, emptyEquipmentSet);
+        assertEquals(2, deviceService.getAllowedDevicesCount(principal, Collections.emptyList()));
+
+        deviceService.deleteDevice(device0.getGuid());
+        assertEquals(1, deviceService.getAllowedDevicesCount(principal, Collections.emptyList()));
+
+        userService.unassignNetwork(user.getId(), created.getId());
+        assertEquals(0, deviceService.getAllowedDevicesCount(principal, Collections.emptyList()));
+    }
+
+    @Test
+    public void should_recount_devices_when_user_role_changes() {
+        final DeviceVO device = DeviceFixture.createDeviceVO();
+        final DeviceClassUpdate dc = DeviceFixture.createDeviceClass();
+        deviceService.deviceSave(DeviceFixture.createDevice(device.getGuid(), dc), emptyEquipmentSet);
+        final List<String> guids = Collections.singletonList(device.getGuid());
+
+        UserVO user = new UserVO();
+        user.setLogin(RandomStringUtils.randomAlphabetic(10));
+        user.setRole(UserRole.CLIENT);
+        user = userService.createUser(user, "123");
+        assertEquals(0, deviceService.getAllowedDevicesCount(new HivePrincipal(user), guids));
+
+        UserUpdate update = new UserUpdate();
+        update.setRole(Optional.of(UserRole.ADMIN.getValue()));
+        userService.updateUser(user.getId(), update, UserRole.ADMIN);
+        user = userService.findById(user.getId());
+        assertEquals(1, deviceService.getAllowedDevicesCount(new HivePrincipal(user), guids));
+    }
+
 
     /**
      * Test checks that unauthorized user can't modify device
@@ -672,6 +735,26 @@ public class DeviceServiceTest extends AbstractResourceTest {
         deviceService.deviceSaveAndNotify(deviceUpdate, emptyEquipmentSet, principal);
     }
 
+    /**
+     * Test checks that device blocked and then deleted through another node is not served from Hibernate
+     * second-level cache of this node
+     */
+    @Test
+    public void should_find_device_changed_by_another_node() throws Exception {
+        final DeviceVO device = DeviceFixture.createDeviceVO();
+        final DeviceClassUpdate dc = DeviceFixture.createDeviceClass();
+        final DeviceUpdate deviceUpdate = DeviceFixture.createDevice(device.getGuid(), dc);
+        deviceService.deviceSave(deviceUpdate, emptyEquipmentSet);
+        assertNotEquals(Boolean.TRUE, deviceDao.findByUUID(device.getGuid()).getBlocked());
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("UPDATE device SET blocked = ? WHERE guid = ?", true, device.getGuid());
+        assertTrue(deviceDao.findByUUID(device.getGuid()).getBlocked());
+
+        jdbcTemplate.update("DELETE FROM device WHERE guid = ?", device.getGuid());
+        assertNull(deviceDao.findByUUID(device.getGuid()));
+    }
+
     private void handleListDeviceRequest() {
         when(requestHandler.handle(any(Request.class))).thenAnswer(invocation -> {
             Request request = invocation.getArgumentAt(0, Request.class);
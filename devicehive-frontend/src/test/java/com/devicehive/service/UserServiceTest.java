@@ -53,6 +53,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.annotation.DirtiesContext;
 
@@ -62,6 +63,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import javax.sql.DataSource;
+
 import static java.util.UUID.randomUUID;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
@@ -84,6 +87,8 @@ public class UserServiceTest extends AbstractResourceTest {
     private DeviceService deviceService;
     @Autowired
     private RequestDispatcherProxy requestDispatcherProxy;
+    @Autowired
+    private DataSource dataSource;
 
     @Mock
     private RequestHandler requestHandler;
@@ -1191,6 +1196,41 @@ public class UserServiceTest extends AbstractResourceTest {
         userService.updateUser(user.getId(), update, UserRole.CLIENT);
     }
 
+    @Test
+    public void should_find_user_with_role_updated() throws Exception {
+        UserVO user = new UserVO();
+        user.setLogin(RandomStringUtils.randomAlphabetic(10));
+        user.setRole(UserRole.CLIENT);
+        user = userService.createUser(user, "123");
+        assertThat(userService.findById(user.getId()).getRole(), equalTo(UserRole.CLIENT));
+
+        UserUpdate update = new UserUpdate();
+        update.setRole(Optional.of(UserRole.ADMIN.getValue()));
+        userService.updateUser(user.getId(), update, UserRole.ADMIN);
+
+        assertThat(userService.findById(user.getId()).getRole(), equalTo(UserRole.ADMIN));
+    }
+
+    /**
+     * Second-level cache is local to the node, user changed through another node is updated behind its back
+     */
+    @Test
+    public void should_find_user_changed_by_another_node() throws Exception {
+        UserVO user = new UserVO();
+        user.setLogin(RandomStringUtils.randomAlphabetic(10));
+        user.setRole(UserRole.CLIENT);
+        user.setStatus(UserStatus.ACTIVE);
+        user = userService.createUser(user, "123");
+        assertThat(userService.findById(user.getId()).getRole(), equalTo(UserRole.CLIENT));
+        assertThat(userDao.findByName(user.getLogin()).get().getStatus(), equalTo(UserStatus.ACTIVE));
+
+        new JdbcTemplate(dataSource).update("UPDATE \"user\" SET role = ?, status = ? WHERE id = ?",
+                UserRole.ADMIN.getValue(), UserStatus.LOCKED_OUT.getValue(), user.getId());
+
+        assertThat(userService.findById(user.getId()).getRole(), equalTo(UserRole.ADMIN));
+        assertThat(userDao.findByName(user.getLogin()).get().getStatus(), equalTo(UserStatus.LOCKED_OUT));
+    }
+
     @Test
     public void should_throw_IllegalParametersException_if_() throws Exception {
         UserVO user = new UserVO();
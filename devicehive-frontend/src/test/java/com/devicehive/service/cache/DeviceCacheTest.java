@@ -0,0 +1,165 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.shim.api.broadcast.Broadcaster;
+import com.devicehive.vo.DeviceClassWithEquipmentVO;
+import com.devicehive.vo.DeviceVO;
+import com.devicehive.vo.NetworkVO;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, DeviceVO> loader = guid -> {
+        loads.incrementAndGet();
+        DeviceVO device = new DeviceVO();
+        device.setGuid(guid);
+        device.setName("device " + loads.get());
+        return device;
+    };
+
+    @Test
+    public void shouldLoadDeviceOnceWithinTtl() throws Exception {
+        DeviceCache cache = new DeviceCache(10, 100, now::get);
+
+        DeviceVO first = cache.get("a", loader);
+        DeviceVO second = cache.get("a", loader);
+
+        assertEquals(1, loads.get());
+        assertEquals(first.getName(), second.getName());
+        assertNotSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0.001);
+
+        now.addAndGet(100);
+        assertEquals("device 2", cache.get("a", loader).getName());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedDevice() throws Exception {
+        DeviceCache cache = new DeviceCache(2, 100, now::get);
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        cache.get("a", loader);
+        assertEquals(3, loads.get());
+        cache.get("b", loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void shouldNotCacheMissingDevice() throws Exception {
+        DeviceCache cache = new DeviceCache(10, 100, now::get);
+        assertNull(cache.get("a", guid -> null));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldInvalidateOnOtherNodes() throws Exception {
+        LoopbackBroadcaster broadcaster = new LoopbackBroadcaster();
+        DeviceCache first = new DeviceCache(10, 100, now::get);
+        DeviceCache second = new DeviceCache(10, 100, now::get);
+        first.setBroadcaster(broadcaster);
+        second.setBroadcaster(broadcaster);
+        first.get("a", loader);
+        second.get("a", loader);
+        second.get("b", loader);
+
+        first.invalidate("a");
+        assertEquals(0, first.getSize());
+        assertEquals(1, second.getSize());
+
+        first.invalidateAll();
+        assertEquals(0, second.getSize());
+    }
+
+    @Test
+    public void shouldNotCacheDeviceLoadedConcurrentlyWithInvalidation() throws Exception {
+        DeviceCache cache = new DeviceCache(10, 100, now::get);
+        cache.get("a", guid -> {
+            cache.invalidate(guid);
+            return loader.apply(guid);
+        });
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void shouldNotShareNetworkAndDeviceClassWithCaller() throws Exception {
+        DeviceCache cache = new DeviceCache(10, 100, now::get);
+        Function<String, DeviceVO> withRelations = guid -> {
+            DeviceVO device = loader.apply(guid);
+            NetworkVO network = new NetworkVO();
+            network.setName("network");
+            device.setNetwork(network);
+            DeviceClassWithEquipmentVO deviceClass = new DeviceClassWithEquipmentVO();
+            deviceClass.setName("class");
+            deviceClass.setData(new JsonStringWrapper("{}"));
+            device.setDeviceClass(deviceClass);
+            return device;
+        };
+
+        DeviceVO first = cache.get("a", withRelations);
+        first.getNetwork().setName("changed");
+        first.getDeviceClass().setName("changed");
+        first.getDeviceClass().getData().setJsonString("{\"changed\":true}");
+
+        DeviceVO second = cache.get("a", withRelations);
+        assertEquals(1, loads.get());
+        assertEquals("network", second.getNetwork().getName());
+        assertEquals("class", second.getDeviceClass().getName());
+        assertEquals("{}", second.getDeviceClass().getData().getJsonString());
+        assertTrue(second.getDeviceClass() instanceof DeviceClassWithEquipmentVO);
+    }
+
+    private static class LoopbackBroadcaster implements Broadcaster {
+        private final List<Consumer<String>> listeners = new ArrayList<>();
+
+        @Override
+        public void broadcast(String topic, String message) {
+            listeners.forEach(listener -> listener.accept(message));
+        }
+
+        @Override
+        public void listen(String topic, Consumer<String> listener) {
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.devicehive.util;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void shouldGenerateIncreasingIdsOfNode() throws Exception {
+        IdGenerator generator = new IdGenerator(42);
+        long before = System.currentTimeMillis();
+        long previous = generator.nextId();
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(42, IdGenerator.nodeOf(previous));
+        assertTrue(IdGenerator.timestampOf(previous) >= before);
+    }
+
+    @Test
+    public void shouldNotRunAheadOfClockMoreThanMaxLead() throws Exception {
+        IdGenerator generator = new IdGenerator(0);
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            assertTrue(IdGenerator.timestampOf(id) <= System.currentTimeMillis() + IdGenerator.MAX_LEAD_MS);
+        }
+    }
+
+    @Test
+    public void shouldNotCollideAcrossThreadsAndNodes() throws Exception {
+        IdGenerator first = new IdGenerator(1);
+        IdGenerator second = new IdGenerator(2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Set<Future<long[]>> futures = new HashSet<>();
+            for (int thread = 0; thread < 4; thread++) {
+                IdGenerator generator = thread % 2 == 0 ? first : second;
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[50000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> ids = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                for (long id : future.get(30, TimeUnit.SECONDS)) {
+                    assertTrue(ids.add(id));
+                }
+            }
+            assertEquals(200000, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldKeepIdsExactInJavaScript() throws Exception {
+        long id = new IdGenerator(IdGenerator.MAX_NODE).nextId();
+        assertTrue(id <= IdGenerator.MAX_SAFE_ID);
+        assertEquals(id, (long) (double) id);
+        assertEquals(IdGenerator.MAX_NODE, IdGenerator.nodeOf(id));
+        // time part of the largest safe id is far enough from now
+        assertTrue(IdGenerator.timestampOf(IdGenerator.MAX_SAFE_ID) > System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365 * 50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNodeOutOfRange() throws Exception {
+        new IdGenerator(IdGenerator.MAX_NODE + 1);
+    }
+}
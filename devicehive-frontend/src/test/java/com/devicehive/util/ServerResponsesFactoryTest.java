@@ -0,0 +1,98 @@
+package com.devicehive.util;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.configuration.Constants;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.COMMAND_TO_DEVICE;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT;
+import static org.junit.Assert.assertEquals;
+
+public class ServerResponsesFactoryTest {
+
+    @Test
+    public void shouldWriteNotificationInsertMessageAsTreeDid() throws Exception {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(42L);
+        notification.setDeviceGuid(UUID.randomUUID().toString());
+        notification.setNotification("temperature");
+        notification.setTimestamp(new Date());
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6,\"tags\":[\"a\",null,true],\"nested\":{\"unit\":\"C\"}}"));
+
+        JsonObject expected = new JsonObject();
+        expected.addProperty("action", "notification/insert");
+        expected.addProperty(Constants.DEVICE_GUID, notification.getDeviceGuid());
+        expected.add(Constants.NOTIFICATION, GsonFactory.createGson(NOTIFICATION_TO_CLIENT).toJsonTree(notification));
+        expected.addProperty(Constants.SUBSCRIPTION_ID, "sub");
+
+        String message = ServerResponsesFactory.createNotificationInsertMessage(notification, "sub");
+        assertEquals(expected, new JsonParser().parse(message));
+    }
+
+    @Test
+    public void shouldWriteCommandInsertMessageAsTreeDid() throws Exception {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(7L);
+        command.setDeviceGuid(UUID.randomUUID().toString());
+        command.setCommand("reboot");
+        command.setTimestamp(new Date());
+        command.setLifetime(30);
+        command.setParameters(new JsonStringWrapper("\"now\""));
+
+        JsonObject expected = new JsonObject();
+        expected.addProperty("action", "command/insert");
+        expected.addProperty(Constants.DEVICE_GUID, command.getDeviceGuid());
+        expected.add(Constants.COMMAND, GsonFactory.createGson(COMMAND_TO_DEVICE).toJsonTree(command, DeviceCommand.class));
+        expected.add(Constants.SUBSCRIPTION_ID, null);
+
+        String message = ServerResponsesFactory.createCommandInsertMessage(command, null);
+        assertEquals(expected, new JsonParser().parse(message));
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void shouldRejectParametersWithTrailingContent() throws Exception {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setNotification("temperature");
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6} {\"value\":0}"));
+
+        ServerResponsesFactory.createNotificationInsertMessage(notification, "sub");
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void shouldRejectMalformedParameters() throws Exception {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setNotification("temperature");
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6}}"));
+
+        ServerResponsesFactory.createNotificationInsertMessage(notification, "sub");
+    }
+}
@@ -0,0 +1,122 @@
+package com.devicehive.websockets;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.websockets.util.SessionMonitor;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClientWebSocketHandlerTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<String>> responses = new ArrayList<>();
+    private ClientWebSocketHandler handler;
+    private WebSocketSession session;
+
+    @Before
+    public void setUp() throws Exception {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("session");
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> sent.add(((TextMessage) invocation.getArguments()[0]).getPayload()))
+                .when(session).sendMessage(any(TextMessage.class));
+
+        SessionMonitor sessionMonitor = mock(SessionMonitor.class);
+        doAnswer(invocation -> {
+            WebSocketSession registered = (WebSocketSession) invocation.getArguments()[0];
+            when(sessionMonitor.getSession("session")).thenReturn(registered);
+            return null;
+        }).when(sessionMonitor).registerSession(any(WebSocketSession.class));
+
+        WebSocketResponseBuilder responseBuilder = mock(WebSocketResponseBuilder.class);
+        when(responseBuilder.buildResponse(any(JsonObject.class), any(WebSocketSession.class))).thenAnswer(invocation -> {
+            CompletableFuture<String> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+        when(responseBuilder.buildError(any(JsonObject.class), any(Integer.class), any(String.class)))
+                .thenAnswer(invocation -> "rejected " + ((JsonObject) invocation.getArguments()[0]).get("requestId").getAsString()
+                        + " " + invocation.getArguments()[1]);
+
+        handler = new ClientWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "sessionMonitor", sessionMonitor);
+        ReflectionTestUtils.setField(handler, "webSocketResponseBuilder", responseBuilder);
+        ReflectionTestUtils.setField(handler, "maxRequestsInFlight", MAX_IN_FLIGHT);
+        handler.afterConnectionEstablished(session);
+    }
+
+    @Test
+    public void shouldRejectRequestsBeyondInFlightLimitWithoutWaiting() throws Exception {
+        send("1");
+        send("2");
+        send("3");
+
+        assertEquals(MAX_IN_FLIGHT, responses.size());
+        assertEquals(1, sent.size());
+        assertEquals("rejected 3 429", sent.get(0));
+
+        responses.get(0).complete("response 1");
+        send("4");
+        assertEquals(3, responses.size());
+        assertEquals("response 1", sent.get(1));
+    }
+
+    @Test
+    public void shouldSendResponsesInCompletionOrder() throws Exception {
+        send("1");
+        send("2");
+
+        responses.get(1).complete("response 2");
+        responses.get(0).complete("response 1");
+
+        assertEquals(2, sent.size());
+        assertEquals("response 2", sent.get(0));
+        assertEquals("response 1", sent.get(1));
+        assertTrue(HiveWebsocketSessionState.get(session).tryAcquireRequestPermit());
+    }
+
+    private void send(String requestId) throws Exception {
+        JsonObject request = new JsonParser()
+                .parse("{\"action\":\"notification/insert\",\"requestId\":\"" + requestId + "\"}").getAsJsonObject();
+        handler.handleTextMessage(session, new TextMessage(request.toString()));
+    }
+}
@@ -21,21 +21,47 @@ package com.devicehive.websockets;
  */
 
 import com.devicehive.base.AbstractResourceTest;
+import com.devicehive.base.RequestDispatcherProxy;
+import com.devicehive.base.fixture.DeviceFixture;
 import com.devicehive.base.fixture.JsonFixture;
+import com.devicehive.base.handler.MockNotificationHandler;
+import com.devicehive.model.updates.DeviceUpdate;
+import com.devicehive.shim.api.server.RequestHandler;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import javax.ws.rs.core.HttpHeaders;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static javax.ws.rs.core.Response.Status.NO_CONTENT;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -47,6 +73,22 @@ import static org.junit.Assert.fail;
  */
 public class WebSocketApiInfoHandlerTest extends AbstractResourceTest {
 
+    @Autowired
+    private RequestDispatcherProxy requestDispatcherProxy;
+
+    @Mock
+    private RequestHandler requestHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @After
+    public void tearDown() {
+        Mockito.reset(requestHandler);
+    }
+
     @Test
     public void shouldReturnApiInfo() throws Exception {
         final String requestId = "62345vxgsa5";
@@ -79,4 +121,89 @@ public class WebSocketApiInfoHandlerTest extends AbstractResourceTest {
             return null;
         }).get(5, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void shouldAnswerPipelinedRequestsWithTheirRequestIds() throws Exception {
+        final int count = 50;
+
+        BlockingQueue<JsonObject> responses = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect(responses);
+        for (int i = 0; i < count; i++) {
+            send(session, JsonFixture.createWsCommand("server/info", "request-" + i));
+        }
+
+        Set<String> requestIds = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            JsonObject jsonResp = poll(responses);
+            assertThat(jsonResp.get("status").getAsString(), is("success"));
+            requestIds.add(jsonResp.get("requestId").getAsString());
+        }
+        assertThat(requestIds, is(IntStream.range(0, count).mapToObj(i -> "request-" + i).collect(Collectors.toSet())));
+        session.close();
+    }
+
+    @Test
+    public void shouldAnswerPipelinedNotificationInsertsWithTheirRequestIds() throws Exception {
+        final int count = 10;
+        requestDispatcherProxy.setRequestHandler(requestHandler);
+        new MockNotificationHandler().handle(requestHandler);
+
+        String token = adminAccessToken();
+        String guid = UUID.randomUUID().toString();
+        DeviceUpdate device = DeviceFixture.createDevice(guid);
+        device.setDeviceClass(Optional.of(DeviceFixture.createDeviceClass()));
+        device.setNetwork(Optional.of(DeviceFixture.createNetwork()));
+        performRequest("/device/" + guid, "PUT", emptyMap(), singletonMap(HttpHeaders.AUTHORIZATION, tokenAuthHeader(token)),
+                device, NO_CONTENT, null);
+
+        BlockingQueue<JsonObject> responses = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect(responses);
+        JsonObject authenticate = JsonFixture.createWsCommand("authenticate", "auth");
+        authenticate.addProperty("token", token);
+        send(session, authenticate);
+        assertThat(poll(responses).get("status").getAsString(), is("success"));
+
+        for (int i = 0; i < count; i++) {
+            JsonObject notification = new JsonObject();
+            notification.addProperty("notification", "pipelined-" + i);
+            Map<String, JsonElement> fields = new HashMap<>();
+            fields.put("deviceGuid", new JsonPrimitive(guid));
+            fields.put("notification", notification);
+            send(session, JsonFixture.createWsCommand("notification/insert", "insert-" + i, fields));
+        }
+
+        Set<String> requestIds = new HashSet<>();
+        Set<Long> notificationIds = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            JsonObject jsonResp = poll(responses);
+            assertThat(jsonResp.get("action").getAsString(), is("notification/insert"));
+            assertThat(jsonResp.get("status").getAsString(), is("success"));
+            requestIds.add(jsonResp.get("requestId").getAsString());
+            notificationIds.add(jsonResp.getAsJsonObject("notification").get("id").getAsLong());
+        }
+        assertThat(requestIds, is(IntStream.range(0, count).mapToObj(i -> "insert-" + i).collect(Collectors.toSet())));
+        assertThat(notificationIds.size(), is(count));
+        session.close();
+    }
+
+    private WebSocketSession connect(BlockingQueue<JsonObject> responses) throws Exception {
+        return new StandardWebSocketClient()
+                .doHandshake(new TextWebSocketHandler() {
+                    @Override
+                    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                        responses.add(gson.fromJson(message.getPayload(), JsonObject.class));
+                    }
+                }, wsBaseUri() + "/websocket/client")
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private void send(WebSocketSession session, JsonObject request) throws IOException {
+        session.sendMessage(new TextMessage(gson.toJson(request)));
+    }
+
+    private JsonObject poll(BlockingQueue<JsonObject> responses) throws InterruptedException {
+        JsonObject response = responses.poll(10, TimeUnit.SECONDS);
+        assertNotNull("No response in time", response);
+        return response;
+    }
 }
@@ -0,0 +1,123 @@
+package com.devicehive.websockets.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.configuration.Constants;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.websockets.InsertNotification;
+import com.devicehive.util.ServerResponsesFactory;
+import com.devicehive.websockets.converters.JsonMessageBuilder;
+import com.devicehive.websockets.converters.JsonMessageWriter;
+import com.devicehive.websockets.converters.WebSocketResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_TO_DEVICE;
+
+/**
+ * Compares building outgoing WebSocket messages as {@link JsonObject} trees with writing them through
+ * {@link JsonMessageWriter}: notification pushed to a subscriber and notification/insert response.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class WebSocketMessageBenchmark {
+
+    private DeviceNotification notification;
+    private String subscriptionId;
+    private WebSocketResponse response;
+    private JsonElement action;
+    private JsonElement requestId;
+
+    @Setup
+    public void setUp() {
+        notification = new DeviceNotification();
+        notification.setId(Long.MAX_VALUE / 3);
+        notification.setDeviceGuid(UUID.randomUUID().toString());
+        notification.setNotification("temperature");
+        notification.setTimestamp(new Date());
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6,\"unit\":\"C\",\"sensor\":\"t-1\"}"));
+        subscriptionId = UUID.randomUUID().toString();
+
+        response = new WebSocketResponse();
+        response.addValue(Constants.NOTIFICATION, new InsertNotification(notification.getId(), notification.getTimestamp()),
+                NOTIFICATION_TO_DEVICE);
+        action = new JsonPrimitive("notification/insert");
+        requestId = new JsonPrimitive(UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public String notificationPushTree() {
+        JsonObject message = new JsonObject();
+        message.addProperty("action", "notification/insert");
+        message.addProperty(Constants.DEVICE_GUID, notification.getDeviceGuid());
+        message.add(Constants.NOTIFICATION, GsonFactory.createGson(NOTIFICATION_TO_CLIENT).toJsonTree(notification));
+        message.addProperty(Constants.SUBSCRIPTION_ID, subscriptionId);
+        return message.toString();
+    }
+
+    @Benchmark
+    public String notificationPushStreaming() {
+        return ServerResponsesFactory.createNotificationInsertMessage(notification, subscriptionId);
+    }
+
+    @Benchmark
+    public String insertResponseTree() {
+        return new JsonMessageBuilder()
+                .addAction(action)
+                .addRequestId(requestId)
+                .include(response.getResponseAsJson())
+                .build()
+                .toString();
+    }
+
+    @Benchmark
+    public String insertResponseStreaming() {
+        return JsonMessageWriter.write(out -> {
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.ACTION, action);
+            JsonMessageWriter.writeElement(out, JsonMessageBuilder.REQUEST_ID, requestId);
+            response.writeTo(out);
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WebSocketMessageBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
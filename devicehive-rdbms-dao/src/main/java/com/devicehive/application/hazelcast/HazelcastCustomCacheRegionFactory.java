@@ -21,21 +21,85 @@ package com.devicehive.application.hazelcast;
  */
 
 import com.devicehive.ApplicationContextHolder;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.ConfigLoader;
+import com.hazelcast.config.TcpIpConfig;
+import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.hibernate.CacheEnvironment;
 import com.hazelcast.hibernate.HazelcastCacheRegionFactory;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cfg.Settings;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 
+import java.io.IOException;
 import java.util.Properties;
 
+/**
+ * Second-level cache regions kept in Hazelcast maps. Reuses {@link HazelcastInstance} of the application context
+ * when there is exactly one (backend), otherwise starts a dedicated member configured by
+ * {@code hibernate.cache.hazelcast.configuration_file_path}, which is shut down with the session factory.
+ * Per-region TTL and size are map settings of that configuration, map name is the region name
+ * (entity class name, {@code org.hibernate.cache.internal.StandardQueryCache} for queries).
+ * <p>
+ * Dedicated members of several nodes join one cluster through tcp-ip when {@value #MEMBERS} lists their addresses,
+ * so that changes made on one node evict cached rows and query results on all of them. Without it every member keeps
+ * its own regions and a node returns rows changed through other nodes until region TTL expires.
+ */
 public class HazelcastCustomCacheRegionFactory extends HazelcastCacheRegionFactory {
 
+    public static final String MEMBERS = "hibernate.cache.hazelcast.members";
+
+    private HazelcastInstance dedicatedInstance;
+
     public HazelcastCustomCacheRegionFactory() {
-        this.instance = ApplicationContextHolder.getApplicationContext().getBean(HazelcastInstance.class);
+        ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+        if (context instanceof ConfigurableApplicationContext && ((ConfigurableApplicationContext) context).isActive()) {
+            String[] names = context.getBeanNamesForType(HazelcastInstance.class, false, false);
+            if (names.length == 1) {
+                this.instance = context.getBean(names[0], HazelcastInstance.class);
+            }
+        }
     }
 
     @Override
     public void start(Settings settings, Properties properties) throws CacheException {
+        String members = properties.getProperty(MEMBERS, "").trim();
+        if (instance == null && !members.isEmpty()) {
+            dedicatedInstance = Hazelcast.newHazelcastInstance(clusterConfig(properties, members));
+            instance = dedicatedInstance;
+        }
         super.start(settings, properties);
     }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (dedicatedInstance != null) {
+            dedicatedInstance.getLifecycleService().shutdown();
+            dedicatedInstance = null;
+        }
+    }
+
+    private static Config clusterConfig(Properties properties, String members) {
+        String path = CacheEnvironment.getConfigFilePath(properties);
+        Config config;
+        try {
+            config = path != null ? ConfigLoader.load(path) : null;
+        } catch (IOException e) {
+            throw new CacheException("Unable to load Hazelcast configuration " + path, e);
+        }
+        if (config == null) {
+            throw new CacheException("Hazelcast configuration " + path + " not found");
+        }
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        TcpIpConfig tcpIp = config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true);
+        for (String member : members.split(",")) {
+            if (!member.trim().isEmpty()) {
+                tcpIp.addMember(member.trim());
+            }
+        }
+        return config;
+    }
 }
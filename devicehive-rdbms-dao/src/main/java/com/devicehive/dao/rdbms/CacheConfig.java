@@ -49,7 +49,8 @@ public class CacheConfig {
     }
 
     /**
-     * get entities from db and refresh cache
+     * get entities from db and refresh cache. Use for lookups authorization depends on (users, devices):
+     * cache is local to the node, so changes made through other nodes are not seen until entry expires
      */
     public static CacheConfig refresh() {
         return new CacheConfig(CacheRetrieveMode.USE, CacheStoreMode.REFRESH);
@@ -115,6 +115,24 @@ public class CriteriaHelper {
         return predicates.toArray(new Predicate[predicates.size()]);
     }
 
+    /**
+     * Same restrictions as {@link #deviceListPredicates(CriteriaBuilder, Root, List, Optional)}, but with plain joins,
+     * so they can be used in aggregate queries, where fetch joins are not allowed.
+     */
+    @SuppressWarnings("unchecked")
+    public static Predicate[] deviceCountPredicates(CriteriaBuilder cb,
+                                                    Root<Device> from,
+                                                    List<String> guids,
+                                                    Optional<HivePrincipal> principal) {
+        final Join<Device, Network> networkJoin = (Join) from.join("network", JoinType.LEFT);
+        final List<Predicate> predicates = principalPredicates(cb, from, networkJoin, false, principal);
+        if (guids != null && !guids.isEmpty()) {
+            predicates.add(from.get(GUID).in(guids));
+        }
+
+        return predicates.toArray(new Predicate[predicates.size()]);
+    }
+
     @SuppressWarnings("unchecked")
     public static Predicate[] deviceListPredicates(CriteriaBuilder cb,
                                                    Root<Device> from,
@@ -157,16 +175,24 @@ public class CriteriaHelper {
 
     @SuppressWarnings("unchecked")
     private static List<Predicate> deviceSpecificPrincipalPredicates(CriteriaBuilder cb, Root<Device> from, Optional<HivePrincipal> principal) {
-        final List<Predicate> predicates = new LinkedList<>();
         final Join<Device, Network> networkJoin = (Join) from.fetch("network", JoinType.LEFT);
         from.fetch("deviceClass", JoinType.LEFT); //need this fetch to populate deviceClass
+        return principalPredicates(cb, from, networkJoin, true, principal);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Predicate> principalPredicates(CriteriaBuilder cb, Root<Device> from, Join<Device, Network> networkJoin,
+                                                       boolean fetch, Optional<HivePrincipal> principal) {
+        final List<Predicate> predicates = new LinkedList<>();
         principal.ifPresent(p -> {
             UserVO user = p.getUser();
 
             if (user != null && !user.isAdmin()) {
 
                 // Joining after check to prevent duplicate objects
-                final Join<Device, Network> usersJoin = (Join) networkJoin.fetch("users", JoinType.LEFT);
+                final Join<Device, Network> usersJoin = fetch
+                        ? (Join) networkJoin.fetch("users", JoinType.LEFT)
+                        : (Join) networkJoin.join("users", JoinType.LEFT);
                 predicates.add(cb.equal(usersJoin.<Long>get("id"), user.getId()));
             }
 
@@ -22,8 +22,10 @@ package com.devicehive.dao.rdbms;
 
 
 import com.devicehive.dao.DeviceClassDao;
+import com.devicehive.model.Device;
 import com.devicehive.model.DeviceClass;
 import com.devicehive.model.DeviceClassEquipment;
+import com.devicehive.model.DeviceEquipment;
 import com.devicehive.vo.DeviceClassEquipmentVO;
 import com.devicehive.vo.DeviceClassWithEquipmentVO;
 import org.springframework.stereotype.Repository;
@@ -48,6 +50,8 @@ public class DeviceClassDaoRdbmsImpl extends RdbmsGenericDao implements DeviceCl
         DeviceClass deviceClass = find(DeviceClass.class, id);
         if (deviceClass != null) {
             remove(deviceClass);
+            // devices of the class and their equipment are removed by database cascade
+            evict(Device.class, DeviceEquipment.class);
         }
     }
 
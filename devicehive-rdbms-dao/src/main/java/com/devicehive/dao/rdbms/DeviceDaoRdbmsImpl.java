@@ -24,6 +24,7 @@ import com.devicehive.auth.HivePrincipal;
 import com.devicehive.dao.DeviceDao;
 import com.devicehive.model.Device;
 import com.devicehive.model.DeviceClass;
+import com.devicehive.model.DeviceEquipment;
 import com.devicehive.model.Network;
 import com.devicehive.vo.DeviceVO;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,6 +74,7 @@ public class DeviceDaoRdbmsImpl extends RdbmsGenericDao implements DeviceDao {
         parameters.addValue("status", status);
         parameters.addValue("guids", guids);
         jdbcTemplate.update(UPDATE_DEVICES_STATUSES, parameters);
+        evict(Device.class);
     }
 
     /**
@@ -125,9 +127,12 @@ public class DeviceDaoRdbmsImpl extends RdbmsGenericDao implements DeviceDao {
 
     @Override
     public int deleteByUUID(String guid) {
-        return createNamedQuery("Device.deleteByUUID", Optional.<CacheConfig>empty())
+        int deleted = createNamedQuery("Device.deleteByUUID", Optional.<CacheConfig>empty())
                 .setParameter("guid", guid)
                 .executeUpdate();
+        // equipment is removed by database cascade
+        evict(DeviceEquipment.class);
+        return deleted;
     }
 
     @Override
@@ -145,12 +150,11 @@ public class DeviceDaoRdbmsImpl extends RdbmsGenericDao implements DeviceDao {
     @Override
     public long getAllowedDeviceCount(HivePrincipal principal, List<String> guids) {
         final CriteriaBuilder cb = criteriaBuilder();
-        final CriteriaQuery<Device> criteria = cb.createQuery(Device.class);
+        final CriteriaQuery<Long> criteria = cb.createQuery(Long.class);
         final Root<Device> from = criteria.from(Device.class);
-        final Predicate[] predicates = CriteriaHelper.deviceListPredicates(cb, from, guids, Optional.ofNullable(principal));
-        criteria.where(predicates);
-        final TypedQuery<Device> query = createQuery(criteria);
-        return query.getResultList().size();
+        final Predicate[] predicates = CriteriaHelper.deviceCountPredicates(cb, from, guids, Optional.ofNullable(principal));
+        criteria.select(cb.count(from)).where(predicates);
+        return createQuery(criteria).getSingleResult();
     }
 
     @Override
@@ -23,6 +23,8 @@ package com.devicehive.dao.rdbms;
 
 import com.devicehive.auth.HivePrincipal;
 import com.devicehive.dao.NetworkDao;
+import com.devicehive.model.Device;
+import com.devicehive.model.DeviceEquipment;
 import com.devicehive.model.Network;
 import com.devicehive.model.User;
 import com.devicehive.vo.NetworkVO;
@@ -71,9 +73,12 @@ public class NetworkDaoRdbmsImpl extends RdbmsGenericDao implements NetworkDao {
 
     @Override
     public int deleteById(long id) {
-        return createNamedQuery("Network.deleteById", Optional.<CacheConfig>empty())
+        int deleted = createNamedQuery("Network.deleteById", Optional.<CacheConfig>empty())
                 .setParameter("id", id)
                 .executeUpdate();
+        // devices of the network and their equipment are removed by database cascade
+        evict(Device.class, DeviceEquipment.class);
+        return deleted;
     }
 
     @Override
@@ -21,6 +21,7 @@ package com.devicehive.dao.rdbms;
  */
 
 import com.devicehive.configuration.Constants;
+import org.hibernate.SessionFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
@@ -30,6 +31,8 @@ import javax.persistence.*;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -47,6 +50,14 @@ public class RdbmsGenericDao {
         return em.find(entityClass, primaryKey);
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public <T extends Serializable> T find(Class<T> entityClass, Object primaryKey, CacheConfig cacheConfig) {
+        Map<String, Object> hints = new HashMap<>();
+        hints.put(RETRIEVE_MODE, cacheConfig.getRetrieveMode());
+        hints.put(STORE_MODE, cacheConfig.getStoreMode());
+        return em.find(entityClass, primaryKey, hints);
+    }
+
     @Transactional(propagation = Propagation.MANDATORY)
     public <T extends Serializable> void persist( T entity ){
         em.persist(entity);
@@ -86,6 +97,18 @@ public class RdbmsGenericDao {
         }
     }
 
+    /**
+     * Drops second-level cache of entities changed behind Hibernate's back (database cascades, plain JDBC)
+     * together with cached query results, which may contain them.
+     */
+    public void evict(Class<?>... entityClasses) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (Class<?> entityClass : entityClasses) {
+            cache.evict(entityClass);
+        }
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
     public CriteriaBuilder criteriaBuilder() {
         return em.getCriteriaBuilder();
     }
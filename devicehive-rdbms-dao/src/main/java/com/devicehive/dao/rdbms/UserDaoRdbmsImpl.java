@@ -47,7 +47,7 @@ public class UserDaoRdbmsImpl extends RdbmsGenericDao implements UserDao {
 
     @Override
     public Optional<UserVO> findByName(String name) {
-        Optional<User> login = createNamedQuery(User.class, "User.findByName", of(CacheConfig.get()))
+        Optional<User> login = createNamedQuery(User.class, "User.findByName", of(CacheConfig.refresh()))
                 .setParameter("login", name)
                 .getResultList()
                 .stream().findFirst();
@@ -140,7 +140,7 @@ public class UserDaoRdbmsImpl extends RdbmsGenericDao implements UserDao {
 
     @Override
     public UserVO find(Long id) {
-        User user = find(User.class, id);
+        User user = find(User.class, id, CacheConfig.refresh());
         return User.convertToVo(user);
     }
 
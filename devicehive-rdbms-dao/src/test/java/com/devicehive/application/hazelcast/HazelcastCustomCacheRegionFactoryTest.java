@@ -0,0 +1,100 @@
+package com.devicehive.application.hazelcast;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.hibernate.cache.internal.CacheDataDescriptionImpl;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HazelcastCustomCacheRegionFactoryTest {
+
+    private static final String DEVICE_REGION = "com.devicehive.model.Device";
+
+    private static HazelcastCustomCacheRegionFactory first;
+    private static HazelcastCustomCacheRegionFactory second;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        first = start();
+        second = start();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        first.stop();
+        second.stop();
+    }
+
+    @Test
+    public void shouldJoinDedicatedMembersIntoOneCluster() throws Exception {
+        assertEquals(2, first.getHazelcastInstance().getCluster().getMembers().size());
+        assertEquals(2, second.getHazelcastInstance().getCluster().getMembers().size());
+    }
+
+    @Test
+    public void shouldEvictEntityCachedOnOtherNode() throws Exception {
+        EntityRegionAccessStrategy firstDevices = devices(first);
+        EntityRegionAccessStrategy secondDevices = devices(second);
+        long timestamp = first.nextTimestamp();
+
+        firstDevices.putFromLoad(1L, "device", timestamp, null);
+        assertEquals("device", secondDevices.get(1L, second.nextTimestamp()));
+
+        secondDevices.evict(1L);
+        assertNull(firstDevices.get(1L, first.nextTimestamp()));
+    }
+
+    @Test
+    public void shouldShareQueryInvalidationTimestamps() throws Exception {
+        TimestampsRegion firstTimestamps = first.buildTimestampsRegion(UpdateTimestampsCache.REGION_NAME, new Properties());
+        TimestampsRegion secondTimestamps = second.buildTimestampsRegion(UpdateTimestampsCache.REGION_NAME, new Properties());
+        long timestamp = first.nextTimestamp();
+
+        firstTimestamps.put("device", timestamp);
+        assertEquals(timestamp, secondTimestamps.get("device"));
+    }
+
+    private static HazelcastCustomCacheRegionFactory start() {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.cache.hazelcast.configuration_file_path", "hazelcast-hibernate.xml");
+        properties.setProperty(HazelcastCustomCacheRegionFactory.MEMBERS, "127.0.0.1");
+        HazelcastCustomCacheRegionFactory factory = new HazelcastCustomCacheRegionFactory();
+        factory.start(null, properties);
+        return factory;
+    }
+
+    private static EntityRegionAccessStrategy devices(HazelcastCustomCacheRegionFactory factory) {
+        EntityRegion region = factory.buildEntityRegion(DEVICE_REGION, new Properties(),
+                new CacheDataDescriptionImpl(true, false, null));
+        return region.buildAccessStrategy(AccessType.READ_WRITE);
+    }
+}
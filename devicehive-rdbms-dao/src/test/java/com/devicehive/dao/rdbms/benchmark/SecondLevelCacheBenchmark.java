@@ -0,0 +1,156 @@
+package com.devicehive.dao.rdbms.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Dao RDBMS Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.application.hazelcast.HazelcastCustomCacheRegionFactory;
+import com.devicehive.model.*;
+import com.devicehive.test.dialect.HsqlDialectReplacement;
+import com.hazelcast.hibernate.CacheEnvironment;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-heavy device lookups with and without Hibernate second-level and query cache: device by id and by guid
+ * with {@code Device.findByUUID} named query. Uses in-memory HSQLDB, so the numbers show overhead of Hibernate
+ * loading and SQL round trip rather than network latency of a real database.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+
+    private static final int DEVICES = 1000;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private SessionFactory sessionFactory;
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> guids = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(com.devicehive.model.Configuration.class)
+                .addAnnotatedClass(Device.class)
+                .addAnnotatedClass(DeviceClass.class)
+                .addAnnotatedClass(DeviceClassEquipment.class)
+                .addAnnotatedClass(DeviceEquipment.class)
+                .addAnnotatedClass(IdentityProvider.class)
+                .addAnnotatedClass(Network.class)
+                .addAnnotatedClass(User.class)
+                .setProperty(AvailableSettings.DRIVER, "org.hsqldb.jdbcDriver")
+                .setProperty(AvailableSettings.URL, "jdbc:hsqldb:mem:benchmark")
+                .setProperty(AvailableSettings.USER, "sa")
+                .setProperty(AvailableSettings.PASS, "")
+                .setProperty(AvailableSettings.DIALECT, HsqlDialectReplacement.class.getName())
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty("javax.persistence.validation.mode", "none")
+                .setProperty("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE")
+                .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, String.valueOf(cache))
+                .setProperty(AvailableSettings.USE_QUERY_CACHE, String.valueOf(cache))
+                .setProperty(AvailableSettings.CACHE_REGION_FACTORY, HazelcastCustomCacheRegionFactory.class.getName())
+                .setProperty(AvailableSettings.DEFAULT_CACHE_CONCURRENCY_STRATEGY, "read-write")
+                .setProperty(CacheEnvironment.CONFIG_FILE_PATH, "hazelcast-hibernate.xml");
+        sessionFactory = configuration.buildSessionFactory(new StandardServiceRegistryBuilder()
+                .applySettings(configuration.getProperties())
+                .build());
+
+        Session session = sessionFactory.openSession();
+        try {
+            Transaction tx = session.beginTransaction();
+            Network network = new Network();
+            network.setName("benchmark network");
+            session.persist(network);
+            DeviceClass deviceClass = new DeviceClass();
+            deviceClass.setName("benchmark class");
+            deviceClass.setPermanent(false);
+            session.persist(deviceClass);
+            for (int i = 0; i < DEVICES; i++) {
+                Device device = new Device();
+                device.setGuid(UUID.randomUUID().toString());
+                device.setName("device " + i);
+                device.setBlocked(false);
+                device.setNetwork(network);
+                device.setDeviceClass(deviceClass);
+                session.persist(device);
+                ids.add(device.getId());
+                guids.add(device.getGuid());
+            }
+            tx.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Device findById() {
+        Session session = sessionFactory.openSession();
+        try {
+            return (Device) session.get(Device.class, ids.get(ThreadLocalRandom.current().nextInt(DEVICES)));
+        } finally {
+            session.close();
+        }
+    }
+
+    @Benchmark
+    public Device findByGuid() {
+        Session session = sessionFactory.openSession();
+        try {
+            return (Device) session.getNamedQuery("Device.findByUUID")
+                    .setParameter("guid", guids.get(ThreadLocalRandom.current().nextInt(DEVICES)))
+                    .setCacheable(cache)
+                    .uniqueResult();
+        } finally {
+            session.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SecondLevelCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -20,6 +20,8 @@ package com.devicehive.dao.riak;
  * #L%
  */
 import com.basho.riak.client.api.commands.indexes.BinIndexQuery;
+import com.basho.riak.client.api.commands.indexes.RawIndexQuery;
+import com.basho.riak.client.api.commands.indexes.SecondaryIndexQuery;
 import com.basho.riak.client.api.commands.kv.DeleteValue;
 import com.basho.riak.client.api.commands.kv.FetchValue;
 import com.basho.riak.client.api.commands.kv.StoreValue;
@@ -27,6 +29,7 @@ import com.basho.riak.client.api.commands.mapreduce.BucketMapReduce;
 import com.basho.riak.client.api.commands.mapreduce.MapReduce;
 import com.basho.riak.client.core.query.Location;
 import com.basho.riak.client.core.query.Namespace;
+import com.basho.riak.client.core.util.BinaryValue;
 import com.devicehive.auth.HivePrincipal;
 import com.devicehive.dao.DeviceClassDao;
 import com.devicehive.dao.DeviceDao;
@@ -150,6 +153,9 @@ public class DeviceDaoRiakImpl extends RiakGenericDao implements DeviceDao {
             Location location = entries.get(0).getRiakObjectLocation();
             DeleteValue deleteOp = new DeleteValue.Builder(location).build();
             client.execute(deleteOp);
+            for (Long networkId : networkDeviceDao.findNetworksForDevice(guid)) {
+                networkDeviceDao.delete(networkId, guid);
+            }
             return 1;
         } catch (ExecutionException | InterruptedException e) {
             LOGGER.error("Exception accessing Riak Storage.", e);
@@ -196,7 +202,61 @@ public class DeviceDaoRiakImpl extends RiakGenericDao implements DeviceDao {
 
     @Override
     public long getAllowedDeviceCount(HivePrincipal principal, List<String> guids) {
-        return getDeviceList(guids, principal).size();
+        // Intersects device guids in memory, device objects themselves are never fetched. Network membership comes
+        // from keys of network_device relations, which are removed when a device is deleted or moved
+        try {
+            Set<String> allowed = guids.isEmpty() ? null : new HashSet<>(guids);
+            if (principal != null) {
+                UserVO user = principal.getUser();
+                Set<Long> networks = null;
+                if (user != null && !user.isAdmin()) {
+                    networks = userNetworkDao.findNetworksForUser(user.getId());
+                }
+                if (principal.getNetworkIds() != null) {
+                    if (networks == null) {
+                        networks = new HashSet<>(principal.getNetworkIds());
+                    } else {
+                        networks.retainAll(principal.getNetworkIds());
+                    }
+                }
+                if (principal.getDeviceGuids() != null) {
+                    allowed = retain(allowed, new HashSet<>(principal.getDeviceGuids()));
+                }
+                if (networks != null) {
+                    return retain(allowed, networkDeviceDao.findDeviceUuidsForNetworks(networks)).size();
+                }
+            }
+            // requested guids may name missing devices, devices without network have no relation
+            return allowed != null ? retain(allowed, findAllGuids()).size() : countAll();
+        } catch (ExecutionException | InterruptedException e) {
+            LOGGER.error("Exception accessing Riak Storage.", e);
+            throw new HivePersistenceLayerException("Cannot count devices.", e);
+        }
+    }
+
+    private Set<String> findAllGuids() throws ExecutionException, InterruptedException {
+        BinIndexQuery biq = new BinIndexQuery.Builder(DEVICE_NS, "guid", "\u0000", "\uffff")
+                .withKeyAndIndex(true)
+                .build();
+        Set<String> guids = new HashSet<>();
+        for (BinIndexQuery.Response.Entry entry : client.execute(biq).getEntries()) {
+            guids.add(entry.getIndexKey());
+        }
+        return guids;
+    }
+
+    private long countAll() throws ExecutionException, InterruptedException {
+        RawIndexQuery riq = new RawIndexQuery.Builder(DEVICE_NS, "$bucket", SecondaryIndexQuery.Type._BUCKET,
+                BinaryValue.create(DEVICE_NS.getBucketNameAsString())).build();
+        return client.execute(riq).getEntries().size();
+    }
+
+    private static Set<String> retain(Set<String> guids, Set<String> allowed) {
+        if (guids == null) {
+            return allowed;
+        }
+        guids.retainAll(allowed);
+        return guids;
     }
 
     @Override
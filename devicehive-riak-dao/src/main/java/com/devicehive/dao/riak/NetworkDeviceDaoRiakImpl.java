@@ -40,11 +40,19 @@ public class NetworkDeviceDaoRiakImpl extends RiakGenericDao {
     public NetworkDeviceDaoRiakImpl() {
     }
 
+    /**
+     * Device belongs to a single network, relations to other networks left by moving the device are removed.
+     */
     public void saveOrUpdate(NetworkDevice networkDevice) {
         try {
             Set<Long> networks = findNetworksForDevice(networkDevice.getDeviceUuid());
+            for (Long networkId : networks) {
+                if (!networkId.equals(networkDevice.getNetworkId())) {
+                    delete(networkId, networkDevice.getDeviceUuid());
+                }
+            }
             if (!networks.contains(networkDevice.getNetworkId())) {
-                String id = networkDevice.getNetworkId() + "n" + networkDevice.getDeviceUuid();
+                String id = id(networkDevice.getNetworkId(), networkDevice.getDeviceUuid());
                 networkDevice.setId(id);
                 Location location = new Location(NETWORK_DEVICE_NS, id);
                 StoreValue store = new StoreValue.Builder(networkDevice)
@@ -59,8 +67,7 @@ public class NetworkDeviceDaoRiakImpl extends RiakGenericDao {
     }
 
     public void delete(long networkId, String deviceUuid) {
-        String id = networkId + "n" + deviceUuid;
-        Location location = new Location(NETWORK_DEVICE_NS, id);
+        Location location = new Location(NETWORK_DEVICE_NS, id(networkId, deviceUuid));
         DeleteValue delete = new DeleteValue.Builder(location).build();
         try {
             client.execute(delete);
@@ -83,6 +90,25 @@ public class NetworkDeviceDaoRiakImpl extends RiakGenericDao {
         }
     }
 
+    /**
+     * Guids of devices in any of the networks, taken from relation keys: relations themselves are not fetched.
+     */
+    public Set<String> findDeviceUuidsForNetworks(Collection<Long> networkIds) {
+        Set<String> devices = new HashSet<>();
+        try {
+            for (Long networkId : networkIds) {
+                IntIndexQuery iiq = new IntIndexQuery.Builder(NETWORK_DEVICE_NS, "networkId", networkId).build();
+                for (IntIndexQuery.Response.Entry entry : client.execute(iiq).getEntries()) {
+                    String id = entry.getRiakObjectLocation().getKeyAsString();
+                    devices.add(id.substring(id.indexOf('n') + 1));
+                }
+            }
+            return devices;
+        } catch (ExecutionException | InterruptedException e) {
+            throw new HivePersistenceLayerException("Cannot find devices for networks.", e);
+        }
+    }
+
     public Set<Long> findNetworksForDevice(String deviceUuid) {
         BinIndexQuery biq = new BinIndexQuery.Builder(NETWORK_DEVICE_NS, "deviceUuid", deviceUuid).build();
         try {
@@ -95,4 +121,8 @@ public class NetworkDeviceDaoRiakImpl extends RiakGenericDao {
             throw new HivePersistenceLayerException("Cannot find networks for device.", e);
         }
     }
+
+    private static String id(long networkId, String deviceUuid) {
+        return networkId + "n" + deviceUuid;
+    }
 }
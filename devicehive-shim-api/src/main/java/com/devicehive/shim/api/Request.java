@@ -128,6 +128,11 @@ public class Request {
             return this;
         }
 
+        public Builder<T> withCorrelationId(String correlationId) {
+            this.correlationId = correlationId;
+            return this;
+        }
+
         public Builder<T> withSingleReply(boolean singleReply) {
             this.singleReply = singleReply;
             return this;
@@ -21,5 +21,9 @@ package com.devicehive.shim.api;
  */
 
 public enum RequestType {
-    clientRequest, ping
+    clientRequest, ping,
+    /**
+     * Client request which is handled as usual, but never answered.
+     */
+    push
 }
@@ -0,0 +1,40 @@
+package com.devicehive.shim.api.broadcast;
+
+/*
+ * #%L
+ * DeviceHive Shim  API Interfaces
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.function.Consumer;
+
+/**
+ * Fire-and-forget messages delivered to every node listening on a topic, unlike requests which are handled by a
+ * single server. Delivery is best effort: messages sent while a node is down or not yet subscribed are not
+ * replayed, so listeners must tolerate missed messages (e.g. keep cached data under a TTL).
+ */
+public interface Broadcaster {
+
+    void broadcast(String topic, String message);
+
+    /**
+     * Registers listener for all messages broadcast to the topic from now on, including the ones sent by this node.
+     */
+    void listen(String topic, Consumer<String> listener);
+
+    default void shutdown() { }
+}
@@ -23,14 +23,38 @@ package com.devicehive.shim.api.client;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public interface RpcClient {
 
     void call(Request request, Consumer<Response> callback);
 
+    /**
+     * Same as {@link #call(Request, Consumer)}, but callback is completed with failed response if no response
+     * arrives within given timeout. For multi reply requests the timeout restarts with every response, so it limits
+     * idle time between responses rather than the whole stream. Non-positive timeout means no deadline.
+     */
+    void call(Request request, Consumer<Response> callback, long timeout, TimeUnit unit);
+
+    /**
+     * Sends request which is handled by server without any reply.
+     */
     void push(Request request);
 
+    /**
+     * Same as {@link #push(Request)}, returned future completes as soon as transport accepted the request
+     * (e.g. Kafka acknowledged the record) and fails if the request could not be sent.
+     */
+    CompletableFuture<Void> pushAcknowledged(Request request);
+
+    /**
+     * Drops callback of a pending request, so it receives no more responses. Used to release multi reply requests
+     * (subscriptions), which have no deadline, once the client is no longer interested in them.
+     */
+    default void cancel(String correlationId) { }
+
     default void start() { }
 
     default void shutdown() { }
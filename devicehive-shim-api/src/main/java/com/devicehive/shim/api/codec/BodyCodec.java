@@ -0,0 +1,57 @@
+package com.devicehive.shim.api.codec;
+
+/*
+ * #%L
+ * DeviceHive Shim  API Interfaces
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary representation of a single {@link Body} implementation.
+ * Codec is responsible only for the body fields, action itself is written by the transport envelope.
+ * Codecs whose layout changed between envelope versions override versioned methods, so that nodes running
+ * different versions are able to talk to each other during rolling upgrade.
+ *
+ * @param <T> concrete body type
+ */
+public interface BodyCodec<T extends Body> {
+
+    void encode(T body, DataOutput out) throws IOException;
+
+    T decode(DataInput in) throws IOException;
+
+    /**
+     * @param version - envelope format version of the message being written
+     */
+    default void encode(T body, DataOutput out, int version) throws IOException {
+        encode(body, out);
+    }
+
+    /**
+     * @param version - envelope format version of the message being read
+     */
+    default T decode(DataInput in, int version) throws IOException {
+        return decode(in);
+    }
+
+}
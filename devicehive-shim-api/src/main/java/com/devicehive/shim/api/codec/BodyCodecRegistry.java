@@ -0,0 +1,49 @@
+package com.devicehive.shim.api.codec;
+
+/*
+ * #%L
+ * DeviceHive Shim  API Interfaces
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds binary codecs for body actions. Bodies without registered codec are expected to be
+ * transferred by transport in some generic (e.g. JSON) form.
+ */
+public class BodyCodecRegistry {
+
+    private final Map<String, BodyCodec<? extends Body>> codecs = new ConcurrentHashMap<>();
+
+    public <T extends Body> BodyCodecRegistry register(String action, BodyCodec<T> codec) {
+        codecs.put(action, codec);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Body> BodyCodec<T> get(String action) {
+        return (BodyCodec<T>) codecs.get(action);
+    }
+
+    public boolean contains(String action) {
+        return codecs.containsKey(action);
+    }
+}
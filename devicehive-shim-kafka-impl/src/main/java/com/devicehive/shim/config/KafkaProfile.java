@@ -0,0 +1,159 @@
+package com.devicehive.shim.config;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+
+import java.util.Properties;
+
+/**
+ * Named sets of Kafka producer and consumer settings, selected with {@code rpc.kafka.profile} property.
+ * Any single setting can still be overridden in kafka.properties with {@code rpc.producer.} or {@code rpc.consumer.}
+ * prefix, e.g. {@code rpc.producer.linger.ms=1}.
+ */
+public enum KafkaProfile {
+
+    /**
+     * Kafka client defaults.
+     */
+    DEFAULT("default"),
+
+    /**
+     * Sends every record immediately and lets consumers return as soon as any data is available.
+     */
+    LOW_LATENCY("low-latency") {
+        @Override
+        public Properties producerProperties() {
+            Properties props = new Properties();
+            props.put(ProducerConfig.ACKS_CONFIG, "1");
+            props.put(ProducerConfig.LINGER_MS_CONFIG, "0");
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, "16384");
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+            props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, "33554432");
+            return props;
+        }
+
+        @Override
+        public Properties consumerProperties() {
+            Properties props = new Properties();
+            props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, "1");
+            props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "10");
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "100");
+            return props;
+        }
+    },
+
+    /**
+     * Trades a few milliseconds of latency for larger compressed batches and fewer fetch requests.
+     */
+    HIGH_THROUGHPUT("high-throughput") {
+        @Override
+        public Properties producerProperties() {
+            Properties props = new Properties();
+            props.put(ProducerConfig.ACKS_CONFIG, "1");
+            props.put(ProducerConfig.LINGER_MS_CONFIG, "20");
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, "262144");
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, "134217728");
+            return props;
+        }
+
+        @Override
+        public Properties consumerProperties() {
+            Properties props = new Properties();
+            props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, "65536");
+            props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "100");
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "2000");
+            return props;
+        }
+    };
+
+    public static final String PRODUCER_PREFIX = "rpc.producer.";
+    public static final String CONSUMER_PREFIX = "rpc.consumer.";
+
+    private final String profileName;
+
+    KafkaProfile(String profileName) {
+        this.profileName = profileName;
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    public Properties producerProperties() {
+        return new Properties();
+    }
+
+    public Properties consumerProperties() {
+        return new Properties();
+    }
+
+    public static KafkaProfile fromString(String name) {
+        for (KafkaProfile profile : values()) {
+            if (profile.profileName.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown kafka profile " + name);
+    }
+
+    /**
+     * Producer properties of the profile overridden with {@code rpc.producer.*} properties from environment.
+     */
+    public Properties producerProperties(Environment env) {
+        Properties props = producerProperties();
+        props.putAll(passThrough(env, PRODUCER_PREFIX));
+        return props;
+    }
+
+    /**
+     * Consumer properties of the profile overridden with {@code rpc.consumer.*} properties from environment.
+     */
+    public Properties consumerProperties(Environment env) {
+        Properties props = consumerProperties();
+        props.putAll(passThrough(env, CONSUMER_PREFIX));
+        return props;
+    }
+
+    private static Properties passThrough(Environment env, String prefix) {
+        Properties props = new Properties();
+        if (!(env instanceof ConfigurableEnvironment)) {
+            return props;
+        }
+        for (PropertySource<?> source : ((ConfigurableEnvironment) env).getPropertySources()) {
+            if (source instanceof EnumerablePropertySource) {
+                for (String name : ((EnumerablePropertySource<?>) source).getPropertyNames()) {
+                    if (name.startsWith(prefix)) {
+                        // resolve through environment to respect property sources precedence
+                        props.put(name.substring(prefix.length()), env.getProperty(name));
+                    }
+                }
+            }
+        }
+        return props;
+    }
+}
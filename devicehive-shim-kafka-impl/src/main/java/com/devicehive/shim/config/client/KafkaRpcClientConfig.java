@@ -21,14 +21,20 @@ package com.devicehive.shim.config.client;
  */
 
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.broadcast.Broadcaster;
 import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.devicehive.shim.config.KafkaProfile;
 import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.config.server.KafkaRpcServerConfig;
+import com.devicehive.shim.kafka.broadcast.KafkaBroadcaster;
 import com.devicehive.shim.kafka.client.KafkaRpcClient;
 import com.devicehive.shim.kafka.client.RequestResponseMatcher;
 import com.devicehive.shim.kafka.client.ServerResponseListener;
+import com.devicehive.shim.kafka.serializer.BinaryEnvelopeCodec;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
+import com.devicehive.shim.kafka.serializer.WireFormat;
 import com.google.gson.Gson;
 import kafka.admin.AdminUtils;
 import kafka.admin.RackAwareMode;
@@ -37,12 +43,15 @@ import kafka.utils.ZkUtils;
 import org.I0Itec.zkclient.ZkClient;
 import org.I0Itec.zkclient.ZkConnection;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
 
@@ -92,14 +101,50 @@ public class KafkaRpcClientConfig {
     @Value("${zookeeper.servers:127.0.0.1:2181}")
     private String zookeeperConnect;
 
+    @Value("${rpc.serializer.format:json}")
+    private String serializerFormat;
+
+    @Value("${rpc.serializer.binary.version:" + BinaryEnvelopeCodec.VERSION + "}")
+    private int binaryVersion;
+
+    @Value("${rpc.kafka.profile:default}")
+    private String kafkaProfile;
+
+    @Value("${rpc.client.response-timeout.ms:30000}")
+    private long responseTimeoutMs;
+
+    @Value("${rpc.client.response-timeout.tick.ms:100}")
+    private long responseTimeoutTickMs;
+
+    @Value("${rpc.client.response-timeout.wheel-size:512}")
+    private int responseTimeoutWheelSize;
+
+    @Value("${rpc.client.response-dispatcher.threads:0}")
+    private int responseDispatcherThreads;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        int stripes = responseDispatcherThreads > 0 ? responseDispatcherThreads : RequestResponseMatcher.DEFAULT_DISPATCH_STRIPES;
+        return new RequestResponseMatcher(responseTimeoutMs, responseTimeoutTickMs, responseTimeoutWheelSize, stripes);
+    }
+
+    /**
+     * Actuator is an optional dependency of the shim, metrics are exposed only when the application ships it.
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.PublicMetrics")
+    static class RpcClientMetricsConfig {
+
+        @Bean
+        public RpcClientMetrics rpcClientMetrics(RequestResponseMatcher responseMatcher) {
+            return new RpcClientMetrics(responseMatcher);
+        }
     }
 
     @Bean
-    public Producer<String, Request> kafkaRequestProducer(Gson gson) {
-        return new KafkaProducer<>(producerProps(), new StringSerializer(), new RequestSerializer(gson));
+    public Producer<String, Request> kafkaRequestProducer(Gson gson, BodyCodecRegistry codecRegistry) {
+        return new KafkaProducer<>(producerProps(), new StringSerializer(),
+                new RequestSerializer(gson, codecRegistry, WireFormat.fromString(serializerFormat), binaryVersion));
     }
 
     @Profile("!test")
@@ -126,28 +171,51 @@ public class KafkaRpcClientConfig {
     }
 
     @Bean
-    public ServerResponseListener serverResponseListener(RequestResponseMatcher responseMatcher, Gson gson) {
+    public ServerResponseListener serverResponseListener(RequestResponseMatcher responseMatcher, Gson gson,
+                                                         BodyCodecRegistry codecRegistry) {
         createTopic(zookeeperConnect, RESPONSE_TOPIC);
         ExecutorService executor = Executors.newFixedThreadPool(responseConsumerThreads);
         Properties consumerProps = consumerProps();
         return new ServerResponseListener(RESPONSE_TOPIC, responseConsumerThreads,
-                responseMatcher, consumerProps, executor, new ResponseSerializer(gson));
+                responseMatcher, consumerProps, executor,
+                new ResponseSerializer(gson, codecRegistry, WireFormat.fromString(serializerFormat), binaryVersion));
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Broadcaster broadcaster() {
+        Producer<String, String> producer = new KafkaProducer<>(producerProps(), new StringSerializer(), new StringSerializer());
+        return new KafkaBroadcaster(producer,
+                () -> new KafkaConsumer<>(broadcastConsumerProps(), new StringDeserializer(), new StringDeserializer()),
+                topic -> createTopic(zookeeperConnect, topic));
     }
 
     private Properties producerProps() {
-        Properties props = new Properties();
+        Properties props = KafkaProfile.fromString(kafkaProfile).producerProperties(env);
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, env.getProperty("bootstrap.servers"));
         return props;
     }
 
     private Properties consumerProps() {
-        Properties props = new Properties();
+        Properties props = KafkaProfile.fromString(kafkaProfile).consumerProperties(env);
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, env.getProperty("bootstrap.servers"));
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "response-group-" + UUID.randomUUID().toString());
         props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, env.getProperty(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG));
         return props;
     }
 
+    /**
+     * Broadcast consumers assign partitions themselves and seek to the end, they have no group and commit nothing,
+     * so no consumer groups pile up on the broker.
+     */
+    private Properties broadcastConsumerProps() {
+        Properties props = consumerProps();
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.remove(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        return props;
+    }
+
     private void createTopic(String zookeeperConnect, String topic) {
         int sessionTimeoutMs = 10 * 1000;
         int connectionTimeoutMs = 8 * 1000;
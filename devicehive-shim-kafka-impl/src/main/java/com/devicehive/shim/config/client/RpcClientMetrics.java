@@ -0,0 +1,51 @@
+package com.devicehive.shim.config.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.kafka.client.RequestResponseMatcher;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exposes state of pending rpc calls through actuator metrics endpoint.
+ */
+public class RpcClientMetrics implements PublicMetrics {
+
+    private final RequestResponseMatcher responseMatcher;
+
+    public RpcClientMetrics(RequestResponseMatcher responseMatcher) {
+        this.responseMatcher = responseMatcher;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("rpc.client.pending", responseMatcher.getPendingCount()),
+                new Metric<>("rpc.client.expired", responseMatcher.getExpiredCount()),
+                new Metric<>("rpc.client.send-failed", responseMatcher.getSendFailedCount()),
+                new Metric<>("rpc.client.dispatcher.stripes", responseMatcher.getDispatchStripes()),
+                new Metric<>("rpc.client.dispatcher.queue-depth", responseMatcher.getDispatchQueueDepth()),
+                new Metric<>("rpc.client.dispatcher.max-stripe-depth", responseMatcher.getDispatchMaxStripeDepth()));
+    }
+}
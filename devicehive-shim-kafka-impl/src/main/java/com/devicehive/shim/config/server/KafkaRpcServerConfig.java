@@ -21,14 +21,18 @@ package com.devicehive.shim.config.server;
  */
 
 import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.devicehive.shim.config.KafkaProfile;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.kafka.server.KafkaRpcServer;
 import com.devicehive.shim.kafka.server.RequestConsumer;
 import com.devicehive.shim.kafka.server.ServerEvent;
 import com.devicehive.shim.kafka.server.ServerEventHandler;
+import com.devicehive.shim.kafka.serializer.BinaryEnvelopeCodec;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
+import com.devicehive.shim.kafka.serializer.WireFormat;
 import com.google.gson.Gson;
 import com.lmax.disruptor.*;
 import com.lmax.disruptor.dsl.Disruptor;
@@ -77,9 +81,25 @@ public class KafkaRpcServerConfig {
     @Value("${rpc.server.disruptor.wait-strategy}")
     private String waitStrategyType;
 
+    @Value("${rpc.serializer.format:json}")
+    private String serializerFormat;
+
+    @Value("${rpc.serializer.binary.version:" + BinaryEnvelopeCodec.VERSION + "}")
+    private int binaryVersion;
+
+    @Value("${rpc.kafka.profile:default}")
+    private String kafkaProfile;
+
+    @Value("${rpc.server.response-batch.max-size:1}")
+    private int responseBatchSize;
+
+    @Value("${rpc.server.response-batch.linger.ms:0}")
+    private long responseBatchLingerMs;
+
     @Bean(name = "server-producer")
-    public Producer<String, Response> kafkaResponseProducer(Gson gson) {
-        return new KafkaProducer<>(producerProps(), new StringSerializer(), new ResponseSerializer(gson));
+    public Producer<String, Response> kafkaResponseProducer(Gson gson, BodyCodecRegistry codecRegistry) {
+        return new KafkaProducer<>(producerProps(), new StringSerializer(),
+                new ResponseSerializer(gson, codecRegistry, WireFormat.fromString(serializerFormat), binaryVersion));
     }
 
     @Bean
@@ -120,29 +140,31 @@ public class KafkaRpcServerConfig {
     @Bean
     public ServerEventHandler serverEventHandler(RequestHandler requestHandler,
                                                  @Qualifier("server-producer") Producer<String, Response> responseProducer) {
-        return new ServerEventHandler(requestHandler, responseProducer);
+        return new ServerEventHandler(requestHandler, responseProducer, responseBatchSize, responseBatchLingerMs);
     }
 
     @Bean
-    public RequestConsumer requestConsumer(Gson gson) {
-        return new RequestConsumer(REQUEST_TOPIC, consumerProps(), consumerThreads, new RequestSerializer(gson));
+    public RequestConsumer requestConsumer(Gson gson, BodyCodecRegistry codecRegistry) {
+        return new RequestConsumer(REQUEST_TOPIC, consumerProps(), consumerThreads,
+                new RequestSerializer(gson, codecRegistry, WireFormat.fromString(serializerFormat), binaryVersion));
     }
 
     @Bean
     public RpcServer rpcServer(Disruptor<ServerEvent> disruptor, RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
-        RpcServer server = new KafkaRpcServer(disruptor, requestConsumer, eventHandler);
+        // every handler shard occupies one worker thread
+        RpcServer server = new KafkaRpcServer(disruptor, requestConsumer, eventHandler, workerThreads);
         server.start();
         return server;
     }
 
     private Properties producerProps() {
-        Properties props = new Properties();
+        Properties props = KafkaProfile.fromString(kafkaProfile).producerProperties(env);
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, env.getProperty("bootstrap.servers"));
         return props;
     }
 
     private Properties consumerProps() {
-        Properties props = new Properties();
+        Properties props = KafkaProfile.fromString(kafkaProfile).consumerProperties(env);
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, env.getProperty("bootstrap.servers"));
         props.put(ConsumerConfig.GROUP_ID_CONFIG,  requestConsumerGroup);
         props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, env.getProperty(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG));
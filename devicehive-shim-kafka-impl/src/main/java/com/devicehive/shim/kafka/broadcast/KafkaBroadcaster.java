@@ -0,0 +1,160 @@
+package com.devicehive.shim.kafka.broadcast;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.broadcast.Broadcaster;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Broadcasts messages through Kafka topics. Every node assigns itself all partitions of the topic without a consumer
+ * group and starts from their end, so each node gets every message sent after it started listening and nothing is
+ * left on the broker when it stops. One consumer thread is started per listened topic.
+ */
+public class KafkaBroadcaster implements Broadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(KafkaBroadcaster.class);
+
+    private static final long SUBSCRIBE_TIMEOUT_MS = 10000;
+    private static final long METADATA_RETRY_MS = 100;
+
+    private final Producer<String, String> producer;
+    private final Supplier<KafkaConsumer<String, String>> consumerFactory;
+    private final Consumer<String> topicCreator;
+    private final ConcurrentMap<String, TopicWorker> workers = new ConcurrentHashMap<>();
+
+    public KafkaBroadcaster(Producer<String, String> producer, Supplier<KafkaConsumer<String, String>> consumerFactory,
+                            Consumer<String> topicCreator) {
+        this.producer = producer;
+        this.consumerFactory = consumerFactory;
+        this.topicCreator = topicCreator;
+    }
+
+    @Override
+    public void broadcast(String topic, String message) {
+        producer.send(new ProducerRecord<>(topic, message), (metadata, e) -> {
+            if (e != null) {
+                logger.warn("Unable to broadcast message to topic {}", topic, e);
+            }
+        });
+    }
+
+    @Override
+    public void listen(String topic, Consumer<String> listener) {
+        workers.computeIfAbsent(topic, this::startWorker).listeners.add(listener);
+    }
+
+    @Override
+    public void shutdown() {
+        workers.values().forEach(TopicWorker::shutdown);
+        producer.close();
+    }
+
+    private TopicWorker startWorker(String topic) {
+        topicCreator.accept(topic);
+        TopicWorker worker = new TopicWorker(topic, consumerFactory.get());
+        Thread thread = new Thread(worker, "broadcast-" + topic);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            if (!worker.subscribed.await(SUBSCRIBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Broadcast consumer of topic {} is not assigned yet, early messages may be missed", topic);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return worker;
+    }
+
+    private static class TopicWorker implements Runnable {
+        private final String topic;
+        private final KafkaConsumer<String, String> consumer;
+        private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+
+        TopicWorker(String topic, KafkaConsumer<String, String> consumer) {
+            this.topic = topic;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<TopicPartition> partitions = partitions();
+                consumer.assign(partitions);
+                consumer.seekToEnd(partitions);
+                // seek is lazy, resolve positions now so messages sent after listen() returns are not skipped
+                partitions.forEach(consumer::position);
+                subscribed.countDown();
+                while (!Thread.currentThread().isInterrupted()) {
+                    ConsumerRecords<String, String> records = consumer.poll(Long.MAX_VALUE);
+                    records.forEach(record -> listeners.forEach(listener -> {
+                        try {
+                            listener.accept(record.value());
+                        } catch (Exception e) {
+                            logger.error("Broadcast listener of topic {} failed", topic, e);
+                        }
+                    }));
+                }
+            } catch (WakeupException e) {
+                logger.info("Broadcast consumer of topic {} is shutting down", topic);
+            } catch (InterruptedException e) {
+                logger.info("Broadcast consumer of topic {} is interrupted", topic);
+            } finally {
+                consumer.close();
+            }
+        }
+
+        /**
+         * Waits until metadata of just created topic is available.
+         */
+        private List<TopicPartition> partitions() throws InterruptedException {
+            List<PartitionInfo> partitions = consumer.partitionsFor(topic);
+            while (partitions == null || partitions.isEmpty()) {
+                Thread.sleep(METADATA_RETRY_MS);
+                partitions = consumer.partitionsFor(topic);
+            }
+            return partitions.stream()
+                    .map(partition -> new TopicPartition(topic, partition.partition()))
+                    .collect(Collectors.toList());
+        }
+
+        void shutdown() {
+            consumer.wakeup();
+        }
+    }
+}
@@ -50,6 +50,8 @@ public class ClientBuilder {
 
     private int consumerThreads;
 
+    private long responseTimeoutMs = RequestResponseMatcher.DEFAULT_TIMEOUT_MS;
+
     public ClientBuilder withRequestTopic(String requestTopic) {
         this.requestTopic = requestTopic;
         return this;
@@ -75,6 +77,11 @@ public class ClientBuilder {
         return this;
     }
 
+    public ClientBuilder withResponseTimeout(long responseTimeoutMs) {
+        this.responseTimeoutMs = responseTimeoutMs;
+        return this;
+    }
+
     public ClientBuilder withProducerValueSerializer(Serializer<Request> serializer) {
         this.producerValueSerializer = serializer;
         return this;
@@ -86,7 +93,9 @@ public class ClientBuilder {
     }
 
     public RpcClient build() {
-        RequestResponseMatcher matcher = new RequestResponseMatcher();
+        RequestResponseMatcher matcher = new RequestResponseMatcher(responseTimeoutMs,
+                RequestResponseMatcher.DEFAULT_TICK_MS, RequestResponseMatcher.DEFAULT_WHEEL_SIZE,
+                RequestResponseMatcher.DEFAULT_DISPATCH_STRIPES);
 
         ExecutorService consumerExecutor = Executors.newFixedThreadPool(consumerThreads);
         ServerResponseListener responseListener = new ServerResponseListener(replyTopic, consumerThreads,
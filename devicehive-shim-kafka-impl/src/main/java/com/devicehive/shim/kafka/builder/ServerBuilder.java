@@ -56,6 +56,9 @@ public class ServerBuilder {
 
     private RequestHandler requestHandler;
 
+    private int responseBatchSize = 1;
+    private long responseBatchLingerMs;
+
     public ServerBuilder withTopic(String topic) {
         this.topic = topic;
         return this;
@@ -86,6 +89,12 @@ public class ServerBuilder {
         return this;
     }
 
+    public ServerBuilder withResponseBatch(int maxSize, long lingerMs) {
+        this.responseBatchSize = maxSize;
+        this.responseBatchLingerMs = lingerMs;
+        return this;
+    }
+
     public ServerBuilder withConsumerValueDeserializer(Deserializer<Request> deserializer) {
         this.consumerValueDeserializer = deserializer;
         return this;
@@ -105,10 +114,11 @@ public class ServerBuilder {
         Disruptor<ServerEvent> disruptor = new Disruptor<>(ServerEvent::new, 1024, workerExecutor, producerType, new BlockingWaitStrategy());
 
         Producer<String, Response> responseProducer = new KafkaProducer<>(producerProps, new StringSerializer(), producerValueSerializer);
-        ServerEventHandler eventHandler = new ServerEventHandler(requestHandler, responseProducer);
+        ServerEventHandler eventHandler = new ServerEventHandler(requestHandler, responseProducer,
+                responseBatchSize, responseBatchLingerMs);
 
         RequestConsumer requestConsumer = new RequestConsumer(topic, consumerProps, consumerThreads, consumerValueDeserializer);
-        return new KafkaRpcServer(disruptor, requestConsumer, eventHandler);
+        return new KafkaRpcServer(disruptor, requestConsumer, eventHandler, workerThreads);
     }
 
 }
@@ -57,39 +57,100 @@ public class KafkaRpcClient implements RpcClient {
 
     @Override
     public void start() {
+        requestResponseMatcher.start();
         responseListener.startWorkers();
         pingServer();
     }
 
+    /**
+     * Single reply requests expire after default matcher timeout, multi reply requests (subscriptions) live
+     * until the last response or {@link #cancel(String)}.
+     */
     @Override
     public void call(Request request, Consumer<Response> callback) {
-        push(request);
-        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), callback);
+        long timeout = request.isSingleReplyExpected() ? requestResponseMatcher.getDefaultTimeoutMs() : 0;
+        call(request, callback, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void call(Request request, Consumer<Response> callback, long timeout, TimeUnit unit) {
+        validate(request);
+        // callback is registered before sending, otherwise a fast response may come before it
+        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), callback, unit.toMillis(timeout),
+                !request.isSingleReplyExpected());
+        try {
+            send(request, e -> {
+                if (e != null) {
+                    requestResponseMatcher.failRequest(request.getCorrelationId(), RequestResponseMatcher.SEND_FAILED_ERROR_CODE);
+                }
+            });
+        } catch (RuntimeException e) {
+            // producer may fail synchronously as well, e.g. on serialization error or metadata timeout
+            logger.error("Send request {} failed", request.getCorrelationId(), e);
+            requestResponseMatcher.failRequest(request.getCorrelationId(), RequestResponseMatcher.SEND_FAILED_ERROR_CODE);
+        }
+    }
+
+    @Override
+    public void cancel(String correlationId) {
+        requestResponseMatcher.removeRequestCallback(correlationId);
     }
 
     @Override
     public void push(Request request) {
+        validate(request);
+        request.setType(RequestType.push);
+        send(request, e -> { });
+    }
+
+    @Override
+    public CompletableFuture<Void> pushAcknowledged(Request request) {
+        validate(request);
+        request.setType(RequestType.push);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            send(request, e -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(null);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public void shutdown() {
+        requestProducer.close();
+        responseListener.shutdown();
+        requestResponseMatcher.shutdown();
+    }
+
+    private void validate(Request request) {
         if (request.getBody() == null) {
             throw new NullPointerException("Request body must not be null.");
         }
+    }
 
+    /**
+     * @param onSent notified with {@code null} when producer got the record acknowledged, or with send failure
+     */
+    private void send(Request request, Consumer<Exception> onSent) {
         request.setReplyTo(replyToTopic);
         requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request),
                 (recordMetadata, e) -> {
                     if (e != null) {
-                        logger.error("Send request failed", e);
+                        logger.error("Send request {} failed", request.getCorrelationId(), e);
+                    } else {
+                        logger.debug("Request {} sent successfully", request.getCorrelationId());
                     }
-                    logger.debug("Request {} sent successfully", request.getCorrelationId());
-                    //TODO [rafa] in case sending fails - we need to notify the caller using the callback passed.
+                    onSent.accept(e);
                 });
     }
 
-    @Override
-    public void shutdown() {
-        requestProducer.close();
-        responseListener.shutdown();
-    }
-
     private void pingServer() {
         Request request = Request.newBuilder().build();
         request.setReplyTo(replyToTopic);
@@ -21,39 +21,258 @@ package com.devicehive.shim.kafka.client;
  */
 
 import com.devicehive.shim.api.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+/**
+ * Matches responses to pending request callbacks by correlation id.
+ * Callbacks registered with a timeout are kept in a hashed wheel, which is swept every tick. Callbacks which
+ * did not get the last response before the deadline are removed and completed with a failed response
+ * ({@link #TIMEOUT_ERROR_CODE}), so the correlation map can't grow without bound when the server never replies.
+ * Every intermediate response of a multi reply request moves its deadline, so the timeout limits the time between
+ * responses rather than the whole stream.
+ * Callbacks of multi reply requests are invoked on striped single consumer rings keyed by correlation id, so all
+ * responses of one request (e.g. subscription events) are delivered one by one in the order they were received.
+ * Such callbacks should not block: a blocked callback delays other requests of its stripe.
+ * Callbacks of single reply requests get one response only, so they run on a shared fork-join pool, where a callback
+ * waiting for another request (e.g. nested RPC call) doesn't stall anything.
+ */
 public class RequestResponseMatcher {
+    private static final Logger logger = LoggerFactory.getLogger(RequestResponseMatcher.class);
+
+    public static final int TIMEOUT_ERROR_CODE = 504;
+    public static final int SEND_FAILED_ERROR_CODE = 503;
+
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+    public static final long DEFAULT_TICK_MS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    public static final int DEFAULT_DISPATCH_STRIPES = Runtime.getRuntime().availableProcessors();
+    public static final int DISPATCH_RING_SIZE = 1024;
+
+    private final ConcurrentHashMap<String, PendingCall> correlationMap = new ConcurrentHashMap<>();
 
-    private final ConcurrentHashMap<String, Consumer<Response>> correlationMap = new ConcurrentHashMap<>();
+    private final StripedDispatcher orderedDispatcher;
+    private final ForkJoinPool unorderedPool = new ForkJoinPool();
 
-    //TODO [rafa] we do not really need FJP, but rather some other pool implementation. Though FJP looks good, it might be over kill for our use case.
-    private final ForkJoinPool executionPool = new ForkJoinPool();
+    private final long defaultTimeoutMs;
+    private final long tickNanos;
+    private final List<Queue<PendingCall>> wheel;
+    private volatile long currentTick;
+    private ScheduledExecutorService sweeper;
 
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong sendFailedCount = new AtomicLong();
+
+    public RequestResponseMatcher() {
+        this(DEFAULT_TIMEOUT_MS, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, DEFAULT_DISPATCH_STRIPES);
+    }
+
+    public RequestResponseMatcher(long defaultTimeoutMs, long tickMs, int wheelSize, int dispatchStripes) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        this.orderedDispatcher = new StripedDispatcher("rpc-client-dispatcher", dispatchStripes, DISPATCH_RING_SIZE);
+    }
+
+    public synchronized void start() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rpc-client-expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        orderedDispatcher.shutdown();
+        unorderedPool.shutdown();
+    }
+
+    public long getDefaultTimeoutMs() {
+        return defaultTimeoutMs;
+    }
+
+    /**
+     * Registers callback without deadline, it lives until the last response or explicit removal.
+     */
     void addRequestCallback(String correlationId, Consumer<Response> callback) {
-        correlationMap.put(correlationId, callback);
+        addRequestCallback(correlationId, callback, 0);
+    }
+
+    /**
+     * Registers callback which is completed with failed response if no response arrives within {@code timeoutMs}
+     * after registration or after the previous response. Non-positive timeout means no deadline.
+     */
+    void addRequestCallback(String correlationId, Consumer<Response> callback, long timeoutMs) {
+        addRequestCallback(correlationId, callback, timeoutMs, true);
+    }
+
+    /**
+     * Same as {@link #addRequestCallback(String, Consumer, long)}; responses of unordered callbacks (single reply
+     * requests) are not kept in order and may be delivered concurrently.
+     */
+    void addRequestCallback(String correlationId, Consumer<Response> callback, long timeoutMs, boolean ordered) {
+        final long timeoutNanos = timeoutMs > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0;
+        PendingCall call = new PendingCall(correlationId, callback, timeoutNanos, ordered);
+        correlationMap.put(correlationId, call);
+        if (timeoutNanos > 0) {
+            call.deadline = System.nanoTime() + timeoutNanos;
+            wheel.get(bucket(currentTick, timeoutNanos)).add(call);
+        }
+    }
+
+    private int bucket(long tick, long delayNanos) {
+        // one extra tick, so the bucket is never swept before the deadline has passed
+        return (int) ((tick + delayNanos / tickNanos + 1) % wheel.size());
     }
 
     void removeRequestCallback(String correlationId) {
         correlationMap.remove(correlationId);
     }
 
+    /**
+     * Completes pending callback with failed response, e.g. when the request could not be sent at all.
+     */
+    void failRequest(String correlationId, int errorCode) {
+        PendingCall call = correlationMap.remove(correlationId);
+        if (call != null) {
+            if (errorCode == SEND_FAILED_ERROR_CODE) {
+                sendFailedCount.incrementAndGet();
+            }
+            dispatch(call, failedResponse(correlationId, errorCode));
+        }
+    }
+
     void offerResponse(Response response) {
-        Consumer<Response> callback = correlationMap.get(response.getCorrelationId());
-        if (callback != null) {
-            executionPool.execute(() -> {
-                try {
-                    callback.accept(response);
-                } finally {
-                    if (response.isLast()) {
-                        correlationMap.remove(response.getCorrelationId());
+        String correlationId = response.getCorrelationId();
+        PendingCall call = response.isLast()
+                ? correlationMap.remove(correlationId)
+                : correlationMap.get(correlationId);
+        if (call != null) {
+            if (!response.isLast() && call.timeoutNanos > 0) {
+                call.deadline = System.nanoTime() + call.timeoutNanos;
+            }
+            dispatch(call, response);
+        }
+    }
+
+    public int getPendingCount() {
+        return correlationMap.size();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public long getSendFailedCount() {
+        return sendFailedCount.get();
+    }
+
+    public int getDispatchStripes() {
+        return orderedDispatcher.getStripeCount();
+    }
+
+    public int getDispatchQueueDepth() {
+        return orderedDispatcher.getQueueDepth();
+    }
+
+    public int getDispatchMaxStripeDepth() {
+        return orderedDispatcher.getMaxQueueDepth();
+    }
+
+    void sweep() {
+        try {
+            long tick = currentTick;
+            long now = System.nanoTime();
+            int current = (int) (tick % wheel.size());
+            Iterator<PendingCall> it = wheel.get(current).iterator();
+            while (it.hasNext()) {
+                PendingCall call = it.next();
+                long remaining = call.deadline - now;
+                if (correlationMap.get(call.correlationId) != call) {
+                    it.remove(); // already completed or replaced
+                } else if (remaining > 0) {
+                    // deadline moved by a response or lies beyond one wheel turn
+                    int next = bucket(tick, remaining);
+                    if (next != current) {
+                        it.remove();
+                        wheel.get(next).add(call);
                     }
+                } else {
+                    it.remove();
+                    if (correlationMap.remove(call.correlationId, call)) {
+                        expiredCount.incrementAndGet();
+                        logger.warn("No response received for request {} before deadline", call.correlationId);
+                        dispatch(call, failedResponse(call.correlationId, TIMEOUT_ERROR_CODE));
+                    }
+                }
+            }
+            currentTick = tick + 1;
+        } catch (Exception e) {
+            logger.error("Pending requests expiration failed", e);
+        }
+    }
+
+    private void dispatch(PendingCall call, Response response) {
+        if (call.ordered) {
+            orderedDispatcher.dispatch(call.correlationId, call.callback, response);
+        } else {
+            unorderedPool.execute(() -> {
+                try {
+                    call.callback.accept(response);
+                } catch (Exception e) {
+                    logger.error("Response callback for request {} failed", call.correlationId, e);
                 }
             });
         }
     }
 
+    private static Response failedResponse(String correlationId, int errorCode) {
+        return Response.newBuilder()
+                .withCorrelationId(correlationId)
+                .withLast(true)
+                .buildFailed(errorCode);
+    }
+
+    private static class PendingCall {
+        private final String correlationId;
+        private final Consumer<Response> callback;
+        private final long timeoutNanos;
+        private final boolean ordered;
+        private volatile long deadline;
+
+        private PendingCall(String correlationId, Consumer<Response> callback, long timeoutNanos, boolean ordered) {
+            this.correlationId = correlationId;
+            this.callback = callback;
+            this.timeoutNanos = timeoutNanos;
+            this.ordered = ordered;
+        }
+    }
+
 }
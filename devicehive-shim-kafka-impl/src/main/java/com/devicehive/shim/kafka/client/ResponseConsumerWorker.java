@@ -21,6 +21,7 @@ package com.devicehive.shim.kafka.client;
  */
 
 import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.serializer.ResponseBatch;
 import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
@@ -63,7 +64,12 @@ public class ResponseConsumerWorker implements Runnable {
                 ConsumerRecords<String, Response> records = consumer.poll(Long.MAX_VALUE);
                 records.forEach(record -> {
                     logger.trace("Topic {}, partition {}, offset {}", record.topic(), record.partition(), record.offset());
-                    responseMatcher.offerResponse(record.value());
+                    Response response = record.value();
+                    if (response.getBody() instanceof ResponseBatch) {
+                        ((ResponseBatch) response.getBody()).getResponses().forEach(responseMatcher::offerResponse);
+                    } else {
+                        responseMatcher.offerResponse(response);
+                    }
                 });
             }
         } catch (WakeupException e) {
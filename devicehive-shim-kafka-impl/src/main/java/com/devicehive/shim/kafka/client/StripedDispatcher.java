@@ -0,0 +1,128 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Delivers responses to callbacks on a fixed set of stripes. Each stripe is a preallocated multi-producer ring
+ * drained by a single thread, so responses submitted with the same key are delivered one by one in submission
+ * order, and a dispatch allocates nothing.
+ * A callback blocking on a stripe holds up every key of that stripe until it returns. A producer blocks while the
+ * ring of its stripe is full.
+ */
+class StripedDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(StripedDispatcher.class);
+
+    private static final EventTranslatorTwoArg<Slot, Consumer<Response>, Response> TRANSLATOR =
+            (slot, sequence, callback, response) -> {
+                slot.callback = callback;
+                slot.response = response;
+            };
+
+    private final List<Disruptor<Slot>> stripes;
+    private final List<RingBuffer<Slot>> rings;
+
+    @SuppressWarnings("unchecked") // handleEventsWith takes generic varargs
+    StripedDispatcher(String name, int stripeCount, int ringSize) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        this.stripes = new ArrayList<>(stripeCount);
+        this.rings = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            String threadName = name + "-" + i;
+            Disruptor<Slot> disruptor = new Disruptor<>(Slot::new, ringSize, r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }, ProducerType.MULTI, new BlockingWaitStrategy());
+            disruptor.handleEventsWith((slot, sequence, endOfBatch) -> deliver(slot));
+            rings.add(disruptor.start());
+            stripes.add(disruptor);
+        }
+    }
+
+    void dispatch(Object key, Consumer<Response> callback, Response response) {
+        rings.get(stripeIndex(key)).publishEvent(TRANSLATOR, callback, response);
+    }
+
+    private static void deliver(Slot slot) {
+        Consumer<Response> callback = slot.callback;
+        Response response = slot.response;
+        // don't keep references to delivered responses until the slot is reused
+        slot.callback = null;
+        slot.response = null;
+        try {
+            callback.accept(response);
+        } catch (Exception e) {
+            logger.error("Response callback for request {} failed", response.getCorrelationId(), e);
+        }
+    }
+
+    int stripeIndex(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16; // spread higher bits, same as HashMap does
+        return (hash & Integer.MAX_VALUE) % stripes.size();
+    }
+
+    int getStripeCount() {
+        return stripes.size();
+    }
+
+    int getQueueDepth() {
+        int depth = 0;
+        for (RingBuffer<Slot> ring : rings) {
+            depth += (int) (ring.getBufferSize() - ring.remainingCapacity());
+        }
+        return depth;
+    }
+
+    int getMaxQueueDepth() {
+        int max = 0;
+        for (RingBuffer<Slot> ring : rings) {
+            max = Math.max(max, (int) (ring.getBufferSize() - ring.remainingCapacity()));
+        }
+        return max;
+    }
+
+    void shutdown() {
+        for (Disruptor<Slot> stripe : stripes) {
+            stripe.halt();
+        }
+    }
+
+    private static class Slot {
+        private Consumer<Response> callback;
+        private Response response;
+    }
+}
@@ -0,0 +1,247 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.codec.BodyCodec;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.google.gson.Gson;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.devicehive.shim.api.codec.CodecUtils.readString;
+import static com.devicehive.shim.api.codec.CodecUtils.writeString;
+
+/**
+ * Compact binary representation of {@link Request} and {@link Response} envelopes.
+ *
+ * Every message starts with {@link #MAGIC} byte (which can't be the first byte of JSON document) followed by
+ * format {@link #VERSION}. Body is written by codec registered for its action in {@link BodyCodecRegistry},
+ * bodies without codec are embedded as UTF-8 JSON. {@link ResponseBatch} body is written as a list of nested
+ * responses without headers.
+ *
+ * Messages are read with the version found in their header, so every version up to {@link #VERSION} is accepted.
+ * Written version is configurable: during rolling upgrade new nodes keep writing the version old nodes understand.
+ */
+public class BinaryEnvelopeCodec {
+
+    public static final byte MAGIC = (byte) 0xDB;
+    public static final byte VERSION = 2;
+    public static final byte MIN_VERSION = 1;
+
+    private static final byte NO_BODY = 0;
+    private static final byte CODEC_BODY = 1;
+    private static final byte JSON_BODY = 2;
+    private static final byte BATCH_BODY = 3;
+
+    private static final RequestType[] REQUEST_TYPES = RequestType.values();
+
+    private final Gson gson;
+    private final BodyCodecRegistry codecRegistry;
+    private final byte writeVersion;
+
+    public BinaryEnvelopeCodec(Gson gson, BodyCodecRegistry codecRegistry) {
+        this(gson, codecRegistry, VERSION);
+    }
+
+    /**
+     * @param writeVersion - version of written messages, from {@link #MIN_VERSION} to {@link #VERSION}
+     */
+    public BinaryEnvelopeCodec(Gson gson, BodyCodecRegistry codecRegistry, int writeVersion) {
+        if (writeVersion < MIN_VERSION || writeVersion > VERSION) {
+            throw new IllegalArgumentException("Unsupported binary wire format version " + writeVersion
+                    + ", supported versions are " + MIN_VERSION + ".." + VERSION);
+        }
+        this.gson = gson;
+        this.codecRegistry = codecRegistry != null ? codecRegistry : new BodyCodecRegistry();
+        this.writeVersion = (byte) writeVersion;
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    public byte[] encodeRequest(Request request) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out);
+            writeString(out, request.getCorrelationId());
+            writeString(out, request.getPartitionKey());
+            writeString(out, request.getReplyTo());
+            out.writeByte(request.getType().ordinal());
+            out.writeBoolean(request.isSingleReplyExpected());
+            writeBody(out, request.getBody());
+        } catch (IOException e) {
+            throw new SerializationException("Request serialization failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Request decodeRequest(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = readHeader(in);
+            String correlationId = readString(in);
+            String partitionKey = readString(in);
+            String replyTo = readString(in);
+            RequestType type = readRequestType(in);
+            boolean singleReply = in.readBoolean();
+            Request request = Request.newBuilder()
+                    .withBody(readBody(in, version))
+                    .withCorrelationId(correlationId)
+                    .withPartitionKey(partitionKey)
+                    .withSingleReply(singleReply)
+                    .build();
+            request.setReplyTo(replyTo);
+            request.setType(type);
+            return request;
+        } catch (IOException e) {
+            throw new SerializationException("Request deserialization failed", e);
+        }
+    }
+
+    public byte[] encodeResponse(Response response) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out);
+            writeResponse(out, response);
+        } catch (IOException e) {
+            throw new SerializationException("Response serialization failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Response decodeResponse(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = readHeader(in);
+            return readResponse(in, version);
+        } catch (IOException e) {
+            throw new SerializationException("Response deserialization failed", e);
+        }
+    }
+
+    private void writeResponse(DataOutput out, Response response) throws IOException {
+        writeString(out, response.getCorrelationId());
+        out.writeBoolean(response.isLast());
+        out.writeBoolean(response.isFailed());
+        out.writeInt(response.getErrorCode());
+        writeBody(out, response.getBody());
+    }
+
+    private Response readResponse(DataInput in, int version) throws IOException {
+        String correlationId = readString(in);
+        boolean last = in.readBoolean();
+        boolean failed = in.readBoolean();
+        int errorCode = in.readInt();
+        Response.Builder<Body> builder = Response.newBuilder();
+        builder.withBody(readBody(in, version))
+                .withCorrelationId(correlationId)
+                .withLast(last);
+        return failed ? builder.buildFailed(errorCode) : builder.buildSuccess();
+    }
+
+    private static RequestType readRequestType(DataInput in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= REQUEST_TYPES.length) {
+            throw new SerializationException("Unknown request type " + ordinal);
+        }
+        return REQUEST_TYPES[ordinal];
+    }
+
+    private void writeHeader(DataOutput out) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(writeVersion);
+    }
+
+    private int readHeader(DataInput in) throws IOException {
+        byte magic = in.readByte();
+        byte version = in.readByte();
+        if (magic != MAGIC) {
+            throw new SerializationException("Not a binary shim message");
+        }
+        if (version > VERSION) {
+            throw new SerializationException("Unsupported binary wire format version " + version
+                    + ", max supported version is " + VERSION);
+        }
+        return version;
+    }
+
+    private void writeBody(DataOutput out, Body body) throws IOException {
+        if (body == null) {
+            out.writeByte(NO_BODY);
+            return;
+        }
+        if (body instanceof ResponseBatch) {
+            List<Response> responses = ((ResponseBatch) body).getResponses();
+            out.writeByte(BATCH_BODY);
+            out.writeInt(responses.size());
+            for (Response response : responses) {
+                writeResponse(out, response);
+            }
+            return;
+        }
+        BodyCodec<Body> codec = codecRegistry.get(body.getAction());
+        if (codec != null) {
+            out.writeByte(CODEC_BODY);
+            writeString(out, body.getAction());
+            codec.encode(body, out, writeVersion);
+        } else {
+            out.writeByte(JSON_BODY);
+            byte[] json = gson.toJson(body, Body.class).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(json.length);
+            out.write(json);
+        }
+    }
+
+    private Body readBody(DataInput in, int version) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case NO_BODY:
+                return null;
+            case CODEC_BODY:
+                String action = readString(in);
+                BodyCodec<Body> codec = codecRegistry.get(action);
+                if (codec == null) {
+                    throw new SerializationException("No binary codec registered for action " + action);
+                }
+                return codec.decode(in, version);
+            case JSON_BODY:
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8), Body.class);
+            case BATCH_BODY:
+                int size = in.readInt();
+                List<Response> responses = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    responses.add(readResponse(in, version));
+                }
+                return new ResponseBatch(responses);
+            default:
+                throw new SerializationException("Unknown body encoding " + kind);
+        }
+    }
+}
@@ -21,22 +21,37 @@ package com.devicehive.shim.kafka.serializer;
  */
 
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
 import com.google.gson.Gson;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class RequestSerializer implements Serializer<Request>, Deserializer<Request> {
-    private static final Logger logger = LoggerFactory.getLogger(RequestSerializer.class);
 
     private Gson gson;
+    private BinaryEnvelopeCodec binaryCodec;
+    private WireFormat format;
 
     public RequestSerializer(Gson gson) {
+        this(gson, null, WireFormat.JSON);
+    }
+
+    public RequestSerializer(Gson gson, BodyCodecRegistry codecRegistry, WireFormat format) {
+        this(gson, codecRegistry, format, BinaryEnvelopeCodec.VERSION);
+    }
+
+    /**
+     * @param binaryVersion - version of binary messages written by this serializer
+     */
+    public RequestSerializer(Gson gson, BodyCodecRegistry codecRegistry, WireFormat format, int binaryVersion) {
         this.gson = gson;
+        this.binaryCodec = new BinaryEnvelopeCodec(gson, codecRegistry, binaryVersion);
+        this.format = format;
     }
 
     @Override
@@ -44,17 +59,18 @@ public class RequestSerializer implements Serializer<Request>, Deserializer<Requ
 
     @Override
     public Request deserialize(String s, byte[] bytes) {
-        try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Request.class);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Request deserialization failed", e);
-            throw new RuntimeException(e);
+        if (BinaryEnvelopeCodec.isBinary(bytes)) {
+            return binaryCodec.decodeRequest(bytes);
         }
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), Request.class);
     }
 
     @Override
     public byte[] serialize(String s, Request request) {
-        return gson.toJson(request).getBytes();
+        if (format == WireFormat.BINARY) {
+            return binaryCodec.encodeRequest(request);
+        }
+        return gson.toJson(request).getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
@@ -0,0 +1,51 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Response;
+
+import java.util.List;
+
+/**
+ * Several responses for the same reply topic packed into one Kafka record. It is a transport level body,
+ * serializers write it in their own way and response consumer unpacks it before matching responses to requests.
+ */
+public class ResponseBatch extends Body {
+
+    public static final String ACTION = "response_batch";
+
+    private List<Response> responses;
+
+    public ResponseBatch(List<Response> responses) {
+        super(ACTION);
+        this.responses = responses;
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseBatch{size=" + responses.size() + '}';
+    }
+}
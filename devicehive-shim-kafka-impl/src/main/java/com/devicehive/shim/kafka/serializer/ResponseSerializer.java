@@ -21,23 +21,46 @@ package com.devicehive.shim.kafka.serializer;
  */
 
 import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class ResponseSerializer implements Serializer<Response>, Deserializer<Response> {
-    private static final Logger logger = LoggerFactory.getLogger(ResponseSerializer.class);
+
+    private static final String BATCH_FIELD = "batch";
+    private static final byte[] BATCH_PREFIX = ("{\"" + BATCH_FIELD + "\":").getBytes(StandardCharsets.UTF_8);
 
     private Gson gson;
+    private BinaryEnvelopeCodec binaryCodec;
+    private WireFormat format;
 
     public ResponseSerializer(Gson gson) {
+        this(gson, null, WireFormat.JSON);
+    }
+
+    public ResponseSerializer(Gson gson, BodyCodecRegistry codecRegistry, WireFormat format) {
+        this(gson, codecRegistry, format, BinaryEnvelopeCodec.VERSION);
+    }
+
+    /**
+     * @param binaryVersion - version of binary messages written by this serializer
+     */
+    public ResponseSerializer(Gson gson, BodyCodecRegistry codecRegistry, WireFormat format, int binaryVersion) {
         this.gson = gson;
+        this.binaryCodec = new BinaryEnvelopeCodec(gson, codecRegistry, binaryVersion);
+        this.format = format;
     }
 
     @Override
@@ -45,17 +68,61 @@ public class ResponseSerializer implements Serializer<Response>, Deserializer<Re
 
     @Override
     public Response deserialize(String s, byte[] bytes) {
-        try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Response.class);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Request deserialization failed");
-            throw new RuntimeException(e);
+        if (BinaryEnvelopeCodec.isBinary(bytes)) {
+            return binaryCodec.decodeResponse(bytes);
         }
+        if (isJsonBatch(bytes)) {
+            return deserializeJsonBatch(bytes);
+        }
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), Response.class);
     }
 
     @Override
     public byte[] serialize(String s, Response response) {
-        return gson.toJson(response).getBytes();
+        if (format == WireFormat.BINARY) {
+            return binaryCodec.encodeResponse(response);
+        }
+        if (response.getBody() instanceof ResponseBatch) {
+            return serializeJsonBatch((ResponseBatch) response.getBody());
+        }
+        return gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * JSON batch is an object with the only "batch" field, which holds array of responses.
+     */
+    private byte[] serializeJsonBatch(ResponseBatch batch) {
+        JsonArray responses = new JsonArray();
+        batch.getResponses().forEach(r -> responses.add(gson.toJsonTree(r)));
+        JsonObject json = new JsonObject();
+        json.add(BATCH_FIELD, responses);
+        return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Response deserializeJsonBatch(byte[] bytes) {
+        JsonArray array = new JsonParser()
+                .parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))
+                .getAsJsonObject()
+                .getAsJsonArray(BATCH_FIELD);
+        List<Response> responses = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            responses.add(gson.fromJson(element, Response.class));
+        }
+        return Response.newBuilder()
+                .withBody(new ResponseBatch(responses))
+                .buildSuccess();
+    }
+
+    private static boolean isJsonBatch(byte[] bytes) {
+        if (bytes == null || bytes.length < BATCH_PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < BATCH_PREFIX.length; i++) {
+            if (bytes[i] != BATCH_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
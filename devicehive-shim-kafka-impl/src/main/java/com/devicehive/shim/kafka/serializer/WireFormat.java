@@ -0,0 +1,43 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Format used to write shim messages to kafka. Readers always accept both formats, so the format can be switched
+ * on frontends and backends one at a time: first roll out nodes which are able to read binary messages (while still
+ * writing {@link #JSON}), then switch writers to {@link #BINARY}.
+ */
+public enum WireFormat {
+    JSON, BINARY;
+
+    public static WireFormat fromString(String format) {
+        if (format == null) {
+            return JSON;
+        }
+        switch (format.trim().toLowerCase()) {
+            case "binary":
+                return BINARY;
+            case "json":
+            default:
+                return JSON;
+        }
+    }
+}
@@ -30,16 +30,27 @@ public class KafkaRpcServer implements RpcServer {
     private Disruptor<ServerEvent> disruptor;
     private RequestConsumer requestConsumer;
     private ServerEventHandler eventHandler;
+    private int handlerShards;
 
     public KafkaRpcServer(Disruptor<ServerEvent> disruptor, RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
+        this(disruptor, requestConsumer, eventHandler, 1);
+    }
+
+    /**
+     * @param handlerShards number of disruptor handlers, requests are spread between them by partition key.
+     *                      Disruptor executor must have at least this number of threads.
+     */
+    public KafkaRpcServer(Disruptor<ServerEvent> disruptor, RequestConsumer requestConsumer, ServerEventHandler eventHandler,
+                          int handlerShards) {
         this.disruptor = disruptor;
         this.requestConsumer = requestConsumer;
         this.eventHandler = eventHandler;
+        this.handlerShards = handlerShards;
     }
 
     @Override
     public void start() {
-        disruptor.handleEventsWith(eventHandler);
+        disruptor.handleEventsWith(ShardedEventHandler.shard(eventHandler::createShardHandler, handlerShards));
         disruptor.start();
 
         RingBuffer<ServerEvent> ringBuffer = disruptor.getRingBuffer();
@@ -50,6 +61,7 @@ public class KafkaRpcServer implements RpcServer {
     public void shutdown() {
         requestConsumer.shutdownConsumers();
         disruptor.shutdown();
+        eventHandler.shutdown();
     }
 
     @Override
@@ -0,0 +1,138 @@
+package com.devicehive.shim.kafka.server;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.serializer.ResponseBatch;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects responses of one disruptor handler and sends all responses for the same reply topic as a single
+ * Kafka record. Buffer is flushed when it reaches max size, when the oldest response waits longer than linger
+ * time, or when the handler reaches the end of disruptor batch. When a linger timer is given, buffer is also flushed
+ * by the timer, so responses added outside of disruptor handlers (see {@link ServerEventHandler#send}) never wait
+ * for the next add. One batcher may be shared between threads: the buffer is swapped out under its lock and sent
+ * outside of it, so adding threads never wait for the producer.
+ */
+public class ResponseBatcher {
+
+    private final Producer<String, Response> producer;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final long lingerNanos;
+    private final ScheduledExecutorService lingerTimer;
+
+    // held while a drained buffer is sent, so batches leave in the order they were drained
+    private final Object sendLock = new Object();
+
+    private Map<String, List<Response>> pending = new LinkedHashMap<>();
+    private int size;
+    private long firstAddedAt;
+    private long generation;
+
+    public ResponseBatcher(Producer<String, Response> producer, int maxBatchSize, long lingerMs) {
+        this(producer, maxBatchSize, lingerMs, null);
+    }
+
+    /**
+     * @param lingerTimer executor used to flush the buffer once linger time of the first response is over,
+     *                    null to flush only on add and explicit {@link #flush()}
+     */
+    public ResponseBatcher(Producer<String, Response> producer, int maxBatchSize, long lingerMs,
+                           ScheduledExecutorService lingerTimer) {
+        this.producer = producer;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.lingerNanos = lingerMs * 1000000L;
+        this.lingerTimer = lingerTimer;
+    }
+
+    public void add(String replyTo, Response response) {
+        boolean full;
+        synchronized (this) {
+            if (size == 0) {
+                firstAddedAt = System.nanoTime();
+                if (lingerTimer != null && lingerMs > 0) {
+                    final long scheduledFor = generation;
+                    lingerTimer.schedule(() -> flushGeneration(scheduledFor), lingerMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            pending.computeIfAbsent(replyTo, k -> new ArrayList<>()).add(response);
+            size++;
+            full = size >= maxBatchSize || System.nanoTime() - firstAddedAt >= lingerNanos;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    private void flushGeneration(long scheduledFor) {
+        synchronized (sendLock) {
+            // buffer could be flushed and refilled since the timer was scheduled, new content has own timer
+            send(drain(scheduledFor));
+        }
+    }
+
+    public void flush() {
+        synchronized (sendLock) {
+            send(drain(-1));
+        }
+    }
+
+    /**
+     * Swaps the buffer out, so producer is called without holding the lock adders wait for.
+     * Negative generation drains the buffer unconditionally.
+     */
+    private synchronized Map<String, List<Response>> drain(long expectedGeneration) {
+        if (size == 0 || (expectedGeneration >= 0 && generation != expectedGeneration)) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<Response>> drained = pending;
+        pending = new LinkedHashMap<>();
+        size = 0;
+        generation++;
+        return drained;
+    }
+
+    private void send(Map<String, List<Response>> drained) {
+        for (Map.Entry<String, List<Response>> entry : drained.entrySet()) {
+            List<Response> responses = entry.getValue();
+            if (responses.size() == 1) {
+                Response response = responses.get(0);
+                producer.send(new ProducerRecord<>(entry.getKey(), response.getCorrelationId(), response));
+            } else {
+                Response batch = Response.newBuilder()
+                        .withBody(new ResponseBatch(responses))
+                        .buildSuccess();
+                producer.send(new ProducerRecord<>(entry.getKey(), batch));
+            }
+        }
+    }
+}
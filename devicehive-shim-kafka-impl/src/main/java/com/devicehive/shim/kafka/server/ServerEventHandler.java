@@ -32,18 +32,66 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static com.devicehive.shim.api.RequestType.clientRequest;
 
-public class ServerEventHandler implements EventHandler<ServerEvent>, MessageDispatcher {
+public class ServerEventHandler implements EventHandler<ServerEvent>, MessageDispatcher, BatchEndListener {
     private static final Logger logger = LoggerFactory.getLogger(ServerEventHandler.class);
 
     private RequestHandler requestHandler;
     private Producer<String, Response> responseProducer;
+    private int responseBatchSize;
+    private long responseLingerMs;
+    private ResponseBatcher responseBatcher;
+    private ResponseBatcher dispatchBatcher;
+    private ScheduledExecutorService lingerTimer;
 
     public ServerEventHandler(RequestHandler requestHandler, Producer<String, Response> responseProducer) {
+        this(requestHandler, responseProducer, 1, 0);
+    }
+
+    /**
+     * @param responseBatchSize max number of responses sent as one Kafka record, 1 disables batching
+     * @param responseLingerMs  max time the first buffered response may wait for the end of disruptor batch
+     */
+    public ServerEventHandler(RequestHandler requestHandler, Producer<String, Response> responseProducer,
+                              int responseBatchSize, long responseLingerMs) {
         this.requestHandler = requestHandler;
         this.responseProducer = responseProducer;
+        this.responseBatchSize = responseBatchSize;
+        this.responseLingerMs = responseLingerMs;
+        if (responseBatchSize > 1) {
+            this.lingerTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rpc-server-response-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.responseBatcher = new ResponseBatcher(responseProducer, responseBatchSize, responseLingerMs, lingerTimer);
+            // messages sent through the dispatcher come from any thread, they share one batcher flushed by the timer
+            this.dispatchBatcher = new ResponseBatcher(responseProducer, responseBatchSize, responseLingerMs, lingerTimer);
+        }
+    }
+
+    private ServerEventHandler(ServerEventHandler parent) {
+        this.requestHandler = parent.requestHandler;
+        this.responseProducer = parent.responseProducer;
+        this.responseBatchSize = parent.responseBatchSize;
+        this.responseLingerMs = parent.responseLingerMs;
+        this.lingerTimer = parent.lingerTimer;
+        this.dispatchBatcher = parent.dispatchBatcher;
+        this.responseBatcher = new ResponseBatcher(responseProducer, responseBatchSize, responseLingerMs, lingerTimer);
+    }
+
+    /**
+     * Handler for one disruptor shard. Without batching handler is stateless and shared between shards,
+     * otherwise every shard gets own response buffer.
+     */
+    public ServerEventHandler createShardHandler() {
+        return responseBatcher == null
+                ? this
+                : new ServerEventHandler(this);
     }
 
     @Override
@@ -58,6 +106,14 @@ public class ServerEventHandler implements EventHandler<ServerEvent>, MessageDis
                 logger.debug("Client request received {}", request);
                 response = handleClientRequest(request);
                 break;
+            case push:
+                logger.debug("Client push request received {}", request);
+                Response pushResponse = handleClientRequest(request);
+                if (pushResponse.isFailed()) {
+                    logger.warn("Push request {} failed with code {}", request.getCorrelationId(), pushResponse.getErrorCode());
+                }
+                response = null;
+                break;
             case ping:
                 logger.info("Ping request received from {}", replyTo);
                 response = Response.newBuilder().buildSuccess();
@@ -69,9 +125,25 @@ public class ServerEventHandler implements EventHandler<ServerEvent>, MessageDis
                         .buildFailed(404);
         }
 
-        // set correlationId explicitly to prevent missing it in request
-        response.setCorrelationId(request.getCorrelationId());
-        send(replyTo, response);
+        if (response != null) {
+            // set correlationId explicitly to prevent missing it in request
+            response.setCorrelationId(request.getCorrelationId());
+            if (responseBatcher != null) {
+                responseBatcher.add(replyTo, response);
+            } else {
+                send(replyTo, response);
+            }
+        }
+        if (responseBatcher != null && endOfBatch) {
+            responseBatcher.flush();
+        }
+    }
+
+    @Override
+    public void onBatchEnd() {
+        if (responseBatcher != null) {
+            responseBatcher.flush();
+        }
     }
 
     private Response handleClientRequest(Request request) {
@@ -90,8 +162,27 @@ public class ServerEventHandler implements EventHandler<ServerEvent>, MessageDis
         return response;
     }
 
+    /**
+     * Sends message outside of request handling (subscription updates, streamed pages). With batching enabled
+     * the message goes through the shared dispatcher batcher and is sent at the latest after linger time.
+     */
     @Override
     public void send(String replyTo, Response response) {
-        responseProducer.send(new ProducerRecord<>(replyTo, response.getCorrelationId(), response));
+        if (dispatchBatcher != null) {
+            dispatchBatcher.add(replyTo, response);
+        } else {
+            responseProducer.send(new ProducerRecord<>(replyTo, response.getCorrelationId(), response));
+        }
+    }
+
+    /**
+     * Sends everything buffered by the dispatcher and stops linger timer. Shard buffers are flushed by the
+     * disruptor at the end of every batch.
+     */
+    public void shutdown() {
+        if (dispatchBatcher != null) {
+            dispatchBatcher.flush();
+            lingerTimer.shutdownNow();
+        }
     }
 }
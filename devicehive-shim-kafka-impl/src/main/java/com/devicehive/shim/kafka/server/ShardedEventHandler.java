@@ -0,0 +1,82 @@
+package com.devicehive.shim.kafka.server;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Request;
+import com.lmax.disruptor.EventHandler;
+
+import java.util.function.Supplier;
+
+/**
+ * Every shard sees all events of the ring buffer, but passes to delegate only requests whose partition key
+ * hashes to this shard. So requests with the same partition key (e.g. the same device) are still handled
+ * sequentially in order, while requests for different keys are spread between shards and handled in parallel.
+ */
+public class ShardedEventHandler implements EventHandler<ServerEvent> {
+
+    private final EventHandler<ServerEvent> delegate;
+    private final int ordinal;
+    private final int numberOfShards;
+
+    public ShardedEventHandler(EventHandler<ServerEvent> delegate, int ordinal, int numberOfShards) {
+        this.delegate = delegate;
+        this.ordinal = ordinal;
+        this.numberOfShards = numberOfShards;
+    }
+
+    @Override
+    public void onEvent(ServerEvent event, long sequence, boolean endOfBatch) throws Exception {
+        if (numberOfShards == 1 || shardOf(event.get(), numberOfShards) == ordinal) {
+            delegate.onEvent(event, sequence, endOfBatch);
+        } else if (endOfBatch && delegate instanceof BatchEndListener) {
+            ((BatchEndListener) delegate).onBatchEnd();
+        }
+    }
+
+    public static int shardOf(Request request, int numberOfShards) {
+        String key = request.getPartitionKey() != null ? request.getPartitionKey() : request.getCorrelationId();
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % numberOfShards;
+    }
+
+    public static ShardedEventHandler[] shard(EventHandler<ServerEvent> delegate, int numberOfShards) {
+        return shard(() -> delegate, numberOfShards);
+    }
+
+    /**
+     * Creates shards with own delegate instance each, required when delegate keeps per thread state.
+     */
+    public static ShardedEventHandler[] shard(Supplier<? extends EventHandler<ServerEvent>> delegateFactory,
+                                              int numberOfShards) {
+        if (numberOfShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive");
+        }
+        ShardedEventHandler[] handlers = new ShardedEventHandler[numberOfShards];
+        for (int i = 0; i < numberOfShards; i++) {
+            handlers[i] = new ShardedEventHandler(delegateFactory.get(), i, numberOfShards);
+        }
+        return handlers;
+    }
+}
@@ -0,0 +1,142 @@
+package com.devicehive.shim.kafka.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.config.KafkaProfile;
+import com.devicehive.test.rule.KafkaEmbeddedRule;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes records through embedded Kafka broker with producer and consumer configured by {@link KafkaProfile}
+ * and measures end to end throughput (from send until the record is polled by consumer).
+ *
+ * Run {@link #main(String[])} from the test classpath, broker uses kafka.port and zookeeper.port system properties
+ * (9092 and 2181 by default).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaProfileBenchmark {
+
+    private static final int RECORDS_PER_INVOCATION = 5000;
+
+    @Param({"default", "low-latency", "high-throughput"})
+    private String profile;
+
+    @Param({"256"})
+    private int recordSize;
+
+    private EmbeddedKafka kafka;
+    private KafkaProducer<String, byte[]> producer;
+    private KafkaConsumer<String, byte[]> consumer;
+    private String topic;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws Throwable {
+        topic = "benchmark_" + UUID.randomUUID().toString().replace("-", "");
+        kafka = new EmbeddedKafka(topic);
+        kafka.start();
+
+        KafkaProfile kafkaProfile = KafkaProfile.fromString(profile);
+
+        Properties producerProps = kafka.getProducerProperties();
+        producerProps.remove(ProducerConfig.ACKS_CONFIG); // keep client default unless profile sets it
+        producerProps.putAll(kafkaProfile.producerProperties());
+        producer = new KafkaProducer<>(producerProps, new StringSerializer(), new ByteArraySerializer());
+
+        Properties consumerProps = kafka.getConsumerProperties();
+        consumerProps.putAll(kafkaProfile.consumerProperties());
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumer = new KafkaConsumer<>(consumerProps, new StringDeserializer(), new ByteArrayDeserializer());
+        consumer.subscribe(Collections.singletonList(topic));
+        while (consumer.assignment().isEmpty()) {
+            consumer.poll(100);
+        }
+
+        payload = new byte[recordSize];
+        new Random(42).nextBytes(payload);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producer.close();
+        consumer.close();
+        kafka.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_INVOCATION)
+    public int sendAndReceive() {
+        for (int i = 0; i < RECORDS_PER_INVOCATION; i++) {
+            producer.send(new ProducerRecord<>(topic, String.valueOf(i), payload));
+        }
+        int received = 0;
+        while (received < RECORDS_PER_INVOCATION) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(1000);
+            received += records.count();
+        }
+        return received;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KafkaProfileBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static class EmbeddedKafka extends KafkaEmbeddedRule {
+
+        EmbeddedKafka(String topic) {
+            super(true, 1, topic);
+        }
+
+        void start() throws Throwable {
+            before();
+        }
+
+        void stop() {
+            after();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.devicehive.shim.kafka.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.fixture.TestRequestBody;
+import com.devicehive.shim.kafka.fixture.TestResponseBody;
+import com.devicehive.shim.kafka.server.ServerEvent;
+import com.devicehive.shim.kafka.server.ServerEventHandler;
+import com.devicehive.shim.kafka.server.ShardedEventHandler;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures server side request handling throughput depending on the number of disruptor handler shards.
+ * Handler burns a fixed amount of CPU per request, so the result shows how well requests for different
+ * partition keys are spread between shards.
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ShardedHandlerBenchmark {
+
+    private static final int REQUESTS_PER_INVOCATION = 10000;
+    private static final int PARTITION_KEYS = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    private int handlers;
+
+    @Param({"1000"})
+    private long workTokens;
+
+    private ExecutorService executor;
+    private Disruptor<ServerEvent> disruptor;
+    private MockProducer<String, Response> producer;
+    private Request[] requests;
+    private final AtomicLong handled = new AtomicLong();
+    private long expected;
+
+    @Setup
+    public void setUp() {
+        producer = new MockProducer<>(true, new StringSerializer(), new NoOpSerializer());
+        ServerEventHandler eventHandler = new ServerEventHandler(request -> {
+            Blackhole.consumeCPU(workTokens);
+            handled.incrementAndGet();
+            return Response.newBuilder().withBody(new TestResponseBody("ok")).buildSuccess();
+        }, producer);
+
+        executor = Executors.newFixedThreadPool(handlers);
+        disruptor = new Disruptor<>(ServerEvent::new, 1024, executor, ProducerType.SINGLE, new BlockingWaitStrategy());
+        disruptor.handleEventsWith(ShardedEventHandler.shard(eventHandler, handlers));
+        disruptor.start();
+
+        requests = new Request[REQUESTS_PER_INVOCATION];
+        String[] keys = new String[PARTITION_KEYS];
+        for (int i = 0; i < PARTITION_KEYS; i++) {
+            keys[i] = UUID.randomUUID().toString();
+        }
+        for (int i = 0; i < REQUESTS_PER_INVOCATION; i++) {
+            requests[i] = Request.newBuilder()
+                    .withBody(new TestRequestBody("request"))
+                    .withPartitionKey(keys[i % PARTITION_KEYS])
+                    .build();
+            requests[i].setReplyTo("response_topic");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        disruptor.shutdown();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public void handle() {
+        RingBuffer<ServerEvent> ringBuffer = disruptor.getRingBuffer();
+        for (Request request : requests) {
+            ringBuffer.publishEvent((event, sequence, r) -> event.set(r), request);
+        }
+        expected += REQUESTS_PER_INVOCATION;
+        while (handled.get() < expected) {
+            Thread.yield();
+        }
+        producer.clear();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShardedHandlerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static class NoOpSerializer implements Serializer<Response> {
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+        }
+
+        @Override
+        public byte[] serialize(String topic, Response data) {
+            return new byte[0];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.devicehive.shim.kafka.benchmark;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.codec.BodyCodecFactory;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.serializer.RequestSerializer;
+import com.devicehive.shim.kafka.serializer.ResponseSerializer;
+import com.devicehive.shim.kafka.serializer.WireFormat;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Gson JSON and binary wire formats on the hottest shim messages:
+ * notification insert request (frontend to backend) and notification event (backend to subscribers).
+ *
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private WireFormat format;
+
+    private RequestSerializer requestSerializer;
+    private ResponseSerializer responseSerializer;
+
+    private Request request;
+    private Response response;
+    private byte[] requestBytes;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setUp() {
+        Gson gson = GsonFactory.createGson();
+        requestSerializer = new RequestSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), format);
+        responseSerializer = new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), format);
+
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(Long.MAX_VALUE / 3);
+        notification.setDeviceGuid(UUID.randomUUID().toString());
+        notification.setNotification("temperature");
+        notification.setTimestamp(new Date());
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6,\"unit\":\"C\",\"sensor\":\"t-1\"}"));
+
+        request = Request.newBuilder()
+                .withBody(new NotificationInsertRequest(notification))
+                .withPartitionKey(notification.getDeviceGuid())
+                .build();
+        request.setReplyTo("response_topic_" + UUID.randomUUID());
+
+        response = Response.newBuilder()
+                .withBody(new NotificationEvent(notification))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .withLast(false)
+                .buildSuccess();
+
+        requestBytes = requestSerializer.serialize(null, request);
+        responseBytes = responseSerializer.serialize(null, response);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return requestSerializer.serialize(null, request);
+    }
+
+    @Benchmark
+    public Request deserializeRequest() {
+        return requestSerializer.deserialize(null, requestBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() {
+        return responseSerializer.serialize(null, response);
+    }
+
+    @Benchmark
+    public Response deserializeResponse() {
+        return responseSerializer.deserialize(null, responseBytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,235 @@
+package com.devicehive.shim.kafka.client;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.fixture.TestResponseBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestResponseMatcherTest {
+
+    private RequestResponseMatcher matcher;
+
+    @Before
+    public void setUp() throws Exception {
+        matcher = new RequestResponseMatcher(100, 10, 8, 4);
+        matcher.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        matcher.shutdown();
+    }
+
+    @Test
+    public void shouldFailCallbackAfterDeadline() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("expired", future::complete, 50);
+        assertEquals(1, matcher.getPendingCount());
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertTrue(response.isLast());
+        assertEquals(RequestResponseMatcher.TIMEOUT_ERROR_CODE, response.getErrorCode());
+        assertEquals("expired", response.getCorrelationId());
+        assertEquals(0, matcher.getPendingCount());
+        assertEquals(1, matcher.getExpiredCount());
+    }
+
+    @Test
+    public void shouldNotExpireCompletedCallback() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("completed", future::complete, 50);
+        matcher.offerResponse(Response.newBuilder().withCorrelationId("completed").buildSuccess());
+
+        assertFalse(future.get(5, TimeUnit.SECONDS).isFailed());
+        assertEquals(0, matcher.getPendingCount());
+        Thread.sleep(200);
+        assertEquals(0, matcher.getExpiredCount());
+    }
+
+    @Test
+    public void shouldMoveDeadlineOfMultiReplyCallbackWithEveryResponse() throws Exception {
+        List<Response> received = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Response> last = new CompletableFuture<>();
+        matcher.addRequestCallback("stream", response -> {
+            received.add(response);
+            if (response.isLast()) {
+                last.complete(response);
+            }
+        }, 150);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(60);
+            matcher.offerResponse(Response.newBuilder()
+                    .withBody(new TestResponseBody(String.valueOf(i)))
+                    .withCorrelationId("stream")
+                    .withLast(false)
+                    .buildSuccess());
+        }
+        assertFalse(last.isDone());
+        assertEquals(0, matcher.getExpiredCount());
+
+        Response response = last.get(5, TimeUnit.SECONDS);
+        assertEquals(RequestResponseMatcher.TIMEOUT_ERROR_CODE, response.getErrorCode());
+        assertEquals(6, received.size());
+        assertEquals(0, matcher.getPendingCount());
+        assertEquals(1, matcher.getExpiredCount());
+    }
+
+    @Test
+    public void shouldKeepCallbackWithoutDeadline() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("subscription", future::complete);
+        Thread.sleep(200);
+
+        assertFalse(future.isDone());
+        assertEquals(1, matcher.getPendingCount());
+        matcher.removeRequestCallback("subscription");
+        assertEquals(0, matcher.getPendingCount());
+    }
+
+    @Test
+    public void shouldNotDeliverResponsesAfterCallbackRemoved() throws Exception {
+        List<Response> received = Collections.synchronizedList(new ArrayList<>());
+        matcher.addRequestCallback("subscription", received::add);
+        matcher.removeRequestCallback("subscription");
+        matcher.offerResponse(Response.newBuilder()
+                .withBody(new TestResponseBody("event"))
+                .withCorrelationId("subscription")
+                .withLast(false)
+                .buildSuccess());
+        Thread.sleep(200);
+
+        assertTrue(received.isEmpty());
+        assertEquals(0, matcher.getPendingCount());
+    }
+
+    @Test
+    public void shouldFailCallbackWhenSendFails() throws Exception {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        matcher.addRequestCallback("not-sent", future::complete, 10000);
+        matcher.failRequest("not-sent", RequestResponseMatcher.SEND_FAILED_ERROR_CODE);
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertEquals(RequestResponseMatcher.SEND_FAILED_ERROR_CODE, response.getErrorCode());
+        assertEquals(0, matcher.getPendingCount());
+        assertEquals(1, matcher.getSendFailedCount());
+    }
+
+    @Test
+    public void shouldDispatchResponsesOfOneRequestInOrder() throws Exception {
+        int count = 1000;
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        matcher.addRequestCallback("subscription", response -> {
+            received.add(((TestResponseBody) response.getBody()).getResponseBody());
+            if (response.isLast()) {
+                done.complete(null);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            matcher.offerResponse(Response.newBuilder()
+                    .withBody(new TestResponseBody(String.valueOf(i)))
+                    .withCorrelationId("subscription")
+                    .withLast(i == count - 1)
+                    .buildSuccess());
+        }
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(String.valueOf(i), received.get(i));
+        }
+        assertEquals(4, matcher.getDispatchStripes());
+    }
+
+    @Test
+    public void shouldDeliverNestedSingleReplyWhileOrderedCallbackWaits() throws Exception {
+        RequestResponseMatcher singleStripe = new RequestResponseMatcher(10000, 10, 8, 1);
+        singleStripe.start();
+        try {
+            CompletableFuture<Response> nested = new CompletableFuture<>();
+            CompletableFuture<Response> outer = new CompletableFuture<>();
+            singleStripe.addRequestCallback("outer", response -> {
+                singleStripe.addRequestCallback("nested", nested::complete, 10000, false);
+                singleStripe.offerResponse(Response.newBuilder().withCorrelationId("nested").buildSuccess());
+                try {
+                    outer.complete(nested.get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    outer.completeExceptionally(e);
+                }
+            }, 10000);
+            singleStripe.offerResponse(Response.newBuilder().withCorrelationId("outer").buildSuccess());
+
+            assertEquals("nested", outer.get(10, TimeUnit.SECONDS).getCorrelationId());
+        } finally {
+            singleStripe.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldKeepOrderWhenCallbackBlocks() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(3);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        matcher.addRequestCallback("subscription", response -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            String body = ((TestResponseBody) response.getBody()).getResponseBody();
+            if ("0".equals(body)) {
+                release.join();
+            }
+            received.add(body);
+            running.decrementAndGet();
+            delivered.countDown();
+        });
+        for (int i = 0; i < 3; i++) {
+            matcher.offerResponse(Response.newBuilder()
+                    .withBody(new TestResponseBody(String.valueOf(i)))
+                    .withCorrelationId("subscription")
+                    .withLast(false)
+                    .buildSuccess());
+        }
+        Thread.sleep(200);
+        assertTrue(received.isEmpty());
+        assertEquals(3, matcher.getDispatchQueueDepth()); // including the one being delivered
+
+        release.complete(null);
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0", "1", "2"), received);
+        assertEquals(1, maxRunning.get());
+    }
+
+}
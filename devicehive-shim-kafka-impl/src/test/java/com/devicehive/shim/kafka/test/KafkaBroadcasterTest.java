@@ -0,0 +1,92 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.kafka.broadcast.KafkaBroadcaster;
+import com.devicehive.test.rule.KafkaEmbeddedRule;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class KafkaBroadcasterTest {
+
+    private static final String TOPIC = "broadcast_topic";
+
+    @ClassRule
+    public static KafkaEmbeddedRule kafkaRule = new KafkaEmbeddedRule(true, 2, TOPIC);
+
+    private KafkaBroadcaster first;
+    private KafkaBroadcaster second;
+
+    @After
+    public void tearDown() throws Exception {
+        if (first != null) {
+            first.shutdown();
+        }
+        if (second != null) {
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldDeliverMessagesSentAfterListenToEveryNodeWithoutConsumerGroup() throws Exception {
+        first = createBroadcaster();
+        first.broadcast(TOPIC, "before");
+
+        BlockingQueue<String> firstReceived = new LinkedBlockingQueue<>();
+        BlockingQueue<String> secondReceived = new LinkedBlockingQueue<>();
+        Thread.sleep(500); // let the early message reach the broker before anyone listens
+        first.listen(TOPIC, firstReceived::add);
+        second = createBroadcaster();
+        second.listen(TOPIC, secondReceived::add);
+
+        second.broadcast(TOPIC, "after");
+
+        assertEquals("after", firstReceived.poll(10, TimeUnit.SECONDS));
+        assertEquals("after", secondReceived.poll(10, TimeUnit.SECONDS));
+        assertNull(firstReceived.poll(500, TimeUnit.MILLISECONDS));
+        assertNull(secondReceived.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static KafkaBroadcaster createBroadcaster() {
+        Properties consumerProps = kafkaRule.getConsumerProperties();
+        consumerProps.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        consumerProps.remove(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return new KafkaBroadcaster(
+                new KafkaProducer<>(kafkaRule.getProducerProperties(), new StringSerializer(), new StringSerializer()),
+                () -> new KafkaConsumer<>(consumerProps, new StringDeserializer(), new StringDeserializer()),
+                topic -> { });
+    }
+}
@@ -0,0 +1,63 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.config.KafkaProfile;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class KafkaProfileTest {
+
+    @Test
+    public void shouldOverrideProfileWithPrefixedProperties() throws Exception {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("rpc.producer.linger.ms", "7")
+                .withProperty("rpc.consumer.max.poll.records", "10")
+                .withProperty("rpc.client.response-timeout.ms", "100");
+
+        Properties producer = KafkaProfile.fromString("high-throughput").producerProperties(env);
+        assertEquals("7", producer.getProperty(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("lz4", producer.getProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals(5, producer.size());
+
+        Properties consumer = KafkaProfile.fromString("high-throughput").consumerProperties(env);
+        assertEquals("10", consumer.getProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG));
+        assertEquals("65536", consumer.getProperty(ConsumerConfig.FETCH_MIN_BYTES_CONFIG));
+    }
+
+    @Test
+    public void shouldUseClientDefaultsForDefaultProfile() throws Exception {
+        assertTrue(KafkaProfile.fromString("default").producerProperties(new MockEnvironment()).isEmpty());
+        assertEquals(KafkaProfile.LOW_LATENCY, KafkaProfile.fromString("LOW-LATENCY"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownProfile() throws Exception {
+        KafkaProfile.fromString("fastest");
+    }
+
+}
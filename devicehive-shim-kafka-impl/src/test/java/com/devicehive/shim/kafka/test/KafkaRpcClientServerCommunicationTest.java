@@ -24,6 +24,7 @@ import com.devicehive.json.adapters.RuntimeTypeAdapterFactory;
 import com.devicehive.test.rule.KafkaEmbeddedRule;
 import com.devicehive.shim.api.Body;
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
 import com.devicehive.shim.api.server.RequestHandler;
@@ -82,6 +83,7 @@ public class KafkaRpcClientServerCommunicationTest {
                 .withProducerValueSerializer(new ResponseSerializer(gson))
                 .withConsumerThreads(1)
                 .withWorkerThreads(1)
+                .withResponseBatch(16, 5)
                 .withRequestHandler(handlerWrapper)
                 .withTopic(REQUEST_TOPIC)
                 .build();
@@ -133,6 +135,30 @@ public class KafkaRpcClientServerCommunicationTest {
         assertEquals(request, receivedRequest);
     }
 
+    @Test
+    public void shouldAcknowledgePushWhenRequestIsSent() throws Exception {
+        CompletableFuture<Request> future = new CompletableFuture<>();
+        RequestHandler handler = request -> {
+            future.complete(request);
+            return Response.newBuilder()
+                    .withBody(new TestResponseBody("Response"))
+                    .withCorrelationId(request.getCorrelationId())
+                    .withLast(true)
+                    .buildSuccess();
+        };
+        handlerWrapper.setDelegate(handler);
+
+        Request request = Request.newBuilder()
+                .withBody(new TestRequestBody("PushTest"))
+                .build();
+
+        client.pushAcknowledged(request).get(10, TimeUnit.SECONDS);
+
+        Request receivedRequest = future.get(10, TimeUnit.SECONDS);
+        assertEquals(request, receivedRequest);
+        assertEquals(RequestType.push, receivedRequest.getType());
+    }
+
     @Test
     public void shouldSuccessfullyReplyToRequest() throws Exception {
         RequestHandler handler = request -> Response.newBuilder()
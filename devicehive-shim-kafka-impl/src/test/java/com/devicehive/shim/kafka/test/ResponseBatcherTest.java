@@ -0,0 +1,177 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.kafka.fixture.TestResponseBody;
+import com.devicehive.shim.kafka.serializer.ResponseBatch;
+import com.devicehive.shim.kafka.server.ResponseBatcher;
+import com.devicehive.shim.kafka.server.ServerEventHandler;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ResponseBatcherTest {
+
+    private final MockProducer<String, Response> producer = new MockProducer<>(true, null, null);
+
+    @Test
+    public void shouldCoalesceResponsesForSameReplyTopicOnFlush() throws Exception {
+        ResponseBatcher batcher = new ResponseBatcher(producer, 100, 10000);
+        batcher.add("client_1", response("a"));
+        batcher.add("client_2", response("b"));
+        batcher.add("client_1", response("c"));
+        assertTrue(producer.history().isEmpty());
+
+        batcher.flush();
+
+        List<ProducerRecord<String, Response>> records = producer.history();
+        assertEquals(2, records.size());
+        assertEquals("client_1", records.get(0).topic());
+        List<String> batched = ((ResponseBatch) records.get(0).value().getBody()).getResponses().stream()
+                .map(r -> r.getCorrelationId())
+                .collect(Collectors.toList());
+        assertEquals(2, batched.size());
+        assertEquals("a", batched.get(0));
+        assertEquals("c", batched.get(1));
+
+        assertEquals("client_2", records.get(1).topic());
+        assertEquals("b", records.get(1).key());
+        assertEquals("b", records.get(1).value().getCorrelationId());
+    }
+
+    @Test
+    public void shouldFlushWhenBatchIsFull() throws Exception {
+        ResponseBatcher batcher = new ResponseBatcher(producer, 2, 10000);
+        batcher.add("client", response("a"));
+        assertTrue(producer.history().isEmpty());
+        batcher.add("client", response("b"));
+        assertEquals(1, producer.history().size());
+
+        batcher.flush();
+        assertEquals(1, producer.history().size());
+    }
+
+    @Test
+    public void shouldNotBlockAddWhileBatchIsSent() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MockProducer<String, Response> slowProducer = new MockProducer<String, Response>(true, null, null) {
+            @Override
+            public Future<RecordMetadata> send(ProducerRecord<String, Response> record) {
+                sending.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.send(record);
+            }
+        };
+        ResponseBatcher batcher = new ResponseBatcher(slowProducer, 2, 10000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                batcher.add("client", response("a"));
+                batcher.add("client", response("b"));
+            });
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+            batcher.add("client", response("c"));
+            assertTrue("add must not wait for the producer", slowProducer.history().isEmpty());
+            release.countDown();
+            batcher.flush();
+            assertEquals(2, slowProducer.history().size());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldFlushOnLingerTimerWithoutFurtherAdds() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            ResponseBatcher batcher = new ResponseBatcher(producer, 100, 50, timer);
+            batcher.add("client", response("a"));
+            batcher.add("client", response("b"));
+            assertTrue(producer.history().isEmpty());
+
+            waitForRecords(1);
+            assertEquals(2, ((ResponseBatch) producer.history().get(0).value().getBody()).getResponses().size());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldBatchDispatcherMessages() throws Exception {
+        ServerEventHandler handler = new ServerEventHandler(request -> null, producer, 100, 50);
+        try {
+            handler.send("client", response("a"));
+            handler.send("client", response("b"));
+            assertTrue("dispatcher must not bypass the batcher", producer.history().isEmpty());
+
+            waitForRecords(1);
+            assertEquals(2, ((ResponseBatch) producer.history().get(0).value().getBody()).getResponses().size());
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFlushDispatcherMessagesOnShutdown() throws Exception {
+        ServerEventHandler handler = new ServerEventHandler(request -> null, producer, 100, 10000);
+        handler.send("client", response("a"));
+        assertTrue(producer.history().isEmpty());
+
+        handler.shutdown();
+        assertEquals(1, producer.history().size());
+    }
+
+    private void waitForRecords(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.history().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, producer.history().size());
+    }
+
+    private static Response response(String correlationId) {
+        return Response.newBuilder()
+                .withBody(new TestResponseBody(correlationId))
+                .withCorrelationId(correlationId)
+                .buildSuccess();
+    }
+
+}
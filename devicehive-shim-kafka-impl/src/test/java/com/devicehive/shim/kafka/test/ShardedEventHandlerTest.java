@@ -0,0 +1,83 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.kafka.fixture.TestRequestBody;
+import com.devicehive.shim.kafka.server.ServerEvent;
+import com.devicehive.shim.kafka.server.ShardedEventHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ShardedEventHandlerTest {
+
+    @Test
+    public void shouldPassEveryRequestToExactlyOneShard() throws Exception {
+        int shards = 4;
+        Map<String, List<Integer>> handledBy = new HashMap<>();
+        ShardedEventHandler[] handlers = new ShardedEventHandler[shards];
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            handlers[i] = new ShardedEventHandler((event, sequence, endOfBatch) ->
+                    handledBy.computeIfAbsent(event.get().getCorrelationId(), k -> new ArrayList<>()).add(shard),
+                    i, shards);
+        }
+
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            requests.add(Request.newBuilder()
+                    .withBody(new TestRequestBody("body"))
+                    .withPartitionKey(UUID.randomUUID().toString())
+                    .build());
+        }
+        for (Request request : requests) {
+            ServerEvent event = new ServerEvent();
+            event.set(request);
+            for (ShardedEventHandler handler : handlers) {
+                handler.onEvent(event, 0, true);
+            }
+        }
+
+        assertEquals(requests.size(), handledBy.size());
+        for (Request request : requests) {
+            List<Integer> handlerShards = handledBy.get(request.getCorrelationId());
+            assertEquals(1, handlerShards.size());
+            assertEquals(ShardedEventHandler.shardOf(request, shards), (int) handlerShards.get(0));
+        }
+    }
+
+    @Test
+    public void shouldRouteSamePartitionKeyToSameShard() throws Exception {
+        String key = UUID.randomUUID().toString();
+        int shard = ShardedEventHandler.shardOf(Request.newBuilder().withPartitionKey(key).build(), 8);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(shard, ShardedEventHandler.shardOf(Request.newBuilder().withPartitionKey(key).build(), 8));
+        }
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.devicehive.shim.kafka.test;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.codec.BodyCodecFactory;
+import com.devicehive.codec.CommandBodyCodec;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceCommand;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.eventbus.events.CommandEvent;
+import com.devicehive.model.rpc.Action;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.NotificationBatchInsertRequest;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.codec.BodyCodecRegistry;
+import com.devicehive.shim.kafka.serializer.BinaryEnvelopeCodec;
+import com.devicehive.shim.kafka.serializer.RequestSerializer;
+import com.devicehive.shim.kafka.serializer.ResponseBatch;
+import com.devicehive.shim.kafka.serializer.ResponseSerializer;
+import com.devicehive.shim.kafka.serializer.WireFormat;
+import com.google.gson.Gson;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class WireFormatSerializerTest {
+
+    private final Gson gson = GsonFactory.createGson();
+
+    private final RequestSerializer jsonRequestSerializer =
+            new RequestSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.JSON);
+    private final RequestSerializer binaryRequestSerializer =
+            new RequestSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.BINARY);
+    private final ResponseSerializer jsonResponseSerializer =
+            new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.JSON);
+    private final ResponseSerializer binaryResponseSerializer =
+            new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.BINARY);
+
+    @Test
+    public void shouldRoundTripRequestWithBinaryCodecBody() throws Exception {
+        Request request = notificationInsertRequest();
+
+        byte[] bytes = binaryRequestSerializer.serialize(null, request);
+        assertTrue(BinaryEnvelopeCodec.isBinary(bytes));
+
+        Request decoded = binaryRequestSerializer.deserialize(null, bytes);
+        assertEquals(request, decoded);
+        assertEquals(request.getType(), decoded.getType());
+        assertEquals(request.getBody().cast(NotificationInsertRequest.class).getDeviceNotification(),
+                decoded.getBody().cast(NotificationInsertRequest.class).getDeviceNotification());
+        assertEquals(Long.valueOf(3L), decoded.getBody().cast(NotificationInsertRequest.class).getNetworkId());
+    }
+
+    @Test
+    public void shouldRoundTripResponseWithBinaryCodecBody() throws Exception {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(42L);
+        command.setCommand("reboot");
+        command.setDeviceGuid(UUID.randomUUID().toString());
+        command.setTimestamp(new Date());
+        command.setParameters(new JsonStringWrapper("{\"delay\":10}"));
+        command.setLifetime(60);
+        command.setIsUpdated(false);
+
+        Response response = Response.newBuilder()
+                .withBody(new CommandEvent(command, 7L))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .withLast(false)
+                .buildSuccess();
+
+        Response decoded = binaryResponseSerializer.deserialize(null, binaryResponseSerializer.serialize(null, response));
+        assertEquals(response, decoded);
+        assertEquals(command, decoded.getBody().cast(CommandEvent.class).getCommand());
+        assertEquals(Long.valueOf(7L), decoded.getBody().cast(CommandEvent.class).getNetworkId());
+    }
+
+    @Test
+    public void shouldFallbackToJsonForBodyWithoutCodec() throws Exception {
+        Response response = Response.newBuilder()
+                .withBody(new ErrorResponse("Something went wrong"))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .buildFailed(500);
+
+        Response decoded = binaryResponseSerializer.deserialize(null, binaryResponseSerializer.serialize(null, response));
+        assertTrue(decoded.isFailed());
+        assertEquals(500, decoded.getErrorCode());
+        assertEquals("Something went wrong", decoded.getBody().cast(ErrorResponse.class).getMessage());
+    }
+
+    @Test
+    public void shouldReadBothFormatsRegardlessOfConfiguredOne() throws Exception {
+        Request request = notificationInsertRequest();
+
+        assertEquals(request, binaryRequestSerializer.deserialize(null, jsonRequestSerializer.serialize(null, request)));
+        assertEquals(request, jsonRequestSerializer.deserialize(null, binaryRequestSerializer.serialize(null, request)));
+    }
+
+    @Test
+    public void shouldKeepPingRequestType() throws Exception {
+        Request ping = Request.newBuilder().build();
+        ping.setType(RequestType.ping);
+
+        Request decoded = binaryRequestSerializer.deserialize(null, binaryRequestSerializer.serialize(null, ping));
+        assertEquals(RequestType.ping, decoded.getType());
+        assertNull(decoded.getBody());
+    }
+    @Test
+    public void shouldRoundTripNotificationBatchWithBinaryCodecBody() throws Exception {
+        DeviceNotification first = notificationInsertRequest().getBody().cast(NotificationInsertRequest.class).getDeviceNotification();
+        DeviceNotification second = notificationInsertRequest().getBody().cast(NotificationInsertRequest.class).getDeviceNotification();
+        second.setId(2L);
+        Request request = Request.newBuilder()
+                .withBody(new NotificationBatchInsertRequest(Arrays.asList(first, second), 3L))
+                .withPartitionKey(first.getDeviceGuid())
+                .build();
+
+        byte[] bytes = binaryRequestSerializer.serialize(null, request);
+        assertTrue(BinaryEnvelopeCodec.isBinary(bytes));
+
+        NotificationBatchInsertRequest decoded = binaryRequestSerializer.deserialize(null, bytes).getBody()
+                .cast(NotificationBatchInsertRequest.class);
+        assertEquals(Arrays.asList(first, second), decoded.getDeviceNotifications());
+        assertEquals(Long.valueOf(3L), decoded.getNetworkId());
+    }
+
+    @Test(expected = SerializationException.class)
+    public void shouldRejectUnsupportedVersion() throws Exception {
+        byte[] bytes = binaryResponseSerializer.serialize(null, Response.newBuilder().buildSuccess());
+        bytes[1] = BinaryEnvelopeCodec.VERSION + 1;
+        binaryResponseSerializer.deserialize(null, bytes);
+    }
+
+    @Test
+    public void shouldRejectUnknownRequestType() throws Exception {
+        Request ping = Request.newBuilder().build();
+        ping.setType(RequestType.ping);
+        byte[] bytes = binaryRequestSerializer.serialize(null, ping);
+        // type byte is followed by single reply flag and empty body marker
+        int typeOffset = bytes.length - 3;
+        assertEquals(RequestType.ping.ordinal(), bytes[typeOffset]);
+        bytes[typeOffset] = 100;
+        try {
+            binaryRequestSerializer.deserialize(null, bytes);
+            fail("Unknown request type accepted");
+        } catch (SerializationException e) {
+            assertTrue(e.getMessage().contains("100"));
+        }
+    }
+
+    @Test
+    public void shouldReadVersion1MessagesWithoutNetworkId() throws Exception {
+        ResponseSerializer version1Writer =
+                new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.BINARY, 1);
+        // batch body puts codec bodies back to back, any byte read past the body would corrupt the next response
+        Response batch = Response.newBuilder()
+                .withBody(new ResponseBatch(Arrays.asList(commandEventResponse(1L), commandEventResponse(2L))))
+                .buildSuccess();
+
+        byte[] bytes = version1Writer.serialize(null, batch);
+        assertEquals(1, bytes[1]);
+
+        ResponseBatch decoded = (ResponseBatch) binaryResponseSerializer.deserialize(null, bytes).getBody();
+        assertEquals(2, decoded.getResponses().size());
+        for (int i = 0; i < 2; i++) {
+            CommandEvent event = (CommandEvent) decoded.getResponses().get(i).getBody();
+            assertEquals(Long.valueOf(i + 1), event.getCommand().getId());
+            assertNull(event.getNetworkId());
+        }
+    }
+
+    @Test
+    public void shouldWriteVersion1MessagesInLayoutOfVersion1Peer() throws Exception {
+        ResponseSerializer version1Writer =
+                new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.BINARY, 1);
+        // version 1 node had no network id in command event codec
+        BodyCodecRegistry version1Codecs = new BodyCodecRegistry()
+                .register(Action.COMMAND_EVENT.name(), new CommandBodyCodec<>(CommandEvent::getCommand, CommandEvent::new));
+        ResponseSerializer version1Reader = new ResponseSerializer(gson, version1Codecs, WireFormat.BINARY, 1);
+        Response batch = Response.newBuilder()
+                .withBody(new ResponseBatch(Arrays.asList(commandEventResponse(1L), commandEventResponse(2L))))
+                .buildSuccess();
+
+        ResponseBatch decoded = (ResponseBatch) version1Reader.deserialize(null, version1Writer.serialize(null, batch)).getBody();
+        assertEquals(2, decoded.getResponses().size());
+        assertEquals(Long.valueOf(1L), ((CommandEvent) decoded.getResponses().get(0).getBody()).getCommand().getId());
+        assertEquals(Long.valueOf(2L), ((CommandEvent) decoded.getResponses().get(1).getBody()).getCommand().getId());
+    }
+
+    @Test
+    public void shouldRoundTripNetworkIdInVersion2() throws Exception {
+        byte[] bytes = binaryResponseSerializer.serialize(null, commandEventResponse(1L));
+        assertEquals(BinaryEnvelopeCodec.VERSION, bytes[1]);
+
+        CommandEvent event = (CommandEvent) binaryResponseSerializer.deserialize(null, bytes).getBody();
+        assertEquals(Long.valueOf(7L), event.getNetworkId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedWriteVersion() throws Exception {
+        new ResponseSerializer(gson, BodyCodecFactory.createBodyCodecRegistry(), WireFormat.BINARY,
+                BinaryEnvelopeCodec.VERSION + 1);
+    }
+
+    private static Response commandEventResponse(long commandId) {
+        DeviceCommand command = new DeviceCommand();
+        command.setId(commandId);
+        command.setCommand("switch");
+        command.setDeviceGuid(UUID.randomUUID().toString());
+        return Response.newBuilder()
+                .withBody(new CommandEvent(command, 7L))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .withLast(false)
+                .buildSuccess();
+    }
+
+    private Request notificationInsertRequest() {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(1L);
+        notification.setDeviceGuid(UUID.randomUUID().toString());
+        notification.setNotification("temperature");
+        notification.setTimestamp(new Date());
+        notification.setParameters(new JsonStringWrapper("{\"value\":36.6}"));
+
+        Request request = Request.newBuilder()
+                .withBody(new NotificationInsertRequest(notification, 3L))
+                .withPartitionKey(notification.getDeviceGuid())
+                .withSingleReply(true)
+                .build();
+        request.setReplyTo("response_topic");
+        return request;
+    }
+
+    @Test
+    public void shouldRoundTripResponseBatchInBothFormats() throws Exception {
+        Response first = Response.newBuilder()
+                .withBody(new CommandEvent(new DeviceCommand()))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .withLast(false)
+                .buildSuccess();
+        Response second = Response.newBuilder()
+                .withBody(new ErrorResponse("not found"))
+                .withCorrelationId(UUID.randomUUID().toString())
+                .buildFailed(404);
+        Response batch = Response.newBuilder()
+                .withBody(new ResponseBatch(Arrays.asList(first, second)))
+                .buildSuccess();
+
+        for (ResponseSerializer serializer : Arrays.asList(jsonResponseSerializer, binaryResponseSerializer)) {
+            Response decoded = serializer.deserialize(null, serializer.serialize(null, batch));
+            assertTrue(decoded.getBody() instanceof ResponseBatch);
+            ResponseBatch decodedBatch = (ResponseBatch) decoded.getBody();
+            assertEquals(2, decodedBatch.getResponses().size());
+            assertEquals(first.getCorrelationId(), decodedBatch.getResponses().get(0).getCorrelationId());
+            assertFalse(decodedBatch.getResponses().get(0).isLast());
+            assertEquals(second.getCorrelationId(), decodedBatch.getResponses().get(1).getCorrelationId());
+            assertEquals(404, decodedBatch.getResponses().get(1).getErrorCode());
+            assertEquals("not found", decodedBatch.getResponses().get(1).getBody().cast(ErrorResponse.class).getMessage());
+        }
+    }
+}